@@ -1,6 +1,7 @@
 package benchmark;
 
 import gnu.java.security.hash.Sha256;
+import com.sun.midp.crypto.MessageDigest;
 import com.sun.cldchi.jvm.JVM;
 
 public class Sha256Bench {
@@ -19,5 +20,18 @@ public class Sha256Bench {
         }
         byte[] result = md.digest();
         System.out.println("Time: " + (JVM.monotonicTimeMillis() - start));
+
+        try {
+            start = JVM.monotonicTimeMillis();
+            MessageDigest nativeMd = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < 100; i++) {
+                nativeMd.update(array, 0, array.length);
+            }
+            nativeMd.digest(result, 0, result.length);
+            System.out.println("MessageDigest time: " + (JVM.monotonicTimeMillis() - start));
+        } catch (Exception e) {
+            System.out.println("Unexpected exception: " + e);
+            e.printStackTrace();
+        }
     }
 }
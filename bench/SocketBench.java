@@ -8,6 +8,7 @@ import javax.microedition.io.Connector;
 import javax.microedition.io.SocketConnection;
 import javax.microedition.midlet.MIDlet;
 import org.mozilla.MemorySampler;
+import org.mozilla.SocketSampler;
 
 // This needs to be a midlet in order to have access to the J2ME socket API.
 
@@ -29,6 +30,7 @@ public class SocketBench extends MIDlet {
     } while (len != -1);
     System.out.println("large read time: " + (JVM.monotonicTimeMillis() - start));
     MemorySampler.sampleMemory("Memory  after");
+    SocketSampler.sampleSockets("Sockets after");
     is.close();
 
     client.close();
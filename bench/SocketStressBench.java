@@ -10,6 +10,7 @@ import javax.microedition.midlet.MIDlet;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Display;
 import javax.microedition.lcdui.Graphics;
+import org.mozilla.SocketSampler;
 
 // This needs to be a midlet in order to have access to the J2ME socket API.
 
@@ -90,8 +91,11 @@ public class SocketStressBench extends MIDlet {
     Thread current = Thread.currentThread();
     current.setPriority(Thread.MAX_PRIORITY);
 
-    while (true) {
+    for (int frame = 1; ; frame++) {
       bouncyColors.repaint();
+      if (frame % 600 == 0) {
+        SocketSampler.sampleSockets("Sockets after " + frame + " frames");
+      }
       try {
         Thread.sleep(16);
       } catch (InterruptedException e) {}
@@ -34,7 +34,13 @@ var config = {
   // the string pathname to the set via config.ignoredFiles.add().
   ignoredFiles: new Set(),
   invokeThreshold: 10,
-  backwardBranchThreshold: 10
+  backwardBranchThreshold: 10,
+  // Scheduler time slices in ms, see scheduler.ts.
+  maxWindowExecutionTime: 80,
+  preemptionInterval: 5,
+  // Merge drag and repaint native events that supersede queued ones, see
+  // NativeEventQueue in midp.js.
+  coalesceNativeEvents: true
 };
 
 // The base directory of the app, relative to the current page.  Normally this
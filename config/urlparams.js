@@ -25,6 +25,9 @@
  *    language
  *    forceRuntimeCompilation
  *    deferStartup - Number of milliseconds to wait after loading JS sources and before starting the VM.
+ *    maxWindowExecutionTime - Number of milliseconds threads run before yielding to the event loop.
+ *    preemptionInterval - Number of milliseconds between thread preemption checks.
+ *    softwareGraphics - Draw graphics with the software rasterizer, which gives the same pixels everywhere.
  *
  * Keep this list up-to-date!
  */
@@ -460,7 +460,7 @@ module J2ME {
               return;
             }
             if (mi.isSynchronized) {
-              this.ctx.monitorExit(getMonitor(i32[this.fp + FrameLayout.MonitorOffset]));
+              this.ctx.monitorExit(i32[this.fp + FrameLayout.MonitorOffset]);
             }
             this.popFrame(mi);
             release || traceWriter && traceWriter.outdent();
@@ -621,11 +621,12 @@ module J2ME {
       while (unwound.length) {
         pending.push(unwound.pop());
       }
-      // Garbage collection is disabled during compiled code which can lead to OOM's if
-      // we consistently stay in compiled code. Most code unwinds often enough that we can
-      // force collection here since at the end of an unwind all frames are
-      // stored back on the heap.
-      ASM._collectALittle();
+      // At the end of an unwind all frames are stored back on the heap and no
+      // compiled frames are left on the JS stack, so nothing is spilled anymore.
+      // This is also a good time to collect a little, collections during compiled
+      // code are triggered by the allocation budget instead.
+      resetShadowStack();
+      collectALittle();
     }
 
     /**
@@ -680,7 +681,7 @@ module J2ME {
       if (methodInfo.isSynchronized) {
         var monitorAddr = methodInfo.isStatic ? $.getClassObjectAddress(methodInfo.classInfo) : arguments[0];
         i32[calleeFP + FrameLayout.MonitorOffset] = monitorAddr;
-        $.ctx.monitorEnter(getMonitor(monitorAddr));
+        $.ctx.monitorEnter(monitorAddr);
         release || assert(U !== VMState.Yielding, "Monitors should never yield.");
         if (U === VMState.Pausing || U === VMState.Stopping) {
           // Splice out the marker frame so the interpreter doesn't return early when execution is resumed.
@@ -791,6 +792,9 @@ module J2ME {
 
     var monitorAddr: number;
 
+    // Compiled frames that throw past this interpreter leave their spills on the shadow stack.
+    var shadowStackTop = i32[shadowStackTopIndex];
+
     // HEAD
     var lastPC = 0;
     while (true) {
@@ -1532,6 +1536,7 @@ module J2ME {
                 if ((previousFrameType === FrameType.Interpreter || previousFrameType === FrameType.ExitInterpreter) && mi.onStackReplacementEntryPoints.indexOf(opPC + jumpOffset) > -1) {
                   traceWriter && traceWriter.writeLn("OSR: " + mi.implKey);
                   onStackReplacementCount++;
+                  mi.stats.onStackReplacementCount++;
 
                   // Set the global OSR to the current method info.
                   O = mi;
@@ -1929,7 +1934,7 @@ module J2ME {
             }
             throw getHandle(address);
           case Bytecodes.MONITORENTER:
-            thread.ctx.monitorEnter(getMonitor(i32[--sp]));
+            thread.ctx.monitorEnter(i32[--sp]);
             release || assert(U !== VMState.Yielding, "Monitors should never yield.");
             if (U === VMState.Pausing || U === VMState.Stopping) {
               thread.set(fp, sp, pc); // We need to resume past the MONITORENTER bytecode.
@@ -1937,7 +1942,7 @@ module J2ME {
             }
             continue;
           case Bytecodes.MONITOREXIT:
-            thread.ctx.monitorExit(getMonitor(i32[--sp]));
+            thread.ctx.monitorExit(i32[--sp]);
             continue;
           case Bytecodes.WIDE:
             var op = code[pc++];
@@ -2009,7 +2014,7 @@ module J2ME {
             }
             var lastMI = mi;
             if (lastMI.isSynchronized) {
-              $.ctx.monitorExit(getMonitor(i32[fp + FrameLayout.MonitorOffset]));
+              $.ctx.monitorExit(i32[fp + FrameLayout.MonitorOffset]);
             }
             opPC = i32[fp + FrameLayout.CallerRAOffset];
             sp = fp - maxLocals | 0;
@@ -2129,7 +2134,12 @@ module J2ME {
                 calleeTargetMethodInfo = classInfo.vTable[calleeMethodInfo.vTableIndex];
                 break;
               case Bytecodes.INVOKEINTERFACE:
-                calleeTargetMethodInfo = classInfo.iTable[calleeMethodInfo.mangledName];
+                calleeTargetMethodInfo = classInfo.getInterfaceMethod(calleeMethodInfo);
+                // Only scan the receivers while the list has room and this isn't the common receiver.
+                var receivers = calleeMethodInfo.stats.receivers;
+                if (receivers === null || (receivers[0] !== classInfo && receivers.length < AOTProfile.MAX_RECEIVERS)) {
+                  calleeMethodInfo.stats.recordReceiver(classInfo);
+                }
                 break;
               default:
                 release || traceWriter && traceWriter.writeLn("Not Implemented: " + Bytecode.getBytecodesName(op));
@@ -2277,7 +2287,7 @@ module J2ME {
                               ? $.getClassObjectAddress(calleeTargetMethodInfo.classInfo)
                               : address;
               i32[fp + FrameLayout.MonitorOffset] = monitorAddr;
-              $.ctx.monitorEnter(getMonitor(monitorAddr));
+              $.ctx.monitorEnter(monitorAddr);
               release || assert(U !== VMState.Yielding, "Monitors should never yield.");
               if (U === VMState.Pausing || U === VMState.Stopping) {
                 thread.set(fp, sp, opPC);
@@ -2307,6 +2317,7 @@ module J2ME {
           thread.popMarkerFrame(FrameType.Native);
         }
         thread.set(fp, sp, opPC);
+        i32[shadowStackTopIndex] = shadowStackTop;
         e = translateException(e);
         if (!e.classInfo) {
           // A non-java exception was thrown. Rethrow so it is not handled by exceptionUnwind.
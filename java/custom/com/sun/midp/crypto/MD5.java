@@ -84,7 +84,6 @@ final class MD5 extends MessageDigest {
             data[i] = 0;
 
         num[0] = 0;
-        nativeReset(data);
     }
 
     /**
@@ -178,14 +177,6 @@ final class MD5 extends MessageDigest {
         System.arraycopy(this.data, 0, cpy.data, 0, 16);
         System.arraycopy(this.count, 0, cpy.count, 0, 2);
 
-        nativeClone(this.data, cpy.data);
-
         return cpy;
     }
-
-    /**
-     * Does the additional work needed to clone the object natively.
-     */
-    private static native void nativeClone(int[] selfData, int[] data);
-    private static native void nativeReset(int[] selfData);
 }
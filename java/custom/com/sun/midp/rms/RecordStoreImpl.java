@@ -40,11 +40,18 @@ import com.sun.midp.log.LogChannels;
 
 /**
  * A class implementing a MIDP a record store.
+ *
+ * The .db file only holds the record store header, each record is stored
+ * on its own and looked up by ID through a native record index. Record
+ * stores written in the block format are migrated when they are opened.
  */
 
 public class RecordStoreImpl implements AbstractRecordStoreImpl {
-    /** used to compact the records of the record store */
-    private byte[] compactBuffer = new byte[COMPACT_BUFFER_SIZE];
+    /**
+     * Free size stored in the header of record stores whose records are
+     * in the record index rather than in blocks of the .db file.
+     */
+    static final int INDEXED_FREE_SIZE = -1;
 
     /**
      * Internal indicator for AUTHMODE_ANY with read only access
@@ -64,8 +71,8 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
     /** data block header stored here */
     RecordStoreSharedDBHeader dbHeader;
 
-    /** record store index */
-    private RecordStoreIndex dbIndex;
+    /** handle of the native record index */
+    private int indexHandle = -1;
 
     /** record store data */
     private RecordStoreFile dbFile;
@@ -108,6 +115,8 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             RecordStoreUtil.deleteFile(
                     RmsEnvironment.getSecureFilenameBase(suiteId),
                     recordStoreName, RecordStoreFile.DB_EXTENSION);
+            deleteRecords(RmsEnvironment.getSecureFilenameBase(suiteId),
+                          recordStoreName);
 
             if (!success) {
                 throw new RecordStoreException("deleteRecordStore " +
@@ -249,15 +258,15 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                compactRecords();  // compact before close
                 dbFile.close();
-                dbIndex.close();
             } catch (java.io.IOException ioe) {
                 throw new RecordStoreException("error closing .db file. "
                         + ioe);
             } finally {
+                closeRecordIndex(indexHandle);
                 unlockRecordStore();
                 dbFile = null;
+                indexHandle = -1;
                 dbHeader.recordStoreClosed();
             }
         }
@@ -430,14 +439,20 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             try {
                 int recordId = getNextRecordID();
 
+                checkSpaceAvailable(-1, numBytes);
+
                 try {
-                    // add a block for this record
-                    addBlock(recordId, data, offset, numBytes);
+                    // store the record
+                    putRecord(indexHandle, recordId, data, offset, numBytes);
 
                     // update the db header
                     byte[] dbHeaderData = dbHeader.getHeaderData();
                     RecordStoreUtil.putInt(recordId+1, dbHeaderData, 
                             RS2_NEXT_ID);
+                    RecordStoreUtil.putInt(RecordStoreUtil.getInt(
+                            dbHeaderData, RS6_DATA_SIZE) +
+                            RecordStoreUtil.calculateBlockSize(numBytes),
+                            dbHeaderData, RS6_DATA_SIZE);
                     RecordStoreUtil.putInt(getNumRecords()+1, dbHeaderData,
                             RS3_NUM_LIVE);
                     int newVersion = getVersion()+1;
@@ -448,9 +463,8 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
 
                     // write out the changes to the db header
                     dbFile.seek(RS2_NEXT_ID);
-                    dbFile.write(dbHeaderData, RS2_NEXT_ID, 3*4+8);
+                    dbFile.write(dbHeaderData, RS2_NEXT_ID, 3*4+8+4);
                     dbHeader.headerUpdated(dbHeaderData);
-                    dbIndex.recordStoreVersionUpdated(newVersion);
                     dbFile.commitWrite();
                 } catch (java.io.IOException ioe) {
                     throw new RecordStoreException("error writing new record "
@@ -487,19 +501,19 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                byte[] header = new byte[BLOCK_HEADER_SIZE];
-                int blockOffset = dbIndex.getRecordHeader(recordId, header);
-
-                // free the block
-                freeBlock(blockOffset, header);
+                int dataSize = checkRecordSize(recordId);
 
-                // update the db index
-                dbIndex.deleteRecordIndex(recordId);
+                // remove the record
+                removeRecord(indexHandle, recordId);
 
                 // update the db header
                 byte[] dbHeaderData = dbHeader.getHeaderData();
                 RecordStoreUtil.putInt(getNumRecords()-1, dbHeaderData, 
                         RS3_NUM_LIVE);
+                RecordStoreUtil.putInt(RecordStoreUtil.getInt(
+                        dbHeaderData, RS6_DATA_SIZE) -
+                        RecordStoreUtil.calculateBlockSize(dataSize),
+                        dbHeaderData, RS6_DATA_SIZE);
                 int newVersion = getVersion()+1;                
                 RecordStoreUtil.putInt(newVersion, dbHeaderData, 
                         RS4_VERSION);
@@ -508,9 +522,8 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
 
                 // save the updated db header
                 dbFile.seek(RS3_NUM_LIVE);
-                dbFile.write(dbHeaderData, RS3_NUM_LIVE, 2*4+8);
+                dbFile.write(dbHeaderData, RS3_NUM_LIVE, 2*4+8+4);
                 dbHeader.headerUpdated(dbHeaderData);
-                dbIndex.recordStoreVersionUpdated(newVersion);
                 dbFile.commitWrite();
 
             } catch (java.io.IOException ioe) {
@@ -545,15 +558,7 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                byte[] header = new byte[BLOCK_HEADER_SIZE];
-
-                try {
-                    dbIndex.getRecordHeader(recordId, header);
-                } catch (java.io.IOException ioe) {
-                    throw new RecordStoreException("error reading record data");
-                }
-
-                return RecordStoreUtil.getInt(header, 4);
+                return checkRecordSize(recordId);
             } finally {
                 unlockRecordStore();
             }
@@ -587,15 +592,12 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                byte[] header = new byte[BLOCK_HEADER_SIZE];
-                int blockOffset = dbIndex.getRecordHeader(recordId, header);
-
-                int dataSize = RecordStoreUtil.getInt(header, 4);
+                int dataSize = checkRecordSize(recordId);
+                if (offset < 0 || offset + dataSize > buffer.length) {
+                    throw new ArrayIndexOutOfBoundsException();
+                }
 
-                dbFile.seek(blockOffset+BLOCK_HEADER_SIZE);
-                return dbFile.read(buffer, offset, dataSize);
-            } catch (java.io.IOException ioe) {
-                throw new RecordStoreException("error reading record data");
+                return readRecord(indexHandle, recordId, buffer, offset);
             } finally {
                 unlockRecordStore();
             }
@@ -625,22 +627,15 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                byte[] header = new byte[BLOCK_HEADER_SIZE];
-                int blockOffset = dbIndex.getRecordHeader(recordId, header);
-
-                int dataSize = RecordStoreUtil.getInt(header, 4);
+                int dataSize = checkRecordSize(recordId);
                 if (dataSize == 0) {
                     return null;
                 }
 
                 byte[] buffer = new byte[dataSize];
-
-                dbFile.seek(blockOffset+BLOCK_HEADER_SIZE);
-                dbFile.read(buffer);
+                readRecord(indexHandle, recordId, buffer, 0);
 
                 return buffer;
-            } catch (java.io.IOException ioe) {
-                throw new RecordStoreException("error reading record data");
             } finally {
                 unlockRecordStore();
             }
@@ -680,23 +675,11 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
             lockRecordStore();
 
             try {
-                byte[] header = new byte[BLOCK_HEADER_SIZE];
-                int blockOffset = dbIndex.getRecordHeader(recordId, header);
-
-                int oldBlockSize =
-                  RecordStoreUtil.calculateBlockSize(RecordStoreUtil.getInt(
-                                                       header, 4));
-                int newBlockSize = RecordStoreUtil.calculateBlockSize(numBytes);
-                if (newBlockSize <= oldBlockSize) {
-                    // reuse the old block
-                    splitBlock(blockOffset, header, newData, offset, numBytes);
-                } else {
-                    // free the old record data
-                    freeBlock(blockOffset, header);
+                int oldDataSize = checkRecordSize(recordId);
+                checkSpaceAvailable(oldDataSize, numBytes);
 
-                    // add a block that contains the new record data
-                    addBlock(recordId, newData, offset, numBytes);
-                }
+                // replace the record data
+                putRecord(indexHandle, recordId, newData, offset, numBytes);
 
                 // update the db header
                 byte[] dbHeaderData = dbHeader.getHeaderData();
@@ -705,12 +688,16 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
                         RS4_VERSION);
                 RecordStoreUtil.putLong(System.currentTimeMillis(), 
                         dbHeaderData, RS5_LAST_MODIFIED);
+                RecordStoreUtil.putInt(RecordStoreUtil.getInt(
+                        dbHeaderData, RS6_DATA_SIZE) -
+                        RecordStoreUtil.calculateBlockSize(oldDataSize) +
+                        RecordStoreUtil.calculateBlockSize(numBytes),
+                        dbHeaderData, RS6_DATA_SIZE);
 
                 // write out the changes to the db header
                 dbFile.seek(RS4_VERSION);
-                dbFile.write(dbHeaderData, RS4_VERSION, 4+8);
+                dbFile.write(dbHeaderData, RS4_VERSION, 4+8+4);
                 dbHeader.headerUpdated(dbHeaderData);
-                dbIndex.recordStoreVersionUpdated(newVersion);
                 dbFile.commitWrite();
             } catch (java.io.IOException ioe) {
                 throw new RecordStoreException("error setting record data");
@@ -730,7 +717,7 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
         synchronized (recordStoreLock) {
             lockRecordStore();
             try {
-                return dbIndex.getRecordIDs();
+                return getRecordIDs0(indexHandle);
             } finally {
                 unlockRecordStore();
             }
@@ -761,364 +748,199 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
     }
 
     /**
-     * Remove free blocks from the record store and compact records
-     * with data into as small a space in <code>dbFile</code> as
-     * possible.  Operates from smallest to greatest offset in
-     * <code>dbFile</code>, copying data in chunks towards the
-     * beginning of the file, and updating record store meta-data
-     * as it progresses.
-     *
-     * Warning: This is a slow operation that scales linearly
-     * with dbFile size.
+     * Moves the records of a record store written in the block format,
+     * where records and free blocks follow the header in the .db file,
+     * to the record index, and truncates the .db file to its header.
+     * Records are read one at a time into a buffer that is reused, so
+     * only the record being moved is held in the Java heap.
      *
      * Warning: it is assumed that this method is only called while being
      * protected by record store lock.
      *
-     * @exception RecordStoreNotOpenException if this record store
-     *            is closed
-     * @exception RecordStoreException if an error occurs during record
-     *            store compaction
+     * @param dbHeaderData the header of the record store
+     *
+     * @exception IOException if there is an error accessing the db file
      */
-    private void compactRecords()
-        throws IOException {
-
-        // check if the db can be compacted
-        byte[] dbHeaderData = dbHeader.getHeaderData();
-        if (RecordStoreUtil.getInt(dbHeaderData, RS7_FREE_SIZE) == 0) {
-            // no free space to compact
-            return;
-        }
-
+    private void migrateBlocks(byte[] dbHeaderData) throws IOException {
         byte[] header = new byte[BLOCK_HEADER_SIZE];
-        int currentId = 0;
-        int currentOffset = RecordStoreImpl.DB_HEADER_SIZE;
-        int currentSize = 0;
-        int moveUpNumBytes = 0;
-
-        // search through the data blocks for a free block that is large enough
-        while (currentOffset < getSize()) {
-            // seek to the next offset
-            dbFile.seek(currentOffset);
+        byte[] data = new byte[0];
+        int endOffset = DB_HEADER_SIZE +
+            RecordStoreUtil.getInt(dbHeaderData, RS6_DATA_SIZE);
+        int currentOffset = DB_HEADER_SIZE;
+        int dataSize = 0;
 
-            // read the block header
-            if (dbFile.read(header) != RecordStoreImpl.BLOCK_HEADER_SIZE) {
+        while (currentOffset < endOffset) {
+            dbFile.seek(currentOffset);
+            if (dbFile.read(header) != BLOCK_HEADER_SIZE) {
                 // could not read the block
                 throw new IOException();
             }
 
-            currentId = RecordStoreUtil.getInt(header, 0);
-            currentSize =
-              RecordStoreUtil.calculateBlockSize(RecordStoreUtil.getInt(
-                                                   header, 4));
-
-            if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                               "currentId = " + currentId +
-                               " currentSize = " + currentSize);
-            }
+            int currentId = RecordStoreUtil.getInt(header, 0);
+            int numBytes = RecordStoreUtil.getInt(header, 4);
+            int blockSize = RecordStoreUtil.calculateBlockSize(numBytes);
 
-            // check if this is a free block or a record
-            if (currentId < 0) {
-                if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                    Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                                   "found free block at offset " +
-                                   currentOffset);
+            // free blocks have a negative id and are dropped
+            if (currentId >= 0) {
+                if (data.length < numBytes) {
+                    data = new byte[numBytes];
                 }
-
-                // a free block, add to the moveUpNumBytes
-                moveUpNumBytes += currentSize;
-
-                // remove from the index
-                dbIndex.removeBlock(currentOffset, header);
-            } else {
-                if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                    Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                                   "found record block at offset " +
-                                   currentOffset);
-                }
-
-                // a record data block, check if it needs to be moved up
-                if (moveUpNumBytes > 0) {
-
-                    if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                        Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                                       "moveUpNumBytes = " + currentOffset);
-                    }
-
-                    int numMoved = 0;
-                    while (numMoved < currentSize) {
-                        int curRead = currentSize - numMoved;
-                        if (curRead > COMPACT_BUFFER_SIZE) {
-                            curRead = COMPACT_BUFFER_SIZE;
-                        }
-
-                        dbFile.seek(currentOffset + numMoved);
-                        curRead = dbFile.read(compactBuffer, 0, curRead);
-                        if (curRead == -1) {
-                            throw new IOException();
-                        }
-
-                        dbFile.seek(currentOffset + numMoved - moveUpNumBytes);
-                        dbFile.write(compactBuffer, 0, curRead);
-                        // dbFile.commitWrite();
-                        numMoved += curRead;
-                    }
-
-                    dbIndex.updateBlock(currentOffset - moveUpNumBytes, header);
+                if (numBytes > 0 && dbFile.read(data, 0, numBytes) != numBytes) {
+                    throw new IOException();
                 }
+                putRecord(indexHandle, currentId, data, 0, numBytes);
+                dataSize += blockSize;
             }
 
-            // added the block size to the currentOffset
-            currentOffset += currentSize;
+            currentOffset += blockSize;
         }
 
-        // check if the db file can be truncated
-        if (moveUpNumBytes > 0) {
-            RecordStoreUtil.putInt(
-                RecordStoreUtil.getInt(dbHeaderData, RS6_DATA_SIZE) -
-                    moveUpNumBytes, dbHeaderData, RS6_DATA_SIZE);
-            RecordStoreUtil.putInt(0, dbHeaderData, RS7_FREE_SIZE);
-            dbFile.seek(RS6_DATA_SIZE);
-            dbFile.write(dbHeaderData, RS6_DATA_SIZE, 4+4);
-            dbHeader.headerUpdated(dbHeaderData);
-            // dbFile.commitWrite();
-
-            dbFile.truncate(getSize());
-
-            if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                               "compactRecords, truncate to size " + 
-                               getSize());
-            }
+        if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
+            Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
+                           "migrateBlocks, " + dataSize + " bytes of " +
+                           (endOffset - DB_HEADER_SIZE) + " migrated");
         }
+
+        RecordStoreUtil.putInt(dataSize, dbHeaderData, RS6_DATA_SIZE);
+        RecordStoreUtil.putInt(INDEXED_FREE_SIZE, dbHeaderData,
+                               RS7_FREE_SIZE);
+        dbFile.seek(RS6_DATA_SIZE);
+        dbFile.write(dbHeaderData, RS6_DATA_SIZE, 4+4);
+        dbFile.truncate(DB_HEADER_SIZE);
+        dbFile.commitWrite();
     }
 
     /**
-     * Set the record in the block to the data passed in and adds any remaining
-     * space to the free list.
+     * Returns the size of the given record, or throws if there is no such
+     * record.
      *
-     * @param blockOffset the offset in db file to the block to split
-     * @param header the header of the block to split
-     * @param newData the new data to store in the record
-     * @param offset the index into the data buffer of the first
-     *          relevant byte for this record
-     * @param numBytes the number of bytes of the data buffer to use
-     *          for this record
+     * Warning: it is assumed that this method is only called while being
+     * protected by record store lock.
      *
-     * @exception IOException if there is an error accessing the db file
+     * @param recordId the ID of the record
+     *
+     * @exception InvalidRecordIDException if the recordId is invalid
+     *
+     * @return the size of the record data
      */
-    private void splitBlock(int blockOffset, byte[] header,
-                            byte[] newData, int offset,
-                            int numBytes) throws IOException {
-
-        if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-            Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                           "splitBlock("+RecordStoreUtil.getInt(header, 0) +
-                           ") old numBytes = " + RecordStoreUtil.getInt(header, 4) +
-                           " new numBytes=" + numBytes);
-        }
-
-        // calculate the size of the block
-        int oldBlockSize =
-          RecordStoreUtil.calculateBlockSize(RecordStoreUtil.getInt(
-                                               header, 4));
-
-        // calculate the size of the block
-        int newBlockSize = RecordStoreUtil.calculateBlockSize(numBytes);
-
-        // update the block header
-        RecordStoreUtil.putInt(numBytes, header, 4);
+    private int checkRecordSize(int recordId)
+        throws InvalidRecordIDException {
 
-        // seek to the location and write the block and header
-        writeBlock(blockOffset, header, newData, offset, numBytes);
-
-        // check if there is any left over free space
-        int freeSize = oldBlockSize - newBlockSize - BLOCK_HEADER_SIZE;
-        if (freeSize >= 0) {
-            // update the block header and free block of extra space
-            RecordStoreUtil.putInt(freeSize, header, 4);
-            freeBlock(blockOffset+newBlockSize, header);
+        int dataSize = getRecordSize0(indexHandle, recordId);
+        if (dataSize < 0) {
+            throw new InvalidRecordIDException();
         }
+        return dataSize;
     }
 
     /**
-     * Adds a block for the record and data or sets an existing block to
-     * the data.  Splits an exiting block if needed.
-     * 
-     * Warning: it is assumed that this method is only called while being
-     * protected by record store lock.
+     * Makes sure the record store has room for a record of the given size.
      *
-     * @param recordId the ID of the record to use in this operation
-     * @param data the new data to store in the record
-     * @param offset the index into the data buffer of the first
-     *          relevant byte for this record
-     * @param numBytes the number of bytes of the data buffer to use
-     *          for this record
+     * @param oldNumBytes the size of the record being replaced, or -1
+     * @param numBytes the size of the new record
      *
      * @exception RecordStoreFullException if the operation cannot be
      *          completed because the record store has no more room
-     * @exception IOException if there is an error accessing the db file
-     * @exception RecordStoreException if the new consumption is gong to
-     *            exceed the resource limit
-     *
-     * @return the offset in the db file of the block added
      */
-    private int addBlock(int recordId, byte[] data, int offset, int numBytes)
-        throws IOException, RecordStoreFullException, RecordStoreException {
+    private void checkSpaceAvailable(int oldNumBytes, int numBytes)
+        throws RecordStoreFullException {
 
-        if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-            Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                           "addBlock("+recordId+") numBytes="+numBytes);
+        int growth = RecordStoreUtil.calculateBlockSize(numBytes);
+        if (oldNumBytes >= 0) {
+            growth -= RecordStoreUtil.calculateBlockSize(oldNumBytes);
         }
-
-        // calculate the size of the block needed
-        int blockSize = RecordStoreUtil.calculateBlockSize(numBytes);
-        int blockOffset = 0;
-        byte[] dbHeaderData = dbHeader.getHeaderData();
-        int freeBlocksSize = RecordStoreUtil.getInt(dbHeaderData, 
-                RS7_FREE_SIZE);
-
-        // initialize the block header
-        byte[] header = new byte[BLOCK_HEADER_SIZE];
-
-        // check if there is the potential for a large enough free block
-        if (freeBlocksSize >= blockSize) {
-
-            if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                               "blockSize = " + blockSize +
-                               "free size = " + freeBlocksSize);
-            }
-
-            // initialize the number of bytes and search for an
-            // available free block
-            RecordStoreUtil.putInt(numBytes, header, 4);
-            blockOffset = dbIndex.getFreeBlock(header);
+        if (growth > 0 && getSizeAvailable() < growth) {
+            throw new RecordStoreFullException();
         }
-
-        // set the recordId in to the block header
-        RecordStoreUtil.putInt(recordId, header, 0);
-
-        if (blockOffset > 0) {
-            // search found a block, use it
-            splitBlock(blockOffset, header, data, offset, numBytes);
-        } else {
-            // search failed, add a new block to the end of the db file
-            int spaceAvailable = getSizeAvailable();
-            /**
-             * spaceAvailable returns the smaller number of total space
-             * available and the storage limit per suite. If it is less than
-             * the block size to be added, RecordStoreFullException is thrown
-             */
-            if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                               "spaceAvailable = "+spaceAvailable);
-            }
-
-            // Is there room to grow the file?
-            if (spaceAvailable < blockSize) {
-                 // Is there enough room totally: in storage and free blocks?
-                 if (spaceAvailable + freeBlocksSize < blockSize) {
-                     throw new RecordStoreFullException();
-                 }
-                 compactRecords();
-            }
-
-            blockOffset = getSize();
-
-            // seek to the location and write the block and header
-            RecordStoreUtil.putInt(numBytes, header, 4);
-            writeBlock(blockOffset, header, data, offset, numBytes);
-
-            // update the db data size
-            RecordStoreUtil.putInt(RecordStoreUtil.getInt(
-                    dbHeaderData, RS6_DATA_SIZE) + blockSize, 
-                    dbHeaderData, RS6_DATA_SIZE);
-            dbFile.seek(RS6_DATA_SIZE);
-            dbFile.write(dbHeaderData, RS6_DATA_SIZE, 4);
-            dbHeader.headerUpdated(dbHeaderData);
-            // dbFile.commitWrite();
-
-            if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-                Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                               "blockOffset = "+blockOffset);
-            }
-        }
-
-        return blockOffset;
     }
 
     /**
-     * Mark the block at the given offset in db file as free.
+     * Loads the record index of a record store, the records are kept in
+     * memory, so the index is shared by all the instances of the same
+     * record store.
      *
-     * @param blockOffset the offset in db file to the block to free
-     * @param header the header of the block to free
+     * @param filenameBase filename base of the suite that owns the store
+     * @param recordStoreName name of the record store
      *
-     * @exception IOException if there is an error accessing the db file
+     * @exception IOException if the records could not be read
+     *
+     * @return handle of the record index
      */
-    private void freeBlock(int blockOffset, byte[] header) throws IOException {
-        int dataSize = RecordStoreUtil.getInt(header, 4);
+    private static native int openRecordIndex(String filenameBase,
+                                              String recordStoreName)
+        throws IOException;
 
-        // calculate the size of the block
-        int blockSize = RecordStoreUtil.calculateBlockSize(dataSize);
+    /**
+     * Releases a record index.
+     *
+     * @param handle handle of the record index
+     */
+    private static native void closeRecordIndex(int handle);
 
-        if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
-            Logging.report(Logging.INFORMATION, LogChannels.LC_RMS,
-                           "freeBlock(" + blockOffset + ") size = " +
-                           blockSize);
-        }
+    /**
+     * Adds a record to the index or replaces its data, the record is
+     * written to storage before this method returns.
+     *
+     * @param handle handle of the record index
+     * @param recordId the ID of the record
+     * @param data the data of the record, or null
+     * @param offset the index into the data buffer of the first
+     *          relevant byte for this record
+     * @param numBytes the number of bytes of the data buffer to use
+     */
+    private static native void putRecord(int handle, int recordId,
+                                         byte[] data, int offset,
+                                         int numBytes);
 
-        // mark the block as free
-        RecordStoreUtil.putInt(-1, header, 0);
-        RecordStoreUtil.putInt(blockSize - BLOCK_HEADER_SIZE, header, 4);
+    /**
+     * Returns the size of a record, or -1 if there is no such record.
+     *
+     * @param handle handle of the record index
+     * @param recordId the ID of the record
+     *
+     * @return the size of the record data
+     */
+    private static native int getRecordSize0(int handle, int recordId);
 
-        // save the updated block header
-        writeBlock(blockOffset, header, null, 0, 0);
+    /**
+     * Copies the data of a record into a buffer that is known to be large
+     * enough.
+     *
+     * @param handle handle of the record index
+     * @param recordId the ID of the record
+     * @param buffer the byte array in which to copy the data
+     * @param offset the index into the buffer in which to start copying
+     *
+     * @return the number of bytes copied
+     */
+    private static native int readRecord(int handle, int recordId,
+                                         byte[] buffer, int offset);
 
-        // add to the db free size
-        byte[] dbHeaderData = dbHeader.getHeaderData();
-        RecordStoreUtil.putInt(RecordStoreUtil.getInt(
-                dbHeaderData, RS7_FREE_SIZE) + blockSize,
-                dbHeaderData, RS7_FREE_SIZE);
-        dbFile.seek(RS7_FREE_SIZE);
-        dbFile.write(dbHeaderData, RS7_FREE_SIZE, 4);
-        dbHeader.headerUpdated(dbHeaderData);
-        // dbFile.commitWrite();
-    }
+    /**
+     * Removes a record from the index and from storage.
+     *
+     * @param handle handle of the record index
+     * @param recordId the ID of the record
+     */
+    private static native void removeRecord(int handle, int recordId);
 
     /**
-     * Writes a block to the db file at the given offset.
+     * Returns the IDs of all the records in the index.
      *
-     * @param blockOffset the offset in db file to write the block
-     * @param header the header of the block to write
-     * @param data the new data to store in the record
-     * @param offset the index into the data buffer of the first
-     *          relevant byte for this record
-     * @param numBytes the number of bytes of the data buffer to use
-     *          for this record
+     * @param handle handle of the record index
      *
-     * @exception IOException if there is an error accessing the db file
+     * @return an array of the record IDs
      */
-    private void writeBlock(int blockOffset, byte[] header,
-                            byte[] data, int offset, int numBytes)
-        throws IOException {
-
-        int remainder;
-        dbFile.seek(blockOffset);
-        dbFile.write(header);
-        if (data != null && numBytes > 0) {
-            dbFile.write(data, offset, numBytes);
-            remainder = numBytes % BLOCK_HEADER_SIZE;
-            if (remainder != 0) {
-                // DB_SIGNATURE used here as meaningless pad bytes
-                dbFile.write(DB_SIGNATURE, 0, BLOCK_HEADER_SIZE - remainder);
-            }
-        }
-        // flush the writes
-        // dbFile.commitWrite();
-        // update the index
-        dbIndex.updateBlock(blockOffset, header);
-    }
+    private static native int[] getRecordIDs0(int handle);
+
+    /**
+     * Removes the records of a record store from storage.
+     *
+     * @param filenameBase filename base of the suite that owns the store
+     * @param recordStoreName name of the record store
+     */
+    private static native void deleteRecords(String filenameBase,
+                                             String recordStoreName);
 
     /**
      * Locks this record store.
@@ -1222,18 +1044,37 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
                     RecordStoreUtil.putInt(1, dbHeaderData, RS2_NEXT_ID);
                     RecordStoreUtil.putLong(System.currentTimeMillis(), 
                             dbHeaderData, RS5_LAST_MODIFIED);
+                    RecordStoreUtil.putInt(INDEXED_FREE_SIZE, dbHeaderData,
+                            RS7_FREE_SIZE);
 
                     // write the header to the file
                     dbFile.write(dbHeaderData);
                     dbFile.commitWrite();
                 }
 
+                // load the record index
+                indexHandle = openRecordIndex(
+                        RmsEnvironment.getSecureFilenameBase(suiteId),
+                        recordStoreName);
+
+                if (RecordStoreUtil.getInt(dbHeaderData, RS7_FREE_SIZE) !=
+                        INDEXED_FREE_SIZE) {
+                    // the records are still in blocks of the .db file
+                    migrateBlocks(dbHeaderData);
+
+                    // the index of the blocks is no longer needed
+                    String filenameBase =
+                        RmsEnvironment.getSecureFilenameBase(suiteId);
+                    if (RecordStoreUtil.exists(filenameBase, recordStoreName,
+                            RecordStoreFile.IDX_EXTENSION)) {
+                        RecordStoreUtil.quietDeleteFile(filenameBase,
+                            recordStoreName, RecordStoreFile.IDX_EXTENSION);
+                    }
+                }
+
                 dbHeader = new RecordStoreSharedDBHeader(suiteId, 
                         recordStoreName, dbHeaderData);                
 
-                // create the index object
-                dbIndex = new RecordStoreIndex(this, suiteId, recordStoreName);
-
             } catch (java.io.IOException ioe) {
                 try {
                     if (dbFile != null) {
@@ -1243,12 +1084,20 @@ public class RecordStoreImpl implements AbstractRecordStoreImpl {
                     // ignore exception within exception block
                 }
 
+                if (indexHandle != -1) {
+                    closeRecordIndex(indexHandle);
+                    indexHandle = -1;
+                }
+
                 if (!exists) {
                     // avoid preserving just created damaged files
                     RecordStoreUtil.quietDeleteFile(
                             RmsEnvironment.getSecureFilenameBase(suiteId),
                             recordStoreName, RecordStoreFile.DB_EXTENSION);
                     RecordStoreIndex.deleteIndex(suiteId, recordStoreName);
+                    deleteRecords(
+                            RmsEnvironment.getSecureFilenameBase(suiteId),
+                            recordStoreName);
                 }
 
                 dbFile = null;
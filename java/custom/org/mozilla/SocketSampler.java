@@ -0,0 +1,5 @@
+package org.mozilla;
+
+public final class SocketSampler {
+  public native static void sampleSockets(String label);
+}
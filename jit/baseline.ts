@@ -67,6 +67,12 @@ module J2ME {
    */
   var emitCallMethodLoopCounter = false;
 
+  /**
+   * Emits profiling code that counts INVOKEINTERFACE inline cache lookups. Together with
+   * the misses recorded in |inlineCacheCounter| this gives the cache hit rate.
+   */
+  var emitInlineCacheCounter = false;
+
   /**
    * Emits array bounds checks. Although this is necessary for correctness, most
    * applications work without them.
@@ -254,6 +260,12 @@ module J2ME {
     private hasOSREntryPoint = false;
     private entryBlock: number;
     private isPrivileged: boolean;
+    private inlineCacheSiteCount: number;
+
+    /**
+     * Indices of the locals that may hold references, see |findReferenceLocals|.
+     */
+    private referenceLocals: number [];
 
     static localNames = ["a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n", "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z"];
 
@@ -284,6 +296,7 @@ module J2ME {
       this.target = target;
       this.hasUnwindThrow = false;
       this.isPrivileged = isPrivileged(this.methodInfo);
+      this.inlineCacheSiteCount = 0;
     }
 
     compile(): CompiledMethodInfo {
@@ -301,6 +314,7 @@ module J2ME {
         blocks[i].relooperBlockID = Relooper.addBlock("// Block: " + blocks[i].blockID);
       }
       this.entryBlock = blocks[0].relooperBlockID;
+      this.referenceLocals = this.findReferenceLocals();
       this.emitPrologue();
       this.emitBody();
 
@@ -316,7 +330,7 @@ module J2ME {
         this.bodyEmitter.prependLn("var " + variables.join(",") + ";");
       }
       if (this.hasMonitorEnter) {
-        this.bodyEmitter.prependLn("var th=$.ctx.threadAddress;");
+        this.bodyEmitter.prependLn("var th=$.ctx.lockOwner;");
       }
 
       // All methods get passed in a |self| address. For static methods this parameter is always null but we still
@@ -332,6 +346,64 @@ module J2ME {
       this.variables[name] = value;
     }
 
+    /**
+     * Finds the locals that may hold references: the receiver, reference parameters
+     * and the targets of ASTOREs. Locals aren't typed per block, so a local that also
+     * holds primitives is spilled as well, which the conservative collector tolerates.
+     */
+    private findReferenceLocals(): number [] {
+      var locals = [];
+      var signatureKinds = this.methodInfo.signatureKinds;
+      var localIndex = 0;
+      if (!this.methodInfo.isStatic) {
+        locals.push(localIndex++);
+      }
+      // Skip the first typeDescriptor since it is the return type.
+      for (var i = 1; i < signatureKinds.length; i++) {
+        if (signatureKinds[i] === Kind.Reference) {
+          locals.push(localIndex);
+        }
+        localIndex += isTwoSlot(signatureKinds[i]) ? 2 : 1;
+      }
+      var stream = new BytecodeStream(this.methodInfo.codeAttribute.code);
+      stream.setBCI(0);
+      while (stream.currentBCI < stream.endBCI()) {
+        var opcode = stream.currentBC();
+        if (opcode === Bytecodes.ASTORE) {
+          ArrayUtilities.pushUnique(locals, stream.readLocalIndex());
+        } else if (opcode >= Bytecodes.ASTORE_0 && opcode <= Bytecodes.ASTORE_3) {
+          ArrayUtilities.pushUnique(locals, opcode - Bytecodes.ASTORE_0);
+        }
+        stream.next();
+      }
+      return locals;
+    }
+
+    /**
+     * Returns the code to emit before and after a call or allocation during which
+     * the collector may run. The locals and the stack slots below |sp| that may hold
+     * references are spilled to the shadow stack before it, and dropped after it.
+     */
+    private getSafepoint(sp: number): string [] {
+      var values = this.referenceLocals.map(i => this.getLocal(i));
+      if (this.lockObject === "self") {
+        values.push("self");
+      }
+      for (var i = 0; i < sp; i++) {
+        values.push(this.getStackName(i));
+      }
+      if (values.length === 0) {
+        return ["", ""];
+      }
+      this.needsVariable("ss");
+      var before = "ss=i32[SST];ss+" + values.length + ">SSL&&SO();";
+      for (var i = 0; i < values.length; i++) {
+        before += "i32[ss+" + i + "]=" + values[i] + ";";
+      }
+      before += "i32[SST]=ss+" + values.length + ";";
+      return [before, "i32[SST]=ss;"];
+    }
+
     setSuccessorsBlockStackHeight(block: Block, sp: number) {
       var successors = block.successors;
       for (var i = 0; i < successors.length; i++) {
@@ -398,6 +470,9 @@ module J2ME {
 
       if (needsTry) {
         this.bodyEmitter.leaveAndEnter("}catch(ex){");
+        // Drop whatever the frames between the throw and here left on the shadow stack.
+        this.needsVariable("sb", "i32[SST]");
+        this.bodyEmitter.writeLn("i32[SST]=sb;");
         if (this.hasUnwindThrow) {
           this.emitBailout(this.bodyEmitter, "ex.getPC()", "ex.getSP()", this.sp);
         }
@@ -874,7 +949,12 @@ module J2ME {
         } else {
           (emitDebugInfoComments || baselineCounter) && (message = "ClassInitializationCheck: " + classInfo.getClassNameSlow());
           this.needsVariable("ci", "$.I");
-          this.blockEmitter.writeLn("ci[" + this.classInfoSymbol(classInfo) + "] || CIC(" + this.classInfoObject(classInfo) + ");");
+          var safepoint = this.getSafepoint(this.sp);
+          if (safepoint[0]) {
+            this.blockEmitter.writeLn("if(!ci[" + this.classInfoSymbol(classInfo) + "]){" + safepoint[0] + "CIC(" + this.classInfoObject(classInfo) + ");" + safepoint[1] + "}");
+          } else {
+            this.blockEmitter.writeLn("ci[" + this.classInfoSymbol(classInfo) + "] || CIC(" + this.classInfoObject(classInfo) + ");");
+          }
           if (canStaticInitializerYield(classInfo)) {
             this.emitUnwind(this.blockEmitter, String(this.pc));
           } else {
@@ -896,6 +976,8 @@ module J2ME {
         this.emitClassInitializationCheck(methodInfo.classInfo);
       }
 
+      // The arguments are spilled too, they're only in JS locals until the callee spills them.
+      var sp = this.sp;
       var signatureKinds = methodInfo.signatureKinds;
       var args: string [] = [];
       for (var i = signatureKinds.length - 1; i > 0; i--) {
@@ -923,9 +1005,15 @@ module J2ME {
             call = "(VT[" + classId + "][" + methodInfo.vTableIndex + "]||" + "GLVM(" + classId + "," + methodInfo.vTableIndex + "))(" + args.join(",") + ")";
           }
         } else if (opcode === Bytecodes.INVOKEINTERFACE) {
-          var objClass = "CI[i32[(" + object + "+" + Constants.OBJ_CLASS_ID_OFFSET + ")>>2]]";
-          methodId = objClass + ".iTable['" + methodInfo.mangledName + "'].id";
-          call = "(LM[" + methodId + "]||" + "GLM(" + methodId + "))(" + args.join(",") + ")";
+          // Check the two inline cache entries of this call site before falling back to the iTable.
+          var site = inlineCacheSymbolPrefix + (this.inlineCacheSiteCount ++);
+          this.needsVariable("ic");
+          this.needsVariable("ik");
+          emitInlineCacheCounter && this.blockEmitter.writeLn("J2ME.inlineCacheCounter.count(\"Lookup\");");
+          methodId = "(ik=i32[(" + object + "+" + Constants.OBJ_CLASS_ID_OFFSET + ")>>2])===IC[" + site + "]?IC[" + site + "+1]:" +
+                     "ik===IC[" + site + "+2]?IC[" + site + "+3]:" +
+                     "LIM(ik," + this.methodInfoSymbol(methodInfo) + "," + site + ")";
+          call = "(LM[ic=" + methodId + "]||" + "GLM(ic))(" + args.join(",") + ")";
         } else {
           Debug.unexpected(Bytecode.getBytecodesName(opcode));
         }
@@ -935,13 +1023,16 @@ module J2ME {
         call = "(LM[" + methodId + "]||" + "GLM(" + methodId + "))(" + args.join(",") + ")";
       }
 
+      var safepoint = ["", ""];
       if (methodInfo.implKey in inlineMethods) {
         emitDebugInfoComments && this.blockEmitter.writeLn("// Inlining: " + methodInfo.implKey);
         call = inlineMethods[methodInfo.implKey];
+      } else {
+        safepoint = this.getSafepoint(sp);
       }
       this.needsVariable("re");
       emitDebugInfoComments && this.blockEmitter.writeLn("// " + Bytecode.getBytecodesName(opcode) + ": " + methodInfo.implKey);
-      this.blockEmitter.writeLn("re=" + call + ";");
+      this.blockEmitter.writeLn(safepoint[0] + "re=" + call + ";" + safepoint[1]);
       if (calleeCanYield) {
         this.emitUnwind(this.blockEmitter, String(this.pc));
       } else {
@@ -1089,7 +1180,8 @@ module J2ME {
           this.emitPushLongBits(l, h);
           return;
         case TAGS.CONSTANT_String:
-          this.emitPush(Kind.Reference, this.classInfoObject(this.methodInfo.classInfo) + ".constantPool.resolve(" + index + ", " + TAGS.CONSTANT_String + ")");
+          // The first resolve allocates the interned string, so it's a safepoint.
+          this.emitAllocation(this.classInfoObject(this.methodInfo.classInfo) + ".constantPool.resolve(" + index + ", " + TAGS.CONSTANT_String + ")");
           return;
         default:
           throw "Not done for: " + getTAGSName(tag);
@@ -1105,7 +1197,7 @@ module J2ME {
     emitNewInstance(cpi: number) {
       var classInfo = this.lookupClass(cpi);
       this.emitClassInitializationCheck(classInfo);
-      this.emitPush(Kind.Reference, "AO(" + this.classInfoObject(classInfo) + ")");
+      this.emitAllocation("AO(" + this.classInfoObject(classInfo) + ")");
     }
 
     emitNewTypeArray(typeCode: number) {
@@ -1129,7 +1221,7 @@ module J2ME {
         default: throw Debug.unexpected("Unknown stack kind: " + kind);
       }
 
-      this.emitPush(Kind.Reference, "MA(" + Constants.ARRAY_HDR_SIZE + "+na*" + arrayClassInfo.bytesPerElement + ")");
+      this.emitAllocation("MA(" + Constants.ARRAY_HDR_SIZE + "+na*" + arrayClassInfo.bytesPerElement + ")");
       var arrAddr = this.peek(Kind.Reference);
       this.blockEmitter.writeLn("i32[" + arrAddr + "+" + Constants.OBJ_CLASS_ID_OFFSET + ">>2]=" + arrayClassInfo.id);
       this.blockEmitter.writeLn("i32[" + arrAddr + "+" + Constants.ARRAY_LENGTH_OFFSET + ">>2]=na");
@@ -1182,7 +1274,7 @@ module J2ME {
       this.emitClassInitializationCheck(classInfo);
       var length = this.pop(Kind.Int);
       this.emitNegativeArraySizeCheck(length);
-      this.emitPush(Kind.Reference, "NA(" + this.classInfoObject(classInfo) + ", " + length + ")");
+      this.emitAllocation("NA(" + this.classInfoObject(classInfo) + ", " + length + ")");
     }
 
     emitNewMultiObjectArray(cpi: number, stream: BytecodeStream) {
@@ -1192,7 +1284,16 @@ module J2ME {
       for (var i = numDimensions - 1; i >= 0; i--) {
         dimensions[i] = this.pop(Kind.Int);
       }
-      this.emitPush(Kind.Reference, "NM(" + this.classInfoObject(classInfo) + ",[" + dimensions.join(",") + "])");
+      this.emitAllocation("NM(" + this.classInfoObject(classInfo) + ",[" + dimensions.join(",") + "])");
+    }
+
+    /**
+     * Pushes the address returned by |v|, which may allocate and is therefore a safepoint.
+     */
+    emitAllocation(v: string) {
+      var safepoint = this.getSafepoint(this.sp);
+      this.blockEmitter.writeLn(safepoint[0] + this.getStackName(this.sp) + "=" + v + ";" + safepoint[1]);
+      this.sp ++;
     }
 
     private emitUnwind(emitter: Emitter, pc: string, forceInline: boolean = false) {
@@ -1227,12 +1328,23 @@ module J2ME {
       this.blockEmitter.writeLn("if (U && re !== undefined) { J2ME.Debug.assert(false, 'Unexpected return value during unwind.'); }");
     }
 
+    /**
+     * The lock of a synchronized method is never an array, so we can inline the thin lock
+     * fast path for it. MONITORENTER / MONITOREXIT may see arrays and always call into the
+     * runtime.
+     */
     private emitMonitorEnter(emitter: Emitter, nextPC: number, object: string) {
       this.hasMonitorEnter = true;
 
-      this.needsVariable("lk");
-      emitter.writeLn("lk=GM(" + object + ");");
-      emitter.enter("if(lk.level===0){lk.threadAddress=th;lk.level=1;}else{ME(lk);");
+      // Inflating the lock registers a finalizer, which can collect.
+      var safepoint = this.getMonitorSafepoint(object);
+      if (object === this.lockObject) {
+        this.needsVariable("lw");
+        emitter.writeLn("lw=" + object + "+" + Constants.LOCK_WORD_OFFSET + ">>2;");
+        emitter.enter("if(i32[lw]===" + LockWord.Unlocked + "){i32[lw]=th|1;}else{" + safepoint[0] + "ME(" + object + ");" + safepoint[1]);
+      } else {
+        emitter.enter("{" + safepoint[0] + "ME(" + object + ");" + safepoint[1]);
+      }
       this.emitUnwind(emitter, String(nextPC), true);
       emitter.leave("}");
     }
@@ -1247,8 +1359,23 @@ module J2ME {
     }
 
     private emitMonitorExit(emitter: Emitter, object: string) {
-      emitter.writeLn("lk=GM(" + object + ");");
-      emitter.writeLn("if(lk.level===1&&lk.ready.length===0)lk.level=0;else MX(lk);");
+      var safepoint = this.getMonitorSafepoint(object);
+      if (object === this.lockObject) {
+        this.needsVariable("lw");
+        emitter.writeLn("lw=" + object + "+" + Constants.LOCK_WORD_OFFSET + ">>2;");
+        emitter.writeLn("if(i32[lw]===(th|1))i32[lw]=" + LockWord.Unlocked + ";else{" + safepoint[0] + "MX(" + object + ");" + safepoint[1] + "}");
+      } else {
+        emitter.writeLn(safepoint[0] + "MX(" + object + ");" + safepoint[1]);
+      }
+    }
+
+    /**
+     * Returns the safepoint around ME / MX of |object|. MONITORENTER and MONITOREXIT
+     * have already popped |object| off the stack, so its slot is spilled as well.
+     */
+    private getMonitorSafepoint(object: string): string [] {
+      var sp = object === this.getStackName(this.sp) ? this.sp + 1 : this.sp;
+      return this.getSafepoint(sp);
     }
 
     emitStackOp(opcode: Bytecodes) {
@@ -111,6 +111,9 @@ module J2ME {
   var classFilterOption: Options.Option;
   var methodFilterOption: Options.Option;
   var methodFileFilterOption: Options.Option;
+  var profileOption: Options.Option;
+  var profileThresholdOption: Options.Option;
+  var mergeProfilesOption: Options.Option;
   var fileFilterOption: Options.Option;
   var debuggerOption: Options.Option;
   var releaseOption: Options.Option;
@@ -128,6 +131,9 @@ module J2ME {
     jarFileFilterOption = shellOptions.register(new Options.Option("jf", "jarFileFilter", "string", "", "Compile Jar File Filter"));
     classFileFilterOption = shellOptions.register(new Options.Option("cff", "classFileFilter", "string", "", "Compile Class File Filter"));
     methodFileFilterOption = shellOptions.register(new Options.Option("mff", "methodFileFilter", "string", "", "Compile Metgod File Filter"));
+    profileOption = shellOptions.register(new Options.Option("p", "profile", "string []", [], "AOT Profile Files, merged with the method file filter"));
+    profileThresholdOption = shellOptions.register(new Options.Option("pt", "profileThreshold", "number", 10, "Compile profiled methods called more often than this"));
+    mergeProfilesOption = shellOptions.register(new Options.Option("mp", "mergeProfiles", "boolean", false, "Write the merged AOT profiles and exit"));
     classFilterOption = shellOptions.register(new Options.Option("cf", "classFilter", "string", ".*", "Compile Class Filter"));
     methodFilterOption = shellOptions.register(new Options.Option("mf", "methodFilter", "string", "", "Compile Method Filter"));
 
@@ -248,6 +254,41 @@ module J2ME {
       }
     }
 
+    if (profileOption.value.length) {
+      var profile: AOTProfileData = null;
+      for (var i = 0; i < profileOption.value.length; i++) {
+        var profileFile = profileOption.value[i];
+        if (verboseOption.value) {
+          writer.writeLn("Loading Profile: " + profileFile);
+        }
+        var fileProfile = AOTProfile.parse(snarf(profileFile, "text"));
+        profile = profile ? AOTProfile.merge(profile, fileProfile) : fileProfile;
+      }
+      if (mergeProfilesOption.value) {
+        stdoutWriter.writeLn(JSON.stringify(profile, null, 2));
+        return;
+      }
+      methodFilterList = methodFilterList || [];
+      var hotMethods = AOTProfile.getHotMethods(profile, profileThresholdOption.value);
+      for (var i = 0; i < hotMethods.length; i++) {
+        ArrayUtilities.pushUnique(methodFilterList, hotMethods[i]);
+      }
+      // Also compile the implementations of interface methods that were called at runtime.
+      for (var key in profile.methods) {
+        var receivers = profile.methods[key].receivers;
+        if (!receivers.length) {
+          continue;
+        }
+        var implementations = getImplementations(key, receivers);
+        for (var j = 0; j < implementations.length; j++) {
+          ArrayUtilities.pushUnique(methodFilterList, implementations[j]);
+        }
+      }
+      if (verboseOption.value) {
+        writer.writeLn("Profiled Methods: " + hotMethods.length + ", Method Filter: " + methodFilterList.length);
+      }
+    }
+
     function jarFilter(file): boolean {
       if (jarFileFilterOption.value) {
         return file === jarFileFilterOption.value;
@@ -281,6 +322,32 @@ module J2ME {
     }
   }
 
+  /**
+   * Resolves the interface method |implKey| in each of the |receivers| classes.
+   */
+  function getImplementations(implKey: string, receivers: string []): string [] {
+    var implementations = [];
+    var i = implKey.indexOf(".");
+    var j = implKey.indexOf(".", i + 1);
+    try {
+      var classInfo = CLASSES.getClass(implKey.substring(0, i));
+      var methodInfo = classInfo.getMethodByNameString(implKey.substring(i + 1, j), implKey.substring(j + 1));
+      if (!methodInfo) {
+        return implementations;
+      }
+      for (var k = 0; k < receivers.length; k++) {
+        var receiverClassInfo = CLASSES.getClass(receivers[k]);
+        var targetMethodInfo = receiverClassInfo.getInterfaceMethod(methodInfo);
+        if (targetMethodInfo) {
+          implementations.push(targetMethodInfo.implKey);
+        }
+      }
+    } catch (e) {
+      // Classes that aren't in the class path of this compilation.
+    }
+    return implementations;
+  }
+
   var commandLineArguments: string [];
   // Shell Entry Point
   if (typeof help === "function") {
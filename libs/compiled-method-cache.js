@@ -3,15 +3,39 @@
 
 'use strict';
 
+/**
+ * Persists compiled methods across sessions.
+ *
+ * Only a small index of the cached methods (key, size, last use) is restored at
+ * startup, together with the bodies of the most recently used methods. Other
+ * bodies are fetched the first time they are asked for, in the meantime the
+ * method keeps being interpreted. The cache is bounded by MAX_SIZE and evicts
+ * the least recently used methods when it grows past it.
+ */
 var CompiledMethodCache = (function() {
   var DEBUG = false;
   var DATABASE = "CompiledMethodCache";
-  var VERSION = 1;
+  var VERSION = 3;
   var OBJECT_STORE = "methods";
+  var INDEX_STORE = "index";
   var KEY_PATH = "key";
 
+  // Budget for the total size of the cached methods, in characters of source.
+  var MAX_SIZE = 4 * 1024 * 1024;
+  // Budget for the methods fetched eagerly at startup.
+  var MAX_PREFETCH_SIZE = 256 * 1024;
+  // Delay before writing new and used methods to the database.
+  var FLUSH_DELAY = 3000; // ms
+
   var database;
+
+  // Method bodies that are in memory, by key.
   var cache = new Map();
+  // Index entries of all cached methods, by key, i.e. { key, size, lastUsed }.
+  var index = new Map();
+  // Keys of the methods being fetched from the database.
+  var loading = new Set();
+  var totalSize = 0;
 
   function debug(message) {
     console.log("CompiledMethodCache " + message);
@@ -22,16 +46,32 @@ var CompiledMethodCache = (function() {
       database.createObjectStore(OBJECT_STORE, { keyPath: KEY_PATH });
       next();
     },
+    "1to2": function(database, transaction, next) {
+      // Methods cached by the previous version aren't in the index, drop them.
+      transaction.objectStore(OBJECT_STORE).clear();
+      database.createObjectStore(INDEX_STORE, { keyPath: KEY_PATH });
+      next();
+    },
+    "2to3": function(database, transaction, next) {
+      // Methods compiled by the previous version don't spill references at
+      // safepoints, and collections can now run while they're on the stack.
+      transaction.objectStore(OBJECT_STORE).clear();
+      transaction.objectStore(INDEX_STORE).clear();
+      next();
+    },
   };
 
+  function getSize(obj) {
+    return obj.body.length + obj.args.join().length + obj.referencedClasses.join().length;
+  }
+
   function restore() {
-    return openDatabase.then(new Promise(function(resolve, reject) {
+    return new Promise(function(resolve, reject) {
       DEBUG && debug("restore");
 
       var then = performance.now();
-      var transaction = database.transaction(OBJECT_STORE, "readonly");
-      var objectStore = transaction.objectStore(OBJECT_STORE);
-      var request = objectStore.getAll();
+      var transaction = database.transaction(INDEX_STORE, "readonly");
+      var request = transaction.objectStore(INDEX_STORE).getAll();
 
       request.onerror = function() {
         console.error("Error restoring: " + request.error.name);
@@ -39,39 +79,101 @@ var CompiledMethodCache = (function() {
       };
 
       request.onsuccess = function() {
-        var count = request.result.length;
-        for (var i = 0; i < count; i++) {
-          cache.set(request.result[i][KEY_PATH], request.result[i]);
+        var entries = request.result;
+        for (var i = 0; i < entries.length; i++) {
+          index.set(entries[i][KEY_PATH], entries[i]);
+          totalSize += entries[i].size;
         }
-        DEBUG && debug("restore complete: " + count + " methods in " + (performance.now() - then) + "ms");
+        DEBUG && debug("restore complete: " + entries.length + " methods in " + (performance.now() - then) + "ms");
+        prefetch(entries);
         resolve();
       };
-    }));
+    });
+  }
+
+  /**
+   * Fetches the most recently used methods, they are likely to be needed again soon.
+   */
+  function prefetch(entries) {
+    entries.sort(function(a, b) {
+      return b.lastUsed - a.lastUsed;
+    });
+    var keys = [];
+    var size = 0;
+    for (var i = 0; i < entries.length && size < MAX_PREFETCH_SIZE; i++) {
+      keys.push(entries[i][KEY_PATH]);
+      size += entries[i].size;
+    }
+    fetch(keys);
+  }
+
+  /**
+   * Reads the bodies of |keys| from the database in a single transaction.
+   */
+  function fetch(keys) {
+    if (!database || keys.length === 0) {
+      return;
+    }
+    var transaction = database.transaction(OBJECT_STORE, "readonly");
+    var objectStore = transaction.objectStore(OBJECT_STORE);
+    keys.forEach(function(key) {
+      loading.add(key);
+      var request = objectStore.get(key);
+      request.onsuccess = function() {
+        loading.delete(key);
+        if (request.result) {
+          cache.set(key, request.result);
+        } else {
+          // The index is out of sync with the methods, forget about it.
+          forget(key);
+        }
+      };
+    });
+    transaction.onerror = function(event) {
+      console.error("error fetching " + event.target.error.name);
+      keys.forEach(function(key) {
+        loading.delete(key);
+      });
+    };
+  }
+
+  function forget(key) {
+    var entry = index.get(key);
+    if (entry) {
+      totalSize -= entry.size;
+      index.delete(key);
+    }
   }
 
   function clear() {
-    return openDatabase.then(new Promise(function(resolve, reject) {
-      DEBUG && debug("clear");
+    return openDatabase.then(function() {
+      return new Promise(function(resolve, reject) {
+        DEBUG && debug("clear");
 
-      // First clear the in-memory cache, in case we've already restored it
-      // from the database.
-      cache.clear();
+        // First clear the in-memory cache, in case we've already restored it
+        // from the database.
+        cache.clear();
+        index.clear();
+        loading.clear();
+        recordsToFlush = [];
+        totalSize = 0;
 
-      var then = performance.now();
-      var transaction = database.transaction(OBJECT_STORE, "readwrite");
-      var objectStore = transaction.objectStore(OBJECT_STORE);
-      var request = objectStore.clear();
+        var then = performance.now();
+        var transaction = database.transaction([OBJECT_STORE, INDEX_STORE], "readwrite");
+        transaction.objectStore(OBJECT_STORE).clear();
+        transaction.objectStore(INDEX_STORE).clear();
 
-      request.onerror = function() {
-        console.error("Error clearing: " + request.error.name);
-        reject(request.error.name);
-      };
+        transaction.onerror = function() {
+          console.error("Error clearing: " + transaction.error.name);
+          reject(transaction.error.name);
+        };
 
-      request.onsuccess = function() {
-        DEBUG && debug("clear complete in " + (performance.now() - then) + "ms");
-        resolve();
-      };
-    }));
+        transaction.oncomplete = function() {
+          DEBUG && debug("clear complete in " + (performance.now() - then) + "ms");
+          resolve();
+        };
+      });
+    });
   }
 
   var openDatabase = new Promise(function(resolve, reject) {
@@ -103,58 +205,143 @@ var CompiledMethodCache = (function() {
       DEBUG && debug("open success");
 
       database = request.result;
-
-      var oldVersion = localStorage.getItem("lastAppVersion");
-      if (config.version === oldVersion) {
-        DEBUG && debug("app version " + config.version + " === " + oldVersion + "; restore");
-        restore().catch(console.error.bind(console));
-      } else {
-        DEBUG && debug("app version " + config.version + " !== " + oldVersion + "; clear");
-        clear().catch(console.error.bind(console));
-        localStorage.setItem("lastAppVersion", config.version);
-      }
-
       resolve();
     };
   });
 
+  openDatabase.then(function() {
+    var oldVersion = localStorage.getItem("lastAppVersion");
+    if (config.version === oldVersion) {
+      DEBUG && debug("app version " + config.version + " === " + oldVersion + "; restore");
+      return restore();
+    }
+    DEBUG && debug("app version " + config.version + " !== " + oldVersion + "; clear");
+    localStorage.setItem("lastAppVersion", config.version);
+    return clear();
+  }).catch(console.error.bind(console));
+
+  /**
+   * Returns the cached method for |key|, if it's in memory. If it's only in the
+   * database it's fetched for a later call, see |isLoading|.
+   */
   function get(key) {
+    var entry = index.get(key);
+    if (!entry) {
+      return undefined;
+    }
+
     var elem = cache.get(key);
-    if (elem) {
-      cache.delete(key);
+    if (!elem) {
+      if (!loading.has(key)) {
+        fetch([key]);
+      }
+      return undefined;
     }
+
+    // Methods are linked once per session, so the body isn't needed in memory anymore.
+    cache.delete(key);
+    entry.lastUsed = Date.now();
+    scheduleFlush(entry, null);
     return elem;
   }
 
+  /**
+   * Whether the method for |key| is being fetched from the database.
+   */
+  function isLoading(key) {
+    return loading.has(key);
+  }
+
   var recordsToFlush = [];
   var flushTimer = null;
 
+  function scheduleFlush(entry, obj) {
+    recordsToFlush.push({ entry: entry, obj: obj });
+    if (!flushTimer) {
+      flushTimer = setTimeout(function() {
+        // Keep the writes off the critical path if we can.
+        if (typeof requestIdleCallback === "function") {
+          requestIdleCallback(flush);
+        } else {
+          flush();
+        }
+      }, FLUSH_DELAY);
+    }
+  }
+
+  /**
+   * Picks the least recently used methods to evict until the cache fits in MAX_SIZE.
+   */
+  function getEvictions() {
+    if (totalSize <= MAX_SIZE) {
+      return [];
+    }
+    var entries = [];
+    index.forEach(function(entry) {
+      entries.push(entry);
+    });
+    entries.sort(function(a, b) {
+      return a.lastUsed - b.lastUsed;
+    });
+    var evictions = [];
+    for (var i = 0; i < entries.length && totalSize > MAX_SIZE; i++) {
+      var key = entries[i][KEY_PATH];
+      evictions.push(key);
+      forget(key);
+      cache.delete(key);
+    }
+    return evictions;
+  }
+
   function flush() {
     flushTimer = null;
     openDatabase.then(function() {
       var then = performance.now();
-      var transaction = database.transaction(OBJECT_STORE, "readwrite");
+      var transaction = database.transaction([OBJECT_STORE, INDEX_STORE], "readwrite");
       var objectStore = transaction.objectStore(OBJECT_STORE);
+      var indexStore = transaction.objectStore(INDEX_STORE);
       var numRecords = recordsToFlush.length;
       for (var i = 0; i < numRecords; i++) {
-        var request = objectStore.put(recordsToFlush[i]);
+        var record = recordsToFlush[i];
+        // Skip methods that were evicted before they were written.
+        if (index.get(record.entry[KEY_PATH]) !== record.entry) {
+          continue;
+        }
+        if (record.obj) {
+          objectStore.put(record.obj);
+        }
+        indexStore.put(record.entry);
       }
       recordsToFlush = [];
+
+      var evictions = getEvictions();
+      for (var i = 0; i < evictions.length; i++) {
+        objectStore.delete(evictions[i]);
+        indexStore.delete(evictions[i]);
+      }
+      J2ME.cachedMethodEvictionCount += evictions.length;
+
       DEBUG && (transaction.oncomplete = function(event) {
-        debug("flushed " + numRecords + " in " + (performance.now() - then) + "ms");
+        debug("flushed " + numRecords + ", evicted " + evictions.length + " in " + (performance.now() - then) + "ms");
       });
       transaction.onerror = function(event) {
-        console.error("error flushing " + event.target.name);
+        console.error("error flushing " + event.target.error.name);
       };
     });
   }
 
   function put(obj) {
     DEBUG && debug("put " + obj[KEY_PATH]);
-    recordsToFlush.push(obj);
-    if (!flushTimer) {
-      flushTimer = setTimeout(flush, 3000 /* ms; 3 seconds */);
-    }
+    var key = obj[KEY_PATH];
+    forget(key);
+    var entry = {
+      key: key,
+      size: getSize(obj),
+      lastUsed: Date.now(),
+    };
+    index.set(key, entry);
+    totalSize += entry.size;
+    scheduleFlush(entry, obj);
   }
 
   function deleteDatabase() {
@@ -168,6 +355,7 @@ var CompiledMethodCache = (function() {
 
   return {
     get: get,
+    isLoading: isLoading,
     put: put,
     clear: clear,
     deleteDatabase: deleteDatabase,
@@ -21,15 +21,39 @@ var fs = (function() {
     // change for a given record.
     this.changesToSync = new Map();
 
+    // File contents, as arrays of page blobs indexed by record fileId.
+    this.pages = new Map();
+
+    // Pending changes to the pages in the persistent datastore, indexed by
+    // fileId and page index, see changesToSync.
+    this.pageChangesToSync = new Map();
+
+    this.nextFileId = 1;
+
     this.db = null;
   };
 
   Store.DBNAME = "asyncStorage";
-  Store.DBVERSION = 4;
+  Store.DBVERSION = 5;
   Store.DBSTORENAME_1 = "keyvaluepairs";
   Store.DBSTORENAME_2 = "fs";
   Store.DBSTORENAME_4 = "fs4";
   Store.DBSTORENAME = Store.DBSTORENAME_4;
+  Store.DBPAGESTORENAME_5 = "pages";
+  Store.DBPAGESTORENAME = Store.DBPAGESTORENAME_5;
+
+  // Files are stored in pages of this size, so that writing to a file only
+  // needs to store the pages that were written to.
+  Store.PAGE_SIZE = 16384;
+
+  // Splits a blob into page blobs, which doesn't copy the data.
+  Store.splitBlob = function(blob) {
+    var pages = [];
+    for (var offset = 0; offset < blob.size; offset += Store.PAGE_SIZE) {
+      pages.push(blob.slice(offset, offset + Store.PAGE_SIZE));
+    }
+    return pages;
+  };
 
   Store.prototype.upgrade = {
     "1to2": function(db, transaction, next) {
@@ -121,6 +145,33 @@ var fs = (function() {
         next();
       };
     },
+
+    "4to5": function(db, transaction, next) {
+      var pageObjectStore = db.createObjectStore(Store.DBPAGESTORENAME_5, { keyPath: ["fileId", "index"] });
+
+      // Move the data of file records into pages, and give them the fileId
+      // that their pages are keyed by.
+      var fileId = 0;
+      var objectStore = transaction.objectStore(Store.DBSTORENAME_4);
+      objectStore.openCursor().onsuccess = function(event) {
+        var cursor = event.target.result;
+        if (cursor) {
+          var newRecord = cursor.value;
+          if (!newRecord.isDir) {
+            newRecord.fileId = ++fileId;
+            var pages = newRecord.data ? Store.splitBlob(newRecord.data) : [];
+            for (var i = 0; i < pages.length; i++) {
+              pageObjectStore.put({ fileId: fileId, index: i, data: pages[i] });
+            }
+            delete newRecord.data;
+          }
+          cursor.update(newRecord);
+          cursor.continue();
+        } else {
+          next();
+        }
+      };
+    },
   };
 
   Store.prototype.init = function(cb) {
@@ -141,11 +192,12 @@ var fs = (function() {
         // is create the object store for the latest version of the database.
         // XXX This is brittle, because there are two places where the latest
         // version of the database is created: here and in the most recent
-        // upgrade function.  So we should refactor this code, perhaps moving
+        // upgrade functions.  So we should refactor this code, perhaps moving
         // the initial object store creation into a "0to1" upgrade function,
         // or perhaps moving the latest object store creation into a function.
         var objectStore = openreq.result.createObjectStore(Store.DBSTORENAME, { keyPath: "pathname" });
         objectStore.createIndex("parentDir", "parentDir", { unique: false });
+        openreq.result.createObjectStore(Store.DBPAGESTORENAME, { keyPath: ["fileId", "index"] });
       } else {
         var version = event.oldVersion;
         var next = (function() {
@@ -161,8 +213,9 @@ var fs = (function() {
     openreq.onsuccess = (function() {
       this.db = openreq.result;
 
-      // Retrieve all records and put them into the in-memory map.
-      var transaction = this.db.transaction(Store.DBSTORENAME, "readonly");
+      // Retrieve all records and pages and put them into the in-memory maps.
+      // Pages are blobs, so their data isn't read until a file is opened.
+      var transaction = this.db.transaction([Store.DBSTORENAME, Store.DBPAGESTORENAME], "readonly");
       if (DEBUG_FS) { console.log("getAll initiated"); }
       var objectStore = transaction.objectStore(Store.DBSTORENAME);
       var then = performance.now();
@@ -170,10 +223,21 @@ var fs = (function() {
         var records = event.target.result;
         for (var i = 0; i < records.length; ++i) {
           this.map.set(records[i].pathname, records[i]);
+          if (records[i].fileId >= this.nextFileId) {
+            this.nextFileId = records[i].fileId + 1;
+          }
         };
+      }).bind(this);
+      transaction.objectStore(Store.DBPAGESTORENAME).getAll().onsuccess = (function(event) {
+        var pages = event.target.result;
+        for (var i = 0; i < pages.length; ++i) {
+          this.getPages(pages[i].fileId)[pages[i].index] = pages[i].data;
+        }
+      }).bind(this);
+      transaction.oncomplete = function() {
         if (DEBUG_FS) { console.log("getAll completed in " + (performance.now() - then) + "ms"); }
         cb();
-      }).bind(this);
+      };
     }).bind(this);
   };
 
@@ -197,17 +261,69 @@ var fs = (function() {
     this.changesToSync.set(key, { type: "delete" });
   };
 
+  Store.prototype.allocateFileId = function() {
+    return this.nextFileId++;
+  };
+
+  Store.prototype.getPages = function(fileId) {
+    var pages = this.pages.get(fileId);
+    if (!pages) {
+      pages = [];
+      this.pages.set(fileId, pages);
+    }
+    return pages;
+  };
+
+  // Returns the content of a file record as a blob, without copying the pages.
+  Store.prototype.getFileBlob = function(record) {
+    return new Blob(this.getPages(record.fileId));
+  };
+
+  Store.prototype.setPage = function(fileId, index, blob) {
+    this.getPages(fileId)[index] = blob;
+    this.pageChangesToSync.set(fileId + "/" + index, {
+      type: "put",
+      value: { fileId: fileId, index: index, data: blob },
+    });
+  };
+
+  Store.prototype.setPages = function(fileId, pages) {
+    this.truncatePages(fileId, 0);
+    for (var i = 0; i < pages.length; i++) {
+      this.setPage(fileId, i, pages[i]);
+    }
+  };
+
+  // Removes the pages of a file from |count| onward.
+  Store.prototype.truncatePages = function(fileId, count) {
+    var pages = this.getPages(fileId);
+    for (var i = count; i < pages.length; i++) {
+      this.pageChangesToSync.set(fileId + "/" + i, { type: "delete", key: [fileId, i] });
+    }
+    if (count < pages.length) {
+      pages.length = count;
+    }
+  };
+
+  Store.prototype.removePages = function(fileId) {
+    this.truncatePages(fileId, 0);
+    this.pages.delete(fileId);
+  };
+
   Store.prototype.clear = function() {
     this.map.clear();
     this.changesToSync.clear();
+    this.pages.clear();
+    this.pageChangesToSync.clear();
 
-    var transaction = this.db.transaction(Store.DBSTORENAME, "readwrite");
+    var transaction = this.db.transaction([Store.DBSTORENAME, Store.DBPAGESTORENAME], "readwrite");
     if (DEBUG_FS) { console.log("clear initiated"); }
     var objectStore = transaction.objectStore(Store.DBSTORENAME);
     var req = objectStore.clear();
     req.onerror = function() {
       console.error("Error clearing store: " + req.error.name);
     };
+    transaction.objectStore(Store.DBPAGESTORENAME).clear();
     transaction.oncomplete = function() {
       if (DEBUG_FS) { console.log("clear completed"); }
     };
@@ -218,12 +334,12 @@ var fs = (function() {
 
     // If there are no changes to sync, merely call the callback
     // (in a timeout so the callback always gets called asynchronously).
-    if (this.changesToSync.size == 0) {
+    if (this.changesToSync.size == 0 && this.pageChangesToSync.size == 0) {
       nextTickBeforeEvents(cb);
       return;
     }
 
-    var transaction = this.db.transaction(Store.DBSTORENAME, "readwrite");
+    var transaction = this.db.transaction([Store.DBSTORENAME, Store.DBPAGESTORENAME], "readwrite");
     if (DEBUG_FS) { console.log("sync initiated"); }
     var objectStore = transaction.objectStore(Store.DBSTORENAME);
 
@@ -247,6 +363,23 @@ var fs = (function() {
 
     this.changesToSync.clear();
 
+    var pageObjectStore = transaction.objectStore(Store.DBPAGESTORENAME);
+
+    this.pageChangesToSync.forEach(function(change, key) {
+      var req;
+      if (change.type == "put") {
+        req = pageObjectStore.put(change.value);
+      } else if (change.type == "delete") {
+        req = pageObjectStore.delete(change.key);
+      }
+      if (DEBUG_FS) { console.log(change.type + " page " + key); }
+      req.onerror = function() {
+        console.error("Error syncing page " + key + ": " + req.error.name);
+      };
+    });
+
+    this.pageChangesToSync.clear();
+
     transaction.oncomplete = function() {
       if (DEBUG_FS) { console.log("sync completed"); }
       cb();
@@ -258,6 +391,8 @@ var fs = (function() {
     var output = {};
     var promises = [];
 
+    var store = this;
+
     this.sync((function() {
       var transaction = this.db.transaction(Store.DBSTORENAME, "readonly");
       if (DEBUG_FS) { console.log("export initiated"); }
@@ -278,7 +413,12 @@ var fs = (function() {
             var record = records[key];
             if (record.isDir) {
               output[key] = record;
-            } else if (record.size === 0) { // Chrome has problems exporting empty blobs.
+              return;
+            }
+            // Exports contain the data of files rather than their pages.
+            var blob = store.getFileBlob(record);
+            delete record.fileId;
+            if (record.size === 0) { // Chrome has problems exporting empty blobs.
               record.data = [];
               output[key] = record;
             } else {
@@ -292,7 +432,7 @@ var fs = (function() {
                   output[key] = record;
                   resolve();
                 });
-                reader.readAsArrayBuffer(record.data);
+                reader.readAsArrayBuffer(blob);
               }));
             }
           });
@@ -313,17 +453,30 @@ var fs = (function() {
     var reader = new FileReader();
     reader.onload = (function() {
       var input = JSON.parse(reader.result);
-      var transaction = this.db.transaction(Store.DBSTORENAME, "readwrite");
+      var transaction = this.db.transaction([Store.DBSTORENAME, Store.DBPAGESTORENAME], "readwrite");
       if (DEBUG_FS) { console.log("import initiated"); }
       this.map.clear();
+      this.changesToSync.clear();
+      this.pages.clear();
+      this.pageChangesToSync.clear();
       var objectStore = transaction.objectStore(Store.DBSTORENAME);
       var req = objectStore.clear();
       req.onerror = reportRequestError.bind(null, "import", req);
+      var pageObjectStore = transaction.objectStore(Store.DBPAGESTORENAME);
+      var pageReq = pageObjectStore.clear();
+      pageReq.onerror = reportRequestError.bind(null, "import", pageReq);
       Object.keys(input).forEach((function(key) {
         if (DEBUG_FS) { console.log("importing " + key); }
         var record = input[key];
         if (!record.isDir) {
-          record.data = new Blob([new Int8Array(record.data)]);
+          var fileId = record.fileId = this.allocateFileId();
+          var pages = Store.splitBlob(new Blob([new Int8Array(record.data)]));
+          this.pages.set(fileId, pages);
+          for (var i = 0; i < pages.length; i++) {
+            var pageReq = pageObjectStore.put({ fileId: fileId, index: i, data: pages[i] });
+            pageReq.onerror = reportRequestError.bind(null, "import", pageReq);
+          }
+          delete record.data;
         }
         this.map.set(key, record);
         record.pathname = key;
@@ -340,9 +493,19 @@ var fs = (function() {
 
   var store = new Store();
 
+  // File buffers are shared by the handles of a file until one of them writes
+  // to it, see getWritableBuffer.
   var FileBuffer = function(array) {
     this.array = array;
     this.contentSize = array.byteLength;
+    this.refCount = 1;
+  }
+
+  FileBuffer.prototype.clone = function() {
+    var buffer = new FileBuffer(new Int8Array(this.array.byteLength));
+    buffer.array.set(this.array);
+    buffer.contentSize = this.contentSize;
+    return buffer;
   }
 
   FileBuffer.prototype.setSize = function(newContentSize) {
@@ -445,7 +608,53 @@ var fs = (function() {
 
   function getBlob(path) {
     var record = store.getItem(normalizePath(path));
-    return record ? record.data : null;
+    return record ? store.getFileBlob(record) : null;
+  }
+
+  // Returns an unmodified buffer of an opened file at |path|, if there is one.
+  function getSharedBuffer(path) {
+    for (var file of openedFiles.values()) {
+      if (!file.dirty && file.path === path) {
+        return file.buffer;
+      }
+    }
+    return null;
+  }
+
+  function releaseBuffer(buffer) {
+    buffer.refCount--;
+  }
+
+  // Copies the buffer of a file before it's written to if other handles share it.
+  function getWritableBuffer(file) {
+    if (file.buffer.refCount > 1) {
+      releaseBuffer(file.buffer);
+      file.buffer = file.buffer.clone();
+    }
+    return file.buffer;
+  }
+
+  function markDirty(file, from, to) {
+    var first = Math.floor(from / Store.PAGE_SIZE);
+    var last = Math.floor(Math.max(from, to - 1) / Store.PAGE_SIZE);
+    for (var i = first; i <= last; i++) {
+      file.dirtyPages.add(i);
+    }
+    file.dirty = true;
+  }
+
+  function openBuffer(path, record, buffer) {
+    openedFiles.set(++lastId, {
+      dirty: false,
+      dirtyPages: new Set(),
+      path: path,
+      buffer: buffer,
+      mtime: record.mtime,
+      size: record.size,
+      position: 0,
+      record: record,
+    });
+    return lastId;
   }
 
   function open(path, cb) {
@@ -455,26 +664,26 @@ var fs = (function() {
     var record = store.getItem(path);
     if (record == null || record.isDir) {
       nextTickBeforeEvents(function() { cb(-1) });
-    } else {
-      var reader = new FileReader();
-      reader.addEventListener("error", function() {
-        console.error("Failed to read blob data from: " + path);
-        nextTickBeforeEvents(function() { cb(-1) });
-      });
-      reader.addEventListener("load", function() {
-        openedFiles.set(++lastId, {
-          dirty: false,
-          path: path,
-          buffer: new FileBuffer(new Int8Array(reader.result)),
-          mtime: record.mtime,
-          size: record.size,
-          position: 0,
-          record: record,
-        });
-        cb(lastId);
-      });
-      reader.readAsArrayBuffer(record.data);
+      return;
     }
+
+    var sharedBuffer = getSharedBuffer(path);
+    if (sharedBuffer) {
+      sharedBuffer.refCount++;
+      var fd = openBuffer(path, record, sharedBuffer);
+      nextTickBeforeEvents(function() { cb(fd) });
+      return;
+    }
+
+    var reader = new FileReader();
+    reader.addEventListener("error", function() {
+      console.error("Failed to read blob data from: " + path);
+      nextTickBeforeEvents(function() { cb(-1) });
+    });
+    reader.addEventListener("load", function() {
+      cb(openBuffer(path, record, new FileBuffer(new Int8Array(reader.result))));
+    });
+    reader.readAsArrayBuffer(store.getFileBlob(record));
   }
 
   function close(fd) {
@@ -486,6 +695,7 @@ var fs = (function() {
     if (file) {
       if (DEBUG_FS) { console.log("fs close " + file.path); }
       flush(fd);
+      releaseBuffer(file.buffer);
       openedFiles.delete(fd);
     }
   }
@@ -524,7 +734,7 @@ var fs = (function() {
       from = file.position;
     }
 
-    var buffer = file.buffer;
+    var buffer = getWritableBuffer(file);
 
     if (from > buffer.contentSize) {
       from = buffer.contentSize;
@@ -545,7 +755,7 @@ var fs = (function() {
     file.position = from + length;
     file.mtime = Date.now();
     file.size = buffer.contentSize;
-    file.dirty = true;
+    markDirty(file, from, from + length);
   }
 
   function getpos(fd) {
@@ -576,20 +786,34 @@ var fs = (function() {
       return;
     }
 
-    openedFile.record.data = new Blob([openedFile.buffer.getContent()]);
-    openedFile.record.mtime = openedFile.mtime;
-    openedFile.record.size = openedFile.size;
-    store.setItem(openedFile.path, openedFile.record);
+    // Only store the pages that have been written to.
+    var record = openedFile.record;
+    var content = openedFile.buffer.getContent();
+    var pageCount = Math.ceil(content.length / Store.PAGE_SIZE);
+    openedFile.dirtyPages.forEach(function(index) {
+      if (index < pageCount) {
+        var page = content.subarray(index * Store.PAGE_SIZE, (index + 1) * Store.PAGE_SIZE);
+        store.setPage(record.fileId, index, new Blob([page]));
+      }
+    });
+    store.truncatePages(record.fileId, pageCount);
+    openedFile.dirtyPages.clear();
+
+    record.mtime = openedFile.mtime;
+    record.size = openedFile.size;
+    store.setItem(openedFile.path, record);
     openedFile.dirty = false;
 
     // Update in-memory copies of the same file, only if they haven't been
-    // modified.
+    // modified, by sharing the buffer until either is written to.
     // If they've been modified, the behavior is undefined.
     for (var entry of openedFiles) {
-      if (!entry[1].dirty && entry[1].path === openedFile.path) {
+      if (!entry[1].dirty && entry[1].path === openedFile.path && entry[1].buffer !== openedFile.buffer) {
         entry[1].mtime = openedFile.mtime;
         entry[1].size = openedFile.size;
-        entry[1].buffer = new FileBuffer(new Int8Array(openedFile.buffer.getContent()));
+        releaseBuffer(entry[1].buffer);
+        entry[1].buffer = openedFile.buffer;
+        openedFile.buffer.refCount++;
       }
     }
   }
@@ -658,9 +882,15 @@ var fs = (function() {
       return true;
     }
 
-    record.data = record.data.slice(0, size || 0, record.data.type);
+    size = size || 0;
+    var pageCount = Math.ceil(size / Store.PAGE_SIZE);
+    var pages = store.getPages(record.fileId);
+    if (size % Store.PAGE_SIZE) {
+      store.setPage(record.fileId, pageCount - 1, pages[pageCount - 1].slice(0, size % Store.PAGE_SIZE));
+    }
+    store.truncatePages(record.fileId, pageCount);
     record.mtime = Date.now();
-    record.size = size || 0;
+    record.size = size;
     store.setItem(path, record);
     return true;
   }
@@ -670,9 +900,10 @@ var fs = (function() {
 
     if (DEBUG_FS) { console.log("fs ftruncate " + file.path); }
 
-    if (size != file.buffer.contentSize) {
-      file.buffer.setSize(size);
-      file.dirty = true;
+    var oldSize = file.buffer.contentSize;
+    if (size != oldSize) {
+      getWritableBuffer(file).setSize(size);
+      markDirty(file, Math.min(oldSize, size), Math.max(oldSize, size));
       file.mtime = Date.now();
       file.size = size;
     }
@@ -707,6 +938,9 @@ var fs = (function() {
     }
 
     store.removeItem(path);
+    if (!record.isDir) {
+      store.removePages(record.fileId);
+    }
     return true;
   }
 
@@ -744,12 +978,16 @@ var fs = (function() {
     var record = {
       isDir: false,
       mtime: Date.now(),
-      data: blob,
+      fileId: store.allocateFileId(),
       size: blob.size,
       parentDir: dirname(path),
     };
 
-    return createInternal(path, record);
+    if (!createInternal(path, record)) {
+      return false;
+    }
+    store.setPages(record.fileId, Store.splitBlob(blob));
+    return true;
   }
 
   function mkdir(path) {
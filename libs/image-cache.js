@@ -0,0 +1,363 @@
+/* -*- Mode: Java; tab-width: 2; indent-tabs-mode: nil; c-basic-offset: 2 -*- */
+/* vim: set shiftwidth=2 tabstop=2 autoindent cindent expandtab: */
+
+'use strict';
+
+/**
+ * Persists decoded images across sessions, keyed by a hash of the encoded
+ * image bytes, so that images that were already decoded once don't have to be
+ * decoded again.
+ *
+ * Like the compiled method cache, only a small index of the cached images
+ * (key, size, last use) is restored at startup, in parallel with the rest of
+ * startup. The pixels of the most recently used images are fetched eagerly,
+ * other pixels the first time they are asked for, in the meantime the image
+ * is decoded as usual. Using an image only rewrites its index entry. The
+ * cache is bounded by MAX_SIZE and evicts the least recently used images when
+ * it grows past it.
+ */
+var DecodedImageCache = (function() {
+  var DEBUG = false;
+  var DATABASE = "DecodedImageCache";
+  var VERSION = 2;
+  var OBJECT_STORE = "images";
+  var INDEX_STORE = "index";
+  var KEY_PATH = "key";
+
+  // Budget for the total size of the cached images, in bytes of RGBA pixels.
+  var MAX_SIZE = 8 * 1024 * 1024;
+  // Images larger than this aren't worth keeping.
+  var MAX_IMAGE_SIZE = MAX_SIZE / 8;
+  // Budget for the pixels fetched eagerly at startup.
+  var MAX_PREFETCH_SIZE = 2 * 1024 * 1024;
+  // Delay before writing new and used images to the database.
+  var FLUSH_DELAY = 3000; // ms
+
+  var database;
+
+  // Pixels that are in memory, by key, i.e. { key, pixels }.
+  var cache = new Map();
+  // Index entries of all cached images, by key, i.e. { key, width, height, size, lastUsed }.
+  var index = new Map();
+  // Keys of the images whose pixels are being fetched from the database.
+  var loading = new Set();
+  var totalSize = 0;
+
+  function debug(message) {
+    console.log("DecodedImageCache " + message);
+  }
+
+  var upgrade = {
+    "0to1": function(database, transaction, next) {
+      database.createObjectStore(OBJECT_STORE, { keyPath: KEY_PATH });
+      next();
+    },
+    "1to2": function(database, transaction, next) {
+      // Images cached by the previous version aren't in the index, drop them.
+      transaction.objectStore(OBJECT_STORE).clear();
+      database.createObjectStore(INDEX_STORE, { keyPath: KEY_PATH });
+      next();
+    },
+  };
+
+  /**
+   * Returns the key of the image encoded in |length| bytes of |data| starting
+   * at |offset|. Two hashes and the length make collisions unlikely enough.
+   */
+  function getKey(data, offset, length) {
+    var bytes = new Uint8Array(data.buffer, data.byteOffset + offset, length);
+    return J2ME.HashUtilities.hashBytesTo32BitsMurmur(bytes, 0, length).toString(36) + "-" +
+           (J2ME.HashUtilities.hashBytesTo32BitsAdler(bytes, 0, length) >>> 0).toString(36) + "-" +
+           length.toString(36);
+  }
+
+  function restore() {
+    return new Promise(function(resolve, reject) {
+      DEBUG && debug("restore");
+
+      var then = performance.now();
+      var transaction = database.transaction(INDEX_STORE, "readonly");
+      var request = transaction.objectStore(INDEX_STORE).getAll();
+
+      request.onerror = function() {
+        console.error("Error restoring: " + request.error.name);
+        reject(request.error.name);
+      };
+
+      request.onsuccess = function() {
+        var entries = request.result;
+        for (var i = 0; i < entries.length; i++) {
+          index.set(entries[i][KEY_PATH], entries[i]);
+          totalSize += entries[i].size;
+        }
+        DEBUG && debug("restore complete: " + entries.length + " images in " + (performance.now() - then) + "ms");
+        prefetch(entries);
+        resolve();
+      };
+    });
+  }
+
+  /**
+   * Fetches the pixels of the most recently used images, they are likely to be needed again soon.
+   */
+  function prefetch(entries) {
+    entries.sort(function(a, b) {
+      return b.lastUsed - a.lastUsed;
+    });
+    var keys = [];
+    var size = 0;
+    for (var i = 0; i < entries.length && size < MAX_PREFETCH_SIZE; i++) {
+      keys.push(entries[i][KEY_PATH]);
+      size += entries[i].size;
+    }
+    fetch(keys);
+  }
+
+  /**
+   * Reads the pixels of |keys| from the database in a single transaction.
+   */
+  function fetch(keys) {
+    if (!database || keys.length === 0) {
+      return;
+    }
+    var transaction = database.transaction(OBJECT_STORE, "readonly");
+    var objectStore = transaction.objectStore(OBJECT_STORE);
+    keys.forEach(function(key) {
+      loading.add(key);
+      var request = objectStore.get(key);
+      request.onsuccess = function() {
+        loading.delete(key);
+        if (request.result) {
+          cache.set(key, request.result);
+        } else {
+          // The index is out of sync with the images, forget about it.
+          forget(key);
+        }
+      };
+    });
+    transaction.onerror = function(event) {
+      console.error("error fetching " + event.target.error.name);
+      keys.forEach(function(key) {
+        loading.delete(key);
+      });
+    };
+  }
+
+  function forget(key) {
+    var entry = index.get(key);
+    if (entry) {
+      totalSize -= entry.size;
+      index.delete(key);
+    }
+    cache.delete(key);
+  }
+
+  function clear() {
+    return openDatabase.then(function() {
+      return new Promise(function(resolve, reject) {
+        DEBUG && debug("clear");
+
+        cache.clear();
+        index.clear();
+        loading.clear();
+        recordsToFlush = [];
+        totalSize = 0;
+
+        var transaction = database.transaction([OBJECT_STORE, INDEX_STORE], "readwrite");
+        transaction.objectStore(OBJECT_STORE).clear();
+        transaction.objectStore(INDEX_STORE).clear();
+
+        transaction.onerror = function() {
+          console.error("Error clearing: " + transaction.error.name);
+          reject(transaction.error.name);
+        };
+
+        transaction.oncomplete = function() {
+          DEBUG && debug("clear complete");
+          resolve();
+        };
+      });
+    });
+  }
+
+  var openDatabase = new Promise(function(resolve, reject) {
+    DEBUG && debug("open");
+
+    var request = indexedDB.open(DATABASE, VERSION);
+
+    request.onerror = function() {
+      console.error("error opening database: " + request.error.name);
+      reject(request.error.name);
+    };
+
+    request.onupgradeneeded = function(event) {
+      DEBUG && debug("upgrade needed from " + event.oldVersion + " to " + event.newVersion);
+
+      var database = request.result;
+      var transaction = request.transaction;
+
+      var version = event.oldVersion;
+      (function next() {
+        if (version < event.newVersion) {
+          DEBUG && debug("upgrade from " + version + " to " + (version + 1));
+          upgrade[version + "to" + ++version](database, transaction, next);
+        }
+      })();
+    };
+
+    request.onsuccess = function() {
+      DEBUG && debug("open success");
+
+      database = request.result;
+      resolve();
+    };
+  });
+
+  // Startup doesn't wait for this, images decoded before the index is
+  // restored just aren't looked up in it.
+  openDatabase.then(restore).catch(console.error.bind(console));
+
+  /**
+   * Returns the cached image for |key|, i.e. { width, height, pixels }, if its
+   * pixels are in memory. If they're only in the database they're fetched for
+   * a later call.
+   */
+  function get(key) {
+    var entry = index.get(key);
+    if (!entry) {
+      return null;
+    }
+
+    var record = cache.get(key);
+    if (!record) {
+      if (!loading.has(key)) {
+        fetch([key]);
+      }
+      return null;
+    }
+
+    entry.lastUsed = Date.now();
+    scheduleFlush(entry, null);
+    return {
+      width: entry.width,
+      height: entry.height,
+      pixels: record.pixels,
+    };
+  }
+
+  /**
+   * Caches the pixels of |context|, the canvas an image decoded from the bytes
+   * identified by |key| was drawn to.
+   */
+  function put(key, context) {
+    var width = context.canvas.width;
+    var height = context.canvas.height;
+    // Images whose pixels are being fetched are already cached.
+    if (width * height * 4 > MAX_IMAGE_SIZE || index.has(key)) {
+      return;
+    }
+    DEBUG && debug("put " + key + " " + width + "x" + height);
+    var pixels = context.getImageData(0, 0, width, height).data.buffer;
+    var entry = {
+      key: key,
+      width: width,
+      height: height,
+      size: pixels.byteLength,
+      lastUsed: Date.now(),
+    };
+    var record = {
+      key: key,
+      pixels: pixels,
+    };
+    index.set(key, entry);
+    cache.set(key, record);
+    totalSize += entry.size;
+    scheduleFlush(entry, record);
+  }
+
+  // Index entries to write to the database, with the pixels of new images.
+  var recordsToFlush = [];
+  var flushTimer = null;
+
+  function scheduleFlush(entry, record) {
+    recordsToFlush.push({ entry: entry, record: record });
+    if (!flushTimer) {
+      flushTimer = setTimeout(function() {
+        // Keep the writes off the critical path if we can.
+        if (typeof requestIdleCallback === "function") {
+          requestIdleCallback(flush);
+        } else {
+          flush();
+        }
+      }, FLUSH_DELAY);
+    }
+  }
+
+  /**
+   * Picks the least recently used images to evict until the cache fits in MAX_SIZE.
+   */
+  function getEvictions() {
+    if (totalSize <= MAX_SIZE) {
+      return [];
+    }
+    var entries = [];
+    index.forEach(function(entry) {
+      entries.push(entry);
+    });
+    entries.sort(function(a, b) {
+      return a.lastUsed - b.lastUsed;
+    });
+    var evictions = [];
+    for (var i = 0; i < entries.length && totalSize > MAX_SIZE; i++) {
+      var key = entries[i][KEY_PATH];
+      evictions.push(key);
+      forget(key);
+    }
+    return evictions;
+  }
+
+  function flush() {
+    flushTimer = null;
+    openDatabase.then(function() {
+      var then = performance.now();
+      var transaction = database.transaction([OBJECT_STORE, INDEX_STORE], "readwrite");
+      var objectStore = transaction.objectStore(OBJECT_STORE);
+      var indexStore = transaction.objectStore(INDEX_STORE);
+      var numRecords = recordsToFlush.length;
+      for (var i = 0; i < numRecords; i++) {
+        var record = recordsToFlush[i];
+        // Skip images that were evicted before they were written.
+        if (index.get(record.entry[KEY_PATH]) !== record.entry) {
+          continue;
+        }
+        // Only new images write their pixels, used ones only update their index entry.
+        if (record.record) {
+          objectStore.put(record.record);
+        }
+        indexStore.put(record.entry);
+      }
+      recordsToFlush = [];
+
+      var evictions = getEvictions();
+      for (var i = 0; i < evictions.length; i++) {
+        objectStore.delete(evictions[i]);
+        indexStore.delete(evictions[i]);
+      }
+
+      DEBUG && (transaction.oncomplete = function(event) {
+        debug("flushed " + numRecords + ", evicted " + evictions.length + " in " + (performance.now() - then) + "ms");
+      });
+      transaction.onerror = function(event) {
+        console.error("error flushing " + event.target.error.name);
+      };
+    });
+  }
+
+  return {
+    getKey: getKey,
+    get: get,
+    put: put,
+    clear: clear,
+  };
+
+})();
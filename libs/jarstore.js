@@ -5,15 +5,25 @@
 
 var JARStore = (function() {
   var DATABASE = "JARStore";
-  var VERSION = 2;
+  var VERSION = 4;
   var OBJECT_STORE_OLD = "files";
   var OBJECT_STORE_WITH_UNCOMPRESSED_LEN = "files_v2"
   var KEY_PATH = "jarName";
+  // Class files inflated at install time, keyed by JAR checksum and entry name.
+  var OBJECT_STORE_INFLATED = "inflated";
+  var INFLATED_KEY_PATH = ["checksum", "name"];
+  // Class load order recorded by earlier sessions, keyed by the checksums of the JARs.
+  var OBJECT_STORE_LOAD_ORDER = "loadOrder";
+  var LOAD_ORDER_KEY_PATH = "key";
 
   var database;
   var jars = new Map();
   var jad;
 
+  // The JAR each entry is loaded from, i.e. the first registered JAR that has
+  // it, so that lookups don't have to walk all the JARs.
+  var index = new Map();
+
   var upgrade = {
     "0to1": function(database, transaction, next) {
       database.createObjectStore(OBJECT_STORE_OLD, { keyPath: KEY_PATH });
@@ -26,6 +36,16 @@ var JARStore = (function() {
       database.createObjectStore(OBJECT_STORE_WITH_UNCOMPRESSED_LEN, { keyPath: KEY_PATH });
       next();
     },
+    "2to3": function(database, transaction, next) {
+      // JARs installed before this version have no checksum and simply
+      // don't use the cache until they're installed again.
+      database.createObjectStore(OBJECT_STORE_INFLATED, { keyPath: INFLATED_KEY_PATH });
+      next();
+    },
+    "3to4": function(database, transaction, next) {
+      database.createObjectStore(OBJECT_STORE_LOAD_ORDER, { keyPath: LOAD_ORDER_KEY_PATH });
+      next();
+    },
   };
 
   var openDatabase = new Promise(function(resolve, reject) {
@@ -54,11 +74,62 @@ var JARStore = (function() {
     };
   });
 
+  /**
+   * Identifies the contents of a JAR, and the version of the MIDlet from its
+   * JAD if there is one, so inflated entries of an older JAR are never used.
+   * The CRCs of the entries are combined rather than hashing the whole JAR.
+   */
+  function getChecksum(jarData, directory, jadData) {
+    var hash = 0;
+    for (var fileName in directory) {
+      var entry = directory[fileName];
+      hash = (Math.imul(hash, 31) + entry.crc32) | 0;
+      hash = (Math.imul(hash, 31) + entry.uncompressed_len) | 0;
+    }
+    var checksum = jarData.byteLength.toString(16) + "-" + (hash >>> 0).toString(16);
+    var match = typeof jadData === "string" && /^MIDlet-Version:\s*(.*?)\s*$/m.exec(jadData);
+    if (match) {
+      checksum += "-" + match[1];
+    }
+    return checksum;
+  }
+
+  function getChecksumRange(checksum) {
+    // Arrays sort after strings, so this covers all entry names.
+    return IDBKeyRange.bound([checksum, ""], [checksum, []]);
+  }
+
+  /**
+   * Registers |jar| as |jarName| and indexes its entries.
+   */
+  function setJAR(jarName, jar) {
+    jars.set(jarName, jar);
+    for (var fileName in jar.directory) {
+      if (!index.has(fileName)) {
+        index.set(fileName, jarName);
+      }
+    }
+  }
+
+  /**
+   * Points the index entry of |fileName| to the first JAR that still has it.
+   */
+  function reindex(fileName) {
+    index.delete(fileName);
+    for (var jarName of jars.keys()) {
+      if (jars.get(jarName).directory[fileName]) {
+        index.set(fileName, jarName);
+        return;
+      }
+    }
+  }
+
   function addBuiltIn(jarName, jarData) {
     var zip = new ZipFile(jarData, false);
 
-    jars.set(jarName, {
+    setJAR(jarName, {
       directory: zip.directory,
+      checksum: getChecksum(jarData, zip.directory),
       isBuiltIn: true,
     });
   }
@@ -67,13 +138,35 @@ var JARStore = (function() {
     return openDatabase.then(function() {
       return new Promise(function(resolve, reject) {
         var zip = new ZipFile(jarData, true);
+        var checksum = getChecksum(jarData, zip.directory, jadData);
+
+        // Inflate the classes once now instead of on every cold start.
+        var inflated = new Map();
+        for (var fileName in zip.directory) {
+          var entry = zip.directory[fileName];
+          if (entry.compression_method === 8 && fileName.endsWith(".class")) {
+            inflated.set(fileName, inflate(entry.compressed_data, entry.uncompressed_len));
+          }
+        }
 
-        var transaction = database.transaction(OBJECT_STORE_WITH_UNCOMPRESSED_LEN, "readwrite");
+        var transaction = database.transaction([OBJECT_STORE_WITH_UNCOMPRESSED_LEN, OBJECT_STORE_INFLATED], "readwrite");
         var objectStore = transaction.objectStore(OBJECT_STORE_WITH_UNCOMPRESSED_LEN);
+        var inflatedStore = transaction.objectStore(OBJECT_STORE_INFLATED);
+
+        var getRequest = objectStore.get(jarName);
+        getRequest.onsuccess = function() {
+          // Drop the inflated entries of the JAR being replaced.
+          var old = getRequest.result;
+          if (old && old.checksum && old.checksum !== checksum) {
+            inflatedStore.delete(getChecksumRange(old.checksum));
+          }
+        };
+
         var request = objectStore.put({
           jarName: jarName,
           jar: zip.directory,
           jad: jadData || null,
+          checksum: checksum,
         });
 
         request.onerror = function() {
@@ -81,9 +174,19 @@ var JARStore = (function() {
           reject(request.error.name);
         };
 
+        inflated.forEach(function(bytes, fileName) {
+          inflatedStore.put({
+            checksum: checksum,
+            name: fileName,
+            data: bytes,
+          });
+        });
+
         transaction.oncomplete = function() {
-          jars.set(jarName, {
+          setJAR(jarName, {
             directory: zip.directory,
+            checksum: checksum,
+            inflated: inflated,
             isBuiltIn: false,
           });
           jad = jadData;
@@ -96,19 +199,43 @@ var JARStore = (function() {
   function loadJAR(jarName) {
     return openDatabase.then(function() {
       return new Promise(function(resolve, reject) {
-        var transaction = database.transaction(OBJECT_STORE_WITH_UNCOMPRESSED_LEN, "readonly");
+        var transaction = database.transaction([OBJECT_STORE_WITH_UNCOMPRESSED_LEN, OBJECT_STORE_INFLATED], "readonly");
         var objectStore = transaction.objectStore(OBJECT_STORE_WITH_UNCOMPRESSED_LEN);
         var request = objectStore.get(jarName);
+        var inflated = new Map();
 
         request.onerror = function() {
           console.error("Error loading " + jarName + ": " + request.error.name);
           reject(request.error.name);
         };
 
+        request.onsuccess = function() {
+          if (!request.result || !request.result.checksum) {
+            return;
+          }
+
+          var directory = request.result.jar;
+          var cursorRequest = transaction.objectStore(OBJECT_STORE_INFLATED).openCursor(getChecksumRange(request.result.checksum));
+          cursorRequest.onsuccess = function() {
+            var cursor = cursorRequest.result;
+            if (!cursor) {
+              return;
+            }
+            var value = cursor.value;
+            var entry = directory[value.name];
+            if (entry && entry.uncompressed_len === value.data.length) {
+              inflated.set(value.name, value.data);
+            }
+            cursor.continue();
+          };
+        };
+
         transaction.oncomplete = function() {
           if (request.result) {
-            jars.set(jarName, {
+            setJAR(jarName, {
               directory: request.result.jar,
+              checksum: request.result.checksum,
+              inflated: inflated,
               isBuiltIn: false,
             });
 
@@ -125,7 +252,11 @@ var JARStore = (function() {
     });
   }
 
-  function loadFileFromJAR(jarName, fileName) {
+  /**
+   * Returns the bytes of |fileName| if they're readily available, i.e. if the
+   * entry is stored or was inflated at install time, or an Inflater for them.
+   */
+  function openFileFromJAR(jarName, fileName) {
     var jar = jars.get(jarName);
     if (!jar) {
       return null;
@@ -138,10 +269,12 @@ var JARStore = (function() {
     }
 
     var bytes;
-    if (entry.compression_method === 0) {
+    if (jar.inflated && jar.inflated.has(fileName)) {
+      bytes = jar.inflated.get(fileName);
+    } else if (entry.compression_method === 0) {
       bytes = entry.compressed_data;
     } else if (entry.compression_method === 8) {
-      bytes = inflate(entry.compressed_data, entry.uncompressed_len);
+      bytes = new Inflater(entry.compressed_data, entry.uncompressed_len);
     } else {
       return null;
     }
@@ -149,17 +282,37 @@ var JARStore = (function() {
     if (!jar.isBuiltIn && fileName.endsWith(".class")) {
       // Classes are loaded just once and then are cached in ClassRegistry::classes
       delete jar.directory[fileName];
+      jar.inflated.delete(fileName);
+      reindex(fileName);
     }
 
     return bytes;
   }
 
+  function loadFileFromJAR(jarName, fileName) {
+    var file = openFileFromJAR(jarName, fileName);
+    if (file instanceof Inflater) {
+      file.inflateTo(file.buffer.length);
+      return file.buffer;
+    }
+    return file;
+  }
+
   function loadFile(fileName) {
-    for (var jarName of jars.keys()) {
-      var data = loadFileFromJAR(jarName, fileName);
-      if (data) {
-        return data;
-      }
+    var jarName = index.get(fileName);
+    if (jarName) {
+      return loadFileFromJAR(jarName, fileName);
+    }
+  }
+
+  /**
+   * Like |loadFile|, but compressed files are returned as an Inflater, so they
+   * can be inflated as they are read.
+   */
+  function openFile(fileName) {
+    var jarName = index.get(fileName);
+    if (jarName) {
+      return openFileFromJAR(jarName, fileName);
     }
   }
 
@@ -167,21 +320,83 @@ var JARStore = (function() {
     return jad;
   }
 
+  /**
+   * Identifies the registered JARs, so a recorded class load order is only
+   * used with the JARs it was recorded with.
+   */
+  function getLoadOrderKey() {
+    var key = [];
+    jars.forEach(function(jar, jarName) {
+      key.push(jarName + ":" + jar.checksum);
+    });
+    return key.join(",");
+  }
+
+  /**
+   * Returns the class names recorded by |putLoadOrder| for the registered
+   * JARs, or an empty list if there aren't any.
+   */
+  function getLoadOrder() {
+    var key = getLoadOrderKey();
+    return openDatabase.then(function() {
+      return new Promise(function(resolve, reject) {
+        var transaction = database.transaction(OBJECT_STORE_LOAD_ORDER, "readonly");
+        var request = transaction.objectStore(OBJECT_STORE_LOAD_ORDER).get(key);
+
+        request.onerror = function() {
+          console.error("Error getting the load order: " + request.error.name);
+          reject(request.error.name);
+        };
+
+        request.onsuccess = function() {
+          resolve(request.result ? request.result.classNames : []);
+        };
+      });
+    });
+  }
+
+  function putLoadOrder(classNames) {
+    var key = getLoadOrderKey();
+    return openDatabase.then(function() {
+      return new Promise(function(resolve, reject) {
+        var transaction = database.transaction(OBJECT_STORE_LOAD_ORDER, "readwrite");
+        var objectStore = transaction.objectStore(OBJECT_STORE_LOAD_ORDER);
+        // Orders recorded with other JARs are of no use anymore.
+        objectStore.clear();
+        objectStore.put({
+          key: key,
+          classNames: classNames,
+        });
+
+        transaction.onerror = function() {
+          console.error("Error putting the load order: " + transaction.error.name);
+          reject(transaction.error.name);
+        };
+
+        transaction.oncomplete = function() {
+          resolve();
+        };
+      });
+    });
+  }
+
   function clear() {
     return openDatabase.then(function() {
       return new Promise(function(resolve, reject) {
         jars.clear();
+        index.clear();
 
-        var transaction = database.transaction(OBJECT_STORE_WITH_UNCOMPRESSED_LEN, "readwrite");
-        var objectStore = transaction.objectStore(OBJECT_STORE_WITH_UNCOMPRESSED_LEN);
-        var request = objectStore.clear();
+        var transaction = database.transaction([OBJECT_STORE_WITH_UNCOMPRESSED_LEN, OBJECT_STORE_INFLATED, OBJECT_STORE_LOAD_ORDER], "readwrite");
+        var request = transaction.objectStore(OBJECT_STORE_WITH_UNCOMPRESSED_LEN).clear();
+        transaction.objectStore(OBJECT_STORE_INFLATED).clear();
+        transaction.objectStore(OBJECT_STORE_LOAD_ORDER).clear();
 
         request.onerror = function() {
           console.error("Error clearing: " + request.error.name);
           reject(request.error.name);
         };
 
-        request.onsuccess = function() {
+        transaction.oncomplete = function() {
           resolve();
         };
       });
@@ -203,7 +418,10 @@ var JARStore = (function() {
     loadJAR: loadJAR,
     loadFileFromJAR: loadFileFromJAR,
     loadFile: loadFile,
+    openFile: openFile,
     getJAD: getJAD,
+    getLoadOrder: getLoadOrder,
+    putLoadOrder: putLoadOrder,
     clear: clear,
     deleteDatabase: deleteDatabase,
   };
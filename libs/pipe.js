@@ -5,6 +5,10 @@ var DumbPipe = {
   recipients: {},
   nextPipeID: 0,
 
+  // The MessagePort the other side sends us once it's ready to receive
+  // binary messages, until then envelopes are sent as JSON strings.
+  port: null,
+
   open: function(type, message, recipient) {
     var pipeID = this.nextPipeID++;
 
@@ -18,14 +22,16 @@ var DumbPipe = {
     this.recipients[pipeID] = recipient;
 
     // Return a function that can be used to send a message to the other side.
-    var sender = function(message) {
+    // The ArrayBuffers in |transferables| are transferred rather than copied
+    // if possible, so they can't be used anymore after the call.
+    var sender = function(message, transferables) {
       var envelope = {
         command: "message",
         pipeID: pipeID,
         message: message,
       };
       //console.log("inner send: " + JSON.stringify(envelope));
-      this.send(envelope);
+      this.send(envelope, transferables);
     }.bind(this);
 
     sender.pipeID = pipeID;
@@ -43,10 +49,14 @@ var DumbPipe = {
   },
 
   sendQueue: [],
+  sendTransferables: [],
   isRunningSendQueue: false,
 
-  send: function(envelope) {
+  send: function(envelope, transferables) {
     this.sendQueue.push(envelope);
+    if (transferables) {
+      this.sendTransferables.push.apply(this.sendTransferables, transferables);
+    }
 
     if (!this.isRunningSendQueue) {
       this.isRunningSendQueue = true;
@@ -54,23 +64,60 @@ var DumbPipe = {
     }
   },
 
-  runSendQueue: function() {
-    alert(JSON.stringify(this.sendQueue.shift()));
+  // Typed arrays would be serialized as objects, send them as arrays instead.
+  replaceTypedArray: function(key, value) {
+    if (value instanceof ArrayBuffer) {
+      value = new Int8Array(value);
+    }
+    if (ArrayBuffer.isView(value)) {
+      return Array.prototype.slice.call(value);
+    }
+    return value;
+  },
 
-    if (this.sendQueue.length > 0) {
-      window.nextTickBeforeEvents(this.runSendQueue.bind(this));
+  // Sends all the queued envelopes to the other side in a single message.
+  runSendQueue: function() {
+    var envelopes = this.sendQueue;
+    var transferables = this.sendTransferables;
+    this.sendQueue = [];
+    this.sendTransferables = [];
+    this.isRunningSendQueue = false;
+
+    if (this.port) {
+      this.port.postMessage(envelopes, transferables);
     } else {
-      this.isRunningSendQueue = false;
+      alert(JSON.stringify(envelopes, this.replaceTypedArray));
     }
   },
 
   receiveMessage: function(event) {
     var envelope = event.data;
 
-    if (typeof envelope !== "object" || !("pipeID" in envelope)) {
+    if (typeof envelope !== "object" || envelope === null) {
       return;
     }
 
+    if (envelope.dumbPipePort && event.ports && event.ports.length) {
+      this.port = event.ports[0];
+      this.port.onmessage = this.receiveEnvelopes.bind(this);
+      return;
+    }
+
+    if (!("pipeID" in envelope)) {
+      return;
+    }
+
+    this.receiveEnvelope(envelope);
+  },
+
+  receiveEnvelopes: function(event) {
+    var envelopes = event.data;
+    for (var i = 0; i < envelopes.length; i++) {
+      this.receiveEnvelope(envelopes[i]);
+    }
+  },
+
+  receiveEnvelope: function(envelope) {
     if (this.recipients[envelope.pipeID]) {
       try {
         this.recipients[envelope.pipeID](envelope.message);
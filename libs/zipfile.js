@@ -95,199 +95,257 @@ var fixedDistCodeTab = [new Int32Array([
   0x50003, 0x50013, 0x5000b, 0x5001b, 0x50007, 0x50017, 0x5000f, 0x00000
 ]), 5];
 
-function inflate(bytes, uncompressed_len) {
-  var bytesPos = 0;
-
-  var codeSize = 0;
-  var codeBuf = 0;
-
-  function getBits(bits) {
-    var b;
-    while (codeSize < bits) {
-      b = bytes[bytesPos++] | 0;
-      codeBuf |= b << codeSize;
-      codeSize += 8;
-    }
-    b = codeBuf & ((1 << bits) - 1);
-    codeBuf >>= bits;
-    codeSize -= bits;
-    return b;
+function generateHuffmanTable(lengths) {
+  var n = lengths.length;
+
+  // find max code length
+  var maxLen = 0;
+  for (var i = 0; i < n; ++i) {
+    if (lengths[i] > maxLen)
+      maxLen = lengths[i];
   }
 
-  function getCode(table) {
-    var codes = table[0];
-    var maxLen = table[1];
+  // build the table
+  var size = 1 << maxLen;
+  var codes = new Int32Array(size);
+  for (var len = 1, code = 0, skip = 2;
+       len <= maxLen;
+       ++len, code <<= 1, skip <<= 1) {
+    for (var val = 0; val < n; ++val) {
+      if (lengths[val] == len) {
+        // bit-reverse the code
+        var code2 = 0;
+        var t = code;
+        for (var i = 0; i < len; ++i) {
+          code2 = (code2 << 1) | (t & 1);
+          t >>= 1;
+        }
+
+        // fill the table entries
+        for (var i = code2; i < size; i += skip)
+          codes[i] = (len << 16) | val;
 
-    while (codeSize < maxLen) {
-      var b = bytes[bytesPos++] | 0;
-      codeBuf |= (b << codeSize);
-      codeSize += 8;
+        ++code;
+      }
     }
-    var code = codes[codeBuf & ((1 << maxLen) - 1)];
-    var codeLen = code >> 16;
-    var codeVal = code & 0xffff;
-    if (codeSize == 0 || codeSize < codeLen || codeLen == 0)
-      new Error('Bad encoding in flate stream');
-    codeBuf >>= codeLen;
-    codeSize -= codeLen;
-    return codeVal;
   }
 
-  function generateHuffmanTable(lengths) {
-    var n = lengths.length;
-
-    // find max code length
-    var maxLen = 0;
-    for (var i = 0; i < n; ++i) {
-      if (lengths[i] > maxLen)
-        maxLen = lengths[i];
-    }
+  return [codes, maxLen];
+}
 
-    // build the table
-    var size = 1 << maxLen;
-    var codes = new Int32Array(size);
-    for (var len = 1, code = 0, skip = 2;
-         len <= maxLen;
-         ++len, code <<= 1, skip <<= 1) {
-      for (var val = 0; val < n; ++val) {
-        if (lengths[val] == len) {
-          // bit-reverse the code
-          var code2 = 0;
-          var t = code;
-          for (var i = 0; i < len; ++i) {
-            code2 = (code2 << 1) | (t & 1);
-            t >>= 1;
-          }
+/**
+ * Inflates |bytes| into |buffer| as far as asked for, so the beginning of a
+ * large entry can be used without inflating all of it. The bytes inflated so
+ * far, i.e. the first |bufferLength| bytes of |buffer|, never change.
+ */
+function Inflater(bytes, uncompressed_len) {
+  this.bytes = bytes;
+  this.bytesPos = 0;
+  this.codeSize = 0;
+  this.codeBuf = 0;
+  this.buffer = new Uint8Array(uncompressed_len);
+  this.bufferLength = 0;
+  // The code tables of the block being inflated, null between blocks.
+  this.litCodeTable = null;
+  this.distCodeTable = null;
+  this.isLastBlock = false;
+  this.done = uncompressed_len === 0;
+}
 
-          // fill the table entries
-          for (var i = code2; i < size; i += skip)
-            codes[i] = (len << 16) | val;
+Inflater.prototype = {
+  /**
+   * Inflates until at least |length| bytes are available, or the end of the
+   * stream. Returns the number of bytes available.
+   */
+  inflateTo: function(length) {
+    if (this.done || this.bufferLength >= length) {
+      return this.bufferLength;
+    }
 
-          ++code;
-        }
+    var bytes = this.bytes;
+    var bytesPos = this.bytesPos;
+    var codeSize = this.codeSize;
+    var codeBuf = this.codeBuf;
+    var buffer = this.buffer;
+    var bufferLength = this.bufferLength;
+    var litCodeTable = this.litCodeTable;
+    var distCodeTable = this.distCodeTable;
+    var isLastBlock = this.isLastBlock;
+    var done = false;
+
+    function getBits(bits) {
+      var b;
+      while (codeSize < bits) {
+        b = bytes[bytesPos++] | 0;
+        codeBuf |= b << codeSize;
+        codeSize += 8;
       }
+      b = codeBuf & ((1 << bits) - 1);
+      codeBuf >>= bits;
+      codeSize -= bits;
+      return b;
     }
 
-    return [codes, maxLen];
-  };
+    function getCode(table) {
+      var codes = table[0];
+      var maxLen = table[1];
 
-  var buffer = new Uint8Array(uncompressed_len);
-  var bufferLength = 0;
+      while (codeSize < maxLen) {
+        var b = bytes[bytesPos++] | 0;
+        codeBuf |= (b << codeSize);
+        codeSize += 8;
+      }
+      var code = codes[codeBuf & ((1 << maxLen) - 1)];
+      var codeLen = code >> 16;
+      var codeVal = code & 0xffff;
+      if (codeSize == 0 || codeSize < codeLen || codeLen == 0)
+        new Error('Bad encoding in flate stream');
+      codeBuf >>= codeLen;
+      codeSize -= codeLen;
+      return codeVal;
+    }
 
-  function readBlock() {
-    var eof = false;
+    // Reads a block header. Uncompressed blocks are copied right away, for
+    // compressed blocks the code tables are set up.
+    function readBlockHeader() {
+      var hdr = getBits(3);
+      if (hdr & 1)
+        isLastBlock = true;
+      hdr >>= 1;
+
+      if (hdr == 0) { // uncompressed block
+        var b;
+
+        if (typeof (b = bytes[bytesPos++]) == 'undefined')
+          new Error('Bad block header in flate stream');
+        var blockLen = b;
+        if (typeof (b = bytes[bytesPos++]) == 'undefined')
+          new Error('Bad block header in flate stream');
+        blockLen |= (b << 8);
+        if (typeof (b = bytes[bytesPos++]) == 'undefined')
+          new Error('Bad block header in flate stream');
+        var check = b;
+        if (typeof (b = bytes[bytesPos++]) == 'undefined')
+          new Error('Bad block header in flate stream');
+        check |= (b << 8);
+        if (check != (~blockLen & 0xffff))
+          new Error('Bad uncompressed block length in flate stream');
+
+        codeBuf = 0;
+        codeSize = 0;
+
+        var end = Math.min(bufferLength + blockLen, bufferLength + bytes.length - bytesPos, buffer.length);
+        buffer.set(bytes.subarray(bytesPos, bytesPos + end - bufferLength), bufferLength);
+        bytesPos += end - bufferLength;
+        bufferLength = end;
+
+        if (isLastBlock || bytesPos >= bytes.length)
+          done = true;
+        return;
+      }
 
-    // read block header
-    var hdr = getBits(3);
-    if (hdr & 1)
-      eof = true;
-    hdr >>= 1;
+      if (hdr == 1) { // compressed block, fixed codes
+        litCodeTable = fixedLitCodeTab;
+        distCodeTable = fixedDistCodeTab;
+      } else if (hdr == 2) { // compressed block, dynamic codes
+        var numLitCodes = getBits(5) + 257;
+        var numDistCodes = getBits(5) + 1;
+        var numCodeLenCodes = getBits(4) + 4;
+
+        // build the code lengths code table
+        var codeLenCodeLengths = new Uint8Array(codeLenCodeMap.length);
+
+        for (var i = 0; i < numCodeLenCodes; ++i)
+          codeLenCodeLengths[codeLenCodeMap[i]] = getBits(3);
+        var codeLenCodeTab = generateHuffmanTable(codeLenCodeLengths);
+
+        // build the literal and distance code tables
+        var len = 0;
+        var i = 0;
+        var codes = numLitCodes + numDistCodes;
+        var codeLengths = new Uint8Array(codes);
+        while (i < codes) {
+          var code = getCode(codeLenCodeTab);
+          if (code == 16) {
+            var bitsLength = 2, bitsOffset = 3, what = len;
+          } else if (code == 17) {
+            var bitsLength = 3, bitsOffset = 3, what = (len = 0);
+          } else if (code == 18) {
+            var bitsLength = 7, bitsOffset = 11, what = (len = 0);
+          } else {
+            codeLengths[i++] = len = code;
+            continue;
+          }
 
-    if (hdr == 0) { // uncompressed block
-      var b;
+          var repeatLength = getBits(bitsLength) + bitsOffset;
+          while (repeatLength-- > 0)
+            codeLengths[i++] = what;
+        }
 
-      if (typeof (b = bytes[bytesPos++]) == 'undefined')
-        new Error('Bad block header in flate stream');
-      var blockLen = b;
-      if (typeof (b = bytes[bytesPos++]) == 'undefined')
-        new Error('Bad block header in flate stream');
-      blockLen |= (b << 8);
-      if (typeof (b = bytes[bytesPos++]) == 'undefined')
-        new Error('Bad block header in flate stream');
-      var check = b;
-      if (typeof (b = bytes[bytesPos++]) == 'undefined')
-        new Error('Bad block header in flate stream');
-      check |= (b << 8);
-      if (check != (~blockLen & 0xffff))
-        new Error('Bad uncompressed block length in flate stream');
-
-      codeBuf = 0;
-      codeSize = 0;
-
-      var end = bufferLength + blockLen;
-      for (; bufferLength < end && bytesPos < bytes.length; ++bufferLength, ++bytesPos) {
-        buffer[bufferLength] = bytes[bytesPos];
+        litCodeTable = generateHuffmanTable(codeLengths.subarray(0, numLitCodes));
+        distCodeTable = generateHuffmanTable(codeLengths.subarray(numLitCodes, codes));
+      } else {
+        new Error('Unknown block type in flate stream');
+        done = true;
       }
-
-      return bytesPos === bytes.length;
     }
 
-    var litCodeTable;
-    var distCodeTable;
-    if (hdr == 1) { // compressed block, fixed codes
-      litCodeTable = fixedLitCodeTab;
-      distCodeTable = fixedDistCodeTab;
-    } else if (hdr == 2) { // compressed block, dynamic codes
-      var numLitCodes = getBits(5) + 257;
-      var numDistCodes = getBits(5) + 1;
-      var numCodeLenCodes = getBits(4) + 4;
-
-      // build the code lengths code table
-      var codeLenCodeLengths = new Uint8Array(codeLenCodeMap.length);
-
-      for (var i = 0; i < numCodeLenCodes; ++i)
-        codeLenCodeLengths[codeLenCodeMap[i]] = getBits(3);
-      var codeLenCodeTab = generateHuffmanTable(codeLenCodeLengths);
-
-      // build the literal and distance code tables
-      var len = 0;
-      var i = 0;
-      var codes = numLitCodes + numDistCodes;
-      var codeLengths = new Uint8Array(codes);
-      while (i < codes) {
-        var code = getCode(codeLenCodeTab);
-        if (code == 16) {
-          var bitsLength = 2, bitsOffset = 3, what = len;
-        } else if (code == 17) {
-          var bitsLength = 3, bitsOffset = 3, what = (len = 0);
-        } else if (code == 18) {
-          var bitsLength = 7, bitsOffset = 11, what = (len = 0);
-        } else {
-          codeLengths[i++] = len = code;
+    // Inflates the codes of the current block until the end of the block, or
+    // until enough bytes are available.
+    function readCodes() {
+      while (bufferLength < length) {
+        var code1 = getCode(litCodeTable);
+        if (code1 < 256) {
+          buffer[bufferLength++] = code1;
           continue;
         }
-
-        var repeatLength = getBits(bitsLength) + bitsOffset;
-        while (repeatLength-- > 0)
-          codeLengths[i++] = what;
+        if (code1 == 256) {
+          litCodeTable = distCodeTable = null;
+          if (isLastBlock)
+            done = true;
+          return;
+        }
+        code1 -= 257;
+        code1 = lengthDecode[code1];
+        var code2 = code1 >> 16;
+        if (code2 > 0)
+          code2 = getBits(code2);
+        var len = (code1 & 0xffff) + code2;
+        code1 = getCode(distCodeTable);
+        code1 = distDecode[code1];
+        code2 = code1 >> 16;
+        if (code2 > 0)
+          code2 = getBits(code2);
+        var dist = (code1 & 0xffff) + code2;
+        for (var k = 0; k < len; ++k, ++bufferLength)
+          buffer[bufferLength] = buffer[bufferLength - dist];
       }
-
-      litCodeTable = generateHuffmanTable(codeLengths.subarray(0, numLitCodes));
-      distCodeTable = generateHuffmanTable(codeLengths.subarray(numLitCodes, codes));
-    } else {
-      new Error('Unknown block type in flate stream');
     }
 
-    while (true) {
-      var code1 = getCode(litCodeTable);
-      if (code1 < 256) {
-        buffer[bufferLength++] = code1;
-        continue;
+    while (!done && bufferLength < length) {
+      if (!litCodeTable) {
+        readBlockHeader();
+      } else {
+        readCodes();
       }
-      if (code1 == 256) {
-        return eof;
-      }
-      code1 -= 257;
-      code1 = lengthDecode[code1];
-      var code2 = code1 >> 16;
-      if (code2 > 0)
-        code2 = getBits(code2);
-      var len = (code1 & 0xffff) + code2;
-      code1 = getCode(distCodeTable);
-      code1 = distDecode[code1];
-      code2 = code1 >> 16;
-      if (code2 > 0)
-        code2 = getBits(code2);
-      var dist = (code1 & 0xffff) + code2;
-      for (var k = 0; k < len; ++k, ++bufferLength)
-        buffer[bufferLength] = buffer[bufferLength - dist];
     }
-  };
 
-  while (!readBlock())
-    ;
+    this.bytesPos = bytesPos;
+    this.codeSize = codeSize;
+    this.codeBuf = codeBuf;
+    this.bufferLength = bufferLength;
+    this.litCodeTable = litCodeTable;
+    this.distCodeTable = distCodeTable;
+    this.isLastBlock = isLastBlock;
+    this.done = done || bufferLength >= buffer.length;
+    return bufferLength;
+  },
+};
 
-  return buffer;
+function inflate(bytes, uncompressed_len) {
+  var inflater = new Inflater(bytes, uncompressed_len);
+  inflater.inflateTo(uncompressed_len);
+  return inflater.buffer;
 }
 
 var arrays = J2ME.ArrayUtilities.makeArrays(256);
@@ -323,6 +381,7 @@ function ZipFile(buffer, extract) {
     if (view.getInt32(pos, true) != 0x02014b50)
       return;
     var compression_method = view.getInt16(pos + 10, true);
+    var crc32 = view.getInt32(pos + 16, true);
     var compressed_len = view.getInt32(pos + 20, true);
     var uncompressed_len = view.getInt32(pos + 24, true);
     var filename_len = view.getInt16(pos + 28, true);
@@ -355,6 +414,7 @@ function ZipFile(buffer, extract) {
 
     directory[filename] = {
       compression_method: compression_method,
+      crc32: crc32,
       compressed_data: compressed_data,
       uncompressed_len: uncompressed_len,
     };
@@ -385,4 +445,5 @@ ZipFile.prototype = {
 
 if (typeof module === 'object') {
   module.exports.ZipFile = ZipFile;
+  module.exports.Inflater = Inflater;
 }
@@ -249,6 +249,8 @@ function start() {
     bigBang = performance.now();
     // For profiler mode 2, we start the timeline and stop it later by calling |stopAndSaveTimeline|.
     profile === 2 && startTimeline();
+    // Left by the first refresh of the screen, see |midp/gfx.js|.
+    J2ME.enterTimeline("Time To First Paint");
     jvm.startIsolate0(config.main, config.args);
   }
 }
@@ -262,6 +264,62 @@ Promise.all(loadingPromises).then(start, function (reason) {
   console.error("Loading failed: \"" + reason + "\"");
 });
 
+// Loads the classes the previous session loaded, in the same order, while the
+// browser is idle, and records the order of this session for the next one.
+var LoadOrder = (function() {
+  // Delay between writes of the load order to the database.
+  var FLUSH_DELAY = 5000; // ms
+  // Budget for each prefetch batch when there is no |requestIdleCallback|.
+  var PREFETCH_BATCH_TIME = 4; // ms
+  // Longer orders are truncated, the classes at the end are the least likely to be needed early.
+  var MAX_LENGTH = 4096;
+
+  var flushedLength = 0;
+
+  function requestIdle(callback) {
+    if (typeof requestIdleCallback === "function") {
+      requestIdleCallback(function(deadline) {
+        callback(performance.now() + deadline.timeRemaining());
+      });
+    } else {
+      setTimeout(function() {
+        callback(performance.now() + PREFETCH_BATCH_TIME);
+      });
+    }
+  }
+
+  function prefetch(deadline) {
+    if (J2ME.CLASSES.prefetchClasses(deadline)) {
+      requestIdle(prefetch);
+    }
+  }
+
+  function flush() {
+    var loadOrder = J2ME.CLASSES.loadOrder;
+    if (loadOrder.length !== flushedLength) {
+      flushedLength = loadOrder.length;
+      JARStore.putLoadOrder(J2ME.CLASSES.getMergedLoadOrder().slice(0, MAX_LENGTH)).catch(console.error.bind(console));
+    }
+    setTimeout(requestIdle.bind(null, flush), FLUSH_DELAY);
+  }
+
+  function start() {
+    JARStore.getLoadOrder().then(function(classNames) {
+      J2ME.CLASSES.setRecordedLoadOrder(classNames);
+      requestIdle(prefetch);
+    }).catch(console.error.bind(console)).then(function() {
+      setTimeout(requestIdle.bind(null, flush), FLUSH_DELAY);
+    });
+  }
+
+  return {
+    start: start,
+  };
+})();
+
+// The recorded order is only valid for the JARs it was recorded with, so wait for all of them.
+Promise.all(loadingPromises.concat(loadingMIDletPromises)).then(LoadOrder.start);
+
 document.getElementById("start").onclick = function() {
   start();
 };
@@ -352,6 +410,8 @@ window.onload = function() {
     var el = document.getElementById("compiledCount");
     el.textContent = numberWithCommas(J2ME.compiledMethodCount) + "/" +
                      numberWithCommas(J2ME.cachedMethodCount) + "/" +
+                     numberWithCommas(J2ME.cachedMethodMissCount) + "/" +
+                     numberWithCommas(J2ME.cachedMethodEvictionCount) + "/" +
                      numberWithCommas(J2ME.aotMethodCount) + "/" +
                      numberWithCommas(J2ME.notCompiledMethodCount);
 
@@ -373,6 +433,12 @@ window.onload = function() {
     writer.writeLn("Unwind Count: " + J2ME.unwindCount);
     writer.writeLn("Bytecode Count: " + J2ME.bytecodeCount);
     writer.writeLn("OSR Count: " + J2ME.onStackReplacementCount);
+    writer.writeLn("Handle Count: " + J2ME.handleCount);
+    writer.writeLn("Array View Cache Hits: " + J2ME.arrayViewCacheHitCount);
+    writer.writeLn("Array View Cache Misses: " + J2ME.arrayViewCacheMissCount);
+    writer.writeLn("String Cache Hits: " + J2ME.stringCacheHitCount);
+    writer.writeLn("String Cache Misses: " + J2ME.stringCacheMissCount);
+    writer.writeLn("Budget Collections: " + J2ME.budgetCollectionCount);
 
     if (J2ME.interpreterCounter) {
       writer.enter("interpreterCounter");
@@ -399,16 +465,43 @@ window.onload = function() {
       J2ME.nativeCounter.traceSorted(writer);
       writer.outdent();
     }
+    if (J2ME.classCounter) {
+      writer.enter("classCounter");
+      J2ME.classCounter.traceSorted(writer);
+      writer.outdent();
+    }
     if (J2ME.runtimeCounter) {
       writer.enter("runtimeCounter");
       J2ME.runtimeCounter.traceSorted(writer);
       writer.outdent();
     }
+    if (J2ME.gcCounter) {
+      writer.enter("gcCounter");
+      J2ME.gcCounter.traceSorted(writer);
+      J2ME.gcPauseHistogram.trace(writer);
+      writer.outdent();
+    }
+    if (J2ME.frameCounter) {
+      writer.enter("frameCounter");
+      J2ME.frameCounter.traceSorted(writer);
+      J2ME.framePresentationHistogram.trace(writer);
+      writer.outdent();
+    }
     if (J2ME.asyncCounter) {
       writer.enter("asyncCounter");
       J2ME.asyncCounter.traceSorted(writer);
       writer.outdent();
     }
+    if (J2ME.inlineCacheCounter) {
+      writer.enter("inlineCacheCounter");
+      J2ME.inlineCacheCounter.traceSorted(writer);
+      writer.outdent();
+    }
+    if (J2ME.runTimeHistogram) {
+      writer.enter("scheduler");
+      J2ME.Scheduler.traceHistograms(writer);
+      writer.outdent();
+    }
   }
   function clearCounters() {
     J2ME.frameCount = 0;
@@ -416,12 +509,26 @@ window.onload = function() {
     J2ME.bytecodeCount = 0;
     J2ME.interpreterCount = 0;
     J2ME.onStackReplacementCount = 0;
+    J2ME.handleCount = 0;
+    J2ME.arrayViewCacheHitCount = 0;
+    J2ME.arrayViewCacheMissCount = 0;
+    J2ME.stringCacheHitCount = 0;
+    J2ME.stringCacheMissCount = 0;
+    J2ME.budgetCollectionCount = 0;
 
     J2ME.interpreterCounter && J2ME.interpreterCounter.clear();
     J2ME.interpreterMethodCounter && J2ME.interpreterMethodCounter.clear();
     J2ME.nativeCounter && J2ME.nativeCounter.clear();
     J2ME.runtimeCounter && J2ME.runtimeCounter.clear();
+    J2ME.classCounter && J2ME.classCounter.clear();
+    J2ME.gcCounter && J2ME.gcCounter.clear();
+    J2ME.gcPauseHistogram && J2ME.gcPauseHistogram.clear();
+    J2ME.frameCounter && J2ME.frameCounter.clear();
+    J2ME.framePresentationHistogram && J2ME.framePresentationHistogram.clear();
     J2ME.asyncCounter && J2ME.asyncCounter.clear();
+    J2ME.inlineCacheCounter && J2ME.inlineCacheCounter.clear();
+    J2ME.runTimeHistogram && J2ME.runTimeHistogram.clear();
+    J2ME.waitTimeHistogram && J2ME.waitTimeHistogram.clear();
     J2ME.baselineMethodCounter && J2ME.baselineMethodCounter.clear();
     J2ME.baselineCounter && J2ME.baselineCounter.clear();
   }
@@ -429,6 +536,10 @@ window.onload = function() {
   document.getElementById("dumpCounters").onclick = function() {
     dumpCounters();
   };
+  document.getElementById("dumpAOTProfile").onclick = function() {
+    var blob = new Blob([J2ME.AOTProfile.dump()], { type: "application/json" });
+    saveAs(blob, "aot-profile-" + Date.now() + ".json");
+  };
   document.getElementById("sampleCounters1").onclick = function() {
     clearCounters();
     dumpCounters();
@@ -204,5 +204,66 @@ module J2ME.Metrics {
       return sum / this._count;
     }
   }
+
+  /**
+   * Distribution of samples in power of two buckets, e.g. durations in ms.
+   */
+  export class Histogram {
+    private static BUCKET_COUNT = 16;
+
+    private _name: string;
+    private _buckets: Uint32Array;
+    private _count: number;
+    private _sum: number;
+    private _max: number;
+    constructor(name: string) {
+      this._name = name;
+      this.clear();
+    }
+    public clear() {
+      this._buckets = new Uint32Array(Histogram.BUCKET_COUNT);
+      this._count = 0;
+      this._sum = 0;
+      this._max = 0;
+    }
+    /**
+     * Bucket 0 holds samples below 1, bucket i holds samples in [2^(i-1), 2^i).
+     */
+    public record(sample: number) {
+      var bucket = sample < 1 ? 0 : Math.min(32 - Math.clz32(sample | 0), Histogram.BUCKET_COUNT - 1);
+      this._buckets[bucket] ++;
+      this._count ++;
+      this._sum += sample;
+      if (sample > this._max) {
+        this._max = sample;
+      }
+    }
+    get count(): number {
+      return this._count;
+    }
+    public average(): number {
+      return this._count ? this._sum / this._count : 0;
+    }
+    public toJSON() {
+      return {
+        name: this._name,
+        buckets: Array.prototype.slice.call(this._buckets),
+        count: this._count,
+        sum: this._sum,
+        max: this._max
+      };
+    }
+    public trace(writer: IndentingWriter) {
+      writer.enter(this._name + ": " + this._count + " samples, average: " + this.average().toFixed(2) + ", max: " + this._max.toFixed(2));
+      var buckets = this._buckets;
+      for (var i = 0; i < buckets.length; i++) {
+        if (buckets[i]) {
+          var range = i === 0 ? "< 1" : (1 << (i - 1)) + (i === buckets.length - 1 ? "+" : " - " + (1 << i));
+          writer.writeLn(range + ": " + buckets[i]);
+        }
+      }
+      writer.outdent();
+    }
+  }
 }
 
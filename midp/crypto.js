@@ -8,76 +8,340 @@ Native["com/sun/midp/crypto/PRand.getRandomBytes.([BI)Z"] = function(addr, bAddr
     return 1;
 };
 
-MIDP.hashers = new Map();
-
 /**
- * A 16-byte Int32Array whose values are all initialized to zero.
- * Useful for comparing with other such arrays to determine whether or not
- * they've been populated with other values.  Also useful for resetting
- * data arrays back to their initial state.
+ * The digests keep all their state in the int arrays of the Java object, so
+ * that cloning the object clones the digest:
+ *   state: the intermediate hash value
+ *   num: the number of bytes buffered in |data|
+ *   count: the number of bits hashed so far, low word first
+ *   data: the buffered bytes of an incomplete block, in the byte order of the
+ *         digest's words
  */
-MIDP.emptyDataArray = new Int32Array(16);
 
-MIDP.getMD5Hasher = function(dataAddr) {
-    if (!MIDP.hashers.has(dataAddr)) {
-      var hasher = forge.md.md5.create();
-      window.crypto.getRandomValues(J2ME.getArrayFromAddr(dataAddr));
-      MIDP.hashers.set(dataAddr, hasher);
+// Words of the block being hashed, shared by all digests.
+var digestWords = new Int32Array(80);
+
+function md5FF(a, b, c, d, x, s, t) {
+    a = a + ((b & c) | (~b & d)) + x + t | 0;
+    return (a << s | a >>> (32 - s)) + b | 0;
+}
+function md5GG(a, b, c, d, x, s, t) {
+    a = a + ((b & d) | (c & ~d)) + x + t | 0;
+    return (a << s | a >>> (32 - s)) + b | 0;
+}
+function md5HH(a, b, c, d, x, s, t) {
+    a = a + (b ^ c ^ d) + x + t | 0;
+    return (a << s | a >>> (32 - s)) + b | 0;
+}
+function md5II(a, b, c, d, x, s, t) {
+    a = a + (c ^ (b | ~d)) + x + t | 0;
+    return (a << s | a >>> (32 - s)) + b | 0;
+}
+
+function md5Transform(state, w) {
+    var a = state[0], b = state[1], c = state[2], d = state[3];
+    a = md5FF(a, b, c, d, w[0], 7, -680876936);
+    d = md5FF(d, a, b, c, w[1], 12, -389564586);
+    c = md5FF(c, d, a, b, w[2], 17, 606105819);
+    b = md5FF(b, c, d, a, w[3], 22, -1044525330);
+    a = md5FF(a, b, c, d, w[4], 7, -176418897);
+    d = md5FF(d, a, b, c, w[5], 12, 1200080426);
+    c = md5FF(c, d, a, b, w[6], 17, -1473231341);
+    b = md5FF(b, c, d, a, w[7], 22, -45705983);
+    a = md5FF(a, b, c, d, w[8], 7, 1770035416);
+    d = md5FF(d, a, b, c, w[9], 12, -1958414417);
+    c = md5FF(c, d, a, b, w[10], 17, -42063);
+    b = md5FF(b, c, d, a, w[11], 22, -1990404162);
+    a = md5FF(a, b, c, d, w[12], 7, 1804603682);
+    d = md5FF(d, a, b, c, w[13], 12, -40341101);
+    c = md5FF(c, d, a, b, w[14], 17, -1502002290);
+    b = md5FF(b, c, d, a, w[15], 22, 1236535329);
+
+    a = md5GG(a, b, c, d, w[1], 5, -165796510);
+    d = md5GG(d, a, b, c, w[6], 9, -1069501632);
+    c = md5GG(c, d, a, b, w[11], 14, 643717713);
+    b = md5GG(b, c, d, a, w[0], 20, -373897302);
+    a = md5GG(a, b, c, d, w[5], 5, -701558691);
+    d = md5GG(d, a, b, c, w[10], 9, 38016083);
+    c = md5GG(c, d, a, b, w[15], 14, -660478335);
+    b = md5GG(b, c, d, a, w[4], 20, -405537848);
+    a = md5GG(a, b, c, d, w[9], 5, 568446438);
+    d = md5GG(d, a, b, c, w[14], 9, -1019803690);
+    c = md5GG(c, d, a, b, w[3], 14, -187363961);
+    b = md5GG(b, c, d, a, w[8], 20, 1163531501);
+    a = md5GG(a, b, c, d, w[13], 5, -1444681467);
+    d = md5GG(d, a, b, c, w[2], 9, -51403784);
+    c = md5GG(c, d, a, b, w[7], 14, 1735328473);
+    b = md5GG(b, c, d, a, w[12], 20, -1926607734);
+
+    a = md5HH(a, b, c, d, w[5], 4, -378558);
+    d = md5HH(d, a, b, c, w[8], 11, -2022574463);
+    c = md5HH(c, d, a, b, w[11], 16, 1839030562);
+    b = md5HH(b, c, d, a, w[14], 23, -35309556);
+    a = md5HH(a, b, c, d, w[1], 4, -1530992060);
+    d = md5HH(d, a, b, c, w[4], 11, 1272893353);
+    c = md5HH(c, d, a, b, w[7], 16, -155497632);
+    b = md5HH(b, c, d, a, w[10], 23, -1094730640);
+    a = md5HH(a, b, c, d, w[13], 4, 681279174);
+    d = md5HH(d, a, b, c, w[0], 11, -358537222);
+    c = md5HH(c, d, a, b, w[3], 16, -722521979);
+    b = md5HH(b, c, d, a, w[6], 23, 76029189);
+    a = md5HH(a, b, c, d, w[9], 4, -640364487);
+    d = md5HH(d, a, b, c, w[12], 11, -421815835);
+    c = md5HH(c, d, a, b, w[15], 16, 530742520);
+    b = md5HH(b, c, d, a, w[2], 23, -995338651);
+
+    a = md5II(a, b, c, d, w[0], 6, -198630844);
+    d = md5II(d, a, b, c, w[7], 10, 1126891415);
+    c = md5II(c, d, a, b, w[14], 15, -1416354905);
+    b = md5II(b, c, d, a, w[5], 21, -57434055);
+    a = md5II(a, b, c, d, w[12], 6, 1700485571);
+    d = md5II(d, a, b, c, w[3], 10, -1894986606);
+    c = md5II(c, d, a, b, w[10], 15, -1051523);
+    b = md5II(b, c, d, a, w[1], 21, -2054922799);
+    a = md5II(a, b, c, d, w[8], 6, 1873313359);
+    d = md5II(d, a, b, c, w[15], 10, -30611744);
+    c = md5II(c, d, a, b, w[6], 15, -1560198380);
+    b = md5II(b, c, d, a, w[13], 21, 1309151649);
+    a = md5II(a, b, c, d, w[4], 6, -145523070);
+    d = md5II(d, a, b, c, w[11], 10, -1120210379);
+    c = md5II(c, d, a, b, w[2], 15, 718787259);
+    b = md5II(b, c, d, a, w[9], 21, -343485551);
+
+    state[0] = state[0] + a | 0;
+    state[1] = state[1] + b | 0;
+    state[2] = state[2] + c | 0;
+    state[3] = state[3] + d | 0;
+}
+
+function sha1Transform(state, w) {
+    for (var r = 16; r < 80; r++) {
+        var t = w[r - 3] ^ w[r - 8] ^ w[r - 14] ^ w[r - 16];
+        w[r] = t << 1 | t >>> 31;
     }
-    return MIDP.hashers.get(dataAddr);
-};
 
-var bin2StringResult = new Array();
-MIDP.bin2String = function(array) {
-  bin2StringResult.length = array.length;
-  for (var i = 0; i < array.length; i++) {
-    bin2StringResult[i] = String.fromCharCode(array[i] & 0xff);
-  }
-  return bin2StringResult.join("");
-};
+    var a = state[0], b = state[1], c = state[2], d = state[3], e = state[4];
+    for (var r = 0; r < 80; r++) {
+        var f, k;
+        if (r < 20) {
+            f = (b & c) | (~b & d);
+            k = 0x5A827999;
+        } else if (r < 40) {
+            f = b ^ c ^ d;
+            k = 0x6ED9EBA1;
+        } else if (r < 60) {
+            f = (b & c) | (b & d) | (c & d);
+            k = 0x8F1BBCDC;
+        } else {
+            f = b ^ c ^ d;
+            k = 0xCA62C1D6;
+        }
+        var t = (a << 5 | a >>> 27) + f + e + w[r] + k | 0;
+        e = d;
+        d = c;
+        c = b << 30 | b >>> 2;
+        b = a;
+        a = t;
+    }
 
-Native["com/sun/midp/crypto/MD5.nativeUpdate.([BII[I[I[I[I)V"] =
-function(addr, inBufAddr, inOff, inLen, stateAddr, numAddr, countAddr, dataAddr) {
-    var inBuf = J2ME.getArrayFromAddr(inBufAddr);
-    MIDP.getMD5Hasher(dataAddr).update(MIDP.bin2String(new Int8Array(inBuf.subarray(inOff, inOff + inLen))));
-};
+    state[0] = state[0] + a | 0;
+    state[1] = state[1] + b | 0;
+    state[2] = state[2] + c | 0;
+    state[3] = state[3] + d | 0;
+    state[4] = state[4] + e | 0;
+}
 
-Native["com/sun/midp/crypto/MD5.nativeFinal.([BII[BI[I[I[I[I)V"] =
-function(addr, inBufAddr, inOff, inLen, outBufAddr, outOff, stateAddr, numAddr, countAddr, dataAddr) {
-    var inBuf;
-    var outBuf = J2ME.getArrayFromAddr(outBufAddr);
-    var data = J2ME.getArrayFromAddr(dataAddr);
-    var hasher = MIDP.getMD5Hasher(dataAddr);
+var SHA256_K = new Int32Array([
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2,
+]);
+
+function sha256Transform(state, w) {
+    for (var r = 16; r < 64; r++) {
+        var x = w[r - 15], y = w[r - 2];
+        var s0 = (x >>> 7 | x << 25) ^ (x >>> 18 | x << 14) ^ (x >>> 3);
+        var s1 = (y >>> 17 | y << 15) ^ (y >>> 19 | y << 13) ^ (y >>> 10);
+        w[r] = w[r - 16] + s0 + w[r - 7] + s1 | 0;
+    }
 
-    if (inBufAddr !== J2ME.Constants.NULL) {
-        // digest passes `null` for inBuf, and there are no other callers,
-        // so this should never happen; but I'm including it for completeness
-        // (and in case a subclass ever uses it).
-        inBuf = J2ME.getArrayFromAddr(inBufAddr);
-        hasher.update(MIDP.bin2String(inBuf.subarray(inOff, inOff + inLen)));
+    var a = state[0], b = state[1], c = state[2], d = state[3];
+    var e = state[4], f = state[5], g = state[6], h = state[7];
+    for (var r = 0; r < 64; r++) {
+        var S1 = (e >>> 6 | e << 26) ^ (e >>> 11 | e << 21) ^ (e >>> 25 | e << 7);
+        var t1 = h + S1 + ((e & f) ^ (~e & g)) + SHA256_K[r] + w[r] | 0;
+        var S0 = (a >>> 2 | a << 30) ^ (a >>> 13 | a << 19) ^ (a >>> 22 | a << 10);
+        var t2 = S0 + ((a & b) ^ (a & c) ^ (b & c)) | 0;
+        h = g;
+        g = f;
+        f = e;
+        e = d + t1 | 0;
+        d = c;
+        c = b;
+        b = a;
+        a = t1 + t2 | 0;
     }
 
-    var hash = hasher.digest();
+    state[0] = state[0] + a | 0;
+    state[1] = state[1] + b | 0;
+    state[2] = state[2] + c | 0;
+    state[3] = state[3] + d | 0;
+    state[4] = state[4] + e | 0;
+    state[5] = state[5] + f | 0;
+    state[6] = state[6] + g | 0;
+    state[7] = state[7] + h | 0;
+}
 
-    for (var i = 0; i < hash.length(); i++) {
-        outBuf[outOff + i] = hash.at(i);
+/**
+ * A block digest with 32-bit words: MD5 is little-endian, SHA-1 and SHA-256
+ * are big-endian.
+ */
+function BlockDigest(initialState, transform, bigEndian) {
+    this.initialState = new Int32Array(initialState);
+    this.transform = transform;
+    this.bigEndian = bigEndian;
+}
+
+BlockDigest.prototype.update = function(inBuf, inOff, inLen, state, num, count, data) {
+    var bits = (count[0] >>> 0) + inLen * 8;
+    count[0] = bits | 0;
+    count[1] = count[1] + Math.floor(bits / 0x100000000) | 0;
+
+    var w = digestWords;
+    var shift = this.bigEndian ? 24 : 0;
+    var step = this.bigEndian ? -8 : 8;
+    var n = num[0];
+    var end = inOff + inLen;
+
+    // Complete the buffered block first.
+    if (n > 0) {
+        while (n < 64 && inOff < end) {
+            if ((n & 3) === 0) {
+                data[n >> 2] = 0;
+            }
+            data[n >> 2] |= (inBuf[inOff++] & 0xff) << (shift + step * (n & 3));
+            n++;
+        }
+        if (n < 64) {
+            num[0] = n;
+            return;
+        }
+        w.set(data);
+        this.transform(state, w);
+        n = 0;
     }
 
-    // XXX Call the reset method instead to completely reset the object.
-    data.set(MIDP.emptyDataArray);
+    // Hash whole blocks straight from the input.
+    for (; end - inOff >= 64; inOff += 64) {
+        for (var i = 0, j = inOff; i < 16; i++, j += 4) {
+            if (this.bigEndian) {
+                w[i] = inBuf[j] << 24 | (inBuf[j + 1] & 0xff) << 16 | (inBuf[j + 2] & 0xff) << 8 | (inBuf[j + 3] & 0xff);
+            } else {
+                w[i] = (inBuf[j] & 0xff) | (inBuf[j + 1] & 0xff) << 8 | (inBuf[j + 2] & 0xff) << 16 | inBuf[j + 3] << 24;
+            }
+        }
+        this.transform(state, w);
+    }
 
-    MIDP.hashers.delete(dataAddr);
+    // Buffer the rest.
+    while (inOff < end) {
+        if ((n & 3) === 0) {
+            data[n >> 2] = 0;
+        }
+        data[n >> 2] |= (inBuf[inOff++] & 0xff) << (shift + step * (n & 3));
+        n++;
+    }
+    num[0] = n;
 };
 
-Native["com/sun/midp/crypto/MD5.nativeClone.([I[I)V"] = function(addr, selfDataAddr, dataAddr) {
-    var hasher = MIDP.hashers.get(selfDataAddr);
-    MIDP.hashers.set(dataAddr, hasher.clone());
-};
+BlockDigest.prototype.digest = function(outBuf, outOff, state, num, count, data) {
+    var w = digestWords;
+    var n = num[0];
 
-Native["com/sun/midp/crypto/MD5.nativeReset.([I)V"] = function(addr, selfDataAddr) {
-    MIDP.hashers.delete(selfDataAddr);
+    // Append a single 1 bit, then zeros and the length, in another block if
+    // the length doesn't fit in this one.
+    if ((n & 3) === 0) {
+        data[n >> 2] = 0;
+    }
+    data[n >> 2] |= 0x80 << ((this.bigEndian ? 24 : 0) + (this.bigEndian ? -8 : 8) * (n & 3));
+    for (var i = (n >> 2) + 1; i < 16; i++) {
+        data[i] = 0;
+    }
+    if (n >= 56) {
+        w.set(data);
+        this.transform(state, w);
+        data.fill(0);
+    }
+    if (this.bigEndian) {
+        data[14] = count[1];
+        data[15] = count[0];
+    } else {
+        data[14] = count[0];
+        data[15] = count[1];
+    }
+    w.set(data);
+    this.transform(state, w);
+
+    for (var i = 0; i < state.length; i++) {
+        var word = state[i];
+        var j = outOff + i * 4;
+        if (this.bigEndian) {
+            outBuf[j] = word >> 24;
+            outBuf[j + 1] = word >> 16;
+            outBuf[j + 2] = word >> 8;
+            outBuf[j + 3] = word;
+        } else {
+            outBuf[j] = word;
+            outBuf[j + 1] = word >> 8;
+            outBuf[j + 2] = word >> 16;
+            outBuf[j + 3] = word >> 24;
+        }
+    }
+
+    // The digest is reset after it has been computed.
+    state.set(this.initialState);
+    num[0] = 0;
+    count[0] = count[1] = 0;
+    data.fill(0);
 };
 
+var MD5Digest = new BlockDigest([0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476], md5Transform, false);
+var SHA1Digest = new BlockDigest([0x67452301, 0xEFCDAB89, 0x98BADCFE, 0x10325476, 0xC3D2E1F0], sha1Transform, true);
+var SHA256Digest = new BlockDigest([0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+                               0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19], sha256Transform, true);
+
+function defineDigestNatives(className, digest) {
+    Native["com/sun/midp/crypto/" + className + ".nativeUpdate.([BII[I[I[I[I)V"] =
+    function(addr, inBufAddr, inOff, inLen, stateAddr, numAddr, countAddr, dataAddr) {
+        digest.update(J2ME.getArrayFromAddr(inBufAddr), inOff, inLen,
+                      J2ME.getArrayFromAddr(stateAddr), J2ME.getArrayFromAddr(numAddr),
+                      J2ME.getArrayFromAddr(countAddr), J2ME.getArrayFromAddr(dataAddr));
+    };
+
+    Native["com/sun/midp/crypto/" + className + ".nativeFinal.([BII[BI[I[I[I[I)V"] =
+    function(addr, inBufAddr, inOff, inLen, outBufAddr, outOff, stateAddr, numAddr, countAddr, dataAddr) {
+        var state = J2ME.getArrayFromAddr(stateAddr);
+        var num = J2ME.getArrayFromAddr(numAddr);
+        var count = J2ME.getArrayFromAddr(countAddr);
+        var data = J2ME.getArrayFromAddr(dataAddr);
+
+        if (inBufAddr !== J2ME.Constants.NULL) {
+            digest.update(J2ME.getArrayFromAddr(inBufAddr), inOff, inLen, state, num, count, data);
+        }
+
+        digest.digest(J2ME.getArrayFromAddr(outBufAddr), outOff, state, num, count, data);
+    };
+}
+
+defineDigestNatives("MD5", MD5Digest);
+defineDigestNatives("SHA", SHA1Digest);
+defineDigestNatives("SHA256", SHA256Digest);
+
 var hexEncodeArray = [ '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f', ];
 
 var bytesToHexStringResult = new Array();
@@ -156,3 +420,361 @@ function(addr, SAddr, XAddr, YAddr, inbufAddr, inoff, inlen, outbufAddr, outoff)
     X[0] = x;
     Y[0] = y;
 };
+
+/**
+ * AES and DES process whole runs of blocks natively, from the key schedules
+ * the Java code computes. In CBC mode |chainingBlock| is the previous
+ * ciphertext block, it's updated to the last one processed.
+ */
+
+function aesMultiply(a, b) {
+    var result = 0;
+    b &= 0xff;
+    for (var i = 0; i < 4; i++) {
+        result ^= ((a >> i) & 0x01010101) * b;
+        b = b < 128 ? b << 1 : (b << 1) ^ 0x11b;
+    }
+    return result;
+}
+
+// The S-box is the multiplicative inverse in GF(2^8) followed by an affine
+// transform.
+var AES_SBOX = new Int32Array(256);
+var AES_INV_SBOX = new Int32Array(256);
+(function() {
+    var p = 1, q = 1;
+    do {
+        // Multiply p by 3.
+        p = p ^ (p << 1) ^ (p & 0x80 ? 0x11b : 0);
+        // Divide q by 3.
+        q ^= q << 1;
+        q ^= q << 2;
+        q ^= q << 4;
+        q &= 0xff;
+        if (q & 0x80) {
+            q ^= 0x09;
+        }
+        var x = q ^ (q << 1 | q >> 7) ^ (q << 2 | q >> 6) ^ (q << 3 | q >> 5) ^ (q << 4 | q >> 4);
+        x = (x ^ 0x63) & 0xff;
+        AES_SBOX[p] = x;
+        AES_INV_SBOX[x] = p;
+    } while (p !== 1);
+    AES_SBOX[0] = 0x63;
+    AES_INV_SBOX[0x63] = 0;
+})();
+
+function makeAESTables(row, box) {
+    var tables = [new Int32Array(256), new Int32Array(256), new Int32Array(256), new Int32Array(256)];
+    for (var i = 0; i < 256; i++) {
+        var j = aesMultiply(row, box[i]);
+        tables[0][i] = j;
+        tables[1][i] = (j >>> 8) | (j << 24);
+        tables[2][i] = (j >>> 16) | (j << 16);
+        tables[3][i] = (j >>> 24) | (j << 8);
+    }
+    return tables;
+}
+
+var AES_ENCRYPT_TABLES = makeAESTables(0x02010103, AES_SBOX);
+var AES_DECRYPT_TABLES = makeAESTables(0x0e090d0b, AES_INV_SBOX);
+
+function aesGetInt(array, offset) {
+    return array[offset] << 24 | (array[offset + 1] & 0xff) << 16 |
+           (array[offset + 2] & 0xff) << 8 | (array[offset + 3] & 0xff);
+}
+
+function aesPutInt(array, offset, value) {
+    array[offset] = value >> 24;
+    array[offset + 1] = value >> 16;
+    array[offset + 2] = value >> 8;
+    array[offset + 3] = value;
+}
+
+function aesEncryptBlocks(W, Nr, input, inOff, blocks, output, outOff, chainingBlock) {
+    var SB0 = AES_ENCRYPT_TABLES[0], SB1 = AES_ENCRYPT_TABLES[1];
+    var SB2 = AES_ENCRYPT_TABLES[2], SB3 = AES_ENCRYPT_TABLES[3];
+    var S = AES_SBOX;
+    var c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+    if (chainingBlock) {
+        c0 = aesGetInt(chainingBlock, 0);
+        c1 = aesGetInt(chainingBlock, 4);
+        c2 = aesGetInt(chainingBlock, 8);
+        c3 = aesGetInt(chainingBlock, 12);
+    }
+
+    for (var b = 0; b < blocks; b++, inOff += 16, outOff += 16) {
+        var t0 = aesGetInt(input, inOff) ^ c0 ^ W[0];
+        var t1 = aesGetInt(input, inOff + 4) ^ c1 ^ W[1];
+        var t2 = aesGetInt(input, inOff + 8) ^ c2 ^ W[2];
+        var t3 = aesGetInt(input, inOff + 12) ^ c3 ^ W[3];
+
+        var j = 4;
+        for (var i = 1; i < Nr; i++, j += 4) {
+            var v0 = t0, v1 = t1, v2 = t2;
+            t0 = SB0[v0 >>> 24] ^ SB1[v1 >>> 16 & 0xff] ^ SB2[v2 >>> 8 & 0xff] ^ SB3[t3 & 0xff] ^ W[j];
+            t1 = SB0[v1 >>> 24] ^ SB1[v2 >>> 16 & 0xff] ^ SB2[t3 >>> 8 & 0xff] ^ SB3[v0 & 0xff] ^ W[j + 1];
+            t2 = SB0[v2 >>> 24] ^ SB1[t3 >>> 16 & 0xff] ^ SB2[v0 >>> 8 & 0xff] ^ SB3[v1 & 0xff] ^ W[j + 2];
+            t3 = SB0[t3 >>> 24] ^ SB1[v0 >>> 16 & 0xff] ^ SB2[v1 >>> 8 & 0xff] ^ SB3[v2 & 0xff] ^ W[j + 3];
+        }
+
+        var o0 = (S[t0 >>> 24] << 24 | S[t1 >>> 16 & 0xff] << 16 | S[t2 >>> 8 & 0xff] << 8 | S[t3 & 0xff]) ^ W[j];
+        var o1 = (S[t1 >>> 24] << 24 | S[t2 >>> 16 & 0xff] << 16 | S[t3 >>> 8 & 0xff] << 8 | S[t0 & 0xff]) ^ W[j + 1];
+        var o2 = (S[t2 >>> 24] << 24 | S[t3 >>> 16 & 0xff] << 16 | S[t0 >>> 8 & 0xff] << 8 | S[t1 & 0xff]) ^ W[j + 2];
+        var o3 = (S[t3 >>> 24] << 24 | S[t0 >>> 16 & 0xff] << 16 | S[t1 >>> 8 & 0xff] << 8 | S[t2 & 0xff]) ^ W[j + 3];
+
+        aesPutInt(output, outOff, o0);
+        aesPutInt(output, outOff + 4, o1);
+        aesPutInt(output, outOff + 8, o2);
+        aesPutInt(output, outOff + 12, o3);
+
+        if (chainingBlock) {
+            c0 = o0;
+            c1 = o1;
+            c2 = o2;
+            c3 = o3;
+        }
+    }
+
+    if (chainingBlock) {
+        aesPutInt(chainingBlock, 0, c0);
+        aesPutInt(chainingBlock, 4, c1);
+        aesPutInt(chainingBlock, 8, c2);
+        aesPutInt(chainingBlock, 12, c3);
+    }
+}
+
+function aesDecryptBlocks(W, Nr, input, inOff, blocks, output, outOff, chainingBlock) {
+    var SB0 = AES_DECRYPT_TABLES[0], SB1 = AES_DECRYPT_TABLES[1];
+    var SB2 = AES_DECRYPT_TABLES[2], SB3 = AES_DECRYPT_TABLES[3];
+    var S = AES_INV_SBOX;
+    var c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+    if (chainingBlock) {
+        c0 = aesGetInt(chainingBlock, 0);
+        c1 = aesGetInt(chainingBlock, 4);
+        c2 = aesGetInt(chainingBlock, 8);
+        c3 = aesGetInt(chainingBlock, 12);
+    }
+
+    for (var b = 0; b < blocks; b++, inOff += 16, outOff += 16) {
+        var i0 = aesGetInt(input, inOff);
+        var i1 = aesGetInt(input, inOff + 4);
+        var i2 = aesGetInt(input, inOff + 8);
+        var i3 = aesGetInt(input, inOff + 12);
+
+        var j = Nr * 4;
+        var t0 = i0 ^ W[j];
+        var t1 = i1 ^ W[j + 1];
+        var t2 = i2 ^ W[j + 2];
+        var t3 = i3 ^ W[j + 3];
+
+        for (var i = 1; i < Nr; i++) {
+            j -= 4;
+            var v0 = t0, v1 = t1, v2 = t2;
+            t0 = SB0[v0 >>> 24] ^ SB1[t3 >>> 16 & 0xff] ^ SB2[v2 >>> 8 & 0xff] ^ SB3[v1 & 0xff] ^ W[j];
+            t1 = SB0[v1 >>> 24] ^ SB1[v0 >>> 16 & 0xff] ^ SB2[t3 >>> 8 & 0xff] ^ SB3[v2 & 0xff] ^ W[j + 1];
+            t2 = SB0[v2 >>> 24] ^ SB1[v1 >>> 16 & 0xff] ^ SB2[v0 >>> 8 & 0xff] ^ SB3[t3 & 0xff] ^ W[j + 2];
+            t3 = SB0[t3 >>> 24] ^ SB1[v2 >>> 16 & 0xff] ^ SB2[v1 >>> 8 & 0xff] ^ SB3[v0 & 0xff] ^ W[j + 3];
+        }
+
+        var o0 = (S[t0 >>> 24] << 24 | S[t3 >>> 16 & 0xff] << 16 | S[t2 >>> 8 & 0xff] << 8 | S[t1 & 0xff]) ^ W[0];
+        var o1 = (S[t1 >>> 24] << 24 | S[t0 >>> 16 & 0xff] << 16 | S[t3 >>> 8 & 0xff] << 8 | S[t2 & 0xff]) ^ W[1];
+        var o2 = (S[t2 >>> 24] << 24 | S[t1 >>> 16 & 0xff] << 16 | S[t0 >>> 8 & 0xff] << 8 | S[t3 & 0xff]) ^ W[2];
+        var o3 = (S[t3 >>> 24] << 24 | S[t2 >>> 16 & 0xff] << 16 | S[t1 >>> 8 & 0xff] << 8 | S[t0 & 0xff]) ^ W[3];
+
+        aesPutInt(output, outOff, o0 ^ c0);
+        aesPutInt(output, outOff + 4, o1 ^ c1);
+        aesPutInt(output, outOff + 8, o2 ^ c2);
+        aesPutInt(output, outOff + 12, o3 ^ c3);
+
+        if (chainingBlock) {
+            c0 = i0;
+            c1 = i1;
+            c2 = i2;
+            c3 = i3;
+        }
+    }
+
+    if (chainingBlock) {
+        aesPutInt(chainingBlock, 0, c0);
+        aesPutInt(chainingBlock, 4, c1);
+        aesPutInt(chainingBlock, 8, c2);
+        aesPutInt(chainingBlock, 12, c3);
+    }
+}
+
+// The DES tables, built the same way as the ones of DES_ECB from the nibbles
+// of their hexadecimal descriptions.
+function makeDESTable(bitmask, nibbles) {
+    var words = new Int32Array(16);
+    var count = 1;
+    for (var i = 0; i < 8; i++) {
+        var mask = bitmask & (0xf << (i << 2));
+        if (mask === 0) {
+            continue;
+        }
+        for (var j = 0; j < count; j++) {
+            words[count + j] = words[j] | mask;
+        }
+        count += count;
+    }
+
+    var data = new Int32Array(64);
+    for (var i = 0; i < 64; i++) {
+        data[i] = words[parseInt(nibbles[i], 16)];
+    }
+    return data;
+}
+
+function makeDESPerm(value, period, divisor, offset, nibbles) {
+    var result = new Int32Array(256);
+    var count = 0;
+    while (true) {
+        offset += parseInt(nibbles[((count & 0x1f) < 16 ? 0 : 16) + (count & 0xf)], 16) + 1;
+        if (offset > 1023) {
+            return result;
+        }
+        count++;
+        if (count > 1 && count % period === 1) {
+            value = value === 1 ? 128 : (value / divisor) | 0;
+        }
+        result[offset >> 2] |= value << (((3 - offset) & 3) << 3);
+    }
+}
+
+var DES_S0P = makeDESTable(0x40410100, "72cf4bacb769d40a2853f695813e1de00f5a7295e13cb8c6f36d49a024d78e1b");
+var DES_S1P = makeDESTable(0x08021002, "f06c93a62d1a5ec14bd27805b7e9843f5ea7f590834d287be2091f6cd43ab1c6");
+var DES_S2P = makeDESTable(0x20808020, "c71da4d35268f98e0a719f2ce5b6304b71829a6d073ea4f8bc4f25d350e9cb16");
+var DES_S3P = makeDESTable(0x02080201, "7a1f0cb5e9839748d6216bc2305eadf4d3496a1cb0250de28f74f1a756cb389e");
+var DES_S4P = makeDESTable(0x01002084, "842fda7c4196bde06853a7091bf5c23eeb5c419a86f07825b20fde346da317c9");
+var DES_S5P = makeDESTable(0x10040408, "950e52b43f68a9c74bd021edfc83167a38a7e50a82d45f61f64b9c7029bec31d");
+var DES_S6P = makeDESTable(0x80200840, "215cfa304d968769d2af05c3eb78be14b6e9214edb301c850d5392f478afc76a");
+var DES_S7P = makeDESTable(0x04104010, "de30a5cf18637b9c275af90684bd42e1429f3806dba5e15af4c963bc1e708d27");
+var DES_INIT_PERM_RIGHT = makeDESPerm(128, 32, 2, -3, "c3b3432020332020" + "83b3432020332020");
+var DES_INIT_PERM_LEFT = makeDESPerm(128, 32, 2, -3, "8742032067420320" + "4742032067420320");
+var DES_PERM = makeDESPerm(64, 64, 4, -1, "4420411201004021" + "1001200101000000");
+
+// The block being processed, shared by all the DES ciphers.
+var desBlock = new Int8Array(8);
+
+/**
+ * Encrypts or decrypts |desBlock| with the expanded |key|, see
+ * DES_ECB.cipherBlock.
+ */
+function desCipherBlock(key, encrypt) {
+    var data = desBlock;
+    var j = encrypt ? 0 : 128 - 8;
+    var offset = (encrypt ? 0 : 16) - 8;
+
+    var left = 0;
+    var right = 0;
+    for (var i = 0; i < 8; i++) {
+        var v = i << 5;
+        var t = data[i];
+        left |= DES_INIT_PERM_LEFT[v + 16 + (t & 0xf)] | DES_INIT_PERM_LEFT[v + ((t >> 4) & 0xf)];
+        right |= DES_INIT_PERM_RIGHT[v + 16 + (t & 0xf)] | DES_INIT_PERM_RIGHT[v + ((t >> 4) & 0xf)];
+    }
+
+    for (var i = 0; ; i++) {
+        var temp = (right << 1) | ((right >> 31) & 1);
+        left ^= DES_S0P[(temp & 0x3f) ^ key[j]] ^
+                DES_S1P[((temp >> 4) & 0x3f) ^ key[j + 1]] ^
+                DES_S2P[((temp >> 8) & 0x3f) ^ key[j + 2]] ^
+                DES_S3P[((temp >> 12) & 0x3f) ^ key[j + 3]] ^
+                DES_S4P[((temp >> 16) & 0x3f) ^ key[j + 4]] ^
+                DES_S5P[((temp >> 20) & 0x3f) ^ key[j + 5]] ^
+                DES_S6P[((temp >> 24) & 0x3f) ^ key[j + 6]];
+        temp = ((right & 1) << 5) | ((right >> 27) & 0x1f);
+        left ^= DES_S7P[temp ^ key[j + 7]];
+
+        if (i === 15) {
+            break;
+        }
+
+        temp = left;
+        left = right;
+        right = temp;
+        j -= offset;
+    }
+
+    var P = DES_PERM;
+    var high = P[left & 0xf] | P[32 + ((left >> 8) & 0xf)] |
+               P[64 + ((left >> 16) & 0xf)] | P[96 + ((left >> 24) & 0xf)] |
+               P[128 + (right & 0xf)] | P[160 + ((right >> 8) & 0xf)] |
+               P[192 + ((right >> 16) & 0xf)] | P[224 + ((right >> 24) & 0xf)];
+    var low = P[16 + ((left >> 4) & 0xf)] | P[48 + ((left >> 12) & 0xf)] |
+              P[80 + ((left >> 20) & 0xf)] | P[112 + ((left >> 28) & 0xf)] |
+              P[144 + ((right >> 4) & 0xf)] | P[176 + ((right >> 12) & 0xf)] |
+              P[208 + ((right >> 20) & 0xf)] | P[240 + ((right >> 28) & 0xf)];
+
+    data[0] = low;
+    data[1] = low >> 8;
+    data[2] = low >> 16;
+    data[3] = low >> 24;
+    data[4] = high;
+    data[5] = high >> 8;
+    data[6] = high >> 16;
+    data[7] = high >> 24;
+}
+
+function desProcessBlocks(key0, key1, key2, encrypt, input, inOff, blocks, output, outOff, chainingBlock) {
+    var block = desBlock;
+    for (var b = 0; b < blocks; b++, inOff += 8, outOff += 8) {
+        for (var i = 0; i < 8; i++) {
+            block[i] = input[inOff + i];
+        }
+        if (chainingBlock && encrypt) {
+            for (var i = 0; i < 8; i++) {
+                block[i] ^= chainingBlock[i];
+            }
+        }
+
+        if (!key1) {
+            desCipherBlock(key0, encrypt);
+        } else if (encrypt) {
+            desCipherBlock(key0, true);
+            desCipherBlock(key1, false);
+            desCipherBlock(key2, true);
+        } else {
+            desCipherBlock(key2, false);
+            desCipherBlock(key1, true);
+            desCipherBlock(key0, false);
+        }
+
+        if (chainingBlock) {
+            for (var i = 0; i < 8; i++) {
+                if (encrypt) {
+                    chainingBlock[i] = block[i];
+                } else {
+                    var ciphertext = input[inOff + i];
+                    block[i] ^= chainingBlock[i];
+                    chainingBlock[i] = ciphertext;
+                }
+            }
+        }
+
+        for (var i = 0; i < 8; i++) {
+            output[outOff + i] = block[i];
+        }
+    }
+}
+
+Native["com/sun/midp/crypto/AES_ECB.nativeProcessBlocks.([IIZ[BII[BI[B)V"] =
+function(addr, WAddr, Nr, encrypt, inAddr, inOff, blocks, outAddr, outOff, chainingBlockAddr) {
+    var chainingBlock = chainingBlockAddr !== J2ME.Constants.NULL ? J2ME.getArrayFromAddr(chainingBlockAddr) : null;
+    (encrypt ? aesEncryptBlocks : aesDecryptBlocks)(J2ME.getArrayFromAddr(WAddr), Nr,
+                                                    J2ME.getArrayFromAddr(inAddr), inOff, blocks,
+                                                    J2ME.getArrayFromAddr(outAddr), outOff, chainingBlock);
+};
+
+Native["com/sun/midp/crypto/DES_ECB.nativeProcessBlocks.([B[B[BZ[BII[BI[B)V"] =
+function(addr, key0Addr, key1Addr, key2Addr, encrypt, inAddr, inOff, blocks, outAddr, outOff, chainingBlockAddr) {
+    var key1 = null, key2 = null;
+    if (key1Addr !== J2ME.Constants.NULL) {
+        key1 = J2ME.getArrayFromAddr(key1Addr);
+        key2 = J2ME.getArrayFromAddr(key2Addr);
+    }
+    var chainingBlock = chainingBlockAddr !== J2ME.Constants.NULL ? J2ME.getArrayFromAddr(chainingBlockAddr) : null;
+    desProcessBlocks(J2ME.getArrayFromAddr(key0Addr), key1, key2, encrypt === 1,
+                     J2ME.getArrayFromAddr(inAddr), inOff, blocks,
+                     J2ME.getArrayFromAddr(outAddr), outOff, chainingBlock);
+};
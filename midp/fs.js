@@ -157,6 +157,149 @@ Native["com/sun/midp/rms/RecordStoreFile.truncateFile.(II)V"] = function(addr, h
     fs.ftruncate(handle, size);
 };
 
+var RECORD_INDEX_BASE = "/RecordIndex";
+
+// Records of the open record stores, by directory. Each record is stored in
+// a file of that directory named after the record ID, and the contents of
+// the records are kept in memory while the record store is open, so that they
+// can be read without going through the file system.
+MIDP.RecordIndexes = new Map();
+MIDP.RecordIndexHandles = [];
+
+function getRecordIndexDir(filenameBaseAddr, nameAddr) {
+    return RECORD_INDEX_BASE + "/" + J2ME.fromStringAddr(filenameBaseAddr) +
+           "/" + J2ME.fromStringAddr(nameAddr);
+}
+
+function loadRecordIndex(index) {
+    return Promise.all(fs.list(index.dir).map(function(name) {
+        return new Promise(function(resolve, reject) {
+            var reader = new FileReader();
+            reader.addEventListener("error", function() {
+                reject("Failed to read record " + index.dir + "/" + name);
+            });
+            reader.addEventListener("load", function() {
+                index.records.set(parseInt(name, 10), new Int8Array(reader.result));
+                resolve();
+            });
+            reader.readAsArrayBuffer(fs.getBlob(index.dir + "/" + name));
+        });
+    }));
+}
+
+Native["com/sun/midp/rms/RecordStoreImpl.openRecordIndex.(Ljava/lang/String;Ljava/lang/String;)I"] =
+function(addr, filenameBaseAddr, nameAddr) {
+    var dir = getRecordIndexDir(filenameBaseAddr, nameAddr);
+
+    var index = MIDP.RecordIndexes.get(dir);
+    if (!index) {
+        if (!fs.exists(dir) && !fs.mkdirp(dir)) {
+            throw $.newIOException("openRecordIndex: mkdirp failed");
+        }
+
+        index = {
+            dir: dir,
+            records: new Map(),
+            refCount: 0,
+            loaded: false,
+            ready: null,
+        };
+        index.ready = loadRecordIndex(index).then(function() {
+            index.loaded = true;
+        });
+        MIDP.RecordIndexes.set(dir, index);
+    }
+
+    index.refCount++;
+    var handle = MIDP.RecordIndexHandles.push(index) - 1;
+    if (index.loaded) {
+        return handle;
+    }
+
+    var ctx = $.ctx;
+    asyncImpl("I", index.ready.then(function() {
+        return handle;
+    }, function(error) {
+        console.error(error);
+        MIDP.RecordIndexHandles[handle] = null;
+        if (--index.refCount <= 0) {
+            MIDP.RecordIndexes.delete(dir);
+        }
+        ctx.setAsCurrentContext();
+        throw $.newIOException("openRecordIndex: read failed");
+    }));
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.closeRecordIndex.(I)V"] = function(addr, handle) {
+    var index = MIDP.RecordIndexHandles[handle];
+    if (!index) {
+        return;
+    }
+    MIDP.RecordIndexHandles[handle] = null;
+    if (--index.refCount <= 0) {
+        MIDP.RecordIndexes.delete(index.dir);
+    }
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.putRecord.(II[BII)V"] =
+function(addr, handle, recordId, dataAddr, offset, numBytes) {
+    var index = MIDP.RecordIndexHandles[handle];
+    var start = J2ME.getArrayOffset(dataAddr) + offset;
+    var data = i8.slice(start, start + numBytes);
+    index.records.set(recordId, data);
+
+    // Only this record is written, the other records of the store don't change.
+    var path = index.dir + "/" + recordId;
+    fs.remove(path);
+    fs.create(path, new Blob([data]));
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.getRecordSize0.(II)I"] = function(addr, handle, recordId) {
+    var data = MIDP.RecordIndexHandles[handle].records.get(recordId);
+    return data ? data.length : -1;
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.readRecord.(II[BI)I"] =
+function(addr, handle, recordId, bufferAddr, offset) {
+    var data = MIDP.RecordIndexHandles[handle].records.get(recordId);
+    i8.set(data, J2ME.getArrayOffset(bufferAddr) + offset);
+    return data.length;
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.removeRecord.(II)V"] = function(addr, handle, recordId) {
+    var index = MIDP.RecordIndexHandles[handle];
+    index.records.delete(recordId);
+    fs.remove(index.dir + "/" + recordId);
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.getRecordIDs0.(I)[I"] = function(addr, handle) {
+    var records = MIDP.RecordIndexHandles[handle].records;
+    var idsAddr = J2ME.newIntArray(records.size);
+    var ids = J2ME.getArrayFromAddr(idsAddr);
+    var i = 0;
+    records.forEach(function(data, recordId) {
+        ids[i++] = recordId;
+    });
+    return idsAddr;
+};
+
+Native["com/sun/midp/rms/RecordStoreImpl.deleteRecords.(Ljava/lang/String;Ljava/lang/String;)V"] =
+function(addr, filenameBaseAddr, nameAddr) {
+    var dir = getRecordIndexDir(filenameBaseAddr, nameAddr);
+    if (!fs.exists(dir)) {
+        return;
+    }
+    fs.list(dir).forEach(function(name) {
+        fs.remove(dir + "/" + name);
+    });
+    fs.remove(dir);
+
+    var index = MIDP.RecordIndexes.get(dir);
+    if (index) {
+        index.records.clear();
+    }
+};
+
 MIDP.RecordStoreCache = [];
 
 Native["com/sun/midp/rms/RecordStoreSharedDBHeader.getLookupId0.(ILjava/lang/String;I)I"] =
@@ -584,7 +727,7 @@ Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.closeForReadWrite.()V"] = fu
 
 Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.read.([BII)I"] = function(addr, bAddr, off, len) {
     var self = getHandle(addr);
-    var b = J2ME.getArrayFromAddr(bAddr);
+    var bLength = J2ME.getArrayLength(bAddr);
     DEBUG_FS && console.log("DefaultFileHandler.read: " + J2ME.fromStringAddr(self.nativePath) + " " + len);
     if (self.nativeDescriptor === -1) {
         DEBUG_FS && console.log("DefaultFileHandler.read: ignored file");
@@ -593,17 +736,17 @@ Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.read.([BII)I"] = function(ad
 
     var fd = self.nativeDescriptor;
 
-    if (off < 0 || len < 0 || off > b.byteLength || (b.byteLength - off) < len) {
+    if (off < 0 || len < 0 || off > bLength || (bLength - off) < len) {
         throw $.newIOException();
     }
 
-    if (b.byteLength == 0 || len == 0) {
+    if (bLength == 0 || len == 0) {
         return 0;
     }
 
     var curpos = fs.getpos(fd);
     var data = fs.read(fd, curpos, curpos + len);
-    b.set(data, off);
+    i8.set(data, J2ME.getArrayOffset(bAddr) + off);
 
     return (data.byteLength > 0) ? data.byteLength : -1;
 };
@@ -636,7 +779,6 @@ Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.skip.(J)J"] = function(addr,
 
 Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.write.([BII)I"] = function(addr, bAddr, off, len) {
     var self = getHandle(addr);
-    var b = J2ME.getArrayFromAddr(bAddr);
     DEBUG_FS && console.log("DefaultFileHandler.write: " + J2ME.fromStringAddr(self.nativePath) + " " + off + "+" + len);
     if (self.nativeDescriptor === -1) {
         DEBUG_FS && console.log("DefaultFileHandler.write: ignored file");
@@ -644,7 +786,7 @@ Native["com/sun/cdc/io/j2me/file/DefaultFileHandler.write.([BII)I"] = function(a
     }
 
     var fd = self.nativeDescriptor;
-    fs.write(fd, b, off, len);
+    fs.write(fd, i8, J2ME.getArrayOffset(bAddr) + off, len);
     // The return value is the "length of data really written," which is
     // always the same as the length requested in our implementation.
     return preemptingImpl("I", len);
@@ -796,7 +938,6 @@ function(addr, fileNameAddr, mode) {
 
 Native["com/sun/midp/io/j2me/storage/RandomAccessStream.read.(I[BII)I"] =
 function(addr, handle, bufferAddr, offset, length) {
-    var buffer = J2ME.getArrayFromAddr(bufferAddr);
     var from = fs.getpos(handle);
     var to = from + length;
     var readBytes = fs.read(handle, from, to);
@@ -805,17 +946,13 @@ function(addr, handle, bufferAddr, offset, length) {
         return -1;
     }
 
-    var subBuffer = buffer.subarray(offset, offset + readBytes.byteLength);
-    for (var i = 0; i < readBytes.byteLength; i++) {
-        subBuffer[i] = readBytes[i];
-    }
+    i8.set(readBytes, J2ME.getArrayOffset(bufferAddr) + offset);
     return readBytes.byteLength;
 };
 
 Native["com/sun/midp/io/j2me/storage/RandomAccessStream.write.(I[BII)V"] =
 function(addr, handle, bufferAddr, offset, length) {
-    var buffer = J2ME.getArrayFromAddr(bufferAddr);
-    fs.write(handle, buffer, offset, length);
+    fs.write(handle, i8, J2ME.getArrayOffset(bufferAddr) + offset, length);
 };
 
 Native["com/sun/midp/io/j2me/storage/RandomAccessStream.commitWrite.(I)V"] = function(addr, handle) {
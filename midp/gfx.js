@@ -7,26 +7,92 @@ var FONT_HEIGHT_MULTIPLIER = 1.3;
 
 var currentlyFocusedTextEditor;
 (function(Native) {
-    if (!inBrowser) {
-        return;
+    // Without a browser, or when asked to, graphics are drawn by the software
+    // rasterizer in midp/rasterizer.js, which draws the same pixels everywhere.
+    var useSoftwareGraphics = !inBrowser ||
+                              !!(config.softwareGraphics && !/no|0|false/.test(config.softwareGraphics));
+
+    function createCanvas() {
+        return useSoftwareGraphics ? new SoftwareCanvas(0, 0) : document.createElement("canvas");
     }
-    var offscreenCanvas = document.createElement("canvas");
-    offscreenCanvas.width = MIDP.deviceContext.canvas.width;
-    offscreenCanvas.height = MIDP.deviceContext.canvas.height;
+
+    // Size of the screen when there is no device canvas to take it from.
+    var DEFAULT_SCREEN_WIDTH = 240;
+    var DEFAULT_SCREEN_HEIGHT = 320;
+
+    var offscreenCanvas = createCanvas();
+    offscreenCanvas.width = inBrowser ? MIDP.deviceContext.canvas.width : DEFAULT_SCREEN_WIDTH;
+    offscreenCanvas.height = inBrowser ? MIDP.deviceContext.canvas.height : DEFAULT_SCREEN_HEIGHT;
     var offscreenContext2D = offscreenCanvas.getContext("2d");
     var screenContextInfo = new ContextInfo(offscreenContext2D);
 
-    MIDP.deviceContext.canvas.addEventListener("canvasresize", function() {
+    inBrowser && MIDP.deviceContext.canvas.addEventListener("canvasresize", function() {
         offscreenCanvas.width = MIDP.deviceContext.canvas.width;
         offscreenCanvas.height = MIDP.deviceContext.canvas.height;
         screenContextInfo.currentlyAppliedGraphicsInfo = null;
         offscreenContext2D.save();
     });
 
-    var tempContext = document.createElement("canvas").getContext("2d");
+    // Pixels that need to be composited are put on this canvas first, it only
+    // ever grows so that it doesn't have to be reallocated for every draw.
+    var tempContext = createCanvas().getContext("2d");
     tempContext.canvas.width = 0;
     tempContext.canvas.height = 0;
 
+    // Field accessors for the Java objects that the natives below read and
+    // write without going through a handle.
+    var ImageFields = J2ME.getFieldAccessors("javax/microedition/lcdui/Image");
+    var ImageDataFields = J2ME.getFieldAccessors("javax/microedition/lcdui/ImageData");
+    var DirectGraphicsImpFields = J2ME.getFieldAccessors("com/nokia/mid/ui/DirectGraphicsImp");
+
+    // Scratch ImageData objects to convert pixels into, by size bucket. Sizes
+    // are rounded up to a multiple of SCRATCH_BUCKET_SIZE so that draws of
+    // similar sizes share the same buffers.
+    var SCRATCH_BUCKET_SIZE = 32;
+    var MAX_SCRATCH_IMAGE_DATAS = 8;
+    var scratchImageDatas = new Map();
+
+    function getScratchImageData(width, height) {
+        var bucketWidth = Math.ceil(width / SCRATCH_BUCKET_SIZE) * SCRATCH_BUCKET_SIZE;
+        var bucketHeight = Math.ceil(height / SCRATCH_BUCKET_SIZE) * SCRATCH_BUCKET_SIZE;
+        var key = bucketWidth * 0x8000 + bucketHeight;
+        var scratch = scratchImageDatas.get(key);
+        if (!scratch) {
+            if (scratchImageDatas.size >= MAX_SCRATCH_IMAGE_DATAS) {
+                scratchImageDatas.clear();
+            }
+            var imageData = tempContext.createImageData(bucketWidth, bucketHeight);
+            scratch = {
+                imageData: imageData,
+                abgrData: new Int32Array(imageData.data.buffer),
+                stride: bucketWidth,
+            };
+            scratchImageDatas.set(key, scratch);
+        }
+        return scratch;
+    }
+
+    // Draws the top left |width| by |height| pixels of |scratch| with the clip,
+    // translation and compositing of |info|.
+    function drawScratchImageData(info, scratch, x, y, width, height) {
+        var canvas = tempContext.canvas;
+        if (canvas.width < width || canvas.height < height) {
+            canvas.width = Math.max(canvas.width, scratch.imageData.width);
+            canvas.height = Math.max(canvas.height, scratch.imageData.height);
+        }
+        tempContext.putImageData(scratch.imageData, 0, 0, 0, 0, width, height);
+        info.getGraphicsContext().drawImage(canvas, 0, 0, width, height, x, y, width, height);
+    }
+
+    // Whether the clip of |info| doesn't cut into a |width| by |height|
+    // rectangle at |x|, |y|, in which case pixels can be put on its canvas
+    // directly.
+    function isUnclipped(info, x, y, width, height) {
+        x += info.transX;
+        y += info.transY;
+        return x >= info.clipX1 && y >= info.clipY1 && x + width <= info.clipX2 && y + height <= info.clipY2;
+    }
+
     Native["com/sun/midp/lcdui/DisplayDeviceContainer.getDisplayDevicesIds0.()[I"] = function(addr) {
         var idsAddr = J2ME.newIntArray(1);
         var ids = J2ME.getArrayFromAddr(idsAddr);
@@ -103,7 +169,60 @@ var currentlyFocusedTextEditor;
     };
 
     var refreshStr = "refresh";
+    // Whether anything was painted to the screen yet, see |main.js| for where
+    // the "Time To First Paint" timeline starts.
+    var hasPainted = false;
+    function paintToScreen(x, y, width, height) {
+        if (useSoftwareGraphics) {
+            var imageData = presentContext2D.getImageData(x, y, width, height);
+            MIDP.deviceContext.putImageData(new ImageData(imageData.data, width, height), x, y);
+        } else {
+            MIDP.deviceContext.drawImage(presentCanvas, x, y, width, height, x, y, width, height);
+        }
+        if (!hasPainted) {
+            hasPainted = true;
+            J2ME.leaveTimeline("Time To First Paint");
+        }
+    }
+
+    // Screen Graphics draw to the offscreen canvas, and the refreshing thread
+    // goes on drawing the next frame there before the damage rectangle is
+    // presented. So refreshed pixels are copied to the present canvas right
+    // away, and the screen is painted from it.
+    var presentCanvas = createCanvas();
+    presentCanvas.width = offscreenCanvas.width;
+    presentCanvas.height = offscreenCanvas.height;
+    var presentContext2D = presentCanvas.getContext("2d");
+
+    inBrowser && MIDP.deviceContext.canvas.addEventListener("canvasresize", function() {
+        presentCanvas.width = offscreenCanvas.width;
+        presentCanvas.height = offscreenCanvas.height;
+    });
+
+    function copyToPresentCanvas(x, y, width, height) {
+        if (useSoftwareGraphics) {
+            // putImageData replaces the pixels rather than compositing them.
+            presentContext2D.putImageData(offscreenContext2D.getImageData(x, y, width, height), x, y);
+        } else {
+            presentContext2D.clearRect(x, y, width, height);
+            presentContext2D.drawImage(offscreenCanvas, x, y, width, height, x, y, width, height);
+        }
+    }
+
+    var framePresenter = new FramePresenter(paintToScreen, function(callback) {
+        window.requestAnimationFrame(callback);
+    }, function(ctx) {
+        J2ME.Scheduler.enqueue(ctx);
+    });
+    framePresenter.counter = J2ME.frameCounter;
+    framePresenter.histogram = J2ME.framePresentationHistogram;
+
     Native["com/sun/midp/lcdui/DisplayDevice.refresh0.(IIIIII)V"] = function(addr, hardwareId, displayId, x1, y1, x2, y2) {
+        if (!inBrowser) {
+            // There is no screen, the pixels stay on the offscreen canvas.
+            return;
+        }
+
         x1 = Math.max(0, x1);
         y1 = Math.max(0, y1);
         x2 = Math.max(0, x2);
@@ -117,17 +236,16 @@ var currentlyFocusedTextEditor;
         y1 = Math.min(maxY, y1);
         y2 = Math.min(maxY, y2);
 
-        var width = x2 - x1;
-        var height = y2 - y1;
-        if (width <= 0 || height <= 0) {
+        if (x2 <= x1 || y2 <= y1) {
             return;
         }
 
-        var ctx = $.ctx;
-        window.requestAnimationFrame(function() {
-            MIDP.deviceContext.drawImage(offscreenCanvas, x1, y1, width, height, x1, y1, width, height);
-            J2ME.Scheduler.enqueue(ctx);
-        });
+        copyToPresentCanvas(x1, y1, x2 - x1, y2 - y1);
+        if (!framePresenter.refresh(x1, y1, x2, y2)) {
+            return;
+        }
+
+        framePresenter.waitForFrame($.ctx);
         $.pause(refreshStr);
         $.nativeBailout(J2ME.Kind.Void);
     };
@@ -136,9 +254,11 @@ var currentlyFocusedTextEditor;
         return (pixel & 0xff00ff00) | ((pixel >> 16) & 0xff) | ((pixel & 0xff) << 16);
     }
 
-    function ABGRToARGB(abgrData, argbData, width, height, offset, scanlength) {
-        var i = 0;
+    function ABGRToARGB(abgrData, argbData, width, height, offset, scanlength, abgrOffset, abgrStride) {
+        abgrOffset = abgrOffset || 0;
+        abgrStride = abgrStride || width;
         for (var y = 0; y < height; y++) {
+            var i = abgrOffset + y * abgrStride;
             var j = offset + y * scanlength;
 
             for (var x = 0; x < width; x++) {
@@ -180,9 +300,10 @@ var currentlyFocusedTextEditor;
         }
     }
 
-    function ARGBToABGR(argbData, abgrData, width, height, offset, scanlength) {
-        var i = 0;
+    function ARGBToABGR(argbData, abgrData, width, height, offset, scanlength, abgrStride) {
+        abgrStride = abgrStride || width;
         for (var y = 0; y < height; ++y) {
+            var i = y * abgrStride;
             var j = offset + y * scanlength;
 
             for (var x = 0; x < width; ++x) {
@@ -191,9 +312,10 @@ var currentlyFocusedTextEditor;
         }
     }
 
-    function ARGBTo1BGR(argbData, abgrData, width, height, offset, scanlength) {
-        var i = 0;
+    function ARGBTo1BGR(argbData, abgrData, width, height, offset, scanlength, abgrStride) {
+        abgrStride = abgrStride || width;
         for (var y = 0; y < height; ++y) {
+            var i = y * abgrStride;
             var j = offset + y * scanlength;
 
             for (var x = 0; x < width; ++x) {
@@ -202,9 +324,10 @@ var currentlyFocusedTextEditor;
         }
     }
 
-    function ARGB4444ToABGR(argbData, abgrData, width, height, offset, scanlength) {
-        var i = 0;
+    function ARGB4444ToABGR(argbData, abgrData, width, height, offset, scanlength, abgrStride) {
+        abgrStride = abgrStride || width;
         for (var y = 0; y < height; ++y) {
+            var i = y * abgrStride;
             var j = offset + y * scanlength;
 
             for (var x = 0; x < width; ++x) {
@@ -218,43 +341,110 @@ var currentlyFocusedTextEditor;
     }
 
     function initImageData(imageDataAddr, width, height, isMutable) {
-        var canvas = document.createElement("canvas");
+        var canvas = createCanvas();
         canvas.width = width;
         canvas.height = height;
 
         var contextInfo = new ContextInfo(canvas.getContext("2d"))
         setNative(imageDataAddr, contextInfo);
 
-        var imageData = getHandle(imageDataAddr);
-
-        imageData.width = width;
-        imageData.height = height;
+        ImageDataFields.set.width(imageDataAddr, width);
+        ImageDataFields.set.height(imageDataAddr, height);
 
-        imageData.isMutable = isMutable;
+        ImageDataFields.set.isMutable(imageDataAddr, isMutable);
 
         return contextInfo.context;
     }
 
-    Native["javax/microedition/lcdui/ImageDataFactory.createImmutableImageDecodeImage.(Ljavax/microedition/lcdui/ImageData;[BII)V"] =
-    function(addr, imageDataAddr, bytesAddr, offset, length) {
-        var bytes = J2ME.getArrayFromAddr(bytesAddr);
-        var ctx = $.ctx;
-        asyncImpl("V", new Promise(function(resolve, reject) {
-            var blob = new Blob([bytes.subarray(offset, offset + length)], { type: "image/png" });
+    // Decodes an image, off the main thread if createImageBitmap is available,
+    // so that images requested by different threads are decoded concurrently.
+    function decodeImage(blob) {
+        if (typeof createImageBitmap === "function") {
+            return createImageBitmap(blob);
+        }
+
+        return new Promise(function(resolve, reject) {
             var img = new Image();
             img.src = URL.createObjectURL(blob);
             img.onload = function() {
-                var context = initImageData(imageDataAddr, img.naturalWidth, img.naturalHeight, 0);
-                context.drawImage(img, 0, 0);
-
                 URL.revokeObjectURL(img.src);
-                resolve();
+                resolve(img);
             }
             img.onerror = function(e) {
-               URL.revokeObjectURL(img.src);
-               ctx.setAsCurrentContext();
-               reject($.newIllegalArgumentException("error decoding image"));
+                URL.revokeObjectURL(img.src);
+                reject(e);
+            }
+        });
+    }
+
+    function decodeImageData(imageDataAddr, key, bytes) {
+        if (!inBrowser) {
+            // Only the browser can decode images.
+            return Promise.reject(new Error("no image decoder"));
+        }
+        var blob = new Blob([bytes], { type: "image/png" });
+        return decodeImage(blob).then(function(image) {
+            var context = initImageData(imageDataAddr, image.width, image.height, 0);
+            context.drawImage(image, 0, 0);
+            if (image.close) {
+                image.close();
             }
+            DecodedImageCache.put(key, context);
+        });
+    }
+
+    function initImageDataFromCache(imageDataAddr, key) {
+        var entry = DecodedImageCache.get(key);
+        if (!entry) {
+            return false;
+        }
+
+        var context = initImageData(imageDataAddr, entry.width, entry.height, 0);
+        var ctxImageData = context.createImageData(entry.width, entry.height);
+        ctxImageData.data.set(new Uint8ClampedArray(entry.pixels));
+        context.putImageData(ctxImageData, 0, 0);
+        return true;
+    }
+
+    Native["javax/microedition/lcdui/ImageDataFactory.createImmutableImageDecodeImage.(Ljavax/microedition/lcdui/ImageData;[BII)V"] =
+    function(addr, imageDataAddr, bytesAddr, offset, length) {
+        var bytes = J2ME.getArrayFromAddr(bytesAddr);
+        var key = DecodedImageCache.getKey(bytes, offset, length);
+        if (initImageDataFromCache(imageDataAddr, key)) {
+            return;
+        }
+
+        var ctx = $.ctx;
+        asyncImpl("V", decodeImageData(imageDataAddr, key, bytes.subarray(offset, offset + length)).catch(function() {
+            ctx.setAsCurrentContext();
+            throw $.newIllegalArgumentException("error decoding image");
+        }));
+    };
+
+    Native["javax/microedition/lcdui/SuiteImageCacheImpl.loadAndCreateImmutableImageDataFromCache0.(Ljavax/microedition/lcdui/ImageData;ILjava/lang/String;)Z"] =
+    function(addr, imageDataAddr, suiteId, resNameAddr) {
+        // Relative names would have to be resolved against the calling class.
+        var resName = J2ME.fromStringAddr(resNameAddr);
+        if (resName[0] !== "/") {
+            return 0;
+        }
+
+        var data = JARStore.loadFile(resName.substring(1));
+        if (!data) {
+            return 0;
+        }
+
+        var key = DecodedImageCache.getKey(data, 0, data.length);
+        if (initImageDataFromCache(imageDataAddr, key)) {
+            return 1;
+        }
+
+        // Decode the resource right away rather than having it read into a
+        // byte array first, the regular loading path reports errors.
+        asyncImpl("Z", decodeImageData(imageDataAddr, key, data).then(function() {
+            return 1;
+        }, function() {
+            return 0;
         }));
     };
 
@@ -297,26 +487,31 @@ var currentlyFocusedTextEditor;
     Native["javax/microedition/lcdui/ImageData.getRGB.([IIIIIII)V"] =
     function(addr, rgbDataAddr, offset, scanlength, x, y, width, height) {
         var rgbData = J2ME.getArrayFromAddr(rgbDataAddr);
-        var abgrData = new Int32Array(NativeMap.get(addr).context.getImageData(x, y, width, height).data.buffer);
-        ABGRToARGB(abgrData, rgbData, width, height, offset, scanlength);
+        var contextInfo = NativeMap.get(addr);
+        var pixels = contextInfo.getCachedPixels();
+        if (pixels) {
+            var canvasWidth = contextInfo.context.canvas.width;
+            ABGRToARGB(pixels, rgbData, width, height, offset, scanlength, y * canvasWidth + x, canvasWidth);
+        } else {
+            var abgrData = new Int32Array(contextInfo.context.getImageData(x, y, width, height).data.buffer);
+            ABGRToARGB(abgrData, rgbData, width, height, offset, scanlength);
+        }
     };
 
     Native["com/nokia/mid/ui/DirectUtils.makeMutable.(Ljavax/microedition/lcdui/Image;)V"] = function(addr, imageAddr) {
-        var imageData = getHandle(getHandle(imageAddr).imageData);
-        imageData.isMutable = 1;
+        ImageDataFields.set.isMutable(ImageFields.get.imageData(imageAddr), 1);
     };
 
     Native["com/nokia/mid/ui/DirectUtils.setPixels.(Ljavax/microedition/lcdui/Image;I)V"] = function(addr, imageAddr, argb) {
-        var image = getHandle(imageAddr);
-        var width = image.width;
-        var height = image.height;
+        var width = ImageFields.get.width(imageAddr);
+        var height = ImageFields.get.height(imageAddr);
 
         // NOTE: This function will only ever be called by the variants
         // of `DirectUtils.createImage`. We don't have to worry about
         // the dimensions or the context info because this `Image` and
         // this `ImageData` were just created; nothing can be out of
         // sync yet.
-        var ctx = NativeMap.get(image.imageData).context;
+        var ctx = NativeMap.get(ImageFields.get.imageData(imageAddr)).context;
 
         var ctxImageData = ctx.createImageData(width, height);
         var pixels = new Int32Array(ctxImageData.data.buffer);
@@ -369,24 +564,126 @@ var currentlyFocusedTextEditor;
         else
             face = "Arial,Helvetica,sans-serif";
 
-        self.baseline = size | 0;
-        self.height = (size * FONT_HEIGHT_MULTIPLIER) | 0;
-
-        var context = document.createElement("canvas").getContext("2d");
+        var context = getFontContext(style + size + "px " + face, size);
         setNative(addr, context);
-        context.canvas.width = 0;
-        context.canvas.height = 0;
-        context.font = style + size + "px " + face;
 
-        // This is a custom property that we set on the context so we can
-        // access it in natives.  Note the difference between this value,
-        // which represents the size of the font in pixels, and the Font.size
-        // field, which stores one of the three font size bit mask constants
-        // (SIZE_SMALL, SIZE_MEDIUM, SIZE_LARGE).
-        context.fontSize = size;
+        self.baseline = context.metrics.baseline;
+        self.height = context.metrics.height;
     };
 
+    /**
+     * Metrics of the font of |context|. Advances of Latin-1 characters are
+     * measured up front, those of other characters the first time they are
+     * needed, so that measuring text doesn't need the canvas.
+     */
+    function FontMetrics(context, size) {
+        this.baseline = size | 0;
+        this.height = (size * FONT_HEIGHT_MULTIPLIER) | 0;
+
+        this.latin1Advances = new Float64Array(256);
+        for (var i = 0; i < 256; i++) {
+            this.latin1Advances[i] = context.measureText(String.fromCharCode(i)).width;
+        }
+        this.advances = new Map();
+        this.context = context;
+    }
+
+    // Characters whose width depends on the characters around them, like
+    // combining marks, complex scripts, and the surrogates and joiners that
+    // make up emoji. Text with any of them is measured as a whole.
+    function isContextualCharCode(charCode) {
+        return (charCode >= 0x0300 && charCode < 0x0370) ||
+               (charCode >= 0x0590 && charCode < 0x1100) ||
+               (charCode >= 0x200b && charCode < 0x2010) ||
+               (charCode >= 0x20d0 && charCode < 0x2100) ||
+               (charCode >= 0xd800 && charCode < 0xe000) ||
+               (charCode >= 0xfe00 && charCode < 0xfe30);
+    }
+
+    /**
+     * Returns the advance of |charCode|, or -1 if it's contextual.
+     */
+    FontMetrics.prototype.getAdvance = function(charCode) {
+        if (charCode < 256) {
+            return this.latin1Advances[charCode];
+        }
+        if (isContextualCharCode(charCode)) {
+            return -1;
+        }
+        var advance = this.advances.get(charCode);
+        if (advance === undefined) {
+            advance = this.context.measureText(String.fromCharCode(charCode)).width;
+            this.advances.set(charCode, advance);
+        }
+        return advance;
+    };
+
+    // Font contexts by CSS font, Fonts that look the same share their context
+    // and metrics.
+    var fontContexts = new Map();
+
+    function getFontContext(font, size) {
+        var context = fontContexts.get(font);
+        if (!context) {
+            context = createCanvas().getContext("2d");
+            context.canvas.width = 0;
+            context.canvas.height = 0;
+            context.font = font;
+
+            // These are custom properties that we set on the context so we can
+            // access them in natives.  Note the difference between fontSize,
+            // which represents the size of the font in pixels, and the Font.size
+            // field, which stores one of the three font size bit mask constants
+            // (SIZE_SMALL, SIZE_MEDIUM, SIZE_LARGE).
+            context.fontSize = size;
+            context.metrics = new FontMetrics(context, size);
+
+            fontContexts.set(font, context);
+        }
+        return context;
+    }
+
     function calcStringWidth(fontContext, str) {
+        var metrics = fontContext.metrics;
+        var width = 0;
+        for (var i = 0; i < str.length; i++) {
+            var advance = metrics.getAdvance(str.charCodeAt(i));
+            if (advance < 0) {
+                return measureStringWidth(fontContext, str);
+            }
+            width += advance;
+        }
+        return width | 0;
+    }
+
+    function calcCharsWidth(fontContext, charsAddr, offset, len) {
+        if (charsAddr === J2ME.Constants.NULL) {
+            throw $.newNullPointerException("Chars array is null");
+        }
+        var metrics = fontContext.metrics;
+        var chars = J2ME.getArrayFromAddr(charsAddr);
+        if (offset < 0 || len < 0 || offset > chars.length - len) {
+            throw $.newArrayIndexOutOfBoundsException();
+        }
+        var width = 0;
+        for (var i = offset; i < offset + len; i++) {
+            var advance = metrics.getAdvance(chars[i]);
+            if (advance < 0) {
+                return measureStringWidth(fontContext, J2ME.fromJavaChars(charsAddr, offset, len));
+            }
+            width += advance;
+        }
+        return width | 0;
+    }
+
+    // Measures |str| with the canvas, for text that can't be measured with
+    // the advances of its characters.
+    function measureStringWidth(fontContext, str) {
+        // Emoji images are only loaded in the browser.
+        if (!inBrowser) {
+            return fontContext.measureText(str).width | 0;
+        }
+
         var emojiLen = 0;
 
         var len = fontContext.measureText(str.replace(emoji.regEx, function() {
@@ -422,12 +719,15 @@ var currentlyFocusedTextEditor;
 
     Native["javax/microedition/lcdui/Font.charWidth.(C)I"] = function(addr, char) {
         var fontContext = NativeMap.get(addr);
-        return fontContext.measureText(String.fromCharCode(char)).width | 0;
+        var advance = fontContext.metrics.getAdvance(char);
+        if (advance < 0) {
+            return fontContext.measureText(String.fromCharCode(char)).width | 0;
+        }
+        return advance | 0;
     };
 
     Native["javax/microedition/lcdui/Font.charsWidth.([CII)I"] = function(addr, charsAddr, offset, len) {
-        var fontContext = NativeMap.get(addr);
-        return calcStringWidth(fontContext, J2ME.fromJavaChars(charsAddr, offset, len));
+        return calcCharsWidth(NativeMap.get(addr), charsAddr, offset, len);
     };
 
     Native["javax/microedition/lcdui/Font.substringWidth.(Ljava/lang/String;II)I"] = function(addr, strAddr, offset, len) {
@@ -706,22 +1006,19 @@ var currentlyFocusedTextEditor;
     var TYPE_USHORT_565_RGB = 565;
 
     Native["com/nokia/mid/ui/DirectGraphicsImp.setARGBColor.(I)V"] = function(addr, argb) {
-        var self = getHandle(addr);
         var alpha = (argb >>> 24);
         var red = (argb >>> 16) & 0xFF;
         var green = (argb >>> 8) & 0xFF;
         var blue = argb & 0xFF;
-        NativeMap.get(self.graphics).setPixel(alpha, red, green, blue);
+        NativeMap.get(DirectGraphicsImpFields.get.graphics(addr)).setPixel(alpha, red, green, blue);
     };
 
     Native["com/nokia/mid/ui/DirectGraphicsImp.getAlphaComponent.()I"] = function(addr) {
-        var self = getHandle(addr);
-        return NativeMap.get(self.graphics).alpha;
+        return NativeMap.get(DirectGraphicsImpFields.get.graphics(addr)).alpha;
     };
 
     Native["com/nokia/mid/ui/DirectGraphicsImp.getPixels.([SIIIIIII)V"] =
     function(addr, pixelsAddr, offset, scanlength, x, y, width, height, format) {
-        var self = getHandle(addr);
         var pixels = J2ME.getArrayFromAddr(pixelsAddr);
 
         if (!pixels) {
@@ -737,14 +1034,13 @@ var currentlyFocusedTextEditor;
             throw $.newIllegalArgumentException("Format unsupported");
         }
 
-        var context = NativeMap.get(self.graphics).contextInfo.context;
+        var context = NativeMap.get(DirectGraphicsImpFields.get.graphics(addr)).contextInfo.context;
         var abgrData = new Int32Array(context.getImageData(x, y, width, height).data.buffer);
         converterFunc(abgrData, pixels, width, height, offset, scanlength);
     };
 
     Native["com/nokia/mid/ui/DirectGraphicsImp.drawPixels.([SZIIIIIIII)V"] =
     function(addr, pixelsAddr, transparency, offset, scanlength, x, y, width, height, manipulation, format) {
-        var self = getHandle(addr);
         var pixels = J2ME.getArrayFromAddr(pixelsAddr);
 
         if (!pixels) {
@@ -758,27 +1054,17 @@ var currentlyFocusedTextEditor;
             throw $.newIllegalArgumentException("Format unsupported");
         }
 
-        tempContext.canvas.width = width;
-        tempContext.canvas.height = height;
-        var imageData = tempContext.createImageData(width, height);
-        var abgrData = new Int32Array(imageData.data.buffer);
-
-        converterFunc(pixels, abgrData, width, height, offset, scanlength);
-
-        tempContext.putImageData(imageData, 0, 0);
-
-        var c = NativeMap.get(self.graphics).getGraphicsContext();
-
-        c.drawImage(tempContext.canvas, x, y);
-        tempContext.canvas.width = 0;
-        tempContext.canvas.height = 0;
+        var scratch = getScratchImageData(width, height);
+        converterFunc(pixels, scratch.abgrData, width, height, offset, scanlength, scratch.stride);
+        drawScratchImageData(NativeMap.get(DirectGraphicsImpFields.get.graphics(addr)), scratch, x, y, width, height);
     };
 
     Native["javax/microedition/lcdui/Graphics.render.(Ljavax/microedition/lcdui/Image;III)Z"] =
     function(addr, imageAddr, x, y, anchor) {
-        var image = getHandle(imageAddr);
-        renderRegion(NativeMap.get(addr).getGraphicsContext(), NativeMap.get(image.imageData).context.canvas,
-                     0, 0, image.width, image.height, TRANS_NONE, x, y, anchor);
+        renderRegion(NativeMap.get(addr).getGraphicsContext(),
+                     NativeMap.get(ImageFields.get.imageData(imageAddr)).context.canvas,
+                     0, 0, ImageFields.get.width(imageAddr), ImageFields.get.height(imageAddr),
+                     TRANS_NONE, x, y, anchor);
         return 1;
     };
 
@@ -788,8 +1074,8 @@ var currentlyFocusedTextEditor;
             throw $.newNullPointerException("src image is null");
         }
 
-        var src = getHandle(srcAddr);
-        renderRegion(NativeMap.get(addr).getGraphicsContext(), NativeMap.get(src.imageData).context.canvas,
+        renderRegion(NativeMap.get(addr).getGraphicsContext(),
+                     NativeMap.get(ImageFields.get.imageData(srcAddr)).context.canvas,
                      x_src, y_src, width, height, transform, x_dest, y_dest, anchor);
     };
 
@@ -799,10 +1085,10 @@ var currentlyFocusedTextEditor;
             throw $.newNullPointerException("image is null");
         }
 
-        var image = getHandle(imageAddr);
-        var imageData = getHandle(image.imageData);
-        renderRegion(NativeMap.get(addr).getGraphicsContext(), NativeMap.get(image.imageData).context.canvas,
-                     0, 0, imageData.width, imageData.height, TRANS_NONE, x, y, anchor);
+        var imageDataAddr = ImageFields.get.imageData(imageAddr);
+        renderRegion(NativeMap.get(addr).getGraphicsContext(), NativeMap.get(imageDataAddr).context.canvas,
+                     0, 0, ImageDataFields.get.width(imageDataAddr), ImageDataFields.get.height(imageDataAddr),
+                     TRANS_NONE, x, y, anchor);
     };
 
     function GraphicsInfo(contextInfo) {
@@ -912,15 +1198,45 @@ var currentlyFocusedTextEditor;
             this.contextInfo.applyGraphics(this);
         }
 
+        // The context is only asked for to draw to it.
+        this.contextInfo.invalidatePixels();
+
         return this.contextInfo.context;
     }
 
     function ContextInfo(ctx) {
         this.currentlyAppliedGraphicsInfo = null;
         this.context = ctx;
+
+        // Pixels of the whole canvas, read back when it's read twice without
+        // being drawn to in between, and valid until it's drawn to again.
+        this.pixels = null;
+        this.readSinceDrawn = false;
+
         ctx.save();
     }
 
+    ContextInfo.prototype.getCachedPixels = function() {
+        if (useSoftwareGraphics) {
+            // Software canvases can be read directly.
+            return this.context.canvas.pixels;
+        }
+        if (!this.pixels) {
+            if (!this.readSinceDrawn) {
+                this.readSinceDrawn = true;
+                return null;
+            }
+            var canvas = this.context.canvas;
+            this.pixels = new Int32Array(this.context.getImageData(0, 0, canvas.width, canvas.height).data.buffer);
+        }
+        return this.pixels;
+    };
+
+    ContextInfo.prototype.invalidatePixels = function() {
+        this.pixels = null;
+        this.readSinceDrawn = false;
+    };
+
     ContextInfo.prototype.applyGraphics = function(graphicsInfo) {
         this.context.restore();
         this.context.save();
@@ -948,9 +1264,8 @@ var currentlyFocusedTextEditor;
     Native["javax/microedition/lcdui/Graphics.initImage0.(Ljavax/microedition/lcdui/Image;)V"] =
     function(addr, imgAddr) {
         var self = getHandle(addr);
-        var img = getHandle(imgAddr);
         self.displayId = -1;
-        setNative(addr, new GraphicsInfo(NativeMap.get(img.imageData)));
+        setNative(addr, new GraphicsInfo(NativeMap.get(ImageFields.get.imageData(imgAddr))));
         self.creator = J2ME.Constants.NULL;
     };
 
@@ -969,7 +1284,7 @@ var currentlyFocusedTextEditor;
         var fontSize = fontContext.fontSize;
 
         var finalText;
-        if (!emoji.regEx.test(str)) {
+        if (!inBrowser || !emoji.regEx.test(str)) {
             // No emojis are present.
             finalText = str;
         } else {
@@ -1279,25 +1594,30 @@ var currentlyFocusedTextEditor;
 
     Native["javax/microedition/lcdui/Graphics.drawRGB.([IIIIIIIZ)V"] =
     function(addr, rgbDataAddr, offset, scanlength, x, y, width, height, processAlpha) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
         var rgbData = J2ME.getArrayFromAddr(rgbDataAddr);
-        tempContext.canvas.height = height;
-        tempContext.canvas.width = width;
-        var imageData = tempContext.createImageData(width, height);
-        var abgrData = new Int32Array(imageData.data.buffer);
+        var info = NativeMap.get(addr);
+        var scratch = getScratchImageData(width, height);
 
         if (1 === processAlpha) {
-            ARGBToABGR(rgbData, abgrData, width, height, offset, scanlength);
+            ARGBToABGR(rgbData, scratch.abgrData, width, height, offset, scanlength, scratch.stride);
+            drawScratchImageData(info, scratch, x, y, width, height);
         } else {
-            ARGBTo1BGR(rgbData, abgrData, width, height, offset, scanlength);
+            ARGBTo1BGR(rgbData, scratch.abgrData, width, height, offset, scanlength, scratch.stride);
+
+            // Opaque pixels don't need compositing, so unless they are clipped
+            // they can be put on the destination canvas directly.
+            if (isUnclipped(info, x, y, width, height)) {
+                info.contextInfo.invalidatePixels();
+                info.contextInfo.context.putImageData(scratch.imageData, x + info.transX, y + info.transY,
+                                                      0, 0, width, height);
+            } else {
+                drawScratchImageData(info, scratch, x, y, width, height);
+            }
         }
-
-        tempContext.putImageData(imageData, 0, 0);
-
-        var c = NativeMap.get(addr).getGraphicsContext();
-
-        c.drawImage(tempContext.canvas, x, y);
-        tempContext.canvas.width = 0;
-        tempContext.canvas.height = 0;
     };
 
     var textEditorId = 0,
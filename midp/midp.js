@@ -621,13 +621,6 @@ var MIDP = (function() {
     return arrAddr;
   };
 
-  Native["javax/microedition/lcdui/SuiteImageCacheImpl.loadAndCreateImmutableImageDataFromCache0.(Ljavax/microedition/lcdui/ImageData;ILjava/lang/String;)Z"] =
-  function(addr, imageDataAddr, suiteId, fileNameAddr) {
-    // We're not implementing the cache because looks like it isn't used much.
-    // In a MIDlet I've been testing for a few minutes, there's been only one hit.
-    return 0;
-  };
-
   var interIsolateMutexes = [];
   var lastInterIsolateMutexID = -1;
 
@@ -783,46 +776,27 @@ var MIDP = (function() {
   var nativeEventQueues = {};
   var waitingNativeEventQueue = {};
 
-  function copyEvent(e, obj) {
-    obj.type = e.type || 0;
-    obj.intParam1 = e.intParam1 || 0;
-    obj.intParam2 = e.intParam2 || 0;
-    obj.intParam3 = e.intParam3 || 0;
-    obj.intParam4 = e.intParam4 || 0;
-    obj.intParam5 = e.intParam5 || 0;
-    obj.intParam6 = e.intParam6 || 0;
-    obj.intParam7 = e.intParam7 || 0;
-    obj.intParam8 = e.intParam8 || 0;
-    obj.intParam9 = e.intParam9 || 0;
-    obj.intParam10 = e.intParam10 || 0;
-    obj.intParam11 = e.intParam11 || 0;
-    obj.intParam12 = e.intParam12 || 0;
-    obj.intParam13 = e.intParam13 || 0;
-    obj.intParam14 = e.intParam14 || 0;
-    obj.intParam15 = e.intParam15 || 0;
-    obj.intParam16 = e.intParam16 || 0;
-    obj.floatParam1 = e.floatParam1 || 0.0;
-    obj.stringParam1 = J2ME.newString(e.stringParam1);
-    obj.stringParam2 = J2ME.newString(e.stringParam2);
-    obj.stringParam3 = J2ME.newString(e.stringParam3);
-    obj.stringParam4 = J2ME.newString(e.stringParam4);
-    obj.stringParam5 = J2ME.newString(e.stringParam5);
-    obj.stringParam6 = J2ME.newString(e.stringParam6);
-  }
-
-  function sendNativeEvent(e, isolateId) {
+  /**
+   * Hands the event that was just queued to the isolate if it's waiting for one.
+   */
+  function deliverNativeEvent(isolateId) {
     var elem = waitingNativeEventQueue[isolateId];
     if (!elem) {
-      nativeEventQueues[isolateId].push(e);
       return;
     }
 
-    copyEvent(e, elem.nativeEvent);
-    elem.resolve(nativeEventQueues[isolateId].length);
+    var nativeEventQueue = nativeEventQueues[isolateId];
+    nativeEventQueue.shift(elem.nativeEventAddr);
+    elem.resolve(nativeEventQueue.length);
 
     delete waitingNativeEventQueue[isolateId];
   }
 
+  function sendNativeEvent(e, isolateId) {
+    nativeEventQueues[isolateId].pushObject(e);
+    deliverNativeEvent(isolateId);
+  }
+
   function sendVirtualKeyboardEvent() {
     FG.sendNativeEventToForeground({
       type: VIRTUAL_KEYBOARD_EVENT,
@@ -946,62 +920,35 @@ var MIDP = (function() {
   };
 
   Native["com/sun/midp/events/EventQueue.resetNativeEventQueue.()V"] = function(addr) {
-    nativeEventQueues[$.ctx.runtime.isolateId] = [];
+    nativeEventQueues[$.ctx.runtime.isolateId] = new NativeEventQueue();
   };
 
   Native["com/sun/midp/events/EventQueue.sendNativeEventToIsolate.(Lcom/sun/midp/events/NativeEvent;I)V"] =
     function(addr, eventAddr, isolateId) {
-      var e = getHandle(eventAddr);
-
-      var obj = {
-        type: e.type,
-        intParam1: e.intParam1,
-        intParam2: e.intParam2,
-        intParam3: e.intParam3,
-        intParam4: e.intParam4,
-        intParam5: e.intParam5,
-        intParam6: e.intParam6,
-        intParam7: e.intParam7,
-        intParam8: e.intParam8,
-        intParam9: e.intParam9,
-        intParam10: e.intParam10,
-        intParam11: e.intParam11,
-        intParam12: e.intParam12,
-        intParam13: e.intParam13,
-        intParam14: e.intParam14,
-        intParam15: e.intParam15,
-        intParam16: e.intParam16,
-        floatParam1: e.floatParam1,
-        stringParam1: J2ME.fromStringAddr(e.stringParam1),
-        stringParam2: J2ME.fromStringAddr(e.stringParam2),
-        stringParam3: J2ME.fromStringAddr(e.stringParam3),
-        stringParam4: J2ME.fromStringAddr(e.stringParam4),
-        stringParam5: J2ME.fromStringAddr(e.stringParam5),
-        stringParam6: J2ME.fromStringAddr(e.stringParam6),
-      };
-
-      sendNativeEvent(obj, isolateId);
+      nativeEventQueues[isolateId].pushEvent(eventAddr);
+      deliverNativeEvent(isolateId);
     };
 
   Native["com/sun/midp/events/NativeEventMonitor.waitForNativeEvent.(Lcom/sun/midp/events/NativeEvent;)I"] =
     function(addr, eventAddr) {
-      var event = getHandle(eventAddr);
       var isolateId = $.ctx.runtime.isolateId;
       var nativeEventQueue = nativeEventQueues[isolateId];
 
       if (nativeEventQueue.length !== 0) {
-        copyEvent(nativeEventQueue.shift(), event);
+        nativeEventQueue.shift(eventAddr);
         return nativeEventQueue.length;
       }
 
       asyncImpl("I", new Promise(function(resolve, reject) {
         waitingNativeEventQueue[isolateId] = {
           resolve: resolve,
-          nativeEvent: event,
+          nativeEventAddr: eventAddr,
         };
       }));
     };
 
+  // The native event monitor reads the events that are still pending after
+  // |waitForNativeEvent| in a batch, see EventQueue.jpp.
   Native["com/sun/midp/events/NativeEventMonitor.readNativeEvent.(Lcom/sun/midp/events/NativeEvent;)Z"] =
     function(addr, eventAddr) {
       var isolateId = $.ctx.runtime.isolateId;
@@ -1009,8 +956,7 @@ var MIDP = (function() {
       if (!nativeEventQueue.length) {
         return 0;
       }
-      var event = getHandle(eventAddr);
-      copyEvent(nativeEventQueue.shift(), event);
+      nativeEventQueue.shift(eventAddr);
       return 1;
     };
 
@@ -0,0 +1,251 @@
+/* -*- Mode: JavaScript; tab-width: 2; indent-tabs-mode: nil; c-basic-offset: 2 -*- */
+/* vim: set shiftwidth=2 tabstop=2 autoindent cindent expandtab: */
+
+'use strict';
+
+var NativeEventQueue = (function() {
+  // The events that are coalesced, see |midp/midp.js| for the other events.
+  var PEN_EVENT = 2;
+  var DRAGGED = 3;
+  var GESTURE_EVENT = 71;
+  var GESTURE_DRAG = 0x4;
+
+  var EventFields = J2ME.getFieldAccessors("com/sun/midp/events/Event");
+  var NativeEventFields = J2ME.getFieldAccessors("com/sun/midp/events/NativeEvent");
+
+  var INT_PARAMS = 16;
+  var STRING_PARAMS = 6;
+
+  // Layout of an event in the int slots of a NativeEventQueue: the type, the
+  // int params and the float param, which is stored as float bits.
+  var EVENT_TYPE_SLOT = 0;
+  var INT_PARAM_SLOT = 1;
+  var FLOAT_PARAM_SLOT = INT_PARAM_SLOT + INT_PARAMS;
+  var EVENT_SLOTS = FLOAT_PARAM_SLOT + 1;
+
+  var INT_PARAM_NAMES = [];
+  for (var i = 1; i <= INT_PARAMS; i++) {
+    INT_PARAM_NAMES.push("intParam" + i);
+  }
+  var STRING_PARAM_NAMES = [];
+  for (var i = 1; i <= STRING_PARAMS; i++) {
+    STRING_PARAM_NAMES.push("stringParam" + i);
+  }
+
+  /**
+   * Ring buffer of the native events that wait to be read by an isolate. Events
+   * are stored in fixed size int slots, their string params in a side table, so
+   * queuing and reading an event doesn't allocate. The queue grows when it's
+   * full, events are never dropped.
+   */
+  function NativeEventQueue() {
+    this.capacity = 32;
+    this.ints = new Int32Array(this.capacity * EVENT_SLOTS);
+    this.floats = new Float32Array(this.ints.buffer);
+    this.strings = new Array(this.capacity * STRING_PARAMS);
+    this.head = 0;
+    this.length = 0;
+  }
+
+  NativeEventQueue.prototype.grow = function() {
+    var ints = new Int32Array(this.capacity * 2 * EVENT_SLOTS);
+    var strings = new Array(this.capacity * 2 * STRING_PARAMS);
+    // Unwrap the events so that the oldest one is first.
+    var wrapped = this.capacity - this.head;
+    ints.set(this.ints.subarray(this.head * EVENT_SLOTS));
+    ints.set(this.ints.subarray(0, this.head * EVENT_SLOTS), wrapped * EVENT_SLOTS);
+    for (var i = 0; i < this.capacity * STRING_PARAMS; i++) {
+      strings[i] = this.strings[(this.head * STRING_PARAMS + i) % (this.capacity * STRING_PARAMS)];
+    }
+    this.capacity *= 2;
+    this.ints = ints;
+    this.floats = new Float32Array(ints.buffer);
+    this.strings = strings;
+    this.head = 0;
+  };
+
+  /**
+   * Returns the slot index of the |i|th event of the queue.
+   */
+  NativeEventQueue.prototype.indexOf = function(i) {
+    return (this.head + i) % this.capacity;
+  };
+
+  /**
+   * Returns the slot index where the next event should be written, it's only
+   * queued by |commit|.
+   */
+  NativeEventQueue.prototype.reserve = function() {
+    if (this.length === this.capacity) {
+      this.grow();
+    }
+    return this.indexOf(this.length);
+  };
+
+  NativeEventQueue.prototype.commit = function(index) {
+    if (!this.coalesce(index)) {
+      this.length++;
+    }
+  };
+
+  NativeEventQueue.prototype.pushObject = function(e) {
+    var index = this.reserve();
+    var base = index * EVENT_SLOTS;
+    this.ints[base + EVENT_TYPE_SLOT] = e.type || 0;
+    for (var i = 0; i < INT_PARAMS; i++) {
+      this.ints[base + INT_PARAM_SLOT + i] = e[INT_PARAM_NAMES[i]] || 0;
+    }
+    this.floats[base + FLOAT_PARAM_SLOT] = e.floatParam1 || 0.0;
+    for (var i = 0; i < STRING_PARAMS; i++) {
+      var str = e[STRING_PARAM_NAMES[i]];
+      this.strings[index * STRING_PARAMS + i] = (str === undefined) ? null : str;
+    }
+    this.commit(index);
+  };
+
+  NativeEventQueue.prototype.pushEvent = function(eventAddr) {
+    var get = NativeEventFields.get;
+    var index = this.reserve();
+    var base = index * EVENT_SLOTS;
+    var ints = this.ints;
+    ints[base + EVENT_TYPE_SLOT] = EventFields.get.type(eventAddr);
+    ints[base + INT_PARAM_SLOT] = get.intParam1(eventAddr);
+    ints[base + INT_PARAM_SLOT + 1] = get.intParam2(eventAddr);
+    ints[base + INT_PARAM_SLOT + 2] = get.intParam3(eventAddr);
+    ints[base + INT_PARAM_SLOT + 3] = get.intParam4(eventAddr);
+    ints[base + INT_PARAM_SLOT + 4] = get.intParam5(eventAddr);
+    ints[base + INT_PARAM_SLOT + 5] = get.intParam6(eventAddr);
+    ints[base + INT_PARAM_SLOT + 6] = get.intParam7(eventAddr);
+    ints[base + INT_PARAM_SLOT + 7] = get.intParam8(eventAddr);
+    ints[base + INT_PARAM_SLOT + 8] = get.intParam9(eventAddr);
+    ints[base + INT_PARAM_SLOT + 9] = get.intParam10(eventAddr);
+    ints[base + INT_PARAM_SLOT + 10] = get.intParam11(eventAddr);
+    ints[base + INT_PARAM_SLOT + 11] = get.intParam12(eventAddr);
+    ints[base + INT_PARAM_SLOT + 12] = get.intParam13(eventAddr);
+    ints[base + INT_PARAM_SLOT + 13] = get.intParam14(eventAddr);
+    ints[base + INT_PARAM_SLOT + 14] = get.intParam15(eventAddr);
+    ints[base + INT_PARAM_SLOT + 15] = get.intParam16(eventAddr);
+    this.floats[base + FLOAT_PARAM_SLOT] = get.floatParam1(eventAddr);
+    var strings = this.strings;
+    var stringBase = index * STRING_PARAMS;
+    strings[stringBase] = J2ME.fromStringAddr(get.stringParam1(eventAddr));
+    strings[stringBase + 1] = J2ME.fromStringAddr(get.stringParam2(eventAddr));
+    strings[stringBase + 2] = J2ME.fromStringAddr(get.stringParam3(eventAddr));
+    strings[stringBase + 3] = J2ME.fromStringAddr(get.stringParam4(eventAddr));
+    strings[stringBase + 4] = J2ME.fromStringAddr(get.stringParam5(eventAddr));
+    strings[stringBase + 5] = J2ME.fromStringAddr(get.stringParam6(eventAddr));
+    this.commit(index);
+  };
+
+  /**
+   * Copies the oldest event of the queue into |eventAddr| and removes it.
+   */
+  NativeEventQueue.prototype.shift = function(eventAddr) {
+    var set = NativeEventFields.set;
+    var base = this.head * EVENT_SLOTS;
+    var ints = this.ints;
+    EventFields.set.type(eventAddr, ints[base + EVENT_TYPE_SLOT]);
+    set.intParam1(eventAddr, ints[base + INT_PARAM_SLOT]);
+    set.intParam2(eventAddr, ints[base + INT_PARAM_SLOT + 1]);
+    set.intParam3(eventAddr, ints[base + INT_PARAM_SLOT + 2]);
+    set.intParam4(eventAddr, ints[base + INT_PARAM_SLOT + 3]);
+    set.intParam5(eventAddr, ints[base + INT_PARAM_SLOT + 4]);
+    set.intParam6(eventAddr, ints[base + INT_PARAM_SLOT + 5]);
+    set.intParam7(eventAddr, ints[base + INT_PARAM_SLOT + 6]);
+    set.intParam8(eventAddr, ints[base + INT_PARAM_SLOT + 7]);
+    set.intParam9(eventAddr, ints[base + INT_PARAM_SLOT + 8]);
+    set.intParam10(eventAddr, ints[base + INT_PARAM_SLOT + 9]);
+    set.intParam11(eventAddr, ints[base + INT_PARAM_SLOT + 10]);
+    set.intParam12(eventAddr, ints[base + INT_PARAM_SLOT + 11]);
+    set.intParam13(eventAddr, ints[base + INT_PARAM_SLOT + 12]);
+    set.intParam14(eventAddr, ints[base + INT_PARAM_SLOT + 13]);
+    set.intParam15(eventAddr, ints[base + INT_PARAM_SLOT + 14]);
+    set.intParam16(eventAddr, ints[base + INT_PARAM_SLOT + 15]);
+    set.floatParam1(eventAddr, this.floats[base + FLOAT_PARAM_SLOT]);
+    var strings = this.strings;
+    var stringBase = this.head * STRING_PARAMS;
+    set.stringParam1(eventAddr, J2ME.newString(strings[stringBase]));
+    set.stringParam2(eventAddr, J2ME.newString(strings[stringBase + 1]));
+    set.stringParam3(eventAddr, J2ME.newString(strings[stringBase + 2]));
+    set.stringParam4(eventAddr, J2ME.newString(strings[stringBase + 3]));
+    set.stringParam5(eventAddr, J2ME.newString(strings[stringBase + 4]));
+    set.stringParam6(eventAddr, J2ME.newString(strings[stringBase + 5]));
+    // Let the strings be collected.
+    for (var i = 0; i < STRING_PARAMS; i++) {
+      strings[stringBase + i] = null;
+    }
+    this.head = this.indexOf(1);
+    this.length--;
+  };
+
+  /**
+   * Returns how the event at slot index |index| can be merged into an earlier
+   * event of the same kind, or null if it can't. Only events that supersede
+   * each other, like drags, are merged.
+   */
+  function getCoalescingRule(ints, index) {
+    var base = index * EVENT_SLOTS;
+    switch (ints[base + EVENT_TYPE_SLOT]) {
+      case PEN_EVENT:
+        return ints[base + INT_PARAM_SLOT] === DRAGGED ? replaceEvent : null;
+      case GESTURE_EVENT:
+        return ints[base + INT_PARAM_SLOT] === GESTURE_DRAG ? mergeGestureDrag : null;
+    }
+    return null;
+  }
+
+  function replaceEvent(queue, from, to) {
+    queue.ints.copyWithin(to * EVENT_SLOTS, from * EVENT_SLOTS, (from + 1) * EVENT_SLOTS);
+    for (var i = 0; i < STRING_PARAMS; i++) {
+      queue.strings[to * STRING_PARAMS + i] = queue.strings[from * STRING_PARAMS + i];
+      queue.strings[from * STRING_PARAMS + i] = null;
+    }
+  }
+
+  // The distance of a drag gesture is relative to the previous drag, so the
+  // distances of merged drags add up.
+  function mergeGestureDrag(queue, from, to) {
+    var ints = queue.ints;
+    var dx = ints[to * EVENT_SLOTS + INT_PARAM_SLOT + 1];
+    var dy = ints[to * EVENT_SLOTS + INT_PARAM_SLOT + 2];
+    replaceEvent(queue, from, to);
+    ints[to * EVENT_SLOTS + INT_PARAM_SLOT + 1] += dx;
+    ints[to * EVENT_SLOTS + INT_PARAM_SLOT + 2] += dy;
+  }
+
+  function isCoalescingEnabled() {
+    return !/no|0|false/.test(config.coalesceNativeEvents);
+  }
+
+  /**
+   * Merges the event at slot index |index|, which follows the queued events,
+   * into a queued event that it supersedes, i.e. one with the same type, kind
+   * and display. Only the trailing run of events that can be merged is
+   * searched, so the order relative to other events is preserved.
+   */
+  NativeEventQueue.prototype.coalesce = function(index) {
+    var ints = this.ints;
+    var rule = getCoalescingRule(ints, index);
+    if (!rule || !isCoalescingEnabled()) {
+      return false;
+    }
+    var base = index * EVENT_SLOTS;
+    for (var i = this.length - 1; i >= 0; i--) {
+      var queuedIndex = this.indexOf(i);
+      if (!getCoalescingRule(ints, queuedIndex)) {
+        return false;
+      }
+      var queuedBase = queuedIndex * EVENT_SLOTS;
+      if (ints[queuedBase + EVENT_TYPE_SLOT] === ints[base + EVENT_TYPE_SLOT] &&
+          ints[queuedBase + INT_PARAM_SLOT] === ints[base + INT_PARAM_SLOT] &&
+          ints[queuedBase + INT_PARAM_SLOT + 3] === ints[base + INT_PARAM_SLOT + 3]) {
+        rule(this, index, queuedIndex);
+        J2ME.runtimeCounter && J2ME.runtimeCounter.count("coalesceNativeEvent " + ints[base + EVENT_TYPE_SLOT]);
+        return true;
+      }
+    }
+    return false;
+  };
+
+  return NativeEventQueue;
+})();
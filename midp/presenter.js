@@ -0,0 +1,102 @@
+/* -*- Mode: Java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/* vim: set shiftwidth=4 tabstop=4 autoindent cindent expandtab: */
+
+'use strict';
+
+/**
+ * Accumulates the refreshes of the screen into a damage rectangle that is
+ * painted once per animation frame.
+ *
+ * |paint(x, y, width, height)| paints the damage rectangle to the screen,
+ * |requestFrame(callback)| calls back before the next frame, like
+ * window.requestAnimationFrame, and |resume(waiter)| wakes up a waiter passed
+ * to |waitForFrame|.
+ *
+ * Threads don't have to wait for the frame their refresh is presented in,
+ * unless they refresh more than |maxRefreshesAhead| times since the last
+ * frame was presented. Note that this counts refreshes, not frames: a thread
+ * can't get more than one frame ahead, since the refreshes that happen before
+ * a frame are all merged into it.
+ */
+var FramePresenter = (function() {
+    function FramePresenter(paint, requestFrame, resume) {
+        this.paint = paint;
+        this.requestFrame = requestFrame;
+        this.resume = resume;
+        this.maxRefreshesAhead = 2;
+        // If set, "Presented Frames", "Dropped Frames" and "Refreshes Waiting
+        // For Frame" are counted here, and the time from the first refresh of
+        // a frame until it is presented is recorded in the histogram.
+        this.counter = null;
+        this.histogram = null;
+
+        this.x1 = 0;
+        this.y1 = 0;
+        this.x2 = 0;
+        this.y2 = 0;
+        this.pendingRefreshCount = 0;
+        // When the oldest refresh in the damage rectangle happened.
+        this.firstPendingRefreshTime = 0;
+        this.isFrameRequested = false;
+        this.waiters = [];
+        this.presentFrameCallback = this.presentFrame.bind(this);
+    }
+
+    FramePresenter.prototype = {
+        /**
+         * Adds the rectangle from |x1|, |y1| to |x2|, |y2| to the damage
+         * rectangle. Returns whether the refreshing thread has to wait for the
+         * next frame, see |waitForFrame|.
+         */
+        refresh: function(x1, y1, x2, y2) {
+            if (this.pendingRefreshCount++ === 0) {
+                this.x1 = x1;
+                this.y1 = y1;
+                this.x2 = x2;
+                this.y2 = y2;
+                this.firstPendingRefreshTime = performance.now();
+            } else {
+                this.x1 = Math.min(this.x1, x1);
+                this.y1 = Math.min(this.y1, y1);
+                this.x2 = Math.max(this.x2, x2);
+                this.y2 = Math.max(this.y2, y2);
+            }
+
+            if (!this.isFrameRequested) {
+                this.isFrameRequested = true;
+                this.requestFrame(this.presentFrameCallback);
+            }
+
+            return this.pendingRefreshCount > this.maxRefreshesAhead;
+        },
+
+        /**
+         * Resumes |waiter| once the next frame is presented.
+         */
+        waitForFrame: function(waiter) {
+            this.counter && this.counter.count("Refreshes Waiting For Frame");
+            this.waiters.push(waiter);
+        },
+
+        presentFrame: function() {
+            this.isFrameRequested = false;
+
+            this.paint(this.x1, this.y1, this.x2 - this.x1, this.y2 - this.y1);
+            if (this.counter) {
+                this.counter.count("Presented Frames");
+                // Refreshes that were merged into this frame were never shown on their own.
+                this.counter.count("Dropped Frames", this.pendingRefreshCount - 1);
+            }
+            this.histogram && this.histogram.record(performance.now() - this.firstPendingRefreshTime);
+            this.pendingRefreshCount = 0;
+
+            var waiters = this.waiters;
+            this.waiters = [];
+            for (var i = 0; i < waiters.length; i++) {
+                this.resume(waiters[i]);
+            }
+        },
+    };
+
+    return FramePresenter;
+})();
@@ -0,0 +1,735 @@
+/* -*- Mode: Java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/* vim: set shiftwidth=4 tabstop=4 autoindent cindent expandtab: */
+
+'use strict';
+
+/**
+ * A canvas that is rasterized in JS rather than by the browser, for the
+ * Graphics natives to draw to when there is no browser, or when the same
+ * pixels are needed on every machine, like in rendering tests.
+ *
+ * Its context implements the part of CanvasRenderingContext2D that
+ * midp/gfx.js uses, with these differences:
+ *  - Nothing is antialiased, pixels are covered if their center is.
+ *  - Lines are one pixel wide and include both their end points, like the
+ *    lines of Graphics.
+ *  - Clips are rectangles, the bounds of the clip path.
+ *  - Text is drawn with a built-in bitmap font, scaled to the font size.
+ *
+ * Pixels are stored like in an ImageData, i.e. as RGBA bytes, read as ABGR
+ * ints on little endian machines.
+ */
+var SoftwareCanvas = (function() {
+    // Columns of the 5x7 glyphs of the printable ASCII characters, the least
+    // significant bit at the top.
+    var GLYPHS = [
+        "000000000000005f00000007000700147f147f14242a7f2a12231308646236495522500005030000", //  !"#$%&'
+        "001c2241000041221c0014083e081408083e08080050300000080808080800606000002010080402", // ()*+,-./
+        "3e5149453e00427f400042615149462141454b311814127f1027454545393c4a4949300171090503", // 01234567
+        "3649494936064949291e003636000000563600000814224100141414141400412214080201510906", // 89:;<=>?
+        "324979413e7e1111117e7f494949363e414141227f4141221c7f494949417f090909013e4149497a", // @ABCDEFG
+        "7f0808087f00417f41002040413f017f081422417f404040407f020c027f7f0408107f3e4141413e", // HIJKLMNO
+        "7f090909063e4151215e7f09192946464949493101017f01013f4040403f1f2040201f3f4038403f", // PQRSTUVW
+        "631408146307087008076151494543007f41410002040810200041417f0004020102044040404040", // XYZ[\]^_
+        "000102040020545454787f484444383844444420384444487f3854545418087e0901020c5252523e", // `abcdefg
+        "7f0804047800447d40002040443d007f1028440000417f40007c041804787c080404783844444438", // hijklmno
+        "7c14141408081414187c7c080404084854545420043f4440203c4040207c1c2040201c3c4030403c", // pqrstuvw
+        "44281028440c5050503c4464544c44000836410000007f000000413608001008081008", // xyz{|}~
+    ].join("");
+    var FIRST_GLYPH = 0x20;
+    var LAST_GLYPH = 0x7e;
+    // Drawn for characters the font doesn't have.
+    var MISSING_GLYPH = "7f4141417f";
+    var GLYPH_WIDTH = 5;
+    var GLYPH_HEIGHT = 7;
+    // Glyphs are one column apart.
+    var GLYPH_ADVANCE = GLYPH_WIDTH + 1;
+
+    var glyphColumns = new Uint8Array((LAST_GLYPH - FIRST_GLYPH + 2) * GLYPH_WIDTH);
+    (function() {
+        var hex = GLYPHS + MISSING_GLYPH;
+        for (var i = 0; i < glyphColumns.length; i++) {
+            glyphColumns[i] = parseInt(hex.substr(i * 2, 2), 16);
+        }
+    })();
+
+    function getGlyphOffset(charCode) {
+        if (charCode < FIRST_GLYPH || charCode > LAST_GLYPH) {
+            charCode = LAST_GLYPH + 1;
+        }
+        return (charCode - FIRST_GLYPH) * GLYPH_WIDTH;
+    }
+
+    // Scale of the glyphs for a font of |fontSize| pixels.
+    function getGlyphScale(fontSize) {
+        return Math.max(1, Math.round(fontSize / 9));
+    }
+
+    /**
+     * Parses the rgb() and rgba() colors that gfx.js uses, and #rrggbb, into
+     * an ABGR int.
+     */
+    function parseColor(css) {
+        if (css[0] === "#") {
+            var rgb = parseInt(css.substring(1, 7), 16);
+            return 0xff000000 | ((rgb & 0xff) << 16) | (rgb & 0xff00) | ((rgb >> 16) & 0xff);
+        }
+        var components = css.substring(css.indexOf("(") + 1, css.indexOf(")")).split(",");
+        var alpha = components.length > 3 ? Math.round(parseFloat(components[3]) * 255) : 0xff;
+        return (alpha << 24) | (parseInt(components[2]) << 16) | (parseInt(components[1]) << 8) | parseInt(components[0]);
+    }
+
+    /**
+     * Composites |src| over the pixel at |i| of |dst|.
+     */
+    function blend(dst, i, src) {
+        var sa = src >>> 24;
+        if (sa === 0xff) {
+            dst[i] = src;
+            return;
+        }
+        if (sa === 0) {
+            return;
+        }
+        var d = dst[i];
+        // Alpha of what's left of the destination.
+        var da = ((d >>> 24) * (0xff - sa) + 0x7f) / 0xff | 0;
+        var a = sa + da;
+        var r = ((src & 0xff) * sa + (d & 0xff) * da) / a | 0;
+        var g = (((src >> 8) & 0xff) * sa + ((d >> 8) & 0xff) * da) / a | 0;
+        var b = (((src >> 16) & 0xff) * sa + ((d >> 16) & 0xff) * da) / a | 0;
+        dst[i] = (a << 24) | (b << 16) | (g << 8) | r;
+    }
+
+    function SoftwareCanvas(width, height) {
+        this.pixels = null;
+        this.context = null;
+        this.resize(width | 0, height | 0);
+    }
+
+    SoftwareCanvas.prototype = {
+        get width() {
+            return this._width;
+        },
+
+        set width(width) {
+            this.resize(width | 0, this._height);
+        },
+
+        get height() {
+            return this._height;
+        },
+
+        set height(height) {
+            this.resize(this._width, height | 0);
+        },
+
+        // Like resizing a canvas element, this clears the pixels and resets
+        // the context.
+        resize: function(width, height) {
+            this._width = width;
+            this._height = height;
+            this.pixels = new Int32Array(width * height);
+            if (this.context) {
+                this.context.resetState();
+            }
+        },
+
+        getContext: function(contextId) {
+            if (!this.context) {
+                this.context = new SoftwareContext2D(this);
+            }
+            return this.context;
+        },
+
+        addEventListener: function(type, listener) {
+            // Software canvases aren't in the document, so they get no events.
+        },
+    };
+
+    function SoftwareContext2D(canvas) {
+        this.canvas = canvas;
+        // Subpaths of the current path, as arrays of device space x, y pairs.
+        this.subpaths = [];
+        this.currentSubpath = null;
+        this.resetState();
+    }
+
+    SoftwareContext2D.prototype = {
+        resetState: function() {
+            this.stateStack = [];
+            this._fillStyle = this._strokeStyle = "#000000";
+            this.fillColor = this.strokeColor = 0xff000000 | 0;
+            this._font = "10px sans-serif";
+            this.fontSize = 10;
+            this.isBold = false;
+            this.textAlign = "start";
+            this.textBaseline = "alphabetic";
+            // The current transform, i.e. x' = a * x + c * y + e and y' = b * x + d * y + f.
+            this.a = 1;
+            this.b = 0;
+            this.c = 0;
+            this.d = 1;
+            this.e = 0;
+            this.f = 0;
+            this.clipX1 = 0;
+            this.clipY1 = 0;
+            this.clipX2 = this.canvas.width;
+            this.clipY2 = this.canvas.height;
+            this.beginPath();
+        },
+
+        get fillStyle() {
+            return this._fillStyle;
+        },
+
+        set fillStyle(style) {
+            this._fillStyle = style;
+            this.fillColor = parseColor(style);
+        },
+
+        get strokeStyle() {
+            return this._strokeStyle;
+        },
+
+        set strokeStyle(style) {
+            this._strokeStyle = style;
+            this.strokeColor = parseColor(style);
+        },
+
+        get font() {
+            return this._font;
+        },
+
+        set font(font) {
+            var match = /(\d+)px/.exec(font);
+            if (match) {
+                this._font = font;
+                this.fontSize = parseInt(match[1]);
+                this.isBold = font.indexOf("bold") !== -1;
+            }
+        },
+
+        save: function() {
+            this.stateStack.push({
+                fillStyle: this._fillStyle,
+                fillColor: this.fillColor,
+                strokeStyle: this._strokeStyle,
+                strokeColor: this.strokeColor,
+                font: this._font,
+                fontSize: this.fontSize,
+                isBold: this.isBold,
+                textAlign: this.textAlign,
+                textBaseline: this.textBaseline,
+                a: this.a,
+                b: this.b,
+                c: this.c,
+                d: this.d,
+                e: this.e,
+                f: this.f,
+                clipX1: this.clipX1,
+                clipY1: this.clipY1,
+                clipX2: this.clipX2,
+                clipY2: this.clipY2,
+            });
+        },
+
+        restore: function() {
+            var state = this.stateStack.pop();
+            if (!state) {
+                return;
+            }
+            this._fillStyle = state.fillStyle;
+            this.fillColor = state.fillColor;
+            this._strokeStyle = state.strokeStyle;
+            this.strokeColor = state.strokeColor;
+            this._font = state.font;
+            this.fontSize = state.fontSize;
+            this.isBold = state.isBold;
+            this.textAlign = state.textAlign;
+            this.textBaseline = state.textBaseline;
+            this.a = state.a;
+            this.b = state.b;
+            this.c = state.c;
+            this.d = state.d;
+            this.e = state.e;
+            this.f = state.f;
+            this.clipX1 = state.clipX1;
+            this.clipY1 = state.clipY1;
+            this.clipX2 = state.clipX2;
+            this.clipY2 = state.clipY2;
+        },
+
+        transform: function(a, b, c, d, e, f) {
+            if (!isFinite(a + b + c + d + e + f)) {
+                return;
+            }
+            var ta = this.a, tb = this.b, tc = this.c, td = this.d;
+            this.a = ta * a + tc * b;
+            this.b = tb * a + td * b;
+            this.c = ta * c + tc * d;
+            this.d = tb * c + td * d;
+            this.e += ta * e + tc * f;
+            this.f += tb * e + td * f;
+        },
+
+        translate: function(x, y) {
+            this.transform(1, 0, 0, 1, x, y);
+        },
+
+        scale: function(x, y) {
+            this.transform(x, 0, 0, y, 0, 0);
+        },
+
+        rotate: function(angle) {
+            // Snap quarter turns to exact values, so that rotating back and
+            // forth leaves a plain translation.
+            var cos = Math.round(Math.cos(angle) * 1e12) / 1e12;
+            var sin = Math.round(Math.sin(angle) * 1e12) / 1e12;
+            this.transform(cos, sin, -sin, cos, 0, 0);
+        },
+
+        isTranslation: function() {
+            return this.a === 1 && this.b === 0 && this.c === 0 && this.d === 1;
+        },
+
+        beginPath: function() {
+            this.subpaths = [];
+            this.currentSubpath = null;
+        },
+
+        addPoint: function(x, y) {
+            if (!this.currentSubpath) {
+                this.moveTo(x, y);
+                return;
+            }
+            this.currentSubpath.push(this.a * x + this.c * y + this.e, this.b * x + this.d * y + this.f);
+        },
+
+        moveTo: function(x, y) {
+            this.currentSubpath = [this.a * x + this.c * y + this.e, this.b * x + this.d * y + this.f];
+            this.subpaths.push(this.currentSubpath);
+        },
+
+        lineTo: function(x, y) {
+            this.addPoint(x, y);
+        },
+
+        closePath: function() {
+            var subpath = this.currentSubpath;
+            if (!subpath) {
+                return;
+            }
+            subpath.closed = true;
+            this.currentSubpath = [subpath[0], subpath[1]];
+            this.subpaths.push(this.currentSubpath);
+        },
+
+        rect: function(x, y, width, height) {
+            this.moveTo(x, y);
+            this.lineTo(x + width, y);
+            this.lineTo(x + width, y + height);
+            this.lineTo(x, y + height);
+            this.closePath();
+        },
+
+        arc: function(x, y, radius, startAngle, endAngle, anticlockwise) {
+            var sweep = endAngle - startAngle;
+            if (!anticlockwise) {
+                sweep = sweep >= 2 * Math.PI ? 2 * Math.PI : ((sweep % (2 * Math.PI)) + 2 * Math.PI) % (2 * Math.PI);
+            } else {
+                sweep = sweep <= -2 * Math.PI ? -2 * Math.PI : ((sweep % (2 * Math.PI)) - 2 * Math.PI) % (2 * Math.PI);
+            }
+            // Enough segments for them to be about two pixels long.
+            var deviceRadius = radius * Math.sqrt(Math.abs(this.a * this.d - this.b * this.c));
+            var segments = Math.min(1024, Math.max(4, Math.ceil(Math.abs(sweep) * deviceRadius / 2)));
+            for (var i = 0; i <= segments; i++) {
+                var angle = startAngle + sweep * i / segments;
+                this.addPoint(x + radius * Math.cos(angle), y + radius * Math.sin(angle));
+            }
+        },
+
+        clip: function() {
+            var minX = Infinity, minY = Infinity, maxX = -Infinity, maxY = -Infinity;
+            for (var i = 0; i < this.subpaths.length; i++) {
+                var subpath = this.subpaths[i];
+                for (var j = 0; j < subpath.length; j += 2) {
+                    minX = Math.min(minX, subpath[j]);
+                    minY = Math.min(minY, subpath[j + 1]);
+                    maxX = Math.max(maxX, subpath[j]);
+                    maxY = Math.max(maxY, subpath[j + 1]);
+                }
+            }
+            this.clipX1 = Math.max(this.clipX1, Math.ceil(minX - 0.5));
+            this.clipY1 = Math.max(this.clipY1, Math.ceil(minY - 0.5));
+            this.clipX2 = Math.min(this.clipX2, Math.ceil(maxX - 0.5));
+            this.clipY2 = Math.min(this.clipY2, Math.ceil(maxY - 0.5));
+        },
+
+        /**
+         * Fills the pixels from |x1| to |x2| of row |y|, within the clip, with |color|.
+         */
+        fillSpan: function(x1, x2, y, color) {
+            if (y < this.clipY1 || y >= this.clipY2) {
+                return;
+            }
+            x1 = Math.max(x1, this.clipX1);
+            x2 = Math.min(x2, this.clipX2);
+            var pixels = this.canvas.pixels;
+            var i = y * this.canvas.width + x1;
+            var end = i + x2 - x1;
+            if ((color >>> 24) === 0xff) {
+                while (i < end) {
+                    pixels[i++] = color;
+                }
+            } else {
+                while (i < end) {
+                    blend(pixels, i++, color);
+                }
+            }
+        },
+
+        plot: function(x, y, color) {
+            if (x >= this.clipX1 && x < this.clipX2 && y >= this.clipY1 && y < this.clipY2) {
+                blend(this.canvas.pixels, y * this.canvas.width + x, color);
+            }
+        },
+
+        /**
+         * Fills |subpaths| with the nonzero winding rule.
+         */
+        fillSubpaths: function(subpaths, color) {
+            var minY = Infinity, maxY = -Infinity;
+            for (var i = 0; i < subpaths.length; i++) {
+                var subpath = subpaths[i];
+                for (var j = 1; j < subpath.length; j += 2) {
+                    minY = Math.min(minY, subpath[j]);
+                    maxY = Math.max(maxY, subpath[j]);
+                }
+            }
+            var y1 = Math.max(this.clipY1, Math.ceil(minY - 0.5));
+            var y2 = Math.min(this.clipY2, Math.ceil(maxY - 0.5));
+
+            var crossings = [];
+            for (var y = y1; y < y2; y++) {
+                // Edges are sampled at the centers of the pixels.
+                var sampleY = y + 0.5;
+                crossings.length = 0;
+                for (var i = 0; i < subpaths.length; i++) {
+                    var subpath = subpaths[i];
+                    var n = subpath.length;
+                    for (var j = 0; j < n; j += 2) {
+                        // Fills implicitly close all the subpaths.
+                        var k = (j + 2) % n;
+                        var ax = subpath[j], ay = subpath[j + 1];
+                        var bx = subpath[k], by = subpath[k + 1];
+                        if ((ay <= sampleY && by > sampleY) || (by <= sampleY && ay > sampleY)) {
+                            crossings.push({
+                                x: ax + (sampleY - ay) * (bx - ax) / (by - ay),
+                                winding: by > ay ? 1 : -1,
+                            });
+                        }
+                    }
+                }
+                crossings.sort(function(p, q) {
+                    return p.x - q.x;
+                });
+                var winding = 0;
+                for (var i = 0; i < crossings.length - 1; i++) {
+                    winding += crossings[i].winding;
+                    if (winding !== 0) {
+                        this.fillSpan(Math.ceil(crossings[i].x - 0.5), Math.ceil(crossings[i + 1].x - 0.5), y, color);
+                    }
+                }
+            }
+        },
+
+        /**
+         * Draws a one pixel wide line from |x1|, |y1| to |x2|, |y2|, without
+         * its end point.
+         */
+        strokeSegment: function(x1, y1, x2, y2, color) {
+            x1 = Math.floor(x1);
+            y1 = Math.floor(y1);
+            x2 = Math.floor(x2);
+            y2 = Math.floor(y2);
+            var dx = Math.abs(x2 - x1);
+            var dy = -Math.abs(y2 - y1);
+            var stepX = x1 < x2 ? 1 : -1;
+            var stepY = y1 < y2 ? 1 : -1;
+            var error = dx + dy;
+            while (x1 !== x2 || y1 !== y2) {
+                this.plot(x1, y1, color);
+                var error2 = 2 * error;
+                if (error2 >= dy) {
+                    error += dy;
+                    x1 += stepX;
+                }
+                if (error2 <= dx) {
+                    error += dx;
+                    y1 += stepY;
+                }
+            }
+        },
+
+        strokeSubpaths: function(subpaths, color) {
+            for (var i = 0; i < subpaths.length; i++) {
+                var subpath = subpaths[i];
+                var n = subpath.length;
+                if (n < 4) {
+                    continue;
+                }
+                for (var j = 2; j < n; j += 2) {
+                    this.strokeSegment(subpath[j - 2], subpath[j - 1], subpath[j], subpath[j + 1], color);
+                }
+                if (subpath.closed) {
+                    this.strokeSegment(subpath[n - 2], subpath[n - 1], subpath[0], subpath[1], color);
+                } else {
+                    this.plot(Math.floor(subpath[n - 2]), Math.floor(subpath[n - 1]), color);
+                }
+            }
+        },
+
+        fill: function() {
+            this.fillSubpaths(this.subpaths, this.fillColor);
+        },
+
+        stroke: function() {
+            this.strokeSubpaths(this.subpaths, this.strokeColor);
+        },
+
+        // Like in a canvas, rectangles are drawn without changing the current path.
+        getRectSubpath: function(x, y, width, height) {
+            var subpaths = this.subpaths;
+            var currentSubpath = this.currentSubpath;
+            this.beginPath();
+            this.rect(x, y, width, height);
+            var rectSubpath = this.subpaths[0];
+            this.subpaths = subpaths;
+            this.currentSubpath = currentSubpath;
+            return rectSubpath;
+        },
+
+        fillRect: function(x, y, width, height) {
+            if (!this.isTranslation()) {
+                this.fillSubpaths([this.getRectSubpath(x, y, width, height)], this.fillColor);
+                return;
+            }
+            var x1 = Math.ceil(x + this.e - 0.5);
+            var x2 = Math.ceil(x + width + this.e - 0.5);
+            var y1 = Math.max(this.clipY1, Math.ceil(y + this.f - 0.5));
+            var y2 = Math.min(this.clipY2, Math.ceil(y + height + this.f - 0.5));
+            for (var row = y1; row < y2; row++) {
+                this.fillSpan(x1, x2, row, this.fillColor);
+            }
+        },
+
+        strokeRect: function(x, y, width, height) {
+            this.strokeSubpaths([this.getRectSubpath(x, y, width, height)], this.strokeColor);
+        },
+
+        measureText: function(text) {
+            return {
+                width: text.length * GLYPH_ADVANCE * getGlyphScale(this.fontSize),
+            };
+        },
+
+        fillText: function(text, x, y) {
+            var scale = getGlyphScale(this.fontSize);
+            var width = text.length * GLYPH_ADVANCE * scale;
+            if (this.textAlign === "center") {
+                x -= width / 2;
+            } else if (this.textAlign === "right" || this.textAlign === "end") {
+                x -= width;
+            }
+
+            // The font's ascent is about 4/5 of its size, like most fonts'.
+            var ascent = Math.round(this.fontSize * 0.8);
+            var baseline = y;
+            if (this.textBaseline === "top" || this.textBaseline === "hanging") {
+                baseline += ascent;
+            } else if (this.textBaseline === "bottom" || this.textBaseline === "ideographic") {
+                baseline -= this.fontSize - ascent;
+            } else if (this.textBaseline === "middle") {
+                baseline += ascent - this.fontSize / 2;
+            }
+
+            // Text isn't rotated or scaled, gfx.js only ever translates it.
+            var left = Math.round(x + this.e);
+            var top = Math.round(baseline + this.f) - GLYPH_HEIGHT * scale;
+            var color = this.fillColor;
+            var boldWidth = this.isBold ? 1 : 0;
+            for (var i = 0; i < text.length; i++) {
+                var offset = getGlyphOffset(text.charCodeAt(i));
+                for (var column = 0; column < GLYPH_WIDTH; column++) {
+                    var bits = glyphColumns[offset + column];
+                    var columnX = left + (i * GLYPH_ADVANCE + column) * scale;
+                    for (var row = 0; bits; row++, bits >>= 1) {
+                        if (bits & 1) {
+                            var rowY = top + row * scale;
+                            for (var j = 0; j < scale; j++) {
+                                this.fillSpan(columnX, columnX + scale + boldWidth, rowY + j, color);
+                            }
+                        }
+                    }
+                }
+            }
+        },
+
+        createImageData: function(width, height) {
+            return {
+                width: width,
+                height: height,
+                data: new Uint8ClampedArray(width * height * 4),
+            };
+        },
+
+        getImageData: function(x, y, width, height) {
+            var imageData = this.createImageData(width, height);
+            var dst = new Int32Array(imageData.data.buffer);
+            var src = this.canvas.pixels;
+            var canvasWidth = this.canvas.width;
+            var x1 = Math.max(0, x);
+            var x2 = Math.min(canvasWidth, x + width);
+            var y1 = Math.max(0, y);
+            var y2 = Math.min(this.canvas.height, y + height);
+            for (var row = y1; row < y2; row++) {
+                var i = row * canvasWidth;
+                dst.set(src.subarray(i + x1, i + x2), (row - y) * width + x1 - x);
+            }
+            return imageData;
+        },
+
+        // Like in a canvas, this ignores the transform, the clip and the alpha of
+        // the pixels that are put.
+        putImageData: function(imageData, dx, dy, dirtyX, dirtyY, dirtyWidth, dirtyHeight) {
+            var width = imageData.width;
+            var data = imageData.data;
+            var src = new Int32Array(data.buffer, data.byteOffset, width * imageData.height);
+            dirtyX = dirtyX || 0;
+            dirtyY = dirtyY || 0;
+            dirtyWidth = dirtyWidth === undefined ? width : dirtyWidth;
+            dirtyHeight = dirtyHeight === undefined ? imageData.height : dirtyHeight;
+
+            var canvasWidth = this.canvas.width;
+            var x1 = Math.max(dirtyX, -dx, 0);
+            var x2 = Math.min(dirtyX + dirtyWidth, canvasWidth - dx, width);
+            var y1 = Math.max(dirtyY, -dy, 0);
+            var y2 = Math.min(dirtyY + dirtyHeight, this.canvas.height - dy, imageData.height);
+            var dst = this.canvas.pixels;
+            for (var row = y1; row < y2; row++) {
+                var i = row * width;
+                dst.set(src.subarray(i + x1, i + x2), (row + dy) * canvasWidth + x1 + dx);
+            }
+        },
+
+        drawImage: function(image, sx, sy, sw, sh, dx, dy, dw, dh) {
+            var source = getSourcePixels(image);
+            if (arguments.length === 3) {
+                dx = sx;
+                dy = sy;
+                dw = sw = source.width;
+                dh = sh = source.height;
+                sx = sy = 0;
+            } else if (arguments.length === 5) {
+                dx = sx;
+                dy = sy;
+                dw = sw;
+                dh = sh;
+                sw = source.width;
+                sh = source.height;
+                sx = sy = 0;
+            }
+            if (sw <= 0 || sh <= 0 || dw <= 0 || dh <= 0) {
+                return;
+            }
+
+            var src = source.pixels;
+            var srcWidth = source.width;
+            var srcX1 = Math.max(0, sx);
+            var srcY1 = Math.max(0, sy);
+            var srcX2 = Math.min(srcWidth, sx + sw);
+            var srcY2 = Math.min(source.height, sy + sh);
+            var dst = this.canvas.pixels;
+            var dstWidth = this.canvas.width;
+
+            if (this.isTranslation() && sw === dw && sh === dh &&
+                (dx + this.e) === ((dx + this.e) | 0) && (dy + this.f) === ((dy + this.f) | 0)) {
+                // Unscaled images are copied row by row.
+                var offsetX = dx + this.e - sx;
+                var offsetY = dy + this.f - sy;
+                var x1 = Math.max(srcX1, this.clipX1 - offsetX);
+                var x2 = Math.min(srcX2, this.clipX2 - offsetX);
+                var y1 = Math.max(srcY1, this.clipY1 - offsetY);
+                var y2 = Math.min(srcY2, this.clipY2 - offsetY);
+                for (var y = y1; y < y2; y++) {
+                    var i = y * srcWidth + x1;
+                    var j = (y + offsetY) * dstWidth + x1 + offsetX;
+                    for (var x = x1; x < x2; x++) {
+                        blend(dst, j++, src[i++]);
+                    }
+                }
+                return;
+            }
+
+            // Otherwise, the center of each pixel that the transformed
+            // destination rectangle covers is mapped back to the source.
+            var a = this.a, b = this.b, c = this.c, d = this.d, e = this.e, f = this.f;
+            var det = a * d - b * c;
+            if (det === 0) {
+                return;
+            }
+            var minX = Infinity, minY = Infinity, maxX = -Infinity, maxY = -Infinity;
+            for (var corner = 0; corner < 4; corner++) {
+                var cx = dx + (corner & 1 ? dw : 0);
+                var cy = dy + (corner & 2 ? dh : 0);
+                var tx = a * cx + c * cy + e;
+                var ty = b * cx + d * cy + f;
+                minX = Math.min(minX, tx);
+                minY = Math.min(minY, ty);
+                maxX = Math.max(maxX, tx);
+                maxY = Math.max(maxY, ty);
+            }
+            var x1 = Math.max(this.clipX1, Math.floor(minX));
+            var y1 = Math.max(this.clipY1, Math.floor(minY));
+            var x2 = Math.min(this.clipX2, Math.ceil(maxX));
+            var y2 = Math.min(this.clipY2, Math.ceil(maxY));
+            var scaleX = sw / dw;
+            var scaleY = sh / dh;
+            for (var y = y1; y < y2; y++) {
+                for (var x = x1; x < x2; x++) {
+                    var px = x + 0.5 - e;
+                    var py = y + 0.5 - f;
+                    var u = sx + ((d * px - c * py) / det - dx) * scaleX;
+                    var v = sy + ((a * py - b * px) / det - dy) * scaleY;
+                    if (u >= srcX1 && u < srcX2 && v >= srcY1 && v < srcY2) {
+                        blend(dst, y * dstWidth + x, src[Math.floor(v) * srcWidth + Math.floor(u)]);
+                    }
+                }
+            }
+        },
+    };
+
+    /**
+     * Returns the pixels of |image|, which is either a software canvas or, in
+     * the browser, anything a canvas can draw, like a decoded image.
+     */
+    function getSourcePixels(image) {
+        if (image instanceof SoftwareCanvas) {
+            return image;
+        }
+        var width = image.width;
+        var height = image.height;
+        var context = document.createElement("canvas").getContext("2d");
+        context.canvas.width = width;
+        context.canvas.height = height;
+        context.drawImage(image, 0, 0);
+        return {
+            pixels: new Int32Array(context.getImageData(0, 0, width, height).data.buffer),
+            width: width,
+            height: height,
+        };
+    }
+
+    return SoftwareCanvas;
+})();
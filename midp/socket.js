@@ -32,6 +32,24 @@ Native["com/sun/midp/io/j2me/socket/Protocol.getHost0.(Z)Ljava/lang/String;"] =
     return J2ME.newString(local ? "127.0.0.1" : socket.host);
 };
 
+// The send buffer is never smaller than this, whatever SNDBUF is set to.
+var MIN_SEND_BUFFER_SIZE = 512;
+
+// Totals of the counters of all the sockets opened so far, see Socket.stats.
+var SocketTotals = {
+    sockets: 0,
+    writes: 0,
+    blockedWrites: 0,
+    bytesWritten: 0,
+    sends: 0,
+    sendTime: 0,
+    maxSendTime: 0,
+    reads: 0,
+    blockedReads: 0,
+    bytesRead: 0,
+    bytesReceived: 0,
+};
+
 function Socket(host, port, ctx, resolve, reject) {
     this.sender = DumbPipe.open("socket", { host: host, port: port }, this.recipient.bind(this));
     this.isClosed = false;
@@ -43,10 +61,41 @@ function Socket(host, port, ctx, resolve, reject) {
     this.options[SOCKET_OPT.RCVBUF] = 8192;
     this.options[SOCKET_OPT.SNDBUF] = 8192;
 
-    this.data = [];
+    // Received data that hasn't been read yet, in a ring buffer that grows as
+    // needed: |dataLen| bytes starting at |dataStart|.
+    this.data = new Int8Array(this.options[SOCKET_OPT.RCVBUF]);
+    this.dataStart = 0;
     this.dataLen = 0;
     this.waitingData = null;
 
+    // Written data that hasn't been sent to the other side of the pipe yet.
+    this.sendBuffer = new Int8Array(this.options[SOCKET_OPT.SNDBUF]);
+    this.sendLen = 0;
+    this.isFlushScheduled = false;
+    // Start times of the sends that haven't been acknowledged yet.
+    this.sendTimes = [];
+    // Whether the other side buffers more than it would like to.
+    this.isDraining = false;
+    // The error of the last send, reported by the next write.
+    this.sendError = null;
+    this.waitingSpace = null;
+
+    this.stats = {
+        opened: performance.now(),
+        writes: 0,
+        blockedWrites: 0,
+        bytesWritten: 0,
+        sends: 0,
+        sendTime: 0,
+        maxSendTime: 0,
+        reads: 0,
+        blockedReads: 0,
+        bytesRead: 0,
+        bytesReceived: 0,
+    };
+    SocketTotals.sockets++;
+    Socket.openSockets.add(this);
+
     // XXX Move the below functions to the prototype (if possible; they would
     // need to called with the socket instance as their *this* object, and it
     // isn't clear that they are).
@@ -63,19 +112,60 @@ function Socket(host, port, ctx, resolve, reject) {
     }
 
     this.onclose = function() {
+        Socket.openSockets.delete(this);
         if (this.waitingData) {
             this.waitingData();
         }
+        if (this.waitingSpace) {
+            this.waitingSpace();
+        }
     }.bind(this);
 
     this.ondata = function(message) {
-        this.data.push(new Int8Array(message.data));
-        this.dataLen += message.data.byteLength;
+        this.receive(new Int8Array(message.data));
 
         if (this.waitingData) {
             this.waitingData();
         }
     }.bind(this);
+
+    this.onsend = function(message) {
+        if (this.sendTimes.length > 0) {
+            var sendTime = performance.now() - this.sendTimes.shift();
+            this.count("sendTime", sendTime);
+            this.stats.maxSendTime = Math.max(this.stats.maxSendTime, sendTime);
+            SocketTotals.maxSendTime = Math.max(SocketTotals.maxSendTime, sendTime);
+        }
+
+        if ("error" in message) {
+            console.error(message.error);
+            this.sendError = "error writing to socket";
+            if (this.waitingSpace) {
+                this.waitingSpace();
+            }
+            return;
+        }
+
+        if (!message.result) {
+            this.isDraining = true;
+            return;
+        }
+
+        this.onsent();
+    }.bind(this);
+
+    this.ondrain = function() {
+        this.isDraining = false;
+        this.onsent();
+    }.bind(this);
+}
+
+// The sockets that haven't been closed yet.
+Socket.openSockets = new Set();
+
+Socket.prototype.count = function(name, value) {
+    this.stats[name] += value;
+    SocketTotals[name] += value;
 }
 
 Socket.prototype.recipient = function(message) {
@@ -89,15 +179,134 @@ Socket.prototype.recipient = function(message) {
     }
 }
 
-Socket.prototype.send = function(data, offset, length) {
-    // Convert the data to a regular Array to traverse the mozbrowser boundary.
-    data = Array.prototype.slice.call(data.subarray(offset, offset + length));
-    data.constructor = Array;
+/**
+ * Appends |data| to the receive buffer, growing it if it's too small.
+ */
+Socket.prototype.receive = function(data) {
+    var capacity = this.data.length;
+    if (this.dataLen + data.length > capacity) {
+        while (this.dataLen + data.length > capacity) {
+            capacity *= 2;
+        }
+        var buffer = new Int8Array(capacity);
+        this.copyData(buffer, 0, this.dataLen);
+        this.data = buffer;
+        this.dataStart = 0;
+    }
+
+    var end = (this.dataStart + this.dataLen) % this.data.length;
+    var first = Math.min(data.length, this.data.length - end);
+    this.data.set(first === data.length ? data : data.subarray(0, first), end);
+    if (first < data.length) {
+        this.data.set(data.subarray(first), 0);
+    }
+    this.dataLen += data.length;
+    this.count("bytesReceived", data.length);
+}
+
+/**
+ * Copies the first |length| bytes of the receive buffer to |array| at
+ * |offset|, without consuming them.
+ */
+Socket.prototype.copyData = function(array, offset, length) {
+    var first = Math.min(length, this.data.length - this.dataStart);
+    array.set(this.data.subarray(this.dataStart, this.dataStart + first), offset);
+    if (first < length) {
+        array.set(this.data.subarray(0, length - first), offset + first);
+    }
+}
+
+/**
+ * Moves up to |length| received bytes to |array| at |offset|.
+ */
+Socket.prototype.read = function(array, offset, length) {
+    var read = Math.min(length, this.dataLen);
+    this.copyData(array, offset, read);
+    this.dataLen -= read;
+    this.dataStart = this.dataLen === 0 ? 0 : (this.dataStart + read) % this.data.length;
+    this.count("bytesRead", read);
+    return read;
+}
 
-    this.sender({ type: "send", data: data });
+/**
+ * Copies as much of |length| bytes of |array| at |offset| as fits in the send
+ * buffer, and schedules sending it.
+ */
+Socket.prototype.write = function(array, offset, length) {
+    var written = Math.min(length, this.sendBuffer.length - this.sendLen);
+    this.sendBuffer.set(array.subarray(offset, offset + written), this.sendLen);
+    this.sendLen += written;
+    this.count("bytesWritten", written);
+
+    if (!this.isFlushScheduled) {
+        this.isFlushScheduled = true;
+        // Writes are coalesced until the thread yields.
+        window.nextTickBeforeEvents(this.flush.bind(this, false));
+    }
+
+    return written;
+}
+
+/**
+ * Sends the buffered data to the other side of the pipe, unless |force| is
+ * false and:
+ *  - the other side is draining, in which case ondrain flushes again, or
+ *  - the DELAY option is set, the previous send hasn't been acknowledged and
+ *    the buffer isn't full.
+ * Writers waiting for space in the buffer are only resumed once it's sent,
+ * so they wait as long as the other side is draining.
+ */
+Socket.prototype.flush = function(force) {
+    this.isFlushScheduled = false;
+    if (this.sendLen === 0 || this.isClosed) {
+        return;
+    }
+
+    if (!force && this.isDraining) {
+        return;
+    }
+
+    var isBusy = this.sendTimes.length > 0;
+    if (!force && isBusy && this.options[SOCKET_OPT.DELAY] &&
+        this.sendLen < this.sendBuffer.length) {
+        return;
+    }
+
+    // Copy the data out of the send buffer, the copy is transferred to the
+    // other side of the pipe.
+    var data = this.sendBuffer.slice(0, this.sendLen);
+    this.sendLen = 0;
+    this.sendTimes.push(performance.now());
+    this.count("sends", 1);
+    this.sender({ type: "send", data: data }, [data.buffer]);
+
+    // The send buffer is empty again.
+    if (this.waitingSpace) {
+        this.waitingSpace();
+    }
+}
+
+Socket.prototype.onsent = function() {
+    if (this.sendTimes.length === 0 && !this.isDraining) {
+        this.flush(false);
+    }
+}
+
+/**
+ * Resizes the send buffer after the SNDBUF option changed.
+ */
+Socket.prototype.resizeSendBuffer = function() {
+    var size = Math.max(this.options[SOCKET_OPT.SNDBUF], MIN_SEND_BUFFER_SIZE, this.sendLen);
+    if (size !== this.sendBuffer.length) {
+        var buffer = new Int8Array(size);
+        buffer.set(this.sendBuffer.subarray(0, this.sendLen));
+        this.sendBuffer = buffer;
+    }
 }
 
 Socket.prototype.close = function() {
+    // Data written before closing the socket must still be sent.
+    this.flush(true);
     this.sender({ type: "close" });
 }
 
@@ -112,88 +321,69 @@ Native["com/sun/midp/io/j2me/socket/Protocol.open0.([BI)V"] = function(addr, ipB
 
 Native["com/sun/midp/io/j2me/socket/Protocol.available0.()I"] = function(addr) {
     var socket = NativeMap.get(addr);
-    // console.log("Protocol.available0: " + socket.data.byteLength);
     return socket.dataLen;
 };
 
 Native["com/sun/midp/io/j2me/socket/Protocol.read0.([BII)I"] = function(addr, dataAddr, offset, length) {
-    var data = J2ME.getArrayFromAddr(dataAddr);
     var socket = NativeMap.get(addr);
     // console.log("Protocol.read0: " + socket.isClosed);
+    socket.count("reads", 1);
 
-    asyncImpl("I", new Promise(function(resolve, reject) {
-        // There might be data left in the buffer when the socket is closed, so we
-        // should allow buffer reading even the socket has been closed.
-        if (socket.isClosed && socket.dataLen === 0) {
-            resolve(-1);
-            return;
-        }
-
-        var copyData = function() {
-            var toRead = (length < socket.dataLen) ? length : socket.dataLen;
-            var read = 0;
-            while (read < toRead) {
-                var remaining = toRead - read;
-
-                var array = socket.data[0];
-
-                if (array.byteLength > remaining) {
-                    data.set(array.subarray(0, remaining), read + offset);
-                    socket.data[0] = array.subarray(remaining);
-                    read += remaining;
-                } else {
-                    data.set(array, read + offset);
-                    socket.data.shift();
-                    read += array.byteLength;
-                }
-            }
+    // Don't suspend the thread if there's data to read already.
+    if (socket.dataLen > 0) {
+        return socket.read(i8, J2ME.getArrayOffset(dataAddr) + offset, length);
+    }
 
-            socket.dataLen -= read;
+    // There might be data left in the buffer when the socket is closed, so we
+    // should allow buffer reading even the socket has been closed.
+    if (socket.isClosed) {
+        return -1;
+    }
 
-            resolve(read);
+    socket.count("blockedReads", 1);
+    asyncImpl("I", new Promise(function(resolve, reject) {
+        socket.waitingData = function() {
+            socket.waitingData = null;
+            if (socket.dataLen === 0) {
+                resolve(-1);
+                return;
+            }
+            // The heap may have been resized while the thread was suspended.
+            resolve(socket.read(i8, J2ME.getArrayOffset(dataAddr) + offset, length));
         };
-
-        if (socket.dataLen === 0) {
-            socket.waitingData = function() {
-                socket.waitingData = null;
-                copyData();
-            };
-
-            return;
-        }
-
-        copyData();
     }));
 };
 
 Native["com/sun/midp/io/j2me/socket/Protocol.write0.([BII)I"] = function(addr, dataAddr, offset, length) {
-    var data = J2ME.getArrayFromAddr(dataAddr);
     var socket = NativeMap.get(addr);
+    socket.count("writes", 1);
+
+    if (socket.isClosed) {
+        throw $.newIOException("socket is closed");
+    }
+
+    if (socket.sendError) {
+        throw $.newIOException(socket.sendError);
+    }
+
+    // Return right away if the data fits in the send buffer.
+    if (socket.sendLen < socket.sendBuffer.length) {
+        return socket.write(i8, J2ME.getArrayOffset(dataAddr) + offset, length);
+    }
+
+    // Otherwise wait for the buffered data to be sent.
+    socket.count("blockedWrites", 1);
     var ctx = $.ctx;
     asyncImpl("I", new Promise(function(resolve, reject) {
-        if (socket.isClosed) {
-          ctx.setAsCurrentContext();
-          reject($.newIOException("socket is closed"));
-          return;
-        }
-
-        socket.onsend = function(message) {
-            socket.onsend = null;
-            if ("error" in message) {
-                console.error(message.error);
+        socket.waitingSpace = function() {
+            socket.waitingSpace = null;
+            if (socket.isClosed || socket.sendError) {
                 ctx.setAsCurrentContext();
-                reject($.newIOException("error writing to socket"));
-            } else if (message.result) {
-                resolve(length);
-            } else {
-                socket.ondrain = function() {
-                    socket.ondrain = null;
-                    resolve(length);
-                };
+                reject($.newIOException(socket.sendError || "socket is closed"));
+                return;
             }
+            resolve(socket.write(i8, J2ME.getArrayOffset(dataAddr) + offset, length));
         };
-
-        socket.send(data, offset, length);
     }));
 };
 
@@ -204,6 +394,9 @@ Native["com/sun/midp/io/j2me/socket/Protocol.setSockOpt0.(II)V"] = function(addr
     }
 
     socket.options[option] = value;
+    if (option === SOCKET_OPT.SNDBUF) {
+        socket.resizeSendBuffer();
+    }
 };
 
 Native["com/sun/midp/io/j2me/socket/Protocol.getSockOpt0.(I)I"] = function(addr, option) {
@@ -225,9 +418,11 @@ Native["com/sun/midp/io/j2me/socket/Protocol.close0.()V"] = function(addr) {
             return;
         }
 
+        var onclose = socket.onclose;
         socket.onclose = function() {
             // console.log("socket.onclose");
             socket.onclose = null;
+            onclose();
             resolve();
         };
 
@@ -253,7 +448,7 @@ Native["com/sun/midp/io/j2me/socket/Protocol.notifyClosedInput0.()V"] = function
 
 Native["com/sun/midp/io/j2me/socket/Protocol.notifyClosedOutput0.()V"] = function(addr) {
     var socket = NativeMap.get(addr);
-    if (socket.ondrain) {
+    if (socket.waitingSpace) {
         console.warn("Protocol.notifyClosedOutput0.()V unimplemented while thread is blocked on write0");
     }
 };
@@ -15,6 +15,9 @@ function preemptingImpl(returnKind, returnValue) {
 
 var Override = {};
 
+var ClassFields = J2ME.getFieldAccessors("java/lang/Class");
+var StringFields = J2ME.getFieldAccessors("java/lang/String");
+
 Native["java/lang/System.arraycopy.(Ljava/lang/Object;ILjava/lang/Object;II)V"] =
 function(addr, srcAddr, srcOffset, dstAddr, dstOffset, length) {
     if (srcAddr === J2ME.Constants.NULL || dstAddr === J2ME.Constants.NULL) {
@@ -92,25 +95,25 @@ function(addr, srcAddr, srcOffset, dstAddr, dstOffset, length) {
         case 1:
             var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE) + srcOffset;
             var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE) + dstOffset;
-            i8.set(i8.subarray(src, src + length), dst);
+            i8.copyWithin(dst, src, src + length);
             break;
 
         case 2:
             var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 1) + srcOffset;
             var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 1) + dstOffset;
-            i16.set(i16.subarray(src, src + length), dst);
+            i16.copyWithin(dst, src, src + length);
             break;
 
         case 4:
             var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 2) + srcOffset;
             var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 2) + dstOffset;
-            i32.set(i32.subarray(src, src + length), dst);
+            i32.copyWithin(dst, src, src + length);
             break;
 
         case 8:
             var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 3) + srcOffset;
             var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 3) + dstOffset;
-            f64.set(f64.subarray(src, src + length), dst);
+            f64.copyWithin(dst, src, src + length);
             break;
     }
 };
@@ -300,14 +303,14 @@ Native["com/sun/cldchi/jvm/JVM.unchecked_char_arraycopy.([CI[CII)V"] =
 function(addr, srcAddr, srcOffset, dstAddr, dstOffset, length) {
     var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 1) + srcOffset;
     var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 1) + dstOffset;
-    i16.set(i16.subarray(src, src + length), dst);
+    i16.copyWithin(dst, src, src + length);
 };
 
 Native["com/sun/cldchi/jvm/JVM.unchecked_int_arraycopy.([II[III)V"] =
 function(addr, srcAddr, srcOffset, dstAddr, dstOffset, length) {
     var src = (srcAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 2) + srcOffset;
     var dst = (dstAddr + J2ME.Constants.ARRAY_HDR_SIZE >> 2) + dstOffset;
-    i32.set(i32.subarray(src, src + length), dst);
+    i32.copyWithin(dst, src, src + length);
 };
 
 Native["com/sun/cldchi/jvm/JVM.unchecked_obj_arraycopy.([Ljava/lang/Object;I[Ljava/lang/Object;II)V"] =
@@ -336,8 +339,7 @@ Native["java/lang/Object.getClass.()Ljava/lang/Class;"] = function(addr) {
 };
 
 Native["java/lang/Class.getSuperclass.()Ljava/lang/Class;"] = function(addr) {
-    var self = getHandle(addr);
-    var superClassInfo = J2ME.classIdToClassInfoMap[self.vmClass].superClass;
+    var superClassInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)].superClass;
     if (!superClassInfo) {
       return J2ME.Constants.NULL;
     }
@@ -345,8 +347,7 @@ Native["java/lang/Class.getSuperclass.()Ljava/lang/Class;"] = function(addr) {
 };
 
 Native["java/lang/Class.invoke_clinit.()V"] = function(addr) {
-    var self = getHandle(addr);
-    var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     var className = classInfo.getClassNameSlow();
     var clinit = classInfo.staticInitializer;
     J2ME.preemptionLockLevel++;
@@ -363,15 +364,14 @@ Native["java/lang/Class.invoke_verify.()V"] = function(addr) {
 };
 
 Native["java/lang/Class.init9.()V"] = function(addr) {
-    var self = getHandle(addr);
-    release || J2ME.Debug.assert(self.vmClass in J2ME.classIdToClassInfoMap, "Class must be linked.");
-    $.setClassInitialized(self.vmClass);
+    var vmClass = ClassFields.get.vmClass(addr);
+    release || J2ME.Debug.assert(vmClass in J2ME.classIdToClassInfoMap, "Class must be linked.");
+    $.setClassInitialized(vmClass);
     J2ME.preemptionLockLevel--;
 };
 
 Native["java/lang/Class.getName.()Ljava/lang/String;"] = function(addr) {
-    var self = getHandle(addr);
-    var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     return J2ME.newString(classInfo.getClassNameSlow().replace(/\//g, "."));
 };
 
@@ -403,8 +403,7 @@ Native["java/lang/Class.forName1.(Ljava/lang/String;)Ljava/lang/Class;"] = funct
 };
 
 Native["java/lang/Class.newInstance0.()Ljava/lang/Object;"] = function(addr) {
-  var self = getHandle(addr);
-  var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+  var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
   if (classInfo.isInterface ||
       classInfo.isAbstract) {
     throw $.newInstantiationException("Can't instantiate interfaces or abstract classes");
@@ -431,25 +430,21 @@ Native["java/lang/Class.newInstance1.(Ljava/lang/Object;)V"] = function(addr, oA
 };
 
 Native["java/lang/Class.isInterface.()Z"] = function(addr) {
-    var self = getHandle(addr);
-    var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     return classInfo.isInterface ? 1 : 0;
 };
 
 Native["java/lang/Class.isArray.()Z"] = function(addr) {
-    var self = getHandle(addr);
-    var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     return classInfo instanceof J2ME.ArrayClassInfo ? 1 : 0;
 };
 
 Native["java/lang/Class.isAssignableFrom.(Ljava/lang/Class;)Z"] = function(addr, fromClassAddr) {
-    var self = getHandle(addr);
-    var selfClassInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var selfClassInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     if (fromClassAddr === J2ME.Constants.NULL) {
         throw $.newNullPointerException();
     }
-    var fromClass = getHandle(fromClassAddr);
-    var fromClassInfo = J2ME.classIdToClassInfoMap[fromClass.vmClass];
+    var fromClassInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(fromClassAddr)];
     return J2ME.isAssignableTo(fromClassInfo, selfClassInfo) ? 1 : 0;
 };
 
@@ -458,8 +453,7 @@ Native["java/lang/Class.isInstance.(Ljava/lang/Object;)Z"] = function(addr, objA
         return 0;
     }
 
-    var self = getHandle(addr);
-    var classInfo = J2ME.classIdToClassInfoMap[self.vmClass];
+    var classInfo = J2ME.classIdToClassInfoMap[ClassFields.get.vmClass(addr)];
     var objClassInfo = J2ME.getClassInfo(objAddr);
     return J2ME.isAssignableTo(objClassInfo, classInfo) ? 1 : 0;
 };
@@ -497,7 +491,7 @@ Native["java/lang/Runtime.gc.()V"] = function(addr) {
     // so GC can be safely run.
     asyncImpl("V", new Promise(function(resolve, reject) {
         setTimeout(function() {
-            ASM._forceCollection();
+            J2ME.forceCollection();
             resolve();
         });
     }));
@@ -634,14 +628,40 @@ Native["com/sun/cldchi/io/ConsoleOutputStream.write.(I)V"] = function(addr, ch)
     console.print(ch);
 };
 
+/**
+ * The decompressed bytes of a resource, shared by all the streams reading it.
+ * Compressed resources are inflated as far as they've been read, stored ones
+ * are read from the JAR directly.
+ */
+function Resource(file) {
+    if (file instanceof Inflater) {
+        this.inflater = file;
+        this.data = file.buffer;
+    } else {
+        this.inflater = null;
+        this.data = file;
+    }
+    // For bulk copies to byte arrays.
+    this.signedData = new Int8Array(this.data.buffer, this.data.byteOffset, this.data.length);
+}
+
+/**
+ * Makes sure the first |length| bytes are available.
+ */
+Resource.prototype.ensure = function(length) {
+    if (this.inflater) {
+        this.inflater.inflateTo(length);
+    }
+}
+
 Native["com/sun/cldc/io/ResourceInputStream.open.(Ljava/lang/String;)Ljava/lang/Object;"] = function(addr, nameAddr) {
     var fileName = J2ME.fromStringAddr(nameAddr);
-    var data = JARStore.loadFile(fileName);
+    var file = JARStore.openFile(fileName);
     var objAddr = J2ME.Constants.NULL;
-    if (data) {
+    if (file) {
         objAddr = J2ME.allocObject(CLASSES.java_lang_Object);
         setNative(objAddr, {
-            data: data,
+            resource: new Resource(file),
             pos: 0,
         });
     }
@@ -651,8 +671,9 @@ Native["com/sun/cldc/io/ResourceInputStream.open.(Ljava/lang/String;)Ljava/lang/
 Native["com/sun/cldc/io/ResourceInputStream.clone.(Ljava/lang/Object;)Ljava/lang/Object;"] = function(addr, sourceAddr) {
     var objAddr = J2ME.allocObject(CLASSES.java_lang_Object);
     var sourceDecoder = NativeMap.get(sourceAddr);
+    // The resource never changes, only the position is copied.
     setNative(objAddr, {
-        data: new Uint8Array(sourceDecoder.data),
+        resource: sourceDecoder.resource,
         pos: sourceDecoder.pos,
     });
     return objAddr;
@@ -660,26 +681,32 @@ Native["com/sun/cldc/io/ResourceInputStream.clone.(Ljava/lang/Object;)Ljava/lang
 
 Native["com/sun/cldc/io/ResourceInputStream.bytesRemain.(Ljava/lang/Object;)I"] = function(addr, fileDecoderAddr) {
     var handle = NativeMap.get(fileDecoderAddr);
-    return handle.data.length - handle.pos;
+    return handle.resource.data.length - handle.pos;
 };
 
 Native["com/sun/cldc/io/ResourceInputStream.readByte.(Ljava/lang/Object;)I"] = function(addr, fileDecoderAddr) {
     var handle = NativeMap.get(fileDecoderAddr);
-    return (handle.data.length - handle.pos > 0) ? handle.data[handle.pos++] : -1;
+    var resource = handle.resource;
+    if (handle.pos >= resource.data.length) {
+        return -1;
+    }
+    resource.ensure(handle.pos + 1);
+    return resource.data[handle.pos++];
 };
 
 Native["com/sun/cldc/io/ResourceInputStream.readBytes.(Ljava/lang/Object;[BII)I"] =
 function(addr, fileDecoderAddr, bAddr, off, len) {
-    var b = J2ME.getArrayFromAddr(bAddr);
     var handle = NativeMap.get(fileDecoderAddr);
-    var data = handle.data;
-    var remaining = data.length - handle.pos;
+    var resource = handle.resource;
+    var remaining = resource.data.length - handle.pos;
     if (len > remaining)
         len = remaining;
-    for (var n = 0; n < len; ++n)
-        b[off+n] = data[handle.pos+n];
+    if (len <= 0)
+        return -1;
+    resource.ensure(handle.pos + len);
+    i8.set(resource.signedData.subarray(handle.pos, handle.pos + len), J2ME.getArrayOffset(bAddr) + off);
     handle.pos += len;
-    return (len > 0) ? len : -1;
+    return len;
 };
 
 Native["com/sun/cldc/isolate/Isolate.registerNewIsolate.()V"] = function(addr) {
@@ -805,13 +832,14 @@ Native["org/mozilla/internal/Sys.eval.(Ljava/lang/String;)V"] = function(addr, s
 };
 
 Native["java/lang/String.intern.()Ljava/lang/String;"] = function(addr) {
-  var self = getHandle(addr);
-  var value = J2ME.getArrayFromAddr(self.value);
-  var internedStringAddr = J2ME.internedStrings.getByRange(value, self.offset, self.count);
+  var value = J2ME.getArrayFromAddr(StringFields.get.value(addr));
+  var offset = StringFields.get.offset(addr);
+  var count = StringFields.get.count(addr);
+  var internedStringAddr = J2ME.internedStrings.getByRange(value, offset, count);
   if (internedStringAddr !== null) {
     return internedStringAddr;
   }
-  J2ME.internedStrings.put(value.subarray(self.offset, self.offset + self.count), addr);
+  J2ME.internedStrings.put(value.subarray(offset, offset + count), addr);
   return addr;
 };
 
@@ -20,6 +20,7 @@
 ///<reference path='long.ts' />
 ///<reference path='scheduler.ts' />
 ///<reference path='vm/context.ts' />
+///<reference path='vm/aotProfile.ts' />
 
 // JIT
 
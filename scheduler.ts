@@ -8,21 +8,32 @@ module J2ME {
   /** @const */ export var ISOLATE_NORM_PRIORITY: number = 2;
   /** @const */ export var ISOLATE_MAX_PRIORITY: number = 3;
 
+  declare var config;
+
   /**
    * Maximum time in ms that all of the threads have to run before the event
    * loop is run.
    * NOTE: this number is somewhat arbitrarily chosen, but the thought is
    * we'd like the system to respond in under 100ms, so by using 80ms we then
    * have 20ms to get an event, start processing it, and render an update.
-   * @const
+   * Can be overridden with |config.maxWindowExecutionTime| or at runtime with
+   * |Scheduler.setMaxWindowExecutionTime|.
    */
-  var MAX_WINDOW_EXECUTION_TIME: number = 80;
+  var MAX_WINDOW_EXECUTION_TIME: number = +config.maxWindowExecutionTime || 80;
 
   /**
    * Number of ms between preemption checks, chosen arbitrarily.
-   * @const
+   * Can be overridden with |config.preemptionInterval| or at runtime with
+   * |Scheduler.setPreemptionInterval|.
    */
-  var PREEMPTION_INTERVAL: number = 5;
+  var PREEMPTION_INTERVAL: number = +config.preemptionInterval || 5;
+
+  /**
+   * Minimum time in ms that has to be left in the execution window for a
+   * collection to be started when there are no threads to run, see
+   * |Scheduler.collectInIdleTime|.
+   */
+  var MIN_IDLE_COLLECTION_TIME: number = 2;
 
   /**
    * Time when the last preemption check was allowed.
@@ -46,19 +57,97 @@ module J2ME {
    */
   var threadTrackingTime: number = 0;
 
+  /**
+   * Time when the current thread started its slice.
+   */
+  var sliceStartTime: number = 0;
+
   /**
    * Used to block preemptions from happening during code that can't handle them.
    */
   export var preemptionLockLevel: number = 0;
 
   /**
-   * All of the currently runnable threads. Sorted in ascending order by virtualRuntime.
-   * @type {Array}
+   * Anything the scheduler orders by virtual runtime, i.e. threads and isolates.
+   */
+  export interface Schedulable {
+    virtualRuntime: number;
+  }
+
+  /**
+   * Binary min-heap ordered by |virtualRuntime|. Keys must not change while an item
+   * is in the heap, which holds since only running threads accumulate runtime and
+   * running threads and their isolates are never queued.
+   */
+  export class RunQueue<T extends Schedulable> {
+    private _items: T [] = [];
+
+    get length(): number {
+      return this._items.length;
+    }
+
+    peek(): T {
+      return this._items[0];
+    }
+
+    push(item: T) {
+      var items = this._items;
+      var i = items.length;
+      items.push(item);
+      var key = item.virtualRuntime;
+      while (i > 0) {
+        var parent = (i - 1) >> 1;
+        if (items[parent].virtualRuntime <= key) {
+          break;
+        }
+        items[i] = items[parent];
+        i = parent;
+      }
+      items[i] = item;
+    }
+
+    pop(): T {
+      var items = this._items;
+      var top = items[0];
+      var last = items.pop();
+      var length = items.length;
+      if (length === 0) {
+        return top;
+      }
+      var key = last.virtualRuntime;
+      var i = 0;
+      while (true) {
+        var child = (i << 1) + 1;
+        if (child >= length) {
+          break;
+        }
+        if (child + 1 < length && items[child + 1].virtualRuntime < items[child].virtualRuntime) {
+          child ++;
+        }
+        if (items[child].virtualRuntime >= key) {
+          break;
+        }
+        items[i] = items[child];
+        i = child;
+      }
+      items[i] = last;
+      return top;
+    }
+  }
+
+  /**
+   * Isolates with runnable threads, not counting the isolate of the current thread.
+   * Each isolate keeps its own queue of runnable threads in |Runtime.runQueue|.
    */
-  var runningQueue: Context [] = [];
+  var isolateQueue = new RunQueue<Runtime>();
 
   /**
-   * The smallest virtual runtime of all the currently executing threads. This number is
+   * Number of runnable threads in all isolates, not counting the current thread.
+   */
+  var runnableCount: number = 0;
+
+  /**
+   * The smallest virtual runtime of all the currently executing isolates. This number is
    * monotonically increasing.
    */
   var minVirtualRuntime: number = 0;
@@ -74,10 +163,37 @@ module J2ME {
   var current: Context = null;
 
   /**
-   * Rate the virtual runtime increases.
+   * True when the current context yielded and must be queued again once it stops executing,
+   * its virtual runtime can't be updated while it's in a queue.
+   */
+  var requeueCurrent: boolean = false;
+
+  /**
+   * Rate the virtual runtime of the current thread increases.
    */
   var currentTimeScale: number = 1;
 
+  /**
+   * Rate the virtual runtime of the current isolate increases.
+   */
+  var currentIsolateTimeScale: number = 1;
+
+  /**
+   * How fast the virtual runtime of an isolate grows, indexed by its priority. Isolates
+   * with a higher priority get a larger share of the execution window.
+   */
+  var isolateTimeScales = [1, 1, 0.5, 0.25];
+
+  /**
+   * Distribution of the length of thread slices, in ms, for all threads.
+   */
+  export var runTimeHistogram = release ? null : new Metrics.Histogram("Thread Run Time");
+
+  /**
+   * Distribution of the time, in ms, between threads becoming runnable and running, for all threads.
+   */
+  export var waitTimeHistogram = release ? null : new Metrics.Histogram("Thread Wait Time");
+
 
   /**
    * The scheduler tracks the amount of time(virtualRuntime) that each thread has had to execute
@@ -87,20 +203,53 @@ module J2ME {
    * the event loop a turn there is an overall MAX_WINDOW_EXECUTION_TIME that if reached will yield
    * all the threads and schedule them to resume on a setTimeout. This allows us to run up to
    * MAX_WINDOW_EXECUTION_TIME/PREEMPTION_INTERVAL threads per execution window.
+   *
+   * Time is shared fairly between isolates first, and then between the threads of an isolate,
+   * so an isolate with many threads can't starve the others. Isolates also have a virtual
+   * runtime, which is scaled by the isolate priority.
    */
   export class Scheduler {
 
     static enqueue(ctx: Context, directExecution?: boolean) {
+      if (ctx === current) {
+        requeueCurrent = true;
+        return;
+      }
+      var runtime = ctx.runtime;
+      if (runtime.virtualRuntime === 0) {
+        // Ensure the new isolate doesn't dominate.
+        runtime.virtualRuntime = minVirtualRuntime;
+      }
       if (ctx.virtualRuntime === 0) {
         // Ensure the new thread doesn't dominate.
-        ctx.virtualRuntime = minVirtualRuntime;
+        ctx.virtualRuntime = runtime.minVirtualRuntime;
+      }
+      ctx.enqueueTime = performance.now();
+      runtime.runQueue.push(ctx);
+      runnableCount ++;
+      if (!runtime.isQueued && (!current || current.runtime !== runtime)) {
+        runtime.isQueued = true;
+        isolateQueue.push(runtime);
       }
-      runningQueue.unshift(ctx);
-      runningQueue.sort(function(a: Context, b: Context) {
-        return a.virtualRuntime - b.virtualRuntime;
-      });
       Scheduler.updateMinVirtualRuntime();
-      Scheduler.processRunningQueue(directExecution);
+      if (!current) {
+        Scheduler.processRunningQueue(directExecution);
+      }
+    }
+
+    static setMaxWindowExecutionTime(ms: number) {
+      MAX_WINDOW_EXECUTION_TIME = ms;
+    }
+
+    static setPreemptionInterval(ms: number) {
+      PREEMPTION_INTERVAL = ms;
+    }
+
+    private static dequeue(): Context {
+      var runtime = isolateQueue.pop();
+      runtime.isQueued = false;
+      runnableCount --;
+      return runtime.runQueue.pop();
     }
 
     private static processRunningQueue(directExecution?: boolean) {
@@ -108,14 +257,19 @@ module J2ME {
         processQueueScheduled = false;
         try {
           windowStartTime = performance.now();
-          while (runningQueue.length) {
+          while (runnableCount) {
             var now = performance.now();
             if (now - windowStartTime >= MAX_WINDOW_EXECUTION_TIME) {
               break;
             }
-            var ctx = runningQueue.shift();
-            threadTrackingTime = lastPreemptionCheck = now;
+            var ctx = Scheduler.dequeue();
+            threadTrackingTime = lastPreemptionCheck = sliceStartTime = now;
             current = ctx;
+            if (!release) {
+              var waitTime = now - ctx.enqueueTime;
+              waitTimeHistogram.record(waitTime);
+              ctx.waitTimeHistogram.record(waitTime);
+            }
             /*
              * The current scaling is a simple linear function where the scale goes from 1x to .1x for lowest
              * priority to highest priority.
@@ -126,12 +280,38 @@ module J2ME {
              * high    high   .1x
              */
             currentTimeScale = -0.03103448276 * (ctx.priority * ctx.runtime.priority) + 1.031034483;
-            ctx.execute();
-            Scheduler.updateCurrentRuntime();
-            current = null;
+            currentIsolateTimeScale = isolateTimeScales[ctx.runtime.priority] || 1;
+            var threw = true;
+            try {
+              ctx.execute();
+              threw = false;
+              Scheduler.updateCurrentRuntime();
+              if (!release) {
+                var runTime = performance.now() - sliceStartTime;
+                runTimeHistogram.record(runTime);
+                ctx.runTimeHistogram.record(runTime);
+              }
+            } finally {
+              current = null;
+              if (requeueCurrent) {
+                requeueCurrent = false;
+                // The current thread is gone if it threw.
+                threw || Scheduler.enqueue(ctx);
+              }
+              // Requeue the isolate if any of its threads became runnable while it was running,
+              // even if this thread threw, or they would be left out of the isolate queue.
+              var runtime = ctx.runtime;
+              if (runtime.runQueue.length && !runtime.isQueued) {
+                runtime.isQueued = true;
+                isolateQueue.push(runtime);
+              }
+            }
+          }
+          if (!runnableCount) {
+            Scheduler.collectInIdleTime();
           }
         } finally {
-          if (runningQueue.length) {
+          if (runnableCount) {
             Scheduler.processRunningQueue();
           }
         }
@@ -148,33 +328,55 @@ module J2ME {
       (<any>window).nextTickDuringEvents(run);
     }
 
+    /**
+     * Spends what is left of the execution window on a collection, so that the
+     * collector pauses between frames rather than in the middle of one. The
+     * collection is abandoned if it doesn't finish within the window.
+     */
+    private static collectInIdleTime() {
+      var deadline = windowStartTime + MAX_WINDOW_EXECUTION_TIME;
+      if (deadline - performance.now() < MIN_IDLE_COLLECTION_TIME) {
+        return;
+      }
+      collectUntil(deadline);
+    }
+
     private static updateMinVirtualRuntime() {
       var virtualRuntime = minVirtualRuntime;
 
       if (current) {
-        virtualRuntime = current.virtualRuntime;
+        virtualRuntime = current.runtime.virtualRuntime;
       }
 
-      if (runningQueue.length) {
-        var nextContext = runningQueue[0];
+      if (isolateQueue.length) {
+        var nextRuntime = isolateQueue.peek();
         if (!current) {
-          virtualRuntime = nextContext.virtualRuntime;
+          virtualRuntime = nextRuntime.virtualRuntime;
         } else {
-          virtualRuntime = Math.min(virtualRuntime, nextContext.virtualRuntime);
+          virtualRuntime = Math.min(virtualRuntime, nextRuntime.virtualRuntime);
         }
       }
 
       minVirtualRuntime = Math.max(minVirtualRuntime, virtualRuntime);
     }
 
+    private static updateIsolateMinVirtualRuntime(runtime: Runtime) {
+      var virtualRuntime = current.virtualRuntime;
+      if (runtime.runQueue.length) {
+        virtualRuntime = Math.min(virtualRuntime, runtime.runQueue.peek().virtualRuntime);
+      }
+      runtime.minVirtualRuntime = Math.max(runtime.minVirtualRuntime, virtualRuntime);
+    }
+
     private static updateCurrentRuntime() {
       var now = performance.now();
       var ctx = current;
       var executionTime = now - threadTrackingTime;
-      var weightedExecutionTime = executionTime * currentTimeScale;
-      ctx.virtualRuntime += weightedExecutionTime;
+      ctx.virtualRuntime += executionTime * currentTimeScale;
+      ctx.runtime.virtualRuntime += executionTime * currentIsolateTimeScale;
       threadTrackingTime = now;
-      Scheduler.updateMinVirtualRuntime()
+      Scheduler.updateIsolateMinVirtualRuntime(ctx.runtime);
+      Scheduler.updateMinVirtualRuntime();
     }
 
     static shouldPreempt(): boolean {
@@ -198,11 +400,13 @@ module J2ME {
 
       lastPreemptionCheck = now;
 
-      if (runningQueue.length === 0) {
+      if (runnableCount === 0) {
         return false;
       }
 
-      if ($.ctx.virtualRuntime > runningQueue[0].virtualRuntime) {
+      var runtime = $.ctx.runtime;
+      if ((isolateQueue.length && runtime.virtualRuntime > isolateQueue.peek().virtualRuntime) ||
+          (runtime.runQueue.length && $.ctx.virtualRuntime > runtime.runQueue.peek().virtualRuntime)) {
         preemptionCount++;
         threadWriter && threadWriter.writeLn("Preemption: " + elapsed.toFixed(2) + " ms, samples: " + PS + ", count: " + preemptionCount);
         return true;
@@ -210,5 +414,24 @@ module J2ME {
 
       return false;
     }
+
+    /**
+     * Writes the run and wait time histograms of all threads.
+     */
+    static traceHistograms(writer: IndentingWriter) {
+      if (release) {
+        return;
+      }
+      runTimeHistogram.trace(writer);
+      waitTimeHistogram.trace(writer);
+      RuntimeTemplate.all.forEach(function (runtime: RuntimeTemplate) {
+        runtime.allCtxs.forEach(function (ctx: Context) {
+          writer.enter("Thread " + runtime.id + ":" + ctx.id);
+          ctx.runTimeHistogram.trace(writer);
+          ctx.waitTimeHistogram.trace(writer);
+          writer.outdent();
+        });
+      });
+    }
   }
 }
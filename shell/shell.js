@@ -123,6 +123,16 @@ var options = {
     value: config.invokeThreshold,
     type: "number"
   },
+  "maxWindowExecutionTime": {
+    short: "mwet",
+    value: config.maxWindowExecutionTime,
+    type: "number"
+  },
+  "preemptionInterval": {
+    short: "pi",
+    value: config.preemptionInterval,
+    type: "number"
+  },
   "enableOnStackReplacement": {
     short: "osr",
     value: true,
@@ -143,6 +153,11 @@ var options = {
     value: true,
     type: "boolean",
   },
+  "dumpAOTProfile": {
+    short: "aot",
+    value: false,
+    type: "boolean",
+  },
 };
 
 function printUsage() {
@@ -276,6 +291,8 @@ J2ME.maxCompiledMethodCount = options.maxCompiledMethodCount.value;
 J2ME.ConfigThresholds.InvokeThreshold = options.invokeThreshold.value;
 J2ME.ConfigThresholds.BackwardBranchThreshold = options.backwardBranchThreshold.value;
 J2ME.enableOnStackReplacement = options.enableOnStackReplacement.value;
+J2ME.Scheduler.setMaxWindowExecutionTime(options.maxWindowExecutionTime.value);
+J2ME.Scheduler.setPreemptionInterval(options.preemptionInterval.value);
 J2ME.emitCheckArrayBounds = options.emitCheckArrayBounds.value;
 J2ME.emitCheckArrayStore = options.emitCheckArrayStore.value;
 
@@ -303,9 +320,20 @@ if (options.stats.value) {
   }
   if (J2ME.gcCounter) {
     J2ME.gcCounter.traceSorted(writer);
+    J2ME.gcPauseHistogram.trace(writer);
+  }
+  if (J2ME.inlineCacheCounter) {
+    J2ME.inlineCacheCounter.traceSorted(writer);
+  }
+  if (J2ME.runTimeHistogram) {
+    J2ME.Scheduler.traceHistograms(writer);
   }
   J2ME.interpreterCounter.traceSorted(writer);
 }
 if (profileTimeline) {
   J2ME.timeline.createSnapshot().trace(new J2ME.IndentingWriter());
 }
+if (options.dumpAOTProfile.value) {
+  // The shell can't write files, redirect the output to a profile file for jsc.
+  print(J2ME.AOTProfile.dump());
+}
@@ -56,6 +56,7 @@ public class ShellTestlets {
     "gnu/testlet/java/lang/Double/DoubleTest",
     "gnu/testlet/vm/ConditionsTest",
     "gnu/testlet/vm/DupTest",
+    "gnu/testlet/vm/CompiledCollectionTest",
     "test/org/jikesrvm/basic/core/bytecode/TestFloatingRem",
     "test/org/jikesrvm/basic/bugs/R1644449",
     "test/org/jikesrvm/basic/bugs/R1644460",
@@ -616,7 +616,7 @@ casper.test.begin("unit tests", 40 + gfxTests.length, function(test) {
     casper
     .thenOpen("http://localhost:8000/tests/jarstore/jarstoretests.html")
     .waitForText("DONE", function() {
-        test.assertTextExists("DONE: 23 pass, 0 fail", "JARStore unit tests");
+        test.assertTextExists("DONE: 36 pass, 0 fail", "JARStore unit tests");
     });
 
     casper
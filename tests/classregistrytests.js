@@ -0,0 +1,122 @@
+'use strict';
+
+// Define objects and functions that j2me.js expects
+// but are unavailable in the shell environment.
+
+if (typeof console === "undefined") {
+  var console = {
+    log: print,
+  }
+}
+
+console.info = function (c) {
+  putstr(String.fromCharCode(c));
+};
+
+console.error = function (c) {
+  putstr(String.fromCharCode(c));
+};
+
+if (typeof performance === "undefined") {
+  var performance = {
+    now: dateNow,
+  };
+}
+
+var passed = 0, failed = 0;
+
+function is(a, b, msg) {
+  if (a == b) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg + "; expected " + JSON.stringify(b) + ", got " + JSON.stringify(a));
+  }
+}
+
+function ok(a, msg) {
+  if (!!a) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg);
+  }
+}
+
+var tests = [];
+
+function next() {
+  if (tests.length == 0) {
+    ok(true, "TESTS COMPLETED");
+    print("DONE " + passed + "/" + (passed + failed));
+  } else {
+    var test = tests.shift();
+    test();
+  }
+}
+
+// Test setRecordedLoadOrder
+tests.push(function() {
+  CLASSES.setRecordedLoadOrder(["java/lang/Object", "java/util/Random", "java/util/Stack"]);
+  is(CLASSES.prefetchPosition, 1, "Prefetching starts after the recorded classes that are already loaded");
+  is(CLASSES.recordedLoadOrderIndex["java/util/Stack"], 2, "Recorded classes are indexed by their position");
+  is(CLASSES.recordedLoadOrderIndex["java/util/Date"], undefined, "Classes that weren't recorded aren't indexed");
+  next();
+});
+
+// Loading a class on demand skips the classes recorded before it
+tests.push(function() {
+  CLASSES.setRecordedLoadOrder(["java/util/Random", "java/util/EmptyStackException", "java/util/Stack"]);
+  CLASSES.loadClass("java/util/EmptyStackException");
+  is(CLASSES.prefetchPosition, 2, "Prefetch position advances past a class loaded on demand");
+  CLASSES.loadClass("java/util/Random");
+  is(CLASSES.prefetchPosition, 2, "Prefetch position doesn't go back for a class recorded earlier");
+  next();
+});
+
+// Test prefetchClasses
+tests.push(function() {
+  CLASSES.setRecordedLoadOrder(["java/util/Stack", "does/not/Exist", "java/util/Date"]);
+  is(CLASSES.prefetchPosition, 0, "Nothing to skip before prefetching");
+  ok(!CLASSES.prefetchClasses(performance.now() + 60000), "All recorded classes prefetched");
+  is(CLASSES.prefetchPosition, 3, "Prefetch position advances past every recorded class");
+  ok(CLASSES.classes["java/util/Stack"], "Recorded class prefetched");
+  ok(CLASSES.classes["java/util/Date"], "Class recorded after a missing one prefetched");
+  ok(!CLASSES.classes["does/not/Exist"], "Missing class isn't registered");
+  is(CLASSES.loadOrder.indexOf("does/not/Exist"), -1, "Missing class isn't in the load order");
+  ok(!CLASSES.prefetchClasses(performance.now() + 60000), "Nothing left to prefetch");
+  next();
+});
+
+// Test getMergedLoadOrder
+tests.push(function() {
+  CLASSES.setRecordedLoadOrder(["java/util/Stack", "a/Missing"]);
+  var merged = CLASSES.getMergedLoadOrder();
+  is(merged.slice(0, 2).join(), "java/util/Stack,a/Missing", "Merged order starts with the recorded order");
+  is(merged.indexOf("java/util/Stack", 1), -1, "Recorded classes that were loaded aren't added again");
+  ok(merged.indexOf("java/lang/Object") > 1, "Classes loaded by this session are added after the recorded ones");
+  ok(merged.indexOf("java/util/Date") > merged.indexOf("java/lang/Object"), "Classes are added in the order they were loaded");
+  next();
+});
+
+try {
+  load("config/default.js", "polyfill/promise.js", "bld/native.js", "libs/encoding.js", "bld/j2me.js", "libs/zipfile.js",
+       "libs/jarstore.js", "native.js");
+
+  var dump = putstr;
+
+  JARStore.addBuiltIn("java/classes.jar", snarf("java/classes.jar", "binary").buffer);
+
+  CLASSES.initializeBuiltinClasses();
+
+  var start = dateNow();
+
+  next();
+
+  print("Time: " + (dateNow() - start).toFixed(4) + " ms");
+} catch (x) {
+  print(x);
+  print(x.stack);
+}
@@ -6,7 +6,7 @@ import gnu.testlet.Testlet;
 import java.io.*;
 
 public class TestResourceInputStream implements Testlet {
-    public int getExpectedPass() { return 4; }
+    public int getExpectedPass() { return 9; }
     public int getExpectedFail() { return 0; }
     public int getExpectedKnownFail() { return 0; }
     TestHarness th;
@@ -40,6 +40,53 @@ public class TestResourceInputStream implements Testlet {
         th.check(readLine(reader) == null);
     }
 
+    private byte[] readFully(InputStream stream, int length) throws IOException {
+        byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = stream.read(data, read, length - read);
+            if (n == -1) {
+                break;
+            }
+            read += n;
+        }
+        return data;
+    }
+
+    private boolean equals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads parts of a large resource, the rest of it is never needed.
+    public void readPartially() throws IOException {
+        final int LENGTH = 57590;
+        InputStream stream = getClass().getResourceAsStream("/gfx/images/FirefoxLogo.png");
+        byte[] all = readFully(stream, LENGTH + 1);
+        th.check(stream.read(), -1);
+        stream.close();
+
+        stream = getClass().getResourceAsStream("/gfx/images/FirefoxLogo.png");
+        byte[] header = readFully(stream, 8);
+        th.check(header[1] == 'P' && header[2] == 'N' && header[3] == 'G');
+
+        stream.mark(0);
+        th.check(equals(readFully(stream, 1000), 0, all, 8, 1000));
+
+        stream.reset();
+        boolean same = true;
+        for (int i = 0; i < 16; i++) {
+            same &= stream.read() == (all[8 + i] & 0xFF);
+        }
+        th.check(same);
+        th.check(stream.available(), LENGTH - 8 - 16);
+        stream.close();
+    }
+
     public void test(TestHarness th) {
         this.th = th;
 
@@ -49,6 +96,8 @@ public class TestResourceInputStream implements Testlet {
             readWithStreamReader(stream);
             stream.reset();
             readWithStreamReader(stream);
+
+            readPartially();
         } catch (Exception e) {
             th.fail("Unexpected exception: " + e);
             e.printStackTrace();
@@ -4,7 +4,7 @@ import gnu.testlet.TestHarness;
 import gnu.testlet.Testlet;
 
 public class TestDES implements Testlet {
-    public int getExpectedPass() { return 20; }
+    public int getExpectedPass() { return 24; }
     public int getExpectedFail() { return 0; }
     public int getExpectedKnownFail() { return 0; }
     public static byte[] hexToBytes(String s) {
@@ -73,6 +73,43 @@ public class TestDES implements Testlet {
         }
     }
 
+    public void testDESVectors(TestHarness th) throws NoSuchAlgorithmException,
+                                                      InvalidKeyException,
+                                                      ShortBufferException,
+                                                      NoSuchPaddingException,
+                                                      IllegalBlockSizeException,
+                                                      BadPaddingException,
+                                                      InvalidAlgorithmParameterException {
+        byte[] key = hexToBytes("133457799BBCDFF1");
+        byte[] message = hexToBytes("0123456789ABCDEF");
+        byte[] buf = new byte[8];
+
+        Cipher cipher = Cipher.getInstance("DES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKey(key, 0, key.length, "DES"));
+        cipher.doFinal(message, 0, message.length, buf, 0);
+        th.check(Util.hexEncode(buf), "85e813540f0ab405");
+
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKey(key, 0, key.length, "DES"));
+        cipher.doFinal(hexToBytes("85E813540F0AB405"), 0, 8, buf, 0);
+        th.check(Util.hexEncode(buf), "0123456789abcdef");
+
+        // FIPS 81 CBC example.
+        key = hexToBytes("0123456789ABCDEF");
+        byte[] iv = hexToBytes("1234567890ABCDEF");
+        message = "Now is the time for all ".getBytes();
+        buf = new byte[message.length];
+
+        cipher = Cipher.getInstance("DES/CBC/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKey(key, 0, key.length, "DES"), new IvParameter(iv, 0, iv.length));
+        cipher.doFinal(message, 0, message.length, buf, 0);
+        th.check(Util.hexEncode(buf), "e5c7cdde872bf27c43e934008c389c0f683788499a7c05f6");
+
+        byte[] decMessage = new byte[buf.length];
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKey(key, 0, key.length, "DES"), new IvParameter(iv, 0, iv.length));
+        cipher.doFinal(buf, 0, buf.length, decMessage, 0);
+        th.check(new String(decMessage), "Now is the time for all ");
+    }
+
     public void test(TestHarness th) {
         try {
             testDESECB(th, "eightkey", "Plaintext");
@@ -87,5 +124,12 @@ public class TestDES implements Testlet {
             th.fail("Unexpected exception: " + e);
             e.printStackTrace();
         }
+
+        try {
+            testDESVectors(th);
+        } catch (Exception e) {
+            th.fail("Unexpected exception: " + e);
+            e.printStackTrace();
+        }
     }
 }
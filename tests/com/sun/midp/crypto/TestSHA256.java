@@ -0,0 +1,67 @@
+package com.sun.midp.crypto;
+
+import gnu.testlet.TestHarness;
+import gnu.testlet.Testlet;
+
+public class TestSHA256 implements Testlet {
+    public int getExpectedPass() { return 9; }
+    public int getExpectedFail() { return 0; }
+    public int getExpectedKnownFail() { return 0; }
+
+    public void test(TestHarness th) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            th.check(md.getAlgorithm(), "SHA-256");
+            th.check(md.getDigestLength(), 32);
+
+            byte[] buf = new byte[32];
+            md.digest(buf, 0, 32);
+            th.check(Util.hexEncode(buf), "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+
+            String abc = "abc";
+            md.update(abc.getBytes(), 0, abc.length());
+            md.digest(buf, 0, 32);
+            th.check(Util.hexEncode(buf), "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+
+            // A message whose padding needs a second block.
+            String twoBlocks = "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq";
+            md.update(twoBlocks.getBytes(), 0, twoBlocks.length());
+            md.digest(buf, 0, 32);
+            th.check(Util.hexEncode(buf), "248d6a61d20638b8e5c026930c3e6039a33ce45964ff2167f6ecedd419db06c1");
+
+            // Updates that straddle block boundaries.
+            byte[] a = new byte[1000];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = (byte)'a';
+            }
+            md.update(a, 0, 7);
+            md.update(a, 7, 130);
+            md.update(a, 137, 863);
+            md.digest(buf, 0, 32);
+            th.check(Util.hexEncode(buf), "41edece42d63e8d9bf515a9ba6932e1c20cbc9f5a5d134645adb5db1b9737ea3");
+
+            // Clones hash independently.
+            md.update(a, 0, 1);
+            MessageDigest md2 = (MessageDigest)md.clone();
+            byte[] b = "b".getBytes();
+            byte[] c = "c".getBytes();
+            md.update(b, 0, 1);
+            md2.update(c, 0, 1);
+            byte[] buf2 = new byte[32];
+            md.digest(buf, 0, 32);
+            md2.digest(buf2, 0, 32);
+            th.check(Util.hexEncode(buf), "fb8e20fc2e4c3f248c60c39bd652f3c1347298bb977b8b4d5903b85055620603");
+            th.check(Util.hexEncode(buf2), "f45de51cdef30991551e41e882dd7b5404799648a0a00753f44fc966e6153fc1");
+
+            try {
+                md.digest(buf, 0, 20);
+                th.fail("Should've raised an exception");
+            } catch (DigestException ex) {
+                th.check(true, "Exception raised");
+            }
+        } catch (Exception e) {
+            th.fail("Unexpected exception: " + e);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sun.midp.rms;
+
+import gnu.testlet.TestHarness;
+import gnu.testlet.Testlet;
+import javax.microedition.rms.InvalidRecordIDException;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+
+public class TestRecordStoreMigration implements Testlet, SuiteContainer {
+    public int getExpectedPass() { return 12; }
+    public int getExpectedFail() { return 0; }
+    public int getExpectedKnownFail() { return 0; }
+    // SuiteContainer stubs
+    public int getCallersSuiteId() { return 0; }
+    public int getSuiteId(String vendorName, String suiteName) { return 0; }
+    public String getSecureFilenameBase(int suiteId) { return "testBase"; }
+    public int getStorageAreaId(int suiteId) { return 0; }
+
+    static final String NAME = "testMigration";
+
+    // Writes a record store in the block format: record 1 with three bytes,
+    // a free block, and record 2 without data.
+    private void writeBlockFormat() throws java.io.IOException {
+        byte[] header = new byte[AbstractRecordStoreImpl.DB_HEADER_SIZE];
+        System.arraycopy(AbstractRecordStoreImpl.DB_SIGNATURE, 0, header, 0,
+                         AbstractRecordStoreImpl.DB_SIGNATURE.length);
+        RecordStoreUtil.putInt(3, header, AbstractRecordStoreImpl.RS2_NEXT_ID);
+        RecordStoreUtil.putInt(2, header, AbstractRecordStoreImpl.RS3_NUM_LIVE);
+        RecordStoreUtil.putInt(5, header, AbstractRecordStoreImpl.RS4_VERSION);
+        RecordStoreUtil.putInt(16 + 16 + 8, header, AbstractRecordStoreImpl.RS6_DATA_SIZE);
+        RecordStoreUtil.putInt(16, header, AbstractRecordStoreImpl.RS7_FREE_SIZE);
+
+        byte[] blocks = new byte[16 + 16 + 8];
+        RecordStoreUtil.putInt(1, blocks, 0);
+        RecordStoreUtil.putInt(3, blocks, 4);
+        blocks[8] = 1;
+        blocks[9] = 2;
+        blocks[10] = 3;
+        RecordStoreUtil.putInt(-1, blocks, 16);
+        RecordStoreUtil.putInt(8, blocks, 20);
+        RecordStoreUtil.putInt(2, blocks, 32);
+        RecordStoreUtil.putInt(0, blocks, 36);
+
+        RecordStoreFile file = new RecordStoreFile(0, NAME, RecordStoreFile.DB_EXTENSION);
+        file.write(header);
+        file.write(blocks);
+        file.commitWrite();
+        file.close();
+
+        // An index of the blocks, as written by the tree index implementation.
+        file = new RecordStoreFile(0, NAME, RecordStoreFile.IDX_EXTENSION);
+        file.write(new byte[16]);
+        file.commitWrite();
+        file.close();
+    }
+
+    public void test(TestHarness th) {
+        RmsEnvironment.init(this);
+
+        try {
+            writeBlockFormat();
+
+            RecordStore store = RecordStore.openRecordStore(NAME, false);
+            th.check(store.getNumRecords(), 2);
+            th.check(store.getNextRecordID(), 3);
+            th.check(store.getVersion(), 5);
+            th.check(!RecordStoreUtil.exists("testBase", NAME, RecordStoreFile.IDX_EXTENSION));
+
+            byte[] data = store.getRecord(1);
+            th.check(data.length, 3);
+            th.check(data[0] == 1 && data[1] == 2 && data[2] == 3);
+            th.check(store.getRecord(2), null);
+
+            // The free block isn't part of the record store anymore.
+            th.check(store.getSize(), AbstractRecordStoreImpl.DB_HEADER_SIZE + 16 + 8);
+
+            // Records survive closing the migrated record store.
+            int recordId = store.addRecord(new byte[] { 4, 5 }, 0, 2);
+            store.deleteRecord(1);
+            store.closeRecordStore();
+
+            store = RecordStore.openRecordStore(NAME, false);
+            th.check(store.getNumRecords(), 2);
+            th.check(store.getRecord(recordId)[1], 5);
+            try {
+                store.getRecord(1);
+                th.fail("deleted record can be read");
+            } catch (InvalidRecordIDException e) {
+                th.check(true);
+            }
+
+            byte[] buffer = new byte[1];
+            try {
+                store.getRecord(recordId, buffer, 0);
+                th.fail("record copied into a buffer that is too small");
+            } catch (ArrayIndexOutOfBoundsException e) {
+                th.check(true);
+            }
+
+            store.closeRecordStore();
+            RecordStore.deleteRecordStore(NAME);
+        } catch (Exception e) {
+            th.fail("Unexpected exception: " + e);
+        }
+    }
+}
@@ -865,6 +865,60 @@ tests.push(function() {
   next();
 });
 
+// Files larger than a page.
+var pagedData = new Uint8Array(40000);
+for (var i = 0; i < pagedData.length; i++) {
+  pagedData[i] = i & 0xff;
+}
+var pagedFd1, pagedFd2;
+
+tests.push(function() {
+  ok(fs.create("/paged", new Blob([pagedData])), "created a file larger than a page");
+  fs.open("/paged", function(fd) {
+    pagedFd1 = fd;
+    fs.open("/paged", function(fd) {
+      pagedFd2 = fd;
+      next();
+    });
+  });
+});
+
+tests.push(function() {
+  fsWrite(pagedFd1, new Uint8Array(100).fill(7), 39990);
+  fs.flush(pagedFd1);
+  is(fs.size("/paged"), 40090, "flushed file's size is 40090");
+  is(fs.getsize(pagedFd2), 40090, "other handle sees the flushed size");
+  var data = fs.read(pagedFd2, 39980, 40090);
+  is(data[9], 39989 & 0xff, "other handle sees unmodified data");
+  is(data[10], 7, "other handle sees flushed data");
+  fs.close(pagedFd1);
+  fs.close(pagedFd2);
+  next();
+});
+
+tests.push(function() {
+  fs.open("/paged", function(fd) {
+    var data = fs.read(fd, 0);
+    is(data.length, 40090, "reopened file has all pages");
+    is(data[20000], 20000 & 0xff, "data in an unmodified page is preserved");
+    is(data[40089], 7, "data in a modified page is preserved");
+    fs.close(fd);
+    next();
+  });
+});
+
+tests.push(function() {
+  ok(fs.truncate("/paged", 20000), "truncated a file in the middle of a page");
+  fs.open("/paged", function(fd) {
+    var data = fs.read(fd, 0);
+    is(data.length, 20000, "truncated file has the right size");
+    is(data[19999], 19999 & 0xff, "truncated file's last byte is preserved");
+    fs.close(fd);
+    ok(fs.remove("/paged"), "removed a paged file");
+    next();
+  });
+});
+
 tests.push(function() {
   fs.syncStore(function() {
     // There's nothing we can check, since the sync status of the store
@@ -0,0 +1,66 @@
+package gnu.testlet.vm;
+
+import gnu.testlet.*;
+
+public class CompiledCollectionTest implements Testlet {
+	public int getExpectedPass() { return 4; }
+	public int getExpectedFail() { return 0; }
+	public int getExpectedKnownFail() { return 0; }
+
+	// Enough garbage per call to spend the allocation budget a few times.
+	static final int COUNT = 512;
+	static final int GARBAGE_SIZE = 16 * 1024;
+
+	static class Node {
+		int value;
+		byte[] data;
+		Node next;
+
+		Node(int value, byte[] data, Node next) {
+			this.value = value;
+			this.data = data;
+			this.next = next;
+		}
+	}
+
+	static String name;
+
+	// Allocates garbage in a loop, so collections run while this method is
+	// compiled. The list is only reachable from a local, and each new Node is
+	// only on the operand stack while its data array is allocated.
+	static Node allocate(int count) {
+		Node list = null;
+		String kept = "kept" + count;
+		for (int i = 0; i < count; i++) {
+			byte[] garbage = new byte[GARBAGE_SIZE];
+			garbage[GARBAGE_SIZE - 1] = (byte) i;
+			list = new Node(i, new byte[] { (byte) i, (byte) garbage[GARBAGE_SIZE - 1] }, list);
+		}
+		name = kept;
+		return list;
+	}
+
+	public void test(TestHarness th) {
+		boolean valuesKept = true;
+		boolean dataKept = true;
+		boolean namesKept = true;
+		int length = 0;
+		// Call it enough times for it to be compiled.
+		for (int j = 0; j < 8; j++) {
+			Node list = allocate(COUNT);
+			namesKept &= name.equals("kept" + COUNT);
+			length = 0;
+			for (Node node = list; node != null; node = node.next) {
+				valuesKept &= node.value == COUNT - 1 - length;
+				dataKept &= node.data.length == 2 &&
+				            node.data[0] == (byte) node.value &&
+				            node.data[1] == (byte) node.value;
+				length++;
+			}
+		}
+		th.check(length, COUNT);
+		th.check(valuesKept, "Values of the objects held by a compiled loop survive collections");
+		th.check(dataKept, "Arrays allocated while their holder was on the stack survive collections");
+		th.check(namesKept, "Objects held by a compiled method's locals survive collections");
+	}
+}
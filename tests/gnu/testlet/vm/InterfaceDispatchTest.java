@@ -0,0 +1,93 @@
+package gnu.testlet.vm;
+
+import gnu.testlet.*;
+
+public class InterfaceDispatchTest implements Testlet {
+    public int getExpectedPass() { return 5; }
+    public int getExpectedFail() { return 0; }
+    public int getExpectedKnownFail() { return 0; }
+
+    private interface Value {
+        public int value();
+    }
+
+    private interface Named {
+        public int value();
+        public String name();
+    }
+
+    private static class One implements Value {
+        public int value() { return 1; }
+    }
+
+    private static class Two implements Value {
+        public int value() { return 2; }
+    }
+
+    private static class Three implements Value, Named {
+        public int value() { return 3; }
+        public String name() { return "three"; }
+    }
+
+    // Implements the interface only through its super class.
+    private static class Four extends Three {
+        public int value() { return 4; }
+    }
+
+    private static class Base {
+        public int value() { return 5; }
+    }
+
+    // The interface method is implemented by a class that doesn't implement the interface.
+    private static class Five extends Base implements Value {
+    }
+
+    // Call sites are in separate methods so each one sees a fixed set of receivers.
+    // The loops are long enough for the methods to get compiled.
+
+    static int sumMonomorphic(Value[] values) {
+        int sum = 0;
+        for (int i = 0; i < 2000; i++) {
+            sum += values[0].value();
+        }
+        return sum;
+    }
+
+    static int sumPolymorphic(Value[] values) {
+        int sum = 0;
+        for (int i = 0; i < 2000; i++) {
+            sum += values[i & 1].value();
+        }
+        return sum;
+    }
+
+    static int sumMegamorphic(Value[] values) {
+        int sum = 0;
+        for (int i = 0; i < 2000; i++) {
+            sum += values[i % values.length].value();
+        }
+        return sum;
+    }
+
+    static int sumNamed(Named[] values) {
+        int sum = 0;
+        for (int i = 0; i < 2000; i++) {
+            sum += values[i & 1].value() + values[i & 1].name().length();
+        }
+        return sum;
+    }
+
+    public void test(TestHarness th) {
+        Value[] values = new Value[] { new One(), new Two(), new Three(), new Four(), new Five() };
+
+        th.check(sumMonomorphic(values), 2000);
+        th.check(sumPolymorphic(values), 3000);
+        th.check(sumMegamorphic(values), 6000);
+
+        Named[] named = new Named[] { new Three(), new Four() };
+        th.check(sumNamed(named), 1000 * 3 + 1000 * 4 + 2000 * 5);
+
+        // Run the polymorphic site again with a receiver it hasn't seen yet.
+        th.check(sumPolymorphic(new Value[] { new Five(), new Four() }), 9000);
+    }
+}
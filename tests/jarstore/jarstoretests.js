@@ -35,6 +35,34 @@ function ok(a, msg) {
 
 var tests = [];
 
+// Counts the entries of the "inflated" store by JAR checksum.
+function getInflatedChecksums() {
+  return new Promise(function(resolve, reject) {
+    var request = indexedDB.open("JARStore");
+    request.onerror = function() {
+      reject(request.error.name);
+    };
+    request.onsuccess = function() {
+      var database = request.result;
+      var counts = new Map();
+      var transaction = database.transaction("inflated", "readonly");
+      var cursorRequest = transaction.objectStore("inflated").openCursor();
+      cursorRequest.onsuccess = function() {
+        var cursor = cursorRequest.result;
+        if (cursor) {
+          var checksum = cursor.value.checksum;
+          counts.set(checksum, (counts.get(checksum) || 0) + 1);
+          cursor.continue();
+        }
+      };
+      transaction.oncomplete = function() {
+        database.close();
+        resolve(counts);
+      };
+    };
+  });
+}
+
 function next() {
   if (tests.length == 0) {
     ok(true, "TESTS COMPLETED");
@@ -164,4 +192,90 @@ tests.push(function() {
   JARStore.clear().then(next);
 });
 
+var inflatedChecksum;
+
+tests.push(function() {
+  load("../compressed.jar", "arraybuffer").then(function(data) {
+    var expected = new ZipFile(data, false).read("build/RunTests.class");
+    JARStore.installJAR("compressed.jar", data, "MIDlet-Version: 1.0\n").then(function() {
+      JARStore.loadJAR("compressed.jar").then(function(loaded) {
+        ok(loaded === true, "Compressed JAR with inflated classes loaded");
+
+        var bytes = JARStore.loadFile("build/RunTests.class");
+        ok(bytes != null && bytes.length === expected.length &&
+           bytes.every(function(b, i) { return b === expected[i]; }), "Inflated class file matches the JAR");
+
+        ok(JARStore.loadFile("build/RunTests.class") == null, "Inflated class file can be loaded only once");
+
+        getInflatedChecksums().then(function(counts) {
+          is(counts.size, 1, "Inflated class files stored for the installed JAR");
+          inflatedChecksum = counts.keys().next().value;
+          next();
+        });
+      });
+    });
+  });
+});
+
+tests.push(function() {
+  load("../compressed.jar", "arraybuffer").then(function(data) {
+    // Installing a new version drops the inflated classes of the old one.
+    JARStore.installJAR("compressed.jar", data, "MIDlet-Version: 1.1\n").then(function() {
+      JARStore.loadJAR("compressed.jar").then(function(loaded) {
+        ok(loaded === true, "New version of compressed JAR loaded");
+
+        ok(JARStore.loadFile("build/RunTests.class") != null, "Class file from new version loaded");
+
+        getInflatedChecksums().then(function(counts) {
+          ok(counts.size === 1 && !counts.has(inflatedChecksum), "Inflated class files of the replaced JAR dropped");
+          next();
+        });
+      });
+    });
+  });
+});
+
+tests.push(function() {
+  JARStore.clear().then(getInflatedChecksums).then(function(counts) {
+    is(counts.size, 0, "Inflated class files cleared");
+    next();
+  });
+});
+
+tests.push(function() {
+  load("../uncompressed.jar", "arraybuffer").then(function(uncompressedData) {
+    load("../compressed.jar", "arraybuffer").then(function(compressedData) {
+      JARStore.installJAR("uncompressed.jar", uncompressedData).then(function() {
+        JARStore.loadJAR("uncompressed.jar").then(function() {
+          JARStore.addBuiltIn("compressed.jar", compressedData);
+
+          ok(JARStore.loadFile("build/RunTests.class") != null, "Class file loaded from the first JAR that has it");
+
+          ok(JARStore.loadFile("build/RunTests.class") != null, "Class file loaded from the next JAR that has it");
+
+          ok(JARStore.loadFile("build/DoesNotExist.class") == null, "Missing file not loaded");
+
+          next();
+        });
+      });
+    });
+  });
+});
+
+tests.push(function() {
+  JARStore.putLoadOrder(["java/lang/Object", "build/RunTests"]).then(function() {
+    JARStore.getLoadOrder().then(function(classNames) {
+      is(classNames.join(), "java/lang/Object,build/RunTests", "Load order restored");
+
+      JARStore.clear().then(function() {
+        JARStore.getLoadOrder().then(function(classNames) {
+          is(classNames.length, 0, "Load order cleared");
+
+          next();
+        });
+      });
+    });
+  });
+});
+
 next();
@@ -0,0 +1,86 @@
+package java.lang;
+
+import gnu.testlet.Testlet;
+import gnu.testlet.TestHarness;
+
+public class TestThinLock implements Testlet {
+    public int getExpectedPass() { return 6; }
+    public int getExpectedFail() { return 0; }
+    public int getExpectedKnownFail() { return 0; }
+
+    private final Object lock = new Object();
+    private int counter = 0;
+
+    // Deep enough to overflow the recursion level of a thin lock.
+    private int enterRecursively(int depth) {
+        synchronized (lock) {
+            if (depth == 0) {
+                return 0;
+            }
+            return 1 + enterRecursively(depth - 1);
+        }
+    }
+
+    private synchronized void increment() {
+        counter++;
+    }
+
+    class Incrementer extends Thread {
+        public void run() {
+            for (int i = 0; i < 1000; i++) {
+                increment();
+                if ((i & 63) == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    public void test(TestHarness th) {
+        th.check(enterRecursively(300), 300);
+
+        // Notifying a lock that nobody waits on.
+        synchronized (lock) {
+            lock.notify();
+            lock.notifyAll();
+        }
+        th.check(true);
+
+        try {
+            lock.notify();
+            th.fail("Expected IllegalMonitorStateException");
+        } catch (IllegalMonitorStateException e) {
+            th.check(true);
+        }
+
+        // Contended locks get inflated.
+        Thread t1 = new Incrementer();
+        Thread t2 = new Incrementer();
+        t1.start();
+        t2.start();
+        try {
+            t1.join();
+            t2.join();
+        } catch (InterruptedException e) {
+            th.fail("Unexpected exception: " + e);
+        }
+        th.check(counter, 2000);
+
+        // The lock can still be taken after it was inflated.
+        increment();
+        th.check(counter, 2001);
+
+        // Waiting on a lock inflates it, and the recursion level is restored afterwards.
+        synchronized (lock) {
+            synchronized (lock) {
+                try {
+                    lock.wait(1);
+                } catch (InterruptedException e) {
+                    th.fail("Unexpected exception: " + e);
+                }
+            }
+            lock.notify();
+        }
+        th.check(true);
+    }
+}
@@ -5,7 +5,7 @@ import gnu.testlet.Testlet;
 import gnu.testlet.TestUtils;
 
 public class TestFont implements Testlet {
-    public int getExpectedPass() { return 6; }
+    public int getExpectedPass() { return 11; }
     public int getExpectedFail() { return 0; }
     public int getExpectedKnownFail() { return 0; }
     void testEmojiLength(TestHarness th, String code, int expectedUpper) {
@@ -15,10 +15,38 @@ public class TestFont implements Testlet {
         th.check(Font.getDefaultFont().charsWidth(emoji.toCharArray(), 0, emoji.toCharArray().length) <= expectedUpper);
     }
 
+    void testLatinAdvances(TestHarness th, Font font) {
+        String text = "the quick brown fox jumps over the lazy dog 0123456789";
+        // A zero width space makes the text contextual, so it's measured as a
+        // whole with measureText instead of by summing character advances.
+        int measured = font.stringWidth(text + "\u200b");
+        int summed = font.stringWidth(text);
+        th.check(Math.abs(summed - measured) <= 1);
+        char[] chars = text.toCharArray();
+        th.check(font.charsWidth(chars, 0, chars.length), summed);
+        th.check(font.substringWidth(text, 4, 5), font.stringWidth("quick"));
+    }
+
     public void test(TestHarness th) {
         // Test that an emoji represented with two codepoints is considered as 1 character long.
         testEmojiLength(th, "1f1ee1f1f9", Font.getDefaultFont().stringWidth("mm"));
         // Test that an emoji represented with one codepoint is considered as 1 character long.
         testEmojiLength(th, "1f355", Font.getDefaultFont().stringWidth("mm"));
+
+        testLatinAdvances(th, Font.getDefaultFont());
+
+        try {
+            Font.getDefaultFont().charsWidth(null, 0, 0);
+            th.fail("Should've raised an exception");
+        } catch (NullPointerException e) {
+            th.check(true, "NullPointerException raised");
+        }
+
+        try {
+            Font.getDefaultFont().charsWidth(new char[] { 'a', 'b' }, 1, 2);
+            th.fail("Should've raised an exception");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            th.check(true, "ArrayIndexOutOfBoundsException raised");
+        }
     }
 }
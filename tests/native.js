@@ -187,6 +187,28 @@ Native["org/mozilla/MemorySampler.sampleMemory.(Ljava/lang/String;)V"] = functio
   }
 };
 
+Native["org/mozilla/SocketSampler.sampleSockets.(Ljava/lang/String;)V"] = function(addr, labelAddr) {
+  var keys = ["writes", "blockedWrites", "bytesWritten", "sends", "sendTime", "maxSendTime",
+              "reads", "blockedReads", "bytesRead", "bytesReceived"];
+  var rows = [["socket"].concat(keys, "KB/s")];
+  function addRow(name, stats, elapsed) {
+    rows.push([name].concat(keys.map(function(k) { return String(Math.round(stats[k])) }),
+                            String(Math.round((stats.bytesWritten + stats.bytesRead) / elapsed))));
+  }
+  var now = performance.now();
+  Socket.openSockets.forEach(function(socket) {
+    addRow(socket.sender.pipeID, socket.stats, now - socket.stats.opened);
+  });
+  addRow("total (" + SocketTotals.sockets + ")", SocketTotals, now);
+  var label = J2ME.fromStringAddr(labelAddr) || "Socket sample";
+  if (typeof Benchmark !== "undefined") {
+    var alignment = rows[0].map(function() { return Benchmark.RIGHT });
+    console.log(label + ":\n" + Benchmark.prettyTable(rows, alignment));
+  } else {
+    console.log(label + ": " + JSON.stringify(rows));
+  }
+};
+
 Native["org/mozilla/Test.callSyncNative.()V"] = function(addr) {
   // A noop sync implementation for comparison with the noop async one.
 };
@@ -0,0 +1,214 @@
+'use strict';
+
+var passed = 0, failed = 0;
+
+function is(a, b, msg) {
+  if (a == b) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg + "; expected " + JSON.stringify(b) + ", got " + JSON.stringify(a));
+  }
+}
+
+function ok(a, msg) {
+  if (!!a) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg);
+  }
+}
+
+var tests = [];
+
+function next() {
+  if (tests.length == 0) {
+    ok(true, "TESTS COMPLETED");
+    print("DONE " + passed + "/" + (passed + failed));
+  } else {
+    var test = tests.shift();
+    test();
+  }
+}
+
+var config = {};
+
+// Java events are plain objects here, their fields are read and written
+// through the same accessors as the fields of real events.
+var J2ME = {
+  runtimeCounter: null,
+  getFieldAccessors: function() {
+    var accessors = { get: {}, set: {} };
+    var names = ["type", "floatParam1"];
+    for (var i = 1; i <= 16; i++) {
+      names.push("intParam" + i);
+    }
+    for (var i = 1; i <= 6; i++) {
+      names.push("stringParam" + i);
+    }
+    names.forEach(function(name) {
+      accessors.get[name] = function(event) {
+        return event[name];
+      };
+      accessors.set[name] = function(event, value) {
+        event[name] = value;
+      };
+    });
+    return accessors;
+  },
+  fromStringAddr: function(str) {
+    return str === undefined ? null : str;
+  },
+  newString: function(str) {
+    return str;
+  },
+};
+
+var KEY_EVENT = 1;
+var PEN_EVENT = 2;
+var DRAGGED = 3;
+var PRESSED = 1;
+var GESTURE_EVENT = 71;
+var GESTURE_DRAG = 0x4;
+
+function keyEvent(i) {
+  return { type: KEY_EVENT, intParam1: PRESSED, intParam2: i, stringParam1: "key" + i };
+}
+
+function shiftAll(queue) {
+  var events = [];
+  while (queue.length) {
+    var event = {};
+    queue.shift(event);
+    events.push(event);
+  }
+  return events;
+}
+
+function isInOrder(events, from, to) {
+  if (events.length !== to - from) {
+    return false;
+  }
+  return events.every(function(event, i) {
+    return event.intParam2 === from + i && event.stringParam1 === "key" + (from + i);
+  });
+}
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  var capacity = queue.capacity;
+  for (var i = 0; i < capacity + 8; i++) {
+    queue.pushObject(keyEvent(i));
+  }
+  is(queue.length, capacity + 8, "Events aren't dropped when the queue is full");
+  is(queue.capacity, capacity * 2, "Queue grows when it's full");
+  ok(isInOrder(shiftAll(queue), 0, capacity + 8), "Events are read in order after growing");
+  next();
+});
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  var capacity = queue.capacity;
+  for (var i = 0; i < capacity - 4; i++) {
+    queue.pushObject(keyEvent(i));
+  }
+  ok(isInOrder(shiftAll(queue), 0, capacity - 4), "Events read up to near the end of the queue");
+  for (var i = 0; i < capacity; i++) {
+    queue.pushObject(keyEvent(i));
+  }
+  is(queue.capacity, capacity, "Queue doesn't grow while the events fit after wrapping around");
+  ok(queue.head + queue.length > queue.capacity, "Queued events wrap around");
+  ok(isInOrder(shiftAll(queue), 0, capacity), "Wrapped events are read in order");
+  next();
+});
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  var capacity = queue.capacity;
+  for (var i = 0; i < capacity / 2; i++) {
+    queue.pushObject(keyEvent(i));
+  }
+  for (var i = 0; i < capacity / 4; i++) {
+    queue.shift({});
+  }
+  for (var i = capacity / 2; i < capacity * 2; i++) {
+    queue.pushObject(keyEvent(i));
+  }
+  is(queue.head, 0, "Growing unwraps the queue");
+  ok(isInOrder(shiftAll(queue), capacity / 4, capacity * 2), "Events that wrapped around are read in order after growing");
+  next();
+});
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  var event = keyEvent(3);
+  event.intParam16 = 16;
+  event.floatParam1 = 0.5;
+  event.stringParam6 = "six";
+  queue.pushEvent(event);
+  var copy = {};
+  queue.shift(copy);
+  ok(copy.type === KEY_EVENT && copy.intParam2 === 3 && copy.intParam16 === 16 && copy.floatParam1 === 0.5 &&
+     copy.stringParam1 === "key3" && copy.stringParam6 === "six" && copy.stringParam2 === null,
+     "Java events are copied through the queue");
+  next();
+});
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  queue.pushObject({ type: PEN_EVENT, intParam1: PRESSED, intParam2: 1, intParam3: 1 });
+  for (var i = 2; i <= 5; i++) {
+    queue.pushObject({ type: PEN_EVENT, intParam1: DRAGGED, intParam2: i, intParam3: i * 10 });
+  }
+  is(queue.length, 2, "Consecutive drags are coalesced");
+  queue.pushObject(keyEvent(0));
+  queue.pushObject({ type: PEN_EVENT, intParam1: DRAGGED, intParam2: 6, intParam3: 60 });
+  is(queue.length, 4, "Drags aren't coalesced across other events");
+  queue.pushObject({ type: PEN_EVENT, intParam1: DRAGGED, intParam2: 7, intParam3: 70, intParam4: 1 });
+  is(queue.length, 5, "Drags on other displays aren't coalesced");
+
+  var events = shiftAll(queue);
+  is(events[0].intParam1, PRESSED, "Press is kept");
+  is(events[1].intParam1 + "," + events[1].intParam2 + "," + events[1].intParam3, DRAGGED + ",5,50",
+     "Coalesced drag is the latest one");
+  is(events[3].intParam2, 6, "Drag after another event is kept");
+  next();
+});
+
+tests.push(function() {
+  var queue = new NativeEventQueue();
+  queue.pushObject({ type: GESTURE_EVENT, intParam1: GESTURE_DRAG, intParam2: 2, intParam3: 3, intParam5: 10 });
+  queue.pushObject({ type: GESTURE_EVENT, intParam1: GESTURE_DRAG, intParam2: 4, intParam3: 5, intParam5: 20 });
+  is(queue.length, 1, "Consecutive drag gestures are coalesced");
+  var event = {};
+  queue.shift(event);
+  is(event.intParam2 + "," + event.intParam3, "6,8", "Distances of coalesced drag gestures add up");
+  is(event.intParam5, 20, "Coalesced drag gesture has the latest position");
+  next();
+});
+
+tests.push(function() {
+  config.coalesceNativeEvents = "0";
+  var queue = new NativeEventQueue();
+  queue.pushObject({ type: PEN_EVENT, intParam1: DRAGGED, intParam2: 1, intParam3: 1 });
+  queue.pushObject({ type: PEN_EVENT, intParam1: DRAGGED, intParam2: 2, intParam3: 2 });
+  is(queue.length, 2, "Drags aren't coalesced when coalescing is disabled");
+  delete config.coalesceNativeEvents;
+  next();
+});
+
+try {
+  load("midp/nativeeventqueue.js");
+
+  var start = dateNow();
+
+  next();
+
+  print("Time: " + (dateNow() - start).toFixed(4) + " ms");
+} catch (x) {
+  print(x);
+  print(x.stack);
+}
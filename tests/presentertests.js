@@ -0,0 +1,135 @@
+'use strict';
+
+var passed = 0, failed = 0;
+
+function is(a, b, msg) {
+  if (a == b) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg + "; expected " + JSON.stringify(b) + ", got " + JSON.stringify(a));
+  }
+}
+
+function ok(a, msg) {
+  if (!!a) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg);
+  }
+}
+
+var tests = [];
+
+function next() {
+  if (tests.length == 0) {
+    ok(true, "TESTS COMPLETED");
+    print("DONE " + passed + "/" + (passed + failed));
+  } else {
+    var test = tests.shift();
+    test();
+  }
+}
+
+if (typeof performance === "undefined") {
+  var performance = {
+    now: dateNow,
+  };
+}
+
+// Records what a FramePresenter does instead of painting and scheduling.
+function createPresenter() {
+  var presenter = new FramePresenter(function(x, y, width, height) {
+    presenter.painted.push([x, y, width, height]);
+  }, function(callback) {
+    presenter.frameCallbacks.push(callback);
+  }, function(waiter) {
+    presenter.resumed.push(waiter);
+  });
+  presenter.painted = [];
+  presenter.frameCallbacks = [];
+  presenter.resumed = [];
+  presenter.counts = Object.create(null);
+  presenter.counter = {
+    count: function(name, increment) {
+      presenter.counts[name] = (presenter.counts[name] || 0) + (increment === undefined ? 1 : increment);
+    },
+  };
+  presenter.latencies = [];
+  presenter.histogram = {
+    record: function(value) {
+      presenter.latencies.push(value);
+    },
+  };
+  return presenter;
+}
+
+function runFrame(presenter) {
+  var callbacks = presenter.frameCallbacks;
+  presenter.frameCallbacks = [];
+  callbacks.forEach(function(callback) {
+    callback();
+  });
+}
+
+tests.push(function() {
+  var presenter = createPresenter();
+  presenter.refresh(10, 20, 30, 40);
+  presenter.refresh(0, 30, 20, 50);
+  is(presenter.frameCallbacks.length, 1, "One frame requested for all refreshes");
+  is(presenter.painted.length, 0, "Nothing painted before the frame");
+  runFrame(presenter);
+  is(JSON.stringify(presenter.painted), JSON.stringify([[0, 20, 30, 30]]), "Refreshes painted as one damage rectangle");
+
+  presenter.refresh(5, 5, 6, 6);
+  is(presenter.frameCallbacks.length, 1, "Frame requested after the last one was presented");
+  runFrame(presenter);
+  is(JSON.stringify(presenter.painted[1]), JSON.stringify([5, 5, 1, 1]), "Damage rectangle reset after the frame");
+  next();
+});
+
+tests.push(function() {
+  var presenter = createPresenter();
+  ok(!presenter.refresh(0, 0, 1, 1), "First refresh doesn't wait");
+  ok(!presenter.refresh(0, 0, 1, 1), "Second refresh doesn't wait");
+  ok(presenter.refresh(0, 0, 1, 1), "Refresh past maxRefreshesAhead waits");
+  presenter.waitForFrame("thread");
+  is(presenter.resumed.length, 0, "Waiter not resumed before the frame");
+  runFrame(presenter);
+  is(JSON.stringify(presenter.resumed), JSON.stringify(["thread"]), "Waiter resumed after the frame");
+  ok(!presenter.refresh(0, 0, 1, 1), "Refresh after the frame doesn't wait");
+  next();
+});
+
+tests.push(function() {
+  var presenter = createPresenter();
+  for (var i = 0; i < 4; i++) {
+    if (presenter.refresh(0, 0, 1, 1)) {
+      presenter.waitForFrame(i);
+    }
+  }
+  runFrame(presenter);
+  presenter.refresh(0, 0, 1, 1);
+  runFrame(presenter);
+  is(presenter.counts["Presented Frames"], 2, "Presented frames counted");
+  is(presenter.counts["Dropped Frames"], 3, "Refreshes merged into a frame counted as dropped");
+  is(presenter.counts["Refreshes Waiting For Frame"], 2, "Refreshes waiting for a frame counted");
+  is(presenter.latencies.length, 2, "Presentation latency recorded for each frame");
+  next();
+});
+
+try {
+  load("midp/presenter.js");
+
+  var start = dateNow();
+
+  next();
+
+  print("Time: " + (dateNow() - start).toFixed(4) + " ms");
+} catch (x) {
+  print(x);
+  print(x.stack);
+}
@@ -0,0 +1,195 @@
+'use strict';
+
+var passed = 0, failed = 0;
+
+function is(a, b, msg) {
+  if (a == b) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg + "; expected " + JSON.stringify(b) + ", got " + JSON.stringify(a));
+  }
+}
+
+function ok(a, msg) {
+  if (!!a) {
+    ++passed;
+    print("pass " + msg);
+  } else {
+    ++failed;
+    print("fail " + msg);
+  }
+}
+
+var tests = [];
+
+function next() {
+  if (tests.length == 0) {
+    ok(true, "TESTS COMPLETED");
+    print("DONE " + passed + "/" + (passed + failed));
+  } else {
+    var test = tests.shift();
+    test();
+  }
+}
+
+var RED = 0xff0000ff | 0;
+var BLUE = 0xffff0000 | 0;
+
+function createContext(width, height) {
+  var canvas = new SoftwareCanvas(width, height);
+  return canvas.getContext("2d");
+}
+
+function pixel(context, x, y) {
+  return context.canvas.pixels[y * context.canvas.width + x];
+}
+
+// Counts the pixels of |context| that are |color|.
+function count(context, color) {
+  var pixels = context.canvas.pixels;
+  var n = 0;
+  for (var i = 0; i < pixels.length; i++) {
+    if (pixels[i] === color) {
+      n++;
+    }
+  }
+  return n;
+}
+
+tests.push(function() {
+  var context = createContext(8, 8);
+  context.fillStyle = "rgba(255,0,0,1)";
+  context.translate(2, 3);
+  context.fillRect(0, 0, 2, 2);
+  is(count(context, RED), 4, "Rectangle filled");
+  is(pixel(context, 2, 3), RED, "Rectangle filled at the translation");
+  is(pixel(context, 4, 3), 0, "Rectangle doesn't cover its right edge");
+
+  context.beginPath();
+  context.rect(0, 0, 1, 8);
+  context.clip();
+  context.fillStyle = "rgb(0,0,255)";
+  context.fillRect(-2, -3, 8, 8);
+  is(count(context, BLUE), 5, "Fill clipped");
+  next();
+});
+
+tests.push(function() {
+  var context = createContext(8, 8);
+  context.save();
+  context.beginPath();
+  context.rect(0, 0, 2, 2);
+  context.clip();
+  context.restore();
+  context.fillStyle = "#ff0000";
+  context.fillRect(0, 0, 8, 8);
+  is(count(context, RED), 64, "Clip restored");
+  next();
+});
+
+tests.push(function() {
+  var context = createContext(8, 8);
+  context.strokeStyle = "rgb(255,0,0)";
+  context.strokeRect(1, 1, 3, 2);
+  is(count(context, RED), 10, "Rectangle outline covers its width and height plus one");
+  is(pixel(context, 4, 3), RED, "Rectangle outline includes the bottom right corner");
+  is(pixel(context, 2, 2), 0, "Rectangle outline is hollow");
+
+  context.beginPath();
+  context.moveTo(0, 7);
+  context.lineTo(7, 0);
+  context.stroke();
+  ok(pixel(context, 0, 7) === RED && pixel(context, 7, 0) === RED, "Line includes both end points");
+  next();
+});
+
+tests.push(function() {
+  var context = createContext(9, 9);
+  context.fillStyle = "rgb(255,0,0)";
+  context.beginPath();
+  context.arc(4.5, 4.5, 4, 0, 2 * Math.PI, false);
+  context.fill();
+  is(pixel(context, 4, 4), RED, "Circle center filled");
+  is(pixel(context, 0, 0), 0, "Circle corner not filled");
+  is(pixel(context, 1, 4), RED, "Circle filled up to its radius");
+
+  context.canvas.width = 4;
+  is(count(context, RED), 0, "Resizing clears the canvas");
+  next();
+});
+
+tests.push(function() {
+  var source = new SoftwareCanvas(2, 1);
+  source.pixels[0] = RED;
+  source.pixels[1] = BLUE;
+
+  var context = createContext(4, 4);
+  context.drawImage(source, 0, 0, 2, 1, 1, 1, 2, 1);
+  ok(pixel(context, 1, 1) === RED && pixel(context, 2, 1) === BLUE, "Image drawn");
+
+  // Rotated by 90 degrees, like Graphics.drawRegion with TRANS_ROT90.
+  context = createContext(4, 4);
+  context.rotate(Math.PI / 2);
+  context.drawImage(source, 0, 0, 2, 1, 0, -1, 2, 1);
+  ok(pixel(context, 0, 0) === RED && pixel(context, 0, 1) === BLUE, "Rotated image drawn");
+
+  // Mirrored, like Graphics.drawRegion with TRANS_MIRROR.
+  context = createContext(4, 4);
+  context.scale(-1, 1);
+  context.drawImage(source, 0, 0, 2, 1, -2, 0, 2, 1);
+  ok(pixel(context, 0, 0) === BLUE && pixel(context, 1, 0) === RED, "Mirrored image drawn");
+
+  source.pixels[0] = 0x800000ff | 0;
+  context = createContext(1, 1);
+  context.fillStyle = "rgb(0,0,255)";
+  context.fillRect(0, 0, 1, 1);
+  context.drawImage(source, 0, 0);
+  is(pixel(context, 0, 0), 0xff7f0080 | 0, "Translucent image composited");
+  next();
+});
+
+tests.push(function() {
+  var context = createContext(4, 4);
+  var imageData = context.createImageData(2, 2);
+  new Int32Array(imageData.data.buffer).fill(0x800000ff | 0);
+  context.beginPath();
+  context.rect(0, 0, 1, 1);
+  context.clip();
+  context.putImageData(imageData, 1, 1);
+  is(pixel(context, 2, 2), 0x800000ff | 0, "Pixels put regardless of the clip and without compositing");
+
+  var read = new Int32Array(context.getImageData(1, 1, 2, 2).data.buffer);
+  is(read[3], 0x800000ff | 0, "Pixels read back");
+  read = new Int32Array(context.getImageData(3, 3, 2, 2).data.buffer);
+  is(read[3], 0, "Pixels outside the canvas read as transparent");
+  next();
+});
+
+tests.push(function() {
+  var context = createContext(64, 16);
+  context.font = "9px sans-serif";
+  context.fillStyle = "rgb(255,0,0)";
+  is(context.measureText("Hi").width, 12, "Text measured");
+  context.textBaseline = "top";
+  context.fillText("Hi", 0, 0);
+  ok(count(context, RED) > 0, "Text drawn");
+  var n = count(context, RED);
+  context.fillText(" ", 20, 0);
+  is(count(context, RED), n, "Space drawn as nothing");
+  next();
+});
+
+try {
+  load("midp/rasterizer.js");
+
+  var start = dateNow();
+
+  next();
+
+  print("Time: " + (dateNow() - start).toFixed(4) + " ms");
+} catch (x) {
+  print(x);
+  print(x.stack);
+}
@@ -1,6 +1,7 @@
 #!/usr/bin/env python
 
 import os
+import re
 import select
 import socket
 import subprocess
@@ -137,15 +138,31 @@ if not shell_success:
     sys.stdout.write("FAIL - Basic shell test failed\n")
     exit_code = 1
 
-p = subprocess.Popen(['js', os.path.join('tests','gctests.js')], stdout=subprocess.PIPE, stderr=subprocess.STDOUT)
-gc_tests_success = True
-for line in iter(p.stdout.readline, b''):
-    if "fail" in line:
-        gc_tests_success = False
-    sys.stdout.write(line)
+# The shell unit tests, which print a line for each check and end with a
+# "DONE <passed>/<total>" line once all their checks have run.
+shell_tests = [
+    ('gctests.js', 'GC tests'),
+    ('rasterizertests.js', 'Rasterizer tests'),
+    ('presentertests.js', 'Presenter tests'),
+    ('classregistrytests.js', 'Class registry tests'),
+    ('nativeeventqueuetests.js', 'Native event queue tests'),
+]
 
-if not gc_tests_success:
-    sys.stdout.write("FAIL - GC tests failed\n")
-    exit_code = 1
+for (script, name) in shell_tests:
+    p = subprocess.Popen(['js', os.path.join('tests', script)], stdout=subprocess.PIPE, stderr=subprocess.STDOUT)
+    tests_success = True
+    tests_done = False
+    for line in iter(p.stdout.readline, b''):
+        if "fail" in line:
+            tests_success = False
+        # A script that stops before its last check never prints this line.
+        match = re.match(r'DONE (\d+)/(\d+)', line)
+        if match and match.group(1) == match.group(2):
+            tests_done = True
+        sys.stdout.write(line)
+
+    if not tests_success or not tests_done:
+        sys.stdout.write("FAIL - " + name + " failed\n")
+        exit_code = 1
 
 sys.exit(exit_code)
@@ -0,0 +1,126 @@
+module J2ME {
+  /**
+   * What was observed about a single method during a session.
+   */
+  export interface AOTMethodProfile {
+    calls: number;
+    backEdges: number;
+    osr: number;
+    compiled: boolean;
+    compileTime: number;
+    receivers: string [];
+  }
+
+  export interface AOTProfileData {
+    version: number;
+    methods: { [implKey: string]: AOTMethodProfile; };
+  }
+
+  /**
+   * Records the methods that are hot at runtime so that jsc can compile exactly those
+   * ahead of time. Profiles are plain JSON keyed by |MethodInfo.implKey|, the same keys
+   * used by method filter files, and profiles of several sessions can be merged.
+   */
+  export module AOTProfile {
+    export var VERSION = 1;
+
+    /**
+     * Number of distinct receiver classes recorded per method.
+     */
+    export var MAX_RECEIVERS = 4;
+
+    /**
+     * Builds a profile from the stats of all methods that have been linked so far.
+     */
+    export function collect(): AOTProfileData {
+      var methods: { [implKey: string]: AOTMethodProfile; } = Object.create(null);
+      for (var i = 0; i < methodIdToMethodInfoMap.length; i++) {
+        var methodInfo: MethodInfo = methodIdToMethodInfoMap[i];
+        if (!methodInfo || methodInfo.isNative) {
+          continue;
+        }
+        var stats = methodInfo.stats;
+        if (!stats.interpreterCallCount && !stats.backwardsBranchCount && !stats.compiled && !stats.receivers) {
+          continue;
+        }
+        methods[methodInfo.implKey] = {
+          calls: stats.interpreterCallCount,
+          backEdges: stats.backwardsBranchCount,
+          osr: stats.onStackReplacementCount,
+          compiled: stats.compiled,
+          compileTime: stats.compileTime,
+          receivers: stats.receivers ? stats.receivers.map(function (classInfo) {
+            return classInfo.getClassNameSlow();
+          }) : []
+        };
+      }
+      return {
+        version: VERSION,
+        methods: methods
+      };
+    }
+
+    export function dump(): string {
+      return JSON.stringify(collect(), null, 2);
+    }
+
+    export function parse(text: string): AOTProfileData {
+      var profile = <AOTProfileData>JSON.parse(text);
+      if (profile.version !== VERSION) {
+        throw new Error("Unsupported AOT profile version: " + profile.version);
+      }
+      return profile;
+    }
+
+    /**
+     * Combines two profiles, counts are summed and receivers are unioned.
+     */
+    export function merge(a: AOTProfileData, b: AOTProfileData): AOTProfileData {
+      var methods: { [implKey: string]: AOTMethodProfile; } = Object.create(null);
+      [a, b].forEach(function (profile) {
+        for (var key in profile.methods) {
+          var method = profile.methods[key];
+          var merged = methods[key];
+          if (!merged) {
+            methods[key] = {
+              calls: method.calls,
+              backEdges: method.backEdges,
+              osr: method.osr,
+              compiled: method.compiled,
+              compileTime: method.compileTime,
+              receivers: method.receivers.slice(0)
+            };
+            continue;
+          }
+          merged.calls += method.calls;
+          merged.backEdges += method.backEdges;
+          merged.osr += method.osr;
+          merged.compiled = merged.compiled || method.compiled;
+          merged.compileTime = Math.max(merged.compileTime, method.compileTime);
+          method.receivers.forEach(function (receiver) {
+            ArrayUtilities.pushUnique(merged.receivers, receiver);
+          });
+        }
+      });
+      return {
+        version: VERSION,
+        methods: methods
+      };
+    }
+
+    /**
+     * Methods that were compiled at runtime, or that would have been with the given
+     * invoke |threshold|.
+     */
+    export function getHotMethods(profile: AOTProfileData, threshold: number): string [] {
+      var hotMethods = [];
+      for (var key in profile.methods) {
+        var method = profile.methods[key];
+        if (method.compiled || method.calls + method.backEdges > threshold) {
+          hotMethods.push(key);
+        }
+      }
+      return hotMethods;
+    }
+  }
+}
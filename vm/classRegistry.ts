@@ -9,6 +9,13 @@ module J2ME {
   export var classCounter = new Metrics.Counter(true);
   declare var JARStore;
 
+  function removeClassInfo(classInfos: ClassInfo [], classInfo: ClassInfo) {
+    var i = classInfos.indexOf(classInfo);
+    if (i >= 0) {
+      classInfos.splice(i, 1);
+    }
+  }
+
   export class ClassRegistry {
     /**
      * List of directories to look for source files in.
@@ -32,6 +39,21 @@ module J2ME {
 
     preInitializedClasses: ClassInfo [];
 
+    /**
+     * Names of the classes loaded from class files, in the order they were loaded.
+     */
+    loadOrder: string [];
+
+    /**
+     * Class load order recorded by an earlier session, and the position of
+     * each class in it. Classes are prefetched in this order, starting after
+     * the last class that was loaded on demand.
+     */
+    recordedLoadOrder: string [];
+    recordedLoadOrderIndex: { [name: string]: number };
+    prefetchPosition: number;
+    isPrefetching: boolean;
+
     java_lang_Object: ClassInfo;
     java_lang_Class: ClassInfo;
     java_lang_String: ClassInfo;
@@ -45,6 +67,12 @@ module J2ME {
       this.classes = Object.create(null);
       this.preInitializedClasses = [];
       this.unwindMethodInfos = Object.create(null);
+
+      this.loadOrder = [];
+      this.recordedLoadOrder = [];
+      this.recordedLoadOrderIndex = Object.create(null);
+      this.prefetchPosition = 0;
+      this.isPrefetching = false;
     }
 
     initializeBuiltinClasses() {
@@ -159,21 +187,106 @@ module J2ME {
       }
       var self = this;
       var classInfo = this.loadClassBytes(bytes);
-      if (classInfo.superClassName) {
-        classInfo.superClass = this.loadClass(classInfo.superClassName);
-        classInfo.depth = classInfo.superClass.depth + 1;
-        var superClass = classInfo.superClass;
-        superClass.subClasses.push(classInfo);
-        while (superClass) {
-          superClass.allSubClasses.push(classInfo);
-          superClass = superClass.superClass;
+      try {
+        if (classInfo.superClassName) {
+          classInfo.superClass = this.loadClass(classInfo.superClassName);
+          classInfo.depth = classInfo.superClass.depth + 1;
+          var superClass = classInfo.superClass;
+          superClass.subClasses.push(classInfo);
+          while (superClass) {
+            superClass.allSubClasses.push(classInfo);
+            superClass = superClass.superClass;
+          }
         }
+        classInfo.complete();
+      } catch (e) {
+        // Don't leave a half-linked class behind for the next lookup to find,
+        // e.g. when prefetching a class whose superclass is gone.
+        this.unloadClass(classInfo);
+        loadWriter && loadWriter.leave("< " + e);
+        throw e;
       }
-      classInfo.complete();
+      this.recordLoad(classInfo.getClassNameSlow());
       loadWriter && loadWriter.leave("<");
       return classInfo;
     }
 
+    private unloadClass(classInfo: ClassInfo) {
+      delete this.classes[classInfo.getClassNameSlow()];
+      var superClass = classInfo.superClass;
+      if (!superClass) {
+        return;
+      }
+      removeClassInfo(superClass.subClasses, classInfo);
+      while (superClass) {
+        removeClassInfo(superClass.allSubClasses, classInfo);
+        superClass = superClass.superClass;
+      }
+    }
+
+    private recordLoad(className: string) {
+      this.loadOrder.push(className);
+      if (this.isPrefetching) {
+        return;
+      }
+      var position = this.recordedLoadOrderIndex[className];
+      if (position >= this.prefetchPosition) {
+        this.prefetchPosition = position + 1;
+      }
+    }
+
+    setRecordedLoadOrder(classNames: string []) {
+      this.recordedLoadOrder = classNames;
+      this.recordedLoadOrderIndex = Object.create(null);
+      this.prefetchPosition = 0;
+      for (var i = 0; i < classNames.length; i++) {
+        var position = this.recordedLoadOrderIndex[classNames[i]] = i;
+        if (this.classes[classNames[i]]) {
+          this.prefetchPosition = position + 1;
+        }
+      }
+    }
+
+    /**
+     * Returns the recorded load order followed by the classes this session
+     * loaded that aren't in it.
+     */
+    getMergedLoadOrder(): string [] {
+      var classNames = this.recordedLoadOrder.slice();
+      for (var i = 0; i < this.loadOrder.length; i++) {
+        if (this.recordedLoadOrderIndex[this.loadOrder[i]] === undefined) {
+          classNames.push(this.loadOrder[i]);
+        }
+      }
+      return classNames;
+    }
+
+    /**
+     * Loads classes ahead of their use in the recorded load order until
+     * |deadline|. Returns false once there are no more classes to prefetch.
+     */
+    prefetchClasses(deadline: number): boolean {
+      this.isPrefetching = true;
+      try {
+        while (this.prefetchPosition < this.recordedLoadOrder.length && performance.now() < deadline) {
+          var className = this.recordedLoadOrder[this.prefetchPosition++];
+          if (this.classes[className]) {
+            continue;
+          }
+          try {
+            this.loadClass(className);
+            classCounter && classCounter.count("Prefetched Classes");
+          } catch (e) {
+            // The class is gone from the JARs, it'll fail the same way when it's needed.
+            classCounter && classCounter.count("Prefetch Failures");
+          }
+        }
+      } finally {
+        this.isPrefetching = false;
+      }
+      return this.prefetchPosition < this.recordedLoadOrder.length;
+    }
+
     loadClass(className: string): ClassInfo {
       var classInfo = this.classes[className];
       if (classInfo) {
@@ -179,17 +179,34 @@ module J2ME {
 
     lockTimeout: number;
     lockLevel: number;
+    /**
+     * Identifies this context in the lock word of thin locks it owns.
+     */
+    lockOwner: number;
     nativeThread: Thread;
     threadData: Int32Array;
     writer: IndentingWriter;
     methodTimeline: any;
     virtualRuntime: number;
+    /**
+     * Time when the context was last made runnable.
+     */
+    enqueueTime: number;
+    runTimeHistogram: Metrics.Histogram;
+    waitTimeHistogram: Metrics.Histogram;
     constructor(public runtime: Runtime) {
       var id = this.id = Context._nextId ++;
+      release || assert(id < LockWord.MaxOwner, "Too many contexts for the thin lock owner field.");
+      this.lockOwner = (id + 1) << LockWord.OwnerShift;
       this.runtime = runtime;
       this.runtime.addContext(this);
       this.nativeThread = new Thread(this);
       this.virtualRuntime = 0;
+      this.enqueueTime = 0;
+      if (!release) {
+        this.runTimeHistogram = new Metrics.Histogram("Run Time");
+        this.waitTimeHistogram = new Metrics.Histogram("Wait Time");
+      }
       this.writer = new IndentingWriter(false, function (s) {
         console.log(s);
       });
@@ -263,14 +280,21 @@ module J2ME {
       classInitCheck(classInfo);
       release || Debug.assert(!U, "Unexpected unwind during createException.");
       runtimeCounter && runtimeCounter.count("createException " + className);
-      var exceptionAddress = allocObject(classInfo);
-      setUncollectable(exceptionAddress);
-      var methodInfo = classInfo.getMethodByNameString("<init>", "(Ljava/lang/String;)V");
-      preemptionLockLevel++;
-      getLinkedMethod(methodInfo)(exceptionAddress, message ? newString(message) : Constants.NULL);
-      release || Debug.assert(!U, "Unexpected unwind during createException.");
-      preemptionLockLevel--;
-      unsetUncollectable(exceptionAddress);
+      // Exceptions are thrown from compiled code that hasn't spilled its references
+      // to the shadow stack, so don't collect until the exception is thrown.
+      collectionDeferDepth++;
+      try {
+        var exceptionAddress = allocObject(classInfo);
+        setUncollectable(exceptionAddress);
+        var methodInfo = classInfo.getMethodByNameString("<init>", "(Ljava/lang/String;)V");
+        preemptionLockLevel++;
+        getLinkedMethod(methodInfo)(exceptionAddress, message ? newString(message) : Constants.NULL);
+        release || Debug.assert(!U, "Unexpected unwind during createException.");
+        preemptionLockLevel--;
+        unsetUncollectable(exceptionAddress);
+      } finally {
+        collectionDeferDepth--;
+      }
       return getHandle(exceptionAddress);
     }
 
@@ -306,6 +330,7 @@ module J2ME {
         this.nativeThread.run();
       } catch (e) {
         // The exception was never caught and the thread must be terminated.
+        resetShadowStack();
         this.kill();
         this.clearCurrentContext();
         // Rethrow so the exception is not silent.
@@ -368,7 +393,7 @@ module J2ME {
         lock.ready.push(this);
       } else {
         while (this.lockLevel-- > 0) {
-          this.monitorEnter(lock);
+          this.enterLock(lock);
           if (U === VMState.Pausing || U === VMState.Stopping) {
             return;
           }
@@ -377,25 +402,61 @@ module J2ME {
       }
     }
 
-    monitorEnter(lock: Lock) {
+    /**
+     * Acquires the lock of the object at |objectAddr|. Uncontended locks are taken by
+     * updating the lock word in place, everything else goes through the inflated |Lock|.
+     */
+    monitorEnter(objectAddr: number) {
+      if (!isArrayAddress(objectAddr)) {
+        var address = objectAddr + Constants.LOCK_WORD_OFFSET >> 2;
+        var word = i32[address];
+        if (word === LockWord.Unlocked) {
+          i32[address] = this.lockOwner | 1;
+          return;
+        }
+        if ((word & ~LockWord.LevelMask) === this.lockOwner &&
+            (word & LockWord.LevelMask) !== LockWord.LevelMask) {
+          i32[address] = word + 1;
+          return;
+        }
+      }
+      this.enterLock(getMonitor(objectAddr));
+    }
+
+    monitorExit(objectAddr: number) {
+      if (!isArrayAddress(objectAddr)) {
+        var address = objectAddr + Constants.LOCK_WORD_OFFSET >> 2;
+        var word = i32[address];
+        if ((word & ~LockWord.LevelMask) === this.lockOwner) {
+          i32[address] = (word & LockWord.LevelMask) === 1 ? LockWord.Unlocked : word - 1;
+          return;
+        }
+        if (!(word & LockWord.InflatedBit)) {
+          throw $.newIllegalMonitorStateException();
+        }
+      }
+      this.exitLock(getMonitor(objectAddr));
+    }
+
+    enterLock(lock: Lock) {
       if (lock.level === 0) {
-        lock.threadAddress = this.threadAddress;
+        lock.owner = this.lockOwner;
         lock.level = 1;
         return;
       }
-      if (lock.threadAddress === this.threadAddress) {
+      if (lock.owner === this.lockOwner) {
         ++lock.level;
         return;
       }
       this.block(lock, "ready", 1);
     }
 
-    monitorExit(lock: Lock) {
+    exitLock(lock: Lock) {
       if (lock.level === 1 && lock.ready.length === 0) {
         lock.level = 0;
         return;
       }
-      if (lock.threadAddress !== this.threadAddress)
+      if (lock.owner !== this.lockOwner)
         throw $.newIllegalMonitorStateException();
       if (--lock.level > 0) {
         return;
@@ -411,11 +472,11 @@ module J2ME {
       var lock = getMonitor(objectAddr);
       if (timeout < 0)
         throw $.newIllegalArgumentException();
-      if (!lock || lock.threadAddress !== this.threadAddress)
+      if (!lock || lock.owner !== this.lockOwner)
         throw $.newIllegalMonitorStateException();
       var lockLevel = lock.level;
       for (var i = lockLevel; i > 0; i--) {
-        this.monitorExit(lock);
+        this.exitLock(lock);
       }
       if (timeout) {
         var self = this;
@@ -435,8 +496,17 @@ module J2ME {
     }
 
     notify(objectAddr: number, notifyAll: boolean) {
+      if (!isArrayAddress(objectAddr)) {
+        // Nobody can be waiting on a thin lock, so there is no need to inflate it.
+        var word = i32[objectAddr + Constants.LOCK_WORD_OFFSET >> 2];
+        if (!(word & LockWord.InflatedBit)) {
+          if ((word & ~LockWord.LevelMask) !== this.lockOwner)
+            throw $.newIllegalMonitorStateException();
+          return;
+        }
+      }
       var lock = getMonitor(objectAddr);
-      if (!lock || lock.threadAddress !== this.threadAddress)
+      if (!lock || lock.owner !== this.lockOwner)
         throw $.newIllegalMonitorStateException();
       // TODO Unblock can call wakeup on a different ctx which in turn calls monitorEnter and can cause unwinds
       // on another ctx, but we shouldn't unwind this ctx. After figuring out why this is, remove assertions in
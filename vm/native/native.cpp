@@ -64,10 +64,18 @@ extern "C" {
 
   int stop() {
     return EM_ASM_INT_V({
-      if (!$) {
+      if (typeof J2ME === "undefined") {
         return 0;
       }
-      return $.ctx.nativeThread.nativeFrameCount;
+      return J2ME.collectionDeferDepth | 0;
+    });
+  }
+
+  void GC_CALLBACK collectionStart(void) {
+    EM_ASM({
+      if (typeof J2ME !== "undefined" && J2ME.onCollectionStart) {
+        J2ME.onCollectionStart();
+      }
     });
   }
 
@@ -135,6 +143,30 @@ extern "C" {
     GC_collect_a_little();
   }
 
+  int idleStop() {
+    return EM_ASM_INT_V({
+      return J2ME.shouldAbortIdleCollection() | 0;
+    });
+  }
+
+  // Runs a full collection that is abandoned as soon as idleStop says so.
+  // Returns zero if the collection was abandoned.
+  int tryCollect(void) {
+    return GC_try_to_collect(idleStop);
+  }
+
+  int getCollectionCount(void) {
+    return GC_get_gc_no();
+  }
+
+  int getBytesSinceCollection(void) {
+    return GC_get_bytes_since_gc();
+  }
+
+  int getHeapSize(void) {
+    return GC_get_heap_size();
+  }
+
   int getUsedHeapSize(void) {
     GC_word heapSize;
     GC_word freeBytes;
@@ -146,5 +178,6 @@ extern "C" {
 int main() {
   GC_set_all_interior_pointers(0);
   GC_set_stop_func(stop);
+  GC_set_start_callback(collectionStart);
   GC_INIT();
 }
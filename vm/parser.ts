@@ -715,6 +715,26 @@ module J2ME {
     bytecodeCount: number = 0;
     backwardsBranchCount: number = 0;
     interpreterCallCount: number = 0;
+    onStackReplacementCount: number = 0;
+    /**
+     * Set when the method was compiled, or retrieved from the compiled method cache, at runtime.
+     */
+    compiled: boolean = false;
+    compileTime: number = 0;
+    /**
+     * First few receiver classes seen by interface calls that resolve through this
+     * interface method. Only recorded on the callee interface method, not on callers.
+     */
+    receivers: ClassInfo [] = null;
+
+    recordReceiver(classInfo: ClassInfo) {
+      var receivers = this.receivers;
+      if (receivers === null) {
+        this.receivers = [classInfo];
+      } else if (receivers.length < AOTProfile.MAX_RECEIVERS && receivers.indexOf(classInfo) < 0) {
+        receivers.push(classInfo);
+      }
+    }
   }
 
   export class ExceptionEntryView extends ByteStream {
@@ -735,6 +755,18 @@ module J2ME {
     }
   }
 
+  /**
+   * Maps mangled method names to numeric interface selectors. Selectors are handed out
+   * in the order interfaces are completed, so the methods of a single interface end up
+   * with neighbouring ids and the dense iTables built from them stay small.
+   */
+  var interfaceSelectors = Object.create(null);
+  var nextInterfaceSelector = 1;
+
+  export function getInterfaceSelector(mangledName: string): number {
+    return interfaceSelectors[mangledName] || (interfaceSelectors[mangledName] = nextInterfaceSelector++);
+  }
+
   export function mangleClassAndMethod(methodInfo: MethodInfo) {
     return methodInfo.classInfo.mangledName + "_" + methodInfo.index;
   }
@@ -821,6 +853,7 @@ module J2ME {
 
     vTableIndex: number;
 
+    private _selector: number = 0;
     private _virtualName: string = null;
     private _mangledName: string = null;
     private _mangledClassAndMethodName: string = null;
@@ -883,6 +916,14 @@ module J2ME {
       return this._mangledName || (this._mangledName = mangleMethod(this));
     }
 
+    /**
+     * Numeric id shared by all methods with the same name and signature. Used to index
+     * the dense iTables of classes that implement this method's interface.
+     */
+    get selector(): number {
+      return this._selector || (this._selector = getInterfaceSelector(this.mangledName));
+    }
+
     get mangledClassAndMethodName() {
       return this._mangledClassAndMethodName || (this._mangledClassAndMethodName = mangleClassAndMethod(this));
     }
@@ -1044,6 +1085,12 @@ module J2ME {
     // This is not really a table per se, but rather a map.
     iTable: { [name: string]: MethodInfo; } = Object.create(null);
 
+    // Dense iTable of method ids indexed by |MethodInfo.selector - iTableBase|. Only covers
+    // the methods of interfaces implemented by this class, everything else goes through
+    // the |iTable| map above.
+    iTableBase: number = 0;
+    iTableMethodIds: Int32Array = null;
+
     // Custom hash map to make vTable name lookups quicker. It maps utf8 method names to indices in
     // the vTable. A zero value indicate no method by that name exists, while a value > 0 indicates
     // that a method entry at |value - 1| position exists in the vTable whose hash matches they
@@ -1185,7 +1232,9 @@ module J2ME {
 
     public complete() {
       this.createAbstractMethods();
-      if (!this.isInterface) {
+      if (this.isInterface) {
+        this.assignInterfaceSelectors();
+      } else {
         this.buildVTable();
         this.buildITable();
         this.buildFTable();
@@ -1259,6 +1308,69 @@ module J2ME {
         release || assert(!iTable[methodInfo.mangledName], "!iTable[methodInfo.mangledName]");
         iTable[methodInfo.mangledName] = methodInfo;
       }
+
+      var interfaces = this.getAllInterfaces();
+      if (interfaces.length === 0) {
+        return;
+      }
+      var min = Number.MAX_VALUE;
+      var max = 0;
+      for (var i = 0; i < interfaces.length; i++) {
+        var c = interfaces[i];
+        for (var j = 0; j < c.methods.length; j++) {
+          var selector = c.getMethodByIndex(j).selector;
+          min = Math.min(min, selector);
+          max = Math.max(max, selector);
+        }
+      }
+      if (max === 0) {
+        return;
+      }
+      var iTableMethodIds = new Int32Array(max - min + 1);
+      for (var i = 0; i < interfaces.length; i++) {
+        var c = interfaces[i];
+        for (var j = 0; j < c.methods.length; j++) {
+          var interfaceMethodInfo = c.getMethodByIndex(j);
+          var methodInfo = iTable[interfaceMethodInfo.mangledName];
+          if (methodInfo) {
+            iTableMethodIds[interfaceMethodInfo.selector - min] = methodInfo.id;
+          }
+        }
+      }
+      this.iTableBase = min;
+      this.iTableMethodIds = iTableMethodIds;
+    }
+
+    /**
+     * Hands out selectors to all methods of this interface in one go so they are
+     * numbered contiguously.
+     */
+    private assignInterfaceSelectors() {
+      var methods = this.methods;
+      if (!methods) {
+        return;
+      }
+      for (var i = 0; i < methods.length; i++) {
+        getInterfaceSelector(this.getMethodByIndex(i).mangledName);
+      }
+    }
+
+    /**
+     * Finds the method implementing the interface method |methodInfo|. This is a typed
+     * array load for methods of implemented interfaces, and a map lookup otherwise.
+     */
+    getInterfaceMethod(methodInfo: MethodInfo): MethodInfo {
+      var iTableMethodIds = this.iTableMethodIds;
+      if (iTableMethodIds) {
+        var index = methodInfo.selector - this.iTableBase;
+        if ((index >>> 0) < (iTableMethodIds.length >>> 0)) {
+          var methodId = iTableMethodIds[index];
+          if (methodId) {
+            return methodIdToMethodInfoMap[methodId];
+          }
+        }
+      }
+      return this.iTable[methodInfo.mangledName];
     }
 
     private buildFTable() {
@@ -19,13 +19,14 @@ interface CompiledMethodCache {
     referencedClasses: string[];
     onStackReplacementEntryPoints: any;
   };
+  isLoading(key: string): boolean;
   put(obj: {
     key: string;
     args: string[];
     body: string;
     referencedClasses: string[];
     onStackReplacementEntryPoints: any;
-  }): Promise<any>;
+  }): void;
 }
 
 interface AOTMetaData {
@@ -157,13 +158,22 @@ module J2ME {
   export var threadTimeline;
   export var methodTimelines = [];
   export var gcCounter = release ? null : new Metrics.Counter(true);
+  export var gcPauseHistogram = release ? null : new Metrics.Histogram("GC Pause Time");
+  export var frameCounter = release ? null : new Metrics.Counter(true);
+  export var framePresentationHistogram = release ? null : new Metrics.Histogram("Frame Presentation Latency");
   export var nativeCounter = release ? null : new Metrics.Counter(true);
   export var runtimeCounter = release ? null : new Metrics.Counter(true);
   export var baselineMethodCounter = release ? null : new Metrics.Counter(true);
   export var asyncCounter = release ? null : new Metrics.Counter(true);
+  export var inlineCacheCounter = release ? null : new Metrics.Counter(true);
 
   export var unwindCount = 0;
 
+  /**
+   * Number of handles created by |getHandle|, each of them is a JS allocation.
+   */
+  export var handleCount = 0;
+
   if (typeof Shumway !== "undefined") {
     timeline = new Shumway.Tools.Profiler.TimelineBuffer("Runtime");
     threadTimeline = new Shumway.Tools.Profiler.TimelineBuffer("Threads");
@@ -389,6 +399,13 @@ module J2ME {
     isolateId: number;
     isolateAddress: number;
     priority: number = ISOLATE_NORM_PRIORITY;
+    /**
+     * Scheduler state, the isolate's share of the execution time and its runnable threads.
+     */
+    virtualRuntime: number = 0;
+    minVirtualRuntime: number = 0;
+    runQueue: RunQueue<Context> = new RunQueue<Context>();
+    isQueued: boolean = false;
     // XXX Rename mainThread to mainThreadAddress so it's clearly an address.
     mainThread: number;
 
@@ -675,11 +692,14 @@ module J2ME {
 
     MAX_STACK_SIZE = 4 * 1024,
 
+    // The size in bytes of the shadow stack compiled code spills references to.
+    SHADOW_STACK_SIZE = 512 * 1024,
+
     TWO_PWR_32_DBL = 4294967296,
     TWO_PWR_63_DBL = 9223372036854776000,
 
     // The size in bytes of the header in the memory allocated to the object.
-    OBJ_HDR_SIZE = 8,
+    OBJ_HDR_SIZE = 12,
 
     // The offset in bytes from the beginning of the allocated memory
     // to the location of the class id.
@@ -687,6 +707,9 @@ module J2ME {
     // The offset in bytes from the beginning of the allocated memory
     // to the location of the hash code.
     HASH_CODE_OFFSET = 4,
+    // The offset in bytes from the beginning of the allocated memory
+    // to the location of the lock word. Arrays don't have a lock word.
+    LOCK_WORD_OFFSET = 8,
 
     ARRAY_HDR_SIZE = 8,
 
@@ -699,7 +722,10 @@ module J2ME {
     MAX_CLASS_ID = 4095,
     INITIAL_MAX_CLASS_ID = 511,
 
-    LOG_MAX_FLAT_VTABLE_SIZE = 6 // 64
+    LOG_MAX_FLAT_VTABLE_SIZE = 6, // 64
+
+    MAX_INLINE_CACHE_SITES = 8192,
+    LOG_INLINE_CACHE_SITE_SIZE = 2 // 4 slots, two (classId, methodId) pairs.
   }
 
   export class Runtime extends RuntimeTemplate {
@@ -715,7 +741,11 @@ module J2ME {
       // Figure out the |stackCount| from the number of arguments.
       var stackCount = arguments.length - argumentCount - localCount;
       // TODO: use specialized $.B functions based on the local and stack size so we don't have to use the arguments variable.
+      // The locals and stack are only in |arguments| until they're copied to the
+      // bailout frame, so don't collect while allocating it.
+      collectionDeferDepth++;
       var bailoutFrameAddress = createBailoutFrame(methodId, pc, localCount, stackCount, lockObjectAddress);
+      collectionDeferDepth--;
       for (var j = 0; j < localCount; j++) {
         i32[(bailoutFrameAddress + BailoutFrameLayout.HeaderSize >> 2) + j] = arguments[argumentCount + j];
       }
@@ -798,6 +828,57 @@ module J2ME {
    */
   export var flatLinkedVTableMap = [];
 
+  /**
+   * Inline caches for compiled INVOKEINTERFACE call sites. Each site owns four
+   * consecutive slots holding two (classId, methodId) pairs, so sites can be
+   * monomorphic or bimorphic. Class ids start at 1 so an empty slot never matches.
+   *
+   * Site 0 is never filled. It is handed out once the table is full, so those call
+   * sites always fall through to |lookupInterfaceMethodId|.
+   */
+  export var inlineCaches = new Int32Array(Constants.MAX_INLINE_CACHE_SITES << Constants.LOG_INLINE_CACHE_SITE_SIZE);
+
+  var nextInlineCacheSite = 1;
+
+  function allocateInlineCacheSite(): number {
+    if (nextInlineCacheSite >= Constants.MAX_INLINE_CACHE_SITES) {
+      inlineCacheCounter && inlineCacheCounter.count("Site Table Full");
+      return 0;
+    }
+    return (nextInlineCacheSite ++) << Constants.LOG_INLINE_CACHE_SITE_SIZE;
+  }
+
+  /**
+   * Resolves the interface method |methodId| for an object of class |classId| and
+   * records the result in the inline cache at |site|. Compiled code only calls this
+   * when both cache entries miss.
+   */
+  export function lookupInterfaceMethodId(classId: number, methodId: number, site: number): number {
+    var classInfo = classIdToClassInfoMap[classId];
+    var methodInfo = methodIdToMethodInfoMap[methodId];
+    var targetMethodInfo = classInfo.getInterfaceMethod(methodInfo);
+    methodInfo.stats.recordReceiver(classInfo);
+    var targetMethodId = targetMethodInfo.id;
+    if (site === 0) {
+      inlineCacheCounter && inlineCacheCounter.count("Miss Uncached");
+      return targetMethodId;
+    }
+    var caches = inlineCaches;
+    if (caches[site] === 0) {
+      inlineCacheCounter && inlineCacheCounter.count("Miss Monomorphic");
+      caches[site] = classId;
+      caches[site + 1] = targetMethodId;
+    } else if (caches[site + 2] === 0) {
+      inlineCacheCounter && inlineCacheCounter.count("Miss Polymorphic");
+      caches[site + 2] = classId;
+      caches[site + 3] = targetMethodId;
+    } else {
+      // Megamorphic, leave the existing entries alone rather than thrashing them.
+      inlineCacheCounter && inlineCacheCounter.count("Miss Megamorphic");
+    }
+    return targetMethodId;
+  }
+
   export function getClassInfo(addr: number) {
     release || assert(addr !== Constants.NULL, "addr !== Constants.NULL");
     release || assert(i32[addr + Constants.OBJ_CLASS_ID_OFFSET >> 2] != 0,
@@ -806,28 +887,80 @@ module J2ME {
   }
 
   /**
-   * A map from addresses to monitors, which are JS objects that we use to track
-   * the lock state of Java objects.
+   * Lock state lives in a lock word in the object header. A zero lock word means the
+   * object is unlocked. A thin lock, held by a single thread without contention, stores
+   * the owning context's |lockOwner| with the recursion level in the low bits.
    *
-   * In most cases, we create the JS objects via Object.create(null), but we use
-   * java.lang.Class objects for classes, since those continue to be represented
-   * by JS objects in the runtime.  We also overload this map to retrieve those
-   * class objects for other purposes.
+   * The lock is inflated into a |Lock| when a second thread contends for it, when a
+   * thread waits on it or when the recursion level overflows. The lock word then holds
+   * the index of the |Lock| in |inflatedLocks| with the high bit set. Inflated locks
+   * are never deflated but are released when the object is finalized.
    *
-   * XXX Consider storing lock state in the ASM heap.
+   * Arrays don't have room for a lock word, so their locks are always inflated and kept
+   * in |arrayMonitorMap|.
    */
-  export var monitorMap = Object.create(null);
+  export const enum LockWord {
+    Unlocked = 0,
+    LevelMask = 0xFF,
+    OwnerShift = 8,
+    MaxOwner = 0x7FFFFF,
+    InflatedBit = 0x80000000,
+    IndexMask = 0x7FFFFFFF
+  }
+
+  export var inflatedLocks: Lock [] = [];
+  var freeInflatedLockIndices: number [] = [];
+
+  var arrayMonitorMap = new Map<number, Lock>();
+
+  export function isArrayAddress(addr: number): boolean {
+    return classIdToClassInfoMap[i32[addr + Constants.OBJ_CLASS_ID_OFFSET >> 2]].elementClass !== null;
+  }
 
-  // XXX Figure out correct return type(s).
+  /**
+   * Returns the inflated |Lock| of the object at |ref|, inflating it if necessary.
+   */
   export function getMonitor(ref: number): Lock {
     release || assert(typeof ref === "number", "monitor reference is a number");
 
-    var hash = i32[ref + Constants.HASH_CODE_OFFSET >> 2];
-    if (hash === Constants.NULL) {
-      hash = i32[ref + Constants.HASH_CODE_OFFSET >> 2] = $.nextHashCode()
+    var lock: Lock;
+    if (isArrayAddress(ref)) {
+      lock = arrayMonitorMap.get(ref);
+      if (!lock) {
+        lock = new Lock(Constants.NULL, 0);
+        arrayMonitorMap.set(ref, lock);
+        ASM._registerFinalizer(ref);
+      }
+      return lock;
     }
 
-    return monitorMap[hash] || (monitorMap[hash] = new Lock(Constants.NULL, 0));
+    var address = ref + Constants.LOCK_WORD_OFFSET >> 2;
+    var word = i32[address];
+    if (word & LockWord.InflatedBit) {
+      return inflatedLocks[word & LockWord.IndexMask];
+    }
+
+    // Carry over the state of the thin lock, if any.
+    lock = new Lock(word & ~LockWord.LevelMask, word & LockWord.LevelMask);
+    var index = freeInflatedLockIndices.length ? freeInflatedLockIndices.pop() : inflatedLocks.length;
+    inflatedLocks[index] = lock;
+    i32[address] = LockWord.InflatedBit | index;
+    ASM._registerFinalizer(ref);
+    runtimeCounter && runtimeCounter.count("inflateLock");
+    return lock;
+  }
+
+  function freeMonitor(ref: number) {
+    if (isArrayAddress(ref)) {
+      arrayMonitorMap.delete(ref);
+      return;
+    }
+    var word = i32[ref + Constants.LOCK_WORD_OFFSET >> 2];
+    if (word & LockWord.InflatedBit) {
+      var index = word & LockWord.IndexMask;
+      inflatedLocks[index] = null;
+      freeInflatedLockIndices.push(index);
+    }
   }
 
   /**
@@ -844,7 +977,7 @@ module J2ME {
     ready: Context [];
     waiting: Context [];
 
-    constructor(public threadAddress: number, public level: number) {
+    constructor(public owner: number, public level: number) {
       this.ready = [];
       this.waiting = [];
     }
@@ -876,16 +1009,61 @@ module J2ME {
     };
   }
 
+  /**
+   * Hot natives that neither allocate nor call back into Java, so no collection
+   * can happen while they run. Keep this up to date or else these natives will
+   * pay for |deferCollection| on every call. Exceptions they throw are created
+   * by |createException|, which defers collection itself.
+   */
+  export var nonAllocatingNatives = {
+    "java/lang/System.arraycopy.(Ljava/lang/Object;ILjava/lang/Object;II)V": true,
+    "java/lang/System.currentTimeMillis.()J": true,
+    "java/lang/Thread.currentThread.()Ljava/lang/Thread;": true,
+    "java/lang/Math.floor.(D)D": true,
+    "java/lang/Math.ceil.(D)D": true,
+    "java/lang/Math.sqrt.(D)D": true,
+    "java/lang/Math.sin.(D)D": true,
+    "java/lang/Math.cos.(D)D": true,
+    "java/lang/Math.tan.(D)D": true,
+    "java/lang/Math.asin.(D)D": true,
+    "java/lang/Math.acos.(D)D": true,
+    "java/lang/Math.atan.(D)D": true,
+    "java/lang/Math.atan2.(DD)D": true,
+    "com/sun/cldchi/jvm/JVM.monotonicTimeMillis.()J": true,
+    "com/sun/cldchi/jvm/JVM.unchecked_char_arraycopy.([CI[CII)V": true,
+    "com/sun/cldchi/jvm/JVM.unchecked_int_arraycopy.([II[III)V": true,
+    "com/sun/cldchi/jvm/JVM.unchecked_obj_arraycopy.([Ljava/lang/Object;I[Ljava/lang/Object;II)V": true
+  };
+
+  /**
+   * Natives keep addresses in JS locals that the collector can't see, so
+   * collections are deferred until they return, unless the native is known
+   * not to allocate.
+   */
+  function deferCollection(method, implKey: string) {
+    if (implKey in nonAllocatingNatives) {
+      return method;
+    }
+    return function() {
+      collectionDeferDepth++;
+      try {
+        return method.apply(this, arguments);
+      } finally {
+        collectionDeferDepth--;
+      }
+    };
+  }
+
   function findNativeMethodImplementation(methodInfo: MethodInfo) {
     // Look in bindings first.
     var binding = findNativeMethodBinding(methodInfo);
     if (binding) {
-      return release ? binding : reportError(binding, methodInfo.implKey);
+      return deferCollection(release ? binding : reportError(binding, methodInfo.implKey), methodInfo.implKey);
     }
     if (methodInfo.isNative) {
       var implKey = methodInfo.implKey;
       if (implKey in Native) {
-        return release ? Native[implKey] : reportError(Native[implKey], implKey);
+        return deferCollection(release ? Native[implKey] : reportError(Native[implKey], implKey), implKey);
       } else {
         // Some Native MethodInfos are constructed but never called;
         // that's fine, unless we actually try to call them.
@@ -921,6 +1099,60 @@ module J2ME {
     //return jsGlobal[mangledClassAndMethodName];
   }
 
+  /**
+   * Returns the body of a function that reads |field| of the object at |address|.
+   */
+  function getFieldGetterSource(field: FieldInfo, address: string): string {
+    var offset = address + " + " + field.byteOffset;
+    switch (field.kind) {
+      case Kind.Reference:
+      case Kind.Boolean:
+      case Kind.Byte:
+      case Kind.Short:
+      case Kind.Int:
+        return "return i32[" + offset + " >> 2];";
+      case Kind.Float:
+        return "return f32[" + offset + " >> 2];";
+      case Kind.Long:
+        return "return J2ME.longToNumber(i32[" + offset + " >> 2], i32[" + offset + " + 4 >> 2]);";
+      case Kind.Double:
+        return "aliasedI32[0] = i32[" + offset + " >> 2];" +
+               "aliasedI32[1] = i32[" + offset + " + 4 >> 2];" +
+               "return aliasedF64[0];";
+      default:
+        Debug.assert(false, getKindName(field.kind));
+        break;
+    }
+  }
+
+  /**
+   * Returns the body of a function that writes |value| to |field| of the object at |address|.
+   */
+  function getFieldSetterSource(field: FieldInfo, address: string): string {
+    var offset = address + " + " + field.byteOffset;
+    switch (field.kind) {
+      case Kind.Reference:
+      case Kind.Byte:
+      case Kind.Short:
+      case Kind.Int:
+        return "i32[" + offset + " >> 2] = value;";
+      case Kind.Boolean:
+        return "i32[" + offset + " >> 2] = value ? 1 : 0;";
+      case Kind.Float:
+        return "f32[" + offset + " >> 2] = value;";
+      case Kind.Long:
+        return "i32[" + offset + " >> 2] = J2ME.returnLongValue(value);" +
+               "i32[" + offset + " + 4 >> 2] = tempReturn0;";
+      case Kind.Double:
+        return "aliasedF64[0] = value;" +
+               "i32[" + offset + " >> 2] = aliasedI32[0];" +
+               "i32[" + offset + " + 4 >> 2] = aliasedI32[1];";
+      default:
+        Debug.assert(false, getKindName(field.kind));
+        break;
+    }
+  }
+
   /**
    * Creates convenience getters / setters on Java objects.
    */
@@ -951,45 +1183,8 @@ module J2ME {
           var getter;
           var setter;
           if (true || release) {
-            switch (field.kind) {
-              case Kind.Reference:
-                setter = new Function("value", "i32[this._address + " + field.byteOffset + " >> 2] = value;");
-                getter = new Function("return i32[this._address + " + field.byteOffset + " >> 2];");
-                break;
-              case Kind.Boolean:
-                setter = new Function("value", "i32[this._address + " + field.byteOffset + " >> 2] = value ? 1 : 0;");
-                getter = new Function("return i32[this._address + " + field.byteOffset + " >> 2];");
-                break;
-              case Kind.Byte:
-              case Kind.Short:
-              case Kind.Int:
-                setter = new Function("value", "i32[this._address + " + field.byteOffset + " >> 2] = value;");
-                getter = new Function("return i32[this._address + " + field.byteOffset + " >> 2];");
-                break;
-              case Kind.Float:
-                setter = new Function("value", "f32[this._address + " + field.byteOffset + " >> 2] = value;");
-                getter = new Function("return f32[this._address + " + field.byteOffset + " >> 2];");
-                break;
-              case Kind.Long:
-                setter = new Function("value",
-                  "i32[this._address + " + field.byteOffset + " >> 2] = J2ME.returnLongValue(value);" +
-                  "i32[this._address + " + field.byteOffset + " + 4 >> 2] = tempReturn0;");
-                getter = new Function("return J2ME.longToNumber(i32[this._address + " + field.byteOffset + " >> 2]," +
-                  "                         i32[this._address + " + field.byteOffset + " + 4 >> 2]);");
-                break;
-              case Kind.Double:
-                setter = new Function("value",
-                  "aliasedF64[0] = value;" +
-                  "i32[this._address + " + field.byteOffset + " >> 2] = aliasedI32[0];" +
-                  "i32[this._address + " + field.byteOffset + " + 4 >> 2] = aliasedI32[1];");
-                getter = new Function("aliasedI32[0] = i32[this._address + " + field.byteOffset + " >> 2];" +
-                  "aliasedI32[1] = i32[this._address + " + field.byteOffset + " + 4 >> 2];" +
-                  "return aliasedF64[0];");
-                break;
-              default:
-                Debug.assert(false, getKindName(field.kind));
-                break;
-            }
+            getter = new Function(getFieldGetterSource(field, "this._address"));
+            setter = new Function("value", getFieldSetterSource(field, "this._address"));
           } else {
             setter = FunctionUtilities.makeDebugForwardingSetter(field.mangledName, getKindCheck(field.kind));
           }
@@ -1160,6 +1355,16 @@ module J2ME {
    */
   export var cachedMethodCount = 0;
 
+  /**
+   * Number of methods that were not in the code cache thus far.
+   */
+  export var cachedMethodMissCount = 0;
+
+  /**
+   * Number of methods that have been evicted from the code cache thus far.
+   */
+  export var cachedMethodEvictionCount = 0;
+
   /**
    * Number of methods that have been loaded from ahead of time compiled code thus far.
    */
@@ -1209,8 +1414,14 @@ module J2ME {
           referencedClasses.push(CLASSES.getClass(cachedMethod.referencedClasses[i]));
         }
         linkMethodSource(methodInfo, cachedMethod.args, cachedMethod.body, referencedClasses, cachedMethod.onStackReplacementEntryPoints);
+        methodInfo.stats.compiled = true;
+        return;
+      }
+      if (CompiledMethodCache.isLoading(methodInfo.implKey)) {
+        // Keep interpreting until the cached method has been fetched.
         return;
       }
+      cachedMethodMissCount ++;
     }
 
     var mangledClassAndMethodName = methodInfo.mangledClassAndMethodName;
@@ -1253,6 +1464,8 @@ module J2ME {
     linkMethodSource(methodInfo, compiledMethod.args, compiledMethod.body, compiledMethod.referencedClasses, compiledMethod.onStackReplacementEntryPoints);
     var methodJITTime = (performance.now() - s);
     totalJITTime += methodJITTime;
+    methodInfo.stats.compiled = true;
+    methodInfo.stats.compileTime = methodJITTime;
     if (jitWriter) {
       jitWriter.leave(
         "Compilation Done: " + methodJITTime.toFixed(2) + " ms, " +
@@ -1286,8 +1499,10 @@ module J2ME {
   // to process this code as JS files.
   export var classInfoSymbolPrefix =  "$C"; // "$C123
   export var methodInfoSymbolPrefix = "$M"; // "$M123_456
+  export var inlineCacheSymbolPrefix = "$S"; // "$S123
   var classInfoSymbolPrefixPattern =  /\$C(\d+)/g;
   var methodInfoSymbolPrefixPattern = /\$M(\d+)_(\d+)/g;
+  var inlineCacheSymbolPrefixPattern = /\$S(\d+)/g;
 
   /**
    * Enable this if you want your profiles to have nice function names. Naming eval'ed functions
@@ -1310,6 +1525,17 @@ module J2ME {
       // jitWriter && jitWriter.writeLn("Linking Method Symbol: " + symbol + ":" + index + " to " + referencedClasses[symbol].getMethodByIndex(index));
       return referencedClasses[symbol].getMethodByIndex(index).id;
     });
+    // Each inline cache symbol appears several times per call site, but all of them
+    // need to refer to the same freshly allocated site.
+    var inlineCacheSites = null;
+    body = body.replace(inlineCacheSymbolPrefixPattern, <any>function (match, symbol) {
+      inlineCacheSites = inlineCacheSites || Object.create(null);
+      var site = inlineCacheSites[symbol];
+      if (site === undefined) {
+        site = inlineCacheSites[symbol] = allocateInlineCacheSite();
+      }
+      return site;
+    });
     enterTimeline("Eval Compiled Code");
     // This overwrites the method on the global object.
 
@@ -1376,6 +1602,9 @@ module J2ME {
 
   export function onFinalize(addr: number): void {
     NativeMap.delete(addr);
+    arrayViews.delete(addr);
+    decodedStrings.delete(addr);
+    freeMonitor(addr);
   }
 
   export const enum BailoutFrameLayout {
@@ -1412,6 +1641,66 @@ module J2ME {
     ASM._registerFinalizer(addr);
   }
 
+  /**
+   * Getters and setters for the fields that |BindingsMap| declares on a class,
+   * e.g. |accessors.get.count(addr)| and |accessors.set.count(addr, value)|.
+   */
+  export interface FieldAccessors {
+    get: any;
+    set: any;
+  }
+
+  var fieldAccessors = Object.create(null);
+
+  /**
+   * Get the field accessors of a class.
+   *
+   * Unlike handles, accessors read and write the ASM heap at constant offsets
+   * and don't allocate, so hot natives should prefer them. They cover the
+   * fields that |BindingsMap| declares on the class itself, inherited fields
+   * are accessed through the accessors of the super class that declares them.
+   *
+   * The accessors can be requested before the class is loaded, they link
+   * themselves the first time one of them is called.
+   */
+  export function getFieldAccessors(className: string): FieldAccessors {
+    var accessors: FieldAccessors = fieldAccessors[className];
+    if (accessors) {
+      return accessors;
+    }
+
+    var classBindings = BindingsMap.get(toUTF8(className));
+    release || assert(classBindings && classBindings.fields, "Class has no field bindings");
+    var instanceSymbols = classBindings.fields.instanceSymbols;
+
+    accessors = fieldAccessors[className] = {
+      get: Object.create(null),
+      set: Object.create(null)
+    };
+
+    function link() {
+      var classInfo = CLASSES.getClass(className);
+      for (var fieldName in instanceSymbols) {
+        var field = classInfo.getFieldByName(toUTF8(fieldName), toUTF8(instanceSymbols[fieldName]), false);
+        accessors.get[fieldName] = new Function("address", getFieldGetterSource(field, "address"));
+        accessors.set[fieldName] = new Function("address", "value", getFieldSetterSource(field, "address"));
+      }
+    }
+
+    Object.keys(instanceSymbols).forEach(function (fieldName) {
+      accessors.get[fieldName] = function (address: number) {
+        link();
+        return accessors.get[fieldName](address);
+      };
+      accessors.set[fieldName] = function (address: number, value: any) {
+        link();
+        accessors.set[fieldName](address, value);
+      };
+    });
+
+    return accessors;
+  }
+
   /**
    * Get a handle for an object in the ASM heap.
    *
@@ -1432,6 +1721,8 @@ module J2ME {
     release || assert(classInfo, "object has class info");
     release || assert(!classInfo.elementClass, "object isn't an array");
 
+    handleCount++;
+
     if (!handleConstructors[classId]) {
       var constructor = function(address) {
         this._address = address;
@@ -1444,17 +1735,6 @@ module J2ME {
     return new handleConstructors[classId](address);
   }
 
-  // TODO: TextEncoder('utf-16') was removed, this is some polyfil code,
-  // but there probably is a faster way to do this.
-  function encode_utf16(jsString: string, littleEndian: boolean) {
-    let a = new Uint8Array(jsString.length * 2);
-    let view = new DataView(a.buffer);
-    jsString.split('').forEach(function(c, i) {
-      view.setUint16(i * 2, c.charCodeAt(0), littleEndian);
-    });
-    return a;
-  }
-
   export function newString(jsString: string): number {
     if (jsString === null || jsString === undefined) {
       return Constants.NULL;
@@ -1462,62 +1742,147 @@ module J2ME {
 
     var objectAddr = allocObject(CLASSES.java_lang_String);
     setUncollectable(objectAddr);
-    var object = <java.lang.String>getHandle(objectAddr);
 
-    var encoded = new Uint16Array(encode_utf16(jsString, true).buffer);
-    var arrayAddr = newCharArray(encoded.length);
-    u16.set(encoded, Constants.ARRAY_HDR_SIZE + arrayAddr >> 1);
+    // Write the UTF-16 code units straight into the heap.
+    var count = jsString.length;
+    var arrayAddr = newCharArray(count);
+    var start = Constants.ARRAY_HDR_SIZE + arrayAddr >> 1;
+    for (var i = 0; i < count; i++) {
+      u16[start + i] = jsString.charCodeAt(i);
+    }
 
-    object.value = arrayAddr;
-    object.offset = 0;
-    object.count = encoded.length;
+    var stringFields = getFieldAccessors("java/lang/String");
+    stringFields.set.value(objectAddr, arrayAddr);
+    stringFields.set.offset(objectAddr, 0);
+    stringFields.set.count(objectAddr, count);
     unsetUncollectable(objectAddr);
     return objectAddr;
   }
 
+  /**
+   * Returns the heap view that holds the elements of the array at |addr|, e.g.
+   * |i8| for byte arrays or |i32| for int and reference arrays. Long arrays are
+   * held by |i32|, two slots per element.
+   *
+   * Together with |getArrayOffset| and |getArrayLength| this gives natives
+   * access to the elements of an array without allocating a view.
+   */
+  export function getArrayHeap(addr: number): any {
+    release || assert(addr !== Constants.NULL, "addr is not null");
+    var classInfo = classIdToClassInfoMap[i32[addr + Constants.OBJ_CLASS_ID_OFFSET >> 2]];
+    if (!(classInfo instanceof PrimitiveArrayClassInfo)) {
+      return i32;
+    }
+    switch (classInfo) {
+      case PrimitiveArrayClassInfo.Z:
+        return u8;
+      case PrimitiveArrayClassInfo.C:
+        return u16;
+      case PrimitiveArrayClassInfo.F:
+        return f32;
+      case PrimitiveArrayClassInfo.D:
+        return f64;
+      case PrimitiveArrayClassInfo.B:
+        return i8;
+      case PrimitiveArrayClassInfo.S:
+        return i16;
+      case PrimitiveArrayClassInfo.I:
+      case PrimitiveArrayClassInfo.J:
+        return i32;
+      default:
+        Debug.assertUnreachable("Bad primitive array" + classInfo.getClassNameSlow());
+        break;
+    }
+  }
+
+  /**
+   * Returns the index of the first element of the array at |addr| in the view
+   * returned by |getArrayHeap|.
+   */
+  export function getArrayOffset(addr: number): number {
+    return (addr + Constants.ARRAY_HDR_SIZE) / getArrayHeap(addr).BYTES_PER_ELEMENT;
+  }
+
+  /**
+   * Returns the number of elements of the array at |addr|.
+   */
+  export function getArrayLength(addr: number): number {
+    return i32[addr + Constants.ARRAY_LENGTH_OFFSET >> 2];
+  }
+
+  /**
+   * Bounded map from object addresses to values derived from the objects, the
+   * oldest entries are dropped first. Objects that are in the cache have a
+   * finalizer, so their entries are dropped before the memory can be reused,
+   * see |onFinalize|.
+   */
+  class AddressCache {
+    private values = new Map<number, any>();
+    // Addresses of the entries in the order they were added.
+    private addresses: Int32Array;
+    private nextIndex = 0;
+
+    constructor(maxSize: number) {
+      this.addresses = new Int32Array(maxSize);
+    }
+
+    get(addr: number): any {
+      return this.values.get(addr);
+    }
+
+    put(addr: number, value: any) {
+      var evictedAddr = this.addresses[this.nextIndex];
+      if (evictedAddr !== Constants.NULL) {
+        this.values.delete(evictedAddr);
+      }
+      this.addresses[this.nextIndex] = addr;
+      this.nextIndex = (this.nextIndex + 1) % this.addresses.length;
+      this.values.set(addr, value);
+      ASM._registerFinalizer(addr);
+    }
+
+    delete(addr: number) {
+      this.values.delete(addr);
+    }
+  }
+
+  /**
+   * Views returned by |getArrayFromAddr|, by array address.
+   */
+  var arrayViews = new AddressCache(256);
+
+  export var arrayViewCacheHitCount = 0;
+  export var arrayViewCacheMissCount = 0;
+
+  /**
+   * Returns a typed array view of the array at |addr|. Views are cached, so
+   * natives must not hold on to them for longer than the array is reachable.
+   * Prefer |getArrayHeap| and |getArrayOffset| in hot paths.
+   */
   export function getArrayFromAddr(addr: number) {
     if (addr === Constants.NULL) {
       return null;
     }
 
     release || assert(typeof addr === "number", "addr is number");
+    var arrayObject = arrayViews.get(addr);
+    if (arrayObject) {
+      arrayViewCacheHitCount++;
+      return arrayObject;
+    }
+    arrayViewCacheMissCount++;
+
     var classInfo = classIdToClassInfoMap[i32[addr + Constants.OBJ_CLASS_ID_OFFSET >> 2]];
     var constructor;
-    if (classInfo instanceof PrimitiveArrayClassInfo) {
-      switch (classInfo) {
-        case PrimitiveArrayClassInfo.Z:
-          constructor = Uint8Array;
-          break;
-        case PrimitiveArrayClassInfo.C:
-          constructor = Uint16Array;
-          break;
-        case PrimitiveArrayClassInfo.F:
-          constructor = Float32Array;
-          break;
-        case PrimitiveArrayClassInfo.D:
-          constructor = Float64Array;
-          break;
-        case PrimitiveArrayClassInfo.B:
-          constructor = Int8Array;
-          break;
-        case PrimitiveArrayClassInfo.S:
-          constructor = Int16Array;
-          break;
-        case PrimitiveArrayClassInfo.I:
-          constructor = Int32Array;
-          break;
-        case PrimitiveArrayClassInfo.J:
-          constructor = Int64Array;
-          break;
-        default:
-          Debug.assertUnreachable("Bad primitive array" + classInfo.getClassNameSlow());
-          break;
-      }
+    if (classInfo === PrimitiveArrayClassInfo.J) {
+      constructor = Int64Array;
     } else {
-      constructor = Int32Array;
+      constructor = getArrayHeap(addr).constructor;
     }
-    var arrayObject = new constructor(ASM.buffer, Constants.ARRAY_HDR_SIZE + addr, i32[addr + Constants.ARRAY_LENGTH_OFFSET >> 2]);
+    arrayObject = new constructor(ASM.buffer, Constants.ARRAY_HDR_SIZE + addr, i32[addr + Constants.ARRAY_LENGTH_OFFSET >> 2]);
     arrayObject.classInfo = classInfo;
+
+    arrayViews.put(addr, arrayObject);
     return arrayObject;
   }
 
@@ -1544,6 +1909,39 @@ module J2ME {
     release || Debug.assertUnreachable("The adddress was not found in the uncollectables.");
   }
 
+  /**
+   * Compiled code keeps references in JS locals that the collector can't see, so
+   * around calls and allocations it spills the locals and stack slots that may
+   * hold references to the shadow stack. The shadow stack is scanned like any
+   * other uncollectable block, which lets collections run while compiled frames
+   * are on the JS stack. Its first word holds the index of the top slot.
+   */
+  var shadowStackAddress = gcMallocUncollectable(Constants.SHADOW_STACK_SIZE);
+  export var shadowStackTopIndex = shadowStackAddress >> 2;
+  export var shadowStackLimitIndex = shadowStackTopIndex + (Constants.SHADOW_STACK_SIZE >> 2);
+  i32[shadowStackTopIndex] = shadowStackTopIndex + 1;
+
+  /**
+   * Drops all spilled slots, only safe when there are no compiled frames on the JS stack.
+   */
+  export function resetShadowStack() {
+    i32[shadowStackTopIndex] = shadowStackTopIndex + 1;
+  }
+
+  export function throwShadowStackOverflow() {
+    throw $.newRuntimeException("Shadow stack overflow");
+  }
+
+  /**
+   * Called by the collector before it marks, clears the slots above the top of
+   * the shadow stack so that stale spills don't keep objects alive.
+   */
+  export function onCollectionStart() {
+    for (var i = i32[shadowStackTopIndex]; i < shadowStackLimitIndex; i++) {
+      i32[i] = Constants.NULL;
+    }
+  }
+
   export function newArray(elementClassInfo: ClassInfo, size: number): number {
     release || assert(elementClassInfo instanceof ClassInfo, "elementClassInfo instanceof ClassInfo");
     if (size < 0) {
@@ -1621,25 +2019,54 @@ module J2ME {
     return newArray(PrimitiveClassInfo.I, size);
   }
 
-  var jStringDecoder = new TextDecoder('utf-16');
+  /**
+   * Maximum number of arguments passed to |String.fromCharCode| at once, to
+   * stay clear of the engine's argument count limit.
+   */
+  var MAX_CHAR_CODES_PER_CALL = 8192;
 
   export function fromJavaChars(charsAddr, offset, count): string {
     release || assert(charsAddr !== Constants.NULL, "charsAddr !== Constants.NULL");
 
     var start = (Constants.ARRAY_HDR_SIZE + charsAddr >> 1) + offset;
+    if (count <= MAX_CHAR_CODES_PER_CALL) {
+      return String.fromCharCode.apply(null, u16.subarray(start, start + count));
+    }
 
-    return jStringDecoder.decode(u16.subarray(start, start + count));
+    var chunks = [];
+    for (var end = start + count; start < end; start += MAX_CHAR_CODES_PER_CALL) {
+      chunks.push(String.fromCharCode.apply(null, u16.subarray(start, Math.min(start + MAX_CHAR_CODES_PER_CALL, end))));
+    }
+    return chunks.join("");
   }
 
+  /**
+   * Strings returned by |fromStringAddr|, by string address. Java strings are
+   * immutable, so an entry stays valid for as long as the string is alive.
+   */
+  var decodedStrings = new AddressCache(512);
+
+  export var stringCacheHitCount = 0;
+  export var stringCacheMissCount = 0;
+
   export function fromStringAddr(stringAddr: number): string {
     if (stringAddr === Constants.NULL) {
       return null;
     }
 
-    // XXX Retrieve the characters directly from memory, without indirecting
-    // through getHandle.
-    var javaString = <java.lang.String>getHandle(stringAddr);
-    return fromJavaChars(javaString.value, javaString.offset, javaString.count);
+    var jsString = decodedStrings.get(stringAddr);
+    if (jsString !== undefined) {
+      stringCacheHitCount++;
+      return jsString;
+    }
+    stringCacheMissCount++;
+
+    var stringFields = getFieldAccessors("java/lang/String");
+    jsString = fromJavaChars(stringFields.get.value(stringAddr),
+                             stringFields.get.offset(stringAddr),
+                             stringFields.get.count(stringAddr));
+    decodedStrings.put(stringAddr, jsString);
+    return jsString;
   }
 
   export function checkDivideByZero(value: number) {
@@ -1695,12 +2122,12 @@ module J2ME {
     static BackwardBranchThreshold = config.backwardBranchThreshold;
   }
 
-  export function monitorEnter(lock: Lock) {
-    $.ctx.monitorEnter(lock);
+  export function monitorEnter(objectAddr: number) {
+    $.ctx.monitorEnter(objectAddr);
   }
 
-  export function monitorExit(lock: Lock) {
-    $.ctx.monitorExit(lock);
+  export function monitorExit(objectAddr: number) {
+    $.ctx.monitorExit(objectAddr);
   }
 
   export function translateException(e) {
@@ -1989,13 +2416,148 @@ module J2ME {
     return aliasedI32[0];
   }
 
+  /**
+   * Collections are deferred while this is non-zero, i.e. while JS code that
+   * holds addresses the collector can't see is on the stack, like natives.
+   */
+  export var collectionDeferDepth = 0;
+
+  /**
+   * Number of bytes that can be allocated before the collector is asked to do
+   * some work, see |chargeAllocation|.
+   */
+  export var allocationBudget = 4 * 1024 * 1024;
+
+  /**
+   * Number of collection steps triggered by the allocation budget thus far.
+   */
+  export var budgetCollectionCount = 0;
+
+  var allocatedBytes = 0;
+
+  /**
+   * Counts |size| bytes against the allocation budget and collects a little when
+   * it's spent. This must happen before the allocation, which the collector
+   * couldn't see yet.
+   */
+  function chargeAllocation(size: number) {
+    allocatedBytes += size;
+    if (allocatedBytes > allocationBudget && collectionDeferDepth === 0) {
+      budgetCollectionCount++;
+      collectALittle();
+    }
+  }
+
+  /**
+   * Collects a little if nothing is holding back collections.
+   */
+  export function collectALittle() {
+    if (collectionDeferDepth === 0) {
+      allocatedBytes = 0;
+      measureCollection("collectALittle", collectALittleStep);
+    }
+  }
+
+  function collectALittleStep() {
+    ASM._collectALittle();
+  }
+
+  /**
+   * Runs a full collection, only safe when there are no natives or compiled frames
+   * on the stack.
+   */
+  export function forceCollection() {
+    allocatedBytes = 0;
+    measureCollection("forceCollection", forceCollectionStep);
+  }
+
+  function forceCollectionStep() {
+    ASM._forceCollection();
+  }
+
+  /**
+   * Heap size after the last collection we measured, to tell how much the heap
+   * grew in between.
+   */
+  var lastHeapSize = 0;
+
+  /**
+   * Calls |collect| and, if it ran a collection, records the pause, the bytes that
+   * were reclaimed and how much the heap grew since the last collection.
+   */
+  function measureCollection(name: string, collect: () => any): any {
+    if (release) {
+      return collect();
+    }
+    var collectionCount = ASM._getCollectionCount();
+    var usedHeapSize = ASM._getUsedHeapSize();
+    var start = performance.now();
+    var result = collect();
+    var pause = performance.now() - start;
+    if (ASM._getCollectionCount() !== collectionCount) {
+      var heapSize = ASM._getHeapSize();
+      gcPauseHistogram.record(pause);
+      gcCounter.count(name, 1, pause);
+      gcCounter.count("Bytes Reclaimed", Math.max(usedHeapSize - ASM._getUsedHeapSize(), 0));
+      gcCounter.count("Heap Growth", lastHeapSize ? heapSize - lastHeapSize : 0);
+      lastHeapSize = heapSize;
+    }
+    return result;
+  }
+
+  /**
+   * Don't bother collecting in idle time unless this many bytes were allocated
+   * since the last collection.
+   */
+  var IDLE_COLLECTION_THRESHOLD = 256 * 1024;
+
+  /**
+   * Time by which the current idle collection must be done, see |collectUntil|.
+   */
+  var idleCollectionDeadline = 0;
+
+  /**
+   * Spends the time until |deadline| on a collection, if enough was allocated
+   * since the last one for it to be worth it. The collection is abandoned if it
+   * runs past the deadline, so it never pauses for longer than that. Returns
+   * true if a collection completed.
+   */
+  export function collectUntil(deadline: number): boolean {
+    if (collectionDeferDepth > 0 || ASM._getBytesSinceCollection() < IDLE_COLLECTION_THRESHOLD) {
+      return false;
+    }
+    idleCollectionDeadline = deadline;
+    var start = performance.now();
+    var collected = !!measureCollection("Idle Collection", tryCollectStep);
+    idleCollectionDeadline = 0;
+    if (collected) {
+      allocatedBytes = 0;
+    } else {
+      release || gcCounter.count("Idle Collection Abandoned", 1, performance.now() - start);
+    }
+    return collected;
+  }
+
+  function tryCollectStep() {
+    return ASM._tryCollect();
+  }
+
+  /**
+   * Called by the collector during an idle collection, see |collectUntil|.
+   */
+  export function shouldAbortIdleCollection(): boolean {
+    return collectionDeferDepth > 0 || performance.now() > idleCollectionDeadline;
+  }
+
   export function gcMalloc(size: number): number {
     release || gcCounter.count("gcMalloc");
+    chargeAllocation(size);
     return ASM._gcMalloc(size);
   }
 
   export function gcMallocAtomic(size: number): number {
     release || gcCounter.count("gcMallocAtomic");
+    chargeAllocation(size);
     return ASM._gcMallocAtomic(size);
   }
 
@@ -2151,6 +2713,8 @@ var GLM = J2ME.getLinkedMethodById;
 var GLVM = J2ME.getLinkedVirtualMethodById;
 var VT = J2ME.linkedVTableMap;
 var FT = J2ME.flatLinkedVTableMap;
+var IC = J2ME.inlineCaches;
+var LIM = J2ME.lookupInterfaceMethodId;
 
 var CIC = J2ME.classInitCheck;
 var GH = J2ME.getHandle;
@@ -2172,7 +2736,6 @@ var NM = J2ME.newMultiArray;
 var CAB = J2ME.checkArrayBounds;
 var CAS = J2ME.checkArrayStore;
 
-// XXX Ensure these work with new monitor objects.
 var GM = J2ME.getMonitor;
 var ME = J2ME.monitorEnter;
 var MX = J2ME.monitorExit;
@@ -2188,6 +2751,10 @@ var PS = 0; // Preemption samples.
 
 var MA = J2ME.gcMallocAtomic;
 
+var SST = J2ME.shadowStackTopIndex;
+var SSL = J2ME.shadowStackLimitIndex;
+var SO = J2ME.throwShadowStackOverflow;
+
 var fadd = J2ME.fadd;
 var fsub = J2ME.fsub;
 var fmul = J2ME.fmul;